@@ -0,0 +1,118 @@
+package bcu.cmp5332.bookingsystem.benchmark;
+
+import bcu.cmp5332.bookingsystem.data.BTreeStore;
+import bcu.cmp5332.bookingsystem.data.DataManager;
+import bcu.cmp5332.bookingsystem.data.DurableFile;
+import bcu.cmp5332.bookingsystem.data.LsmStore;
+import bcu.cmp5332.bookingsystem.data.RecordStore;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+/**
+ * Compares the sustained rate at which new bookings can be written during a sale: appending
+ * them to the text booking file through {@link DurableFile}, putting them in the
+ * {@link BTreeStore}, and putting them in the {@link LsmStore}. Each starts from the same number
+ * of existing bookings, and the new bookings are written and made durable in batches, as a busy
+ * booking desk would. Only the writes are timed, not finding the changed bookings in memory.
+ * <p>
+ * Usage: {@code BookingStoreBenchmark [existing bookings] [new bookings] [batch size]}
+ * </p>
+ *
+ * @author Sugam Adhikari
+ * @author Prasansha Tamang
+ */
+public class BookingStoreBenchmark {
+
+    /**
+     * A way of writing a batch of bookings and making it durable.
+     */
+    private interface Writer {
+        void write(int firstId, int count) throws Exception;
+    }
+
+    /**
+     * Fills each kind of storage with the existing bookings and times writing the new ones.
+     *
+     * @param args optional existing and new booking counts and the batch size
+     * @throws Exception if the bookings cannot be written
+     */
+    public static void main(String[] args) throws Exception {
+        int existing = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int added = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        int batch = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+
+        System.out.printf("%,d existing bookings, %,d new bookings in batches of %d%n",
+                existing, added, batch);
+        Path dir = Files.createTempDirectory("fbs-bookings");
+        try {
+            String text = dir.resolve("bookings.txt").toString();
+            run("text append", existing, added, batch, (firstId, count) ->
+                    DurableFile.appendText(text, out -> {
+                        for (int id = firstId; id < firstId + count; id++) {
+                            // The same line format as BookingDataManager
+                            out.println(id + DataManager.SEPARATOR + (1 + id % 20_000)
+                                    + DataManager.SEPARATOR + (1 + id % 2_000) + DataManager.SEPARATOR
+                                    + LocalDate.ofEpochDay(19_700 + id % 30) + DataManager.SEPARATOR
+                                    + 250.0);
+                        }
+                    }));
+
+            try (BTreeStore store = new BTreeStore(dir.resolve("store.btree").toString())) {
+                run("b+tree store", existing, added, batch, (firstId, count) -> put(store, firstId, count));
+            }
+
+            try (LsmStore store = new LsmStore(dir.resolve("store.lsm").toString())) {
+                run("lsm store", existing, added, batch, (firstId, count) -> put(store, firstId, count));
+                System.out.printf("lsm runs afterwards: %d%n", store.getRunCount());
+            }
+        } finally {
+            delete(dir.toFile());
+        }
+    }
+
+    /**
+     * Writes the existing bookings in large batches, then times writing the new ones in batches
+     * of the given size and prints the rate.
+     */
+    private static void run(String name, int existing, int added, int batch, Writer writer)
+            throws Exception {
+        for (int id = 1; id <= existing; id += 100_000) {
+            writer.write(id, Math.min(100_000, existing - id + 1));
+        }
+        System.gc();
+        long start = System.nanoTime();
+        for (int id = existing + 1; id <= existing + added; id += batch) {
+            writer.write(id, Math.min(batch, existing + added - id + 1));
+        }
+        long nanos = System.nanoTime() - start;
+        System.out.printf("%-13s %8.1f ms, %,10.0f bookings/s%n", name + ":", nanos / 1_000_000.0,
+                added / (nanos / 1_000_000_000.0));
+    }
+
+    /**
+     * Puts bookings encoded as by the StoreDataManager in the store and commits them.
+     */
+    private static void put(RecordStore store, int firstId, int count) throws Exception {
+        for (int id = firstId; id < firstId + count; id++) {
+            ByteBuffer record = ByteBuffer.allocate(21);
+            record.putInt(1 + id % 20_000).putInt(1 + id % 2_000).putInt(19_700 + id % 30)
+                    .putDouble(250.0).put((byte) 0);
+            store.put(RecordStore.Table.BOOKINGS, id, record.array());
+        }
+        store.commit();
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
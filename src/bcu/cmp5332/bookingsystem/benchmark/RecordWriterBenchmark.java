@@ -0,0 +1,193 @@
+package bcu.cmp5332.bookingsystem.benchmark;
+
+import bcu.cmp5332.bookingsystem.data.DataManager;
+import bcu.cmp5332.bookingsystem.data.DurableFile;
+import bcu.cmp5332.bookingsystem.data.RecordFrame;
+import bcu.cmp5332.bookingsystem.data.RecordWriter;
+import bcu.cmp5332.bookingsystem.model.Booking;
+import bcu.cmp5332.bookingsystem.model.Customer;
+import bcu.cmp5332.bookingsystem.model.Flight;
+import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the time and memory allocated when writing a full checkpoint of the text data
+ * files by building each record as a String and printing it through a {@code PrintWriter},
+ * as the data managers used to, and by encoding it with a {@link RecordWriter}. Both sides
+ * write the same framed bytes through {@link DurableFile}, including forcing them to disk, and
+ * the files are compared at the end.
+ * <p>
+ * Usage: {@code RecordWriterBenchmark [flights] [customers] [bookings] [iterations]}
+ * </p>
+ *
+ * @author Sugam Adhikari
+ * @author Prasansha Tamang
+ */
+public class RecordWriterBenchmark {
+
+    private static final String SEPARATOR = DataManager.SEPARATOR;
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    /**
+     * Generates a data set and times both ways of writing it out.
+     *
+     * @param args optional flight, customer and booking counts and the number of timed iterations
+     * @throws Exception if the data cannot be generated or written
+     */
+    public static void main(String[] args) throws Exception {
+        int flights = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int customers = args.length > 1 ? Integer.parseInt(args[1]) : 500_000;
+        int bookings = args.length > 2 ? Integer.parseInt(args[2]) : 2_000_000;
+        int iterations = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+
+        FlightBookingSystem fbs = SyntheticData.generate(flights, customers, bookings);
+        List<Booking> allBookings = new ArrayList<>(bookings);
+        for (Customer customer : fbs.getAllCustomers()) {
+            allBookings.addAll(customer.getBookings());
+        }
+        Path dir = Files.createTempDirectory("fbs-writer");
+        String[] printed = { dir.resolve("flights-printed.txt").toString(),
+            dir.resolve("customers-printed.txt").toString(), dir.resolve("bookings-printed.txt").toString() };
+        String[] encoded = { dir.resolve("flights-encoded.txt").toString(),
+            dir.resolve("customers-encoded.txt").toString(), dir.resolve("bookings-encoded.txt").toString() };
+        long records = flights + customers + bookings;
+
+        System.out.printf("%,d records%n", records);
+        report("PrintWriter", records, iterations, printed, () -> {
+            DurableFile.replaceText(printed[0], out -> printFlights(out, fbs.getFlights()));
+            DurableFile.replaceText(printed[1], out -> printCustomers(out, fbs.getAllCustomers()));
+            DurableFile.replaceText(printed[2], out -> printBookings(out, allBookings));
+        });
+        report("RecordWriter", records, iterations, encoded, () -> {
+            DurableFile.replaceRecords(encoded[0], out -> encodeFlights(out, fbs.getFlights()));
+            DurableFile.replaceRecords(encoded[1], out -> encodeCustomers(out, fbs.getAllCustomers()));
+            DurableFile.replaceRecords(encoded[2], out -> encodeBookings(out, allBookings));
+        });
+        for (int i = 0; i < printed.length; i++) {
+            boolean same = Files.readAllLines(new File(printed[i]).toPath())
+                    .equals(Files.readAllLines(new File(encoded[i]).toPath()));
+            System.out.println(new File(encoded[i]).getName() + (same ? " matches" : " DIFFERS"));
+        }
+
+        for (File file : dir.toFile().listFiles()) {
+            file.delete();
+        }
+        dir.toFile().delete();
+    }
+
+    /**
+     * A checkpoint of the three data files.
+     */
+    private interface Pass {
+        void run() throws Exception;
+    }
+
+    private static void report(String name, long records, int iterations, String[] files, Pass pass) throws Exception {
+        pass.run();
+        long threadId = Thread.currentThread().getId();
+        long allocated = 0;
+        long elapsed = 0;
+        for (int i = 0; i < iterations; i++) {
+            long bytesBefore = THREADS.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+            pass.run();
+            elapsed += System.nanoTime() - start;
+            allocated += THREADS.getThreadAllocatedBytes(threadId) - bytesBefore;
+        }
+        long size = 0;
+        for (String file : files) {
+            size += new File(file).length();
+        }
+        System.out.printf("%-14s %8.1f ms  %8.1f MB/s written  %8.1f bytes/record allocated%n", name,
+                elapsed / (iterations * 1_000_000.0), size * iterations / (elapsed / 1_000.0),
+                (double) allocated / (records * iterations));
+    }
+
+    private static void printFlights(PrintWriter out, List<Flight> flights) {
+        for (Flight flight : flights) {
+            StringBuilder record = new StringBuilder();
+            record.append(flight.getId() + SEPARATOR);
+            record.append(flight.getFlightNumber() + SEPARATOR);
+            record.append(flight.getOrigin() + SEPARATOR);
+            record.append(flight.getDestination() + SEPARATOR);
+            record.append(flight.getDepartureDate() + SEPARATOR);
+            record.append(flight.getNumberOfSeats() + SEPARATOR);
+            record.append(flight.getPrice() + SEPARATOR);
+            record.append(flight.isDeleted() ? "deleted" : "" + SEPARATOR);
+            out.println(RecordFrame.frame(record.toString()));
+        }
+    }
+
+    private static void printCustomers(PrintWriter out, Iterable<Customer> customers) {
+        for (Customer customer : customers) {
+            StringBuilder record = new StringBuilder();
+            record.append(customer.getId() + SEPARATOR);
+            record.append(customer.getName() + SEPARATOR);
+            record.append(customer.getPhone() + SEPARATOR);
+            record.append(customer.getEmail() + SEPARATOR);
+            record.append(customer.isDeleted() ? "deleted" : "" + SEPARATOR);
+            out.println(RecordFrame.frame(record.toString()));
+        }
+    }
+
+    private static void printBookings(PrintWriter out, List<Booking> bookings) {
+        for (Booking booking : bookings) {
+            String record = booking.getId() + SEPARATOR
+                    + booking.getCustomer().getId() + SEPARATOR
+                    + booking.getFlight().getId() + SEPARATOR
+                    + booking.getBookingDate() + SEPARATOR
+                    + booking.getPrice();
+            if (booking.isCancelled()) {
+                record += SEPARATOR + "cancelled";
+            }
+            out.println(RecordFrame.frame(record));
+        }
+    }
+
+    private static void encodeFlights(RecordWriter out, List<Flight> flights) throws IOException {
+        for (Flight flight : flights) {
+            out.field(flight.getId()).field(flight.getFlightNumber()).field(flight.getOrigin())
+                    .field(flight.getDestination()).field(flight.getDepartureDate())
+                    .field(flight.getNumberOfSeats()).field(flight.getPrice());
+            if (flight.isDeleted()) {
+                out.field("deleted");
+            } else {
+                out.field("").field("");
+            }
+            out.endRecord();
+        }
+    }
+
+    private static void encodeCustomers(RecordWriter out, Iterable<Customer> customers) throws IOException {
+        for (Customer customer : customers) {
+            out.field(customer.getId()).field(customer.getName()).field(customer.getPhone())
+                    .field(customer.getEmail());
+            if (customer.isDeleted()) {
+                out.field("deleted");
+            } else {
+                out.field("").field("");
+            }
+            out.endRecord();
+        }
+    }
+
+    private static void encodeBookings(RecordWriter out, List<Booking> bookings) throws IOException {
+        for (Booking booking : bookings) {
+            out.field(booking.getId()).field(booking.getCustomer().getId()).field(booking.getFlight().getId())
+                    .field(booking.getBookingDate()).field(booking.getPrice());
+            if (booking.isCancelled()) {
+                out.field("cancelled");
+            }
+            out.endRecord();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package bcu.cmp5332.bookingsystem.benchmark;
+
+import bcu.cmp5332.bookingsystem.data.BookingDataManager;
+import bcu.cmp5332.bookingsystem.data.CustomerDataManager;
+import bcu.cmp5332.bookingsystem.data.DataManager;
+import bcu.cmp5332.bookingsystem.data.FlightDataManager;
+import bcu.cmp5332.bookingsystem.data.ParallelLoader;
+import bcu.cmp5332.bookingsystem.data.SnapshotDataManager;
+import bcu.cmp5332.bookingsystem.model.Customer;
+import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the start-up time of loading the text data files sequentially, loading them with the
+ * {@link ParallelLoader}, loading them with lazily loaded bookings, and loading the binary
+ * snapshot. For the eager and lazy loads it also reports the heap retained by the loaded system,
+ * with none, a tenth and all of the customers' bookings read.
+ * <p>
+ * Usage: {@code StartupBenchmark [flights] [customers] [bookings] [iterations]}
+ * </p>
+ *
+ * @author Sugam Adhikari
+ * @author Prasansha Tamang
+ */
+public class StartupBenchmark {
+
+    /**
+     * Generates a data set, writes it in both formats and times repeated loads of each.
+     *
+     * @param args optional flight, customer and booking counts and the number of timed iterations
+     * @throws Exception if the data cannot be generated, written or loaded
+     */
+    public static void main(String[] args) throws Exception {
+        int flights = args.length > 0 ? Integer.parseInt(args[0]) : 2_000;
+        int customers = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        int bookings = args.length > 2 ? Integer.parseInt(args[2]) : 500_000;
+        int iterations = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+
+        Path dir = Files.createTempDirectory("fbs-startup");
+        FlightDataManager flightData = new FlightDataManager(dir.resolve("flights.txt").toString());
+        CustomerDataManager customerData = new CustomerDataManager(dir.resolve("customers.txt").toString());
+        BookingDataManager bookingData = new BookingDataManager(dir.resolve("bookings.txt").toString());
+        DataManager[] text = { flightData, customerData, bookingData };
+        ParallelLoader parallel = new ParallelLoader(flightData, customerData, bookingData,
+                dir.resolve("bookings.txt").toString());
+        DataManager snapshot = new SnapshotDataManager(dir.resolve("snapshot.bin").toString(),
+                dir.resolve("flights.txt").toString(), dir.resolve("customers.txt").toString(),
+                dir.resolve("bookings.txt").toString());
+
+        FlightBookingSystem source = SyntheticData.generate(flights, customers, bookings);
+        for (DataManager dm : text) {
+            dm.storeData(source);
+        }
+        snapshot.storeData(source);
+        source = null;
+
+        System.out.printf("%d flights, %d customers, %d bookings%n", flights, customers, bookings);
+        System.out.printf("text files: %,d bytes, snapshot: %,d bytes%n",
+                size(dir, "flights.txt") + size(dir, "customers.txt") + size(dir, "bookings.txt"),
+                size(dir, "snapshot.bin"));
+        System.out.printf("text load:          %8.1f ms%n", time(iterations, fbs -> {
+            for (DataManager dm : text) {
+                dm.loadData(fbs);
+            }
+        }));
+        System.out.printf("parallel text load: %8.1f ms%n", time(iterations, parallel::load));
+        System.out.printf("snapshot load:      %8.1f ms%n", time(iterations, snapshot::loadData));
+        ParallelLoader lazy = new ParallelLoader(flightData, customerData, bookingData,
+                dir.resolve("bookings.txt").toString());
+        lazy.setLazyBookings(true);
+        System.out.printf("lazy text load:     %8.1f ms%n", time(iterations, lazy::load));
+
+        System.out.printf("eager heap:         %8.1f MB%n", heap(parallel::load, 1));
+        System.out.printf("lazy heap:          %8.1f MB%n", heap(lazy::load, 0));
+        System.out.printf("lazy heap, 10%% read:%8.1f MB%n", heap(lazy::load, 10));
+        System.out.printf("lazy heap, all read:%8.1f MB%n", heap(lazy::load, 1));
+
+        for (File file : dir.toFile().listFiles()) {
+            file.delete();
+        }
+        dir.toFile().delete();
+    }
+
+    private static long size(Path dir, String name) {
+        return dir.resolve(name).toFile().length();
+    }
+
+    /**
+     * A way of populating an empty system.
+     */
+    private interface Loader {
+        void load(FlightBookingSystem fbs) throws Exception;
+    }
+
+    /**
+     * Loads the data, reads the bookings of every {@code every}-th customer (none if zero), and
+     * returns the heap in use afterwards minus the heap in use before.
+     */
+    private static double heap(Loader loader, int every) throws Exception {
+        Runtime runtime = Runtime.getRuntime();
+        List<FlightBookingSystem> keep = new ArrayList<>();
+        System.gc();
+        long before = runtime.totalMemory() - runtime.freeMemory();
+        FlightBookingSystem fbs = new FlightBookingSystem();
+        loader.load(fbs);
+        if (every > 0) {
+            for (Customer customer : fbs.getAllCustomers()) {
+                if (customer.getId() % every == 0) {
+                    customer.getBookings();
+                }
+            }
+        }
+        keep.add(fbs);
+        System.gc();
+        long after = runtime.totalMemory() - runtime.freeMemory();
+        keep.clear();
+        return (after - before) / (1024.0 * 1024.0);
+    }
+
+    /**
+     * Loads the data once to warm up, then returns the average time of the timed iterations.
+     */
+    private static double time(int iterations, Loader loader) throws Exception {
+        long total = 0;
+        for (int i = -1; i < iterations; i++) {
+            System.gc();
+            long start = System.nanoTime();
+            loader.load(new FlightBookingSystem());
+            if (i >= 0) {
+                total += System.nanoTime() - start;
+            }
+        }
+        return total / (iterations * 1_000_000.0);
+    }
+}
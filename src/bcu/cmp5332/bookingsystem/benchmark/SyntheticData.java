@@ -0,0 +1,67 @@
+package bcu.cmp5332.bookingsystem.benchmark;
+
+import bcu.cmp5332.bookingsystem.main.FlightBookingSystemException;
+import bcu.cmp5332.bookingsystem.model.Booking;
+import bcu.cmp5332.bookingsystem.model.Customer;
+import bcu.cmp5332.bookingsystem.model.Flight;
+import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
+
+import java.time.LocalDate;
+import java.util.Random;
+
+/**
+ * Generates reproducible flight booking systems of a given size for the benchmarks.
+ *
+ * @author Sugam Adhikari
+ * @author Prasansha Tamang
+ */
+public final class SyntheticData {
+
+    private static final String[] AIRPORTS = {
+        "LHR", "JFK", "LAX", "CDG", "DXB", "HND", "SIN", "FRA", "AMS", "KTM", "DEL", "SYD"
+    };
+
+    private SyntheticData() {
+    }
+
+    /**
+     * Builds a system with the given number of flights, customers and bookings. Every tenth
+     * booking is cancelled and every fiftieth customer and flight is marked as deleted.
+     *
+     * @param flightCount   the number of flights
+     * @param customerCount the number of customers
+     * @param bookingCount  the number of bookings
+     * @return the generated system
+     * @throws FlightBookingSystemException if the generated data is rejected by the model
+     */
+    public static FlightBookingSystem generate(int flightCount, int customerCount, int bookingCount)
+            throws FlightBookingSystemException {
+        Random random = new Random(42);
+        FlightBookingSystem fbs = new FlightBookingSystem();
+        LocalDate firstDeparture = LocalDate.of(2024, 1, 1);
+        for (int id = 1; id <= flightCount; id++) {
+            String origin = AIRPORTS[random.nextInt(AIRPORTS.length)];
+            String destination = AIRPORTS[random.nextInt(AIRPORTS.length)];
+            fbs.addFlight(new Flight(id, "FB" + (100 + id % 900), origin, destination,
+                    firstDeparture.plusDays(id / 900), 150 + random.nextInt(250),
+                    100 + random.nextInt(900), id % 50 == 0));
+        }
+        for (int id = 1; id <= customerCount; id++) {
+            fbs.addCustomer(new Customer(id, "Customer " + id, String.valueOf(7000000000L + id),
+                    "customer" + id + "@example.com", id % 50 == 0));
+        }
+        for (int id = 1; id <= bookingCount; id++) {
+            Customer customer = fbs.getCustomerByID(1 + random.nextInt(customerCount));
+            Flight flight = fbs.getFlightByID(1 + random.nextInt(flightCount));
+            Booking booking = new Booking(id, customer, flight, LocalDate.of(2023, 12, 1)
+                    .plusDays(random.nextInt(30)), flight.getPrice());
+            if (id % 10 == 0) {
+                booking.cancelBooking();
+            }
+            customer.addBooking(booking);
+            flight.addPassenger(customer);
+        }
+        fbs.setMaxBookingId(bookingCount);
+        return fbs;
+    }
+}
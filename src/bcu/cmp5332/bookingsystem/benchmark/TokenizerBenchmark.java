@@ -0,0 +1,169 @@
+package bcu.cmp5332.bookingsystem.benchmark;
+
+import bcu.cmp5332.bookingsystem.data.BookingDataManager;
+import bcu.cmp5332.bookingsystem.data.CustomerDataManager;
+import bcu.cmp5332.bookingsystem.data.DataManager;
+import bcu.cmp5332.bookingsystem.data.FlightDataManager;
+import bcu.cmp5332.bookingsystem.data.RecordReader;
+import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Scanner;
+
+/**
+ * Compares the time and memory allocated when tokenizing the data files with
+ * {@code Scanner} and {@code String.split}, as the data managers used to, and with
+ * {@link RecordReader}. Both sides parse every field to its final type and fold it
+ * into a checksum, so only the cost of tokenizing is measured.
+ * <p>
+ * Usage: {@code TokenizerBenchmark [flights] [customers] [bookings] [iterations]}
+ * </p>
+ *
+ * @author Sugam Adhikari
+ * @author Prasansha Tamang
+ */
+public class TokenizerBenchmark {
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    /**
+     * Generates a data set, writes the text files and times both tokenizers over them.
+     *
+     * @param args optional flight, customer and booking counts and the number of timed iterations
+     * @throws Exception if the data cannot be generated, written or read
+     */
+    public static void main(String[] args) throws Exception {
+        int flights = args.length > 0 ? Integer.parseInt(args[0]) : 2_000;
+        int customers = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        int bookings = args.length > 2 ? Integer.parseInt(args[2]) : 500_000;
+        int iterations = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+
+        Path dir = Files.createTempDirectory("fbs-tokenizer");
+        Path[] files = { dir.resolve("flights.txt"), dir.resolve("customers.txt"), dir.resolve("bookings.txt") };
+        DataManager[] text = {
+            new FlightDataManager(files[0].toString()),
+            new CustomerDataManager(files[1].toString()),
+            new BookingDataManager(files[2].toString())
+        };
+        FlightBookingSystem source = SyntheticData.generate(flights, customers, bookings);
+        for (DataManager dm : text) {
+            dm.storeData(source);
+        }
+        source = null;
+        long records = flights + customers + bookings;
+
+        System.out.printf("%,d records%n", records);
+        report("Scanner + split", records, iterations, () -> splitFlights(files[0])
+                + splitCustomers(files[1]) + splitBookings(files[2]));
+        report("RecordReader", records, iterations, () -> readFlights(files[0])
+                + readCustomers(files[1]) + readBookings(files[2]));
+
+        for (File file : dir.toFile().listFiles()) {
+            file.delete();
+        }
+        dir.toFile().delete();
+    }
+
+    /**
+     * A tokenizing pass over the data files that returns a checksum of the parsed values.
+     */
+    private interface Pass {
+        long run() throws Exception;
+    }
+
+    private static void report(String name, long records, int iterations, Pass pass) throws Exception {
+        pass.run();
+        long threadId = Thread.currentThread().getId();
+        long allocated = 0;
+        long elapsed = 0;
+        long checksum = 0;
+        for (int i = 0; i < iterations; i++) {
+            long bytesBefore = THREADS.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+            checksum += pass.run();
+            elapsed += System.nanoTime() - start;
+            allocated += THREADS.getThreadAllocatedBytes(threadId) - bytesBefore;
+        }
+        System.out.printf("%-16s %8.1f ms  %8.1f bytes/record  %8.1f MB/s allocated  (checksum %d)%n", name,
+                elapsed / (iterations * 1_000_000.0), (double) allocated / (records * iterations),
+                allocated / (elapsed / 1_000.0), checksum);
+    }
+
+    private static long splitFlights(Path file) throws Exception {
+        long sum = 0;
+        try (Scanner sc = new Scanner(file.toFile())) {
+            while (sc.hasNextLine()) {
+                String[] p = sc.nextLine().split(DataManager.SEPARATOR, -1);
+                sum += Integer.parseInt(p[0]) + p[1].length() + p[2].length() + p[3].length()
+                        + LocalDate.parse(p[4]).getDayOfYear() + Integer.parseInt(p[5])
+                        + (long) Double.parseDouble(p[6]) + ("deleted".equalsIgnoreCase(p[7]) ? 1 : 0);
+            }
+        }
+        return sum;
+    }
+
+    private static long splitCustomers(Path file) throws Exception {
+        long sum = 0;
+        try (Scanner sc = new Scanner(file.toFile())) {
+            while (sc.hasNextLine()) {
+                String[] p = sc.nextLine().split(DataManager.SEPARATOR, -1);
+                sum += Integer.parseInt(p[0]) + p[1].length() + p[2].length() + p[3].length()
+                        + ("deleted".equalsIgnoreCase(p[4]) ? 1 : 0);
+            }
+        }
+        return sum;
+    }
+
+    private static long splitBookings(Path file) throws Exception {
+        long sum = 0;
+        try (Scanner sc = new Scanner(file.toFile())) {
+            while (sc.hasNextLine()) {
+                String[] p = sc.nextLine().split(DataManager.SEPARATOR);
+                sum += Integer.parseInt(p[0]) + Integer.parseInt(p[1]) + Integer.parseInt(p[2])
+                        + LocalDate.parse(p[3]).getDayOfYear() + (long) Double.parseDouble(p[4])
+                        + (p.length > 5 && p[5].equals("cancelled") ? 1 : 0);
+            }
+        }
+        return sum;
+    }
+
+    private static long readFlights(Path file) throws Exception {
+        long sum = 0;
+        try (RecordReader r = new RecordReader(file)) {
+            while (r.nextRecord()) {
+                sum += r.nextInt() + r.nextString().length() + r.nextString().length() + r.nextString().length()
+                        + r.nextDate().getDayOfYear() + r.nextInt() + (long) r.nextDouble()
+                        + (r.nextFieldEqualsIgnoreCase("deleted") ? 1 : 0);
+            }
+        }
+        return sum;
+    }
+
+    private static long readCustomers(Path file) throws Exception {
+        long sum = 0;
+        try (RecordReader r = new RecordReader(file)) {
+            while (r.nextRecord()) {
+                sum += r.nextInt() + r.nextString().length() + r.nextString().length() + r.nextString().length()
+                        + (r.nextFieldEqualsIgnoreCase("deleted") ? 1 : 0);
+            }
+        }
+        return sum;
+    }
+
+    private static long readBookings(Path file) throws Exception {
+        long sum = 0;
+        try (RecordReader r = new RecordReader(file)) {
+            while (r.nextRecord()) {
+                int fields = r.fieldCount();
+                sum += r.nextInt() + r.nextInt() + r.nextInt() + r.nextDate().getDayOfYear()
+                        + (long) r.nextDouble() + (fields > 5 && r.nextFieldEqualsIgnoreCase("cancelled") ? 1 : 0);
+            }
+        }
+        return sum;
+    }
+}
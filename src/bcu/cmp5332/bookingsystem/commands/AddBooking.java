@@ -1,23 +1,23 @@
 /**
  * This class represents a command to add a new booking to the flight booking system.
  * It encapsulates the logic required to create a new booking, validate the request,
- * and persist the booking details to a file.
+ * and record the new booking in the mutation journal.
  *
  * @author Sugam Adhikari
  * @author Prasansha Tamang
  */
 package bcu.cmp5332.bookingsystem.commands;
 
+import bcu.cmp5332.bookingsystem.data.FlightBookingSystemData;
 import bcu.cmp5332.bookingsystem.main.FlightBookingSystemException;
 import bcu.cmp5332.bookingsystem.model.Booking;
 import bcu.cmp5332.bookingsystem.model.Customer;
 import bcu.cmp5332.bookingsystem.model.Flight;
 import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
 
-import java.io.BufferedWriter;
-import java.io.FileWriter; 
 import java.io.IOException;
-import java.time.LocalDate; 
+import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * The {@code AddBooking} class implements the {@link Command} interface, providing functionality
@@ -25,7 +25,8 @@ import java.time.LocalDate;
  * including checking if the booking is within the allowed time frame, if the customer and flight exist,
  * if the flight has not yet departed, and if there are available seats on the flight.
  * Upon successful validation, it creates a new booking object, adds it to the customer's bookings,
- * and persists the booking details to a file. 
+ * and queues a record of the booking for the mutation journal, waiting for it to be written
+ * only when durable writes are required.
  *
  * @see Command
  */
@@ -83,7 +84,7 @@ public class AddBooking implements Command {
             throw new FlightBookingSystemException("Cannot book a flight that has already departed.");
         }
 
-        if (flight.getPassengers().size() >= flight.getNumberOfSeats()) {
+        if (flight.getPassengerCount() >= flight.getNumberOfSeats()) {
             throw new FlightBookingSystemException("The flight is full. Booking cannot be made.");
         }
 
@@ -96,11 +97,11 @@ public class AddBooking implements Command {
         flight.addPassenger(customer);
 
         if (!booking.isCancelled()) {
-            try (BufferedWriter writer = new BufferedWriter(new FileWriter("resources/data/bookings.txt", true))) {
-                writer.write(booking.getId() + "::" + customer.getId() + "::" + flight.getId() + "::" + booking.getBookingDate() + "::" + booking.getPrice()+"::");
-                writer.newLine();
+            try {
+                CompletableFuture<Void> logged = FlightBookingSystemData.getJournal().submitBookingCreated(booking);
+                FlightBookingSystemData.awaitIfDurable(logged);
             } catch (IOException e) {
-                throw new FlightBookingSystemException("Error writing to bookings.txt: " + e.getMessage());
+                throw new FlightBookingSystemException("Error writing to the booking journal: " + e.getMessage());
             }
         }
 
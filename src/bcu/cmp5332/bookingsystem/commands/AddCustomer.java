@@ -8,10 +8,12 @@
  */
 package bcu.cmp5332.bookingsystem.commands;
 
-import java.io.BufferedWriter;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.concurrent.CompletableFuture;
 
+import bcu.cmp5332.bookingsystem.data.CustomerDataManager;
+import bcu.cmp5332.bookingsystem.data.FlightBookingSystemData;
 import bcu.cmp5332.bookingsystem.main.FlightBookingSystemException;
 import bcu.cmp5332.bookingsystem.model.Customer;
 import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
@@ -20,6 +22,8 @@ import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
  * The {@code AddCustomer} class implements the {@link Command} interface, providing functionality
  * to add a new customer to the flight booking system. It assigns a unique ID to the new customer,
  * based on the current maximum customer ID in the system, and persists the customer details to a file.
+ * The new record is handed to the {@link bcu.cmp5332.bookingsystem.data.WriteBehindQueue}, so the
+ * command does not wait for the file to be written unless durable writes are required.
  *
  * @see Command
  */
@@ -71,12 +75,27 @@ public class AddCustomer implements Command {
         // Create a new customer object with the next available ID
         Customer customer = new Customer(++maxId, name, phone, email);
         fbs.addCustomer(customer); // Add the customer to the flight booking system
+        FlightBookingSystemData.getJournal().publishCustomerAdded(customer);
         System.out.println("Customer #" + customer.getId() + " added.");
 
-        // Write customer data to a file
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter("resources/data/customers.txt", true))) {
-            writer.write(customer.getId() + "::" + customer.getName() + "::" + customer.getPhone() + "::" + customer.getEmail()+ "::");
-            writer.newLine();
+        if (FlightBookingSystemData.usesRecordStore()) {
+            // The record store writes just the new customer, so it is stored straight away
+            try {
+                FlightBookingSystemData.store(fbs);
+            } catch (IOException | URISyntaxException ex) {
+                throw new FlightBookingSystemException("Error storing the customer: " + ex.getMessage());
+            }
+            return;
+        }
+
+        // Queue the customer, encoded as CustomerDataManager stores it, to be appended to the
+        // customers.txt file; the queue keeps the record until it has been written, so the
+        // customer no longer needs storing
+        try {
+            CompletableFuture<Void> written = FlightBookingSystemData.getWriteBehind().append(CustomerDataManager.RESOURCE,
+                    CustomerDataManager.encode(customer));
+            customer.markPersisted();
+            FlightBookingSystemData.awaitIfDurable(written);
         } catch (IOException e) {
             throw new FlightBookingSystemException("Error writing to customers.txt: " + e.getMessage());
         }
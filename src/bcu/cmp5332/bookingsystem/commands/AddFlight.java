@@ -8,20 +8,23 @@
  */
 package bcu.cmp5332.bookingsystem.commands;
 
+import bcu.cmp5332.bookingsystem.data.FlightBookingSystemData;
+import bcu.cmp5332.bookingsystem.data.FlightDataManager;
 import bcu.cmp5332.bookingsystem.main.FlightBookingSystemException;
 import bcu.cmp5332.bookingsystem.model.Flight;
 import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
 
-import java.io.BufferedWriter;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.net.URISyntaxException;
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * The {@code AddFlight} class implements the {@link Command} interface, providing functionality
  * to add a new flight to the flight booking system. It assigns a unique ID to the new flight,
  * based on the current maximum flight ID in the system, and persists the flight details to a file.
+ * The new record is handed to the {@link bcu.cmp5332.bookingsystem.data.WriteBehindQueue}, so the
+ * command does not wait for the file to be written unless durable writes are required.
  *
  * @see Command
  */
@@ -85,22 +88,31 @@ public class AddFlight implements Command {
      */
     @Override
     public void execute(FlightBookingSystem flightBookingSystem) throws FlightBookingSystemException {
-        int maxId = 0; 
-        if (flightBookingSystem.getFlights().size() > 0) {
-            int lastIndex = flightBookingSystem.getFlights().size() - 1;
-            maxId = flightBookingSystem.getFlights().get(lastIndex).getId();
-        }
+        int maxId = flightBookingSystem.getMaxFlightId();
         
         Flight flight = new Flight(++maxId, flightNumber, origin, destination, departureDate, numberOfSeats, price);
         flightBookingSystem.addFlight(flight);
+        FlightBookingSystemData.getJournal().publishFlightAdded(flight);
         System.out.println("Flight #" + flight.getId() + " added.");
 
-        // Write the new flight data to the flights.txt file
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter("resources/data/flights.txt", true))) {
-            DateTimeFormatter dtf = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-            String formattedDate = departureDate.format(dtf);
-            writer.write(flight.getId() + "::" + flight.getFlightNumber() + "::" + flight.getOrigin() + "::" + flight.getDestination() + "::" + formattedDate + "::" + flight.getNumberOfSeats() + "::" + flight.getPrice()+ "::");
-            writer.newLine();
+        if (FlightBookingSystemData.usesRecordStore()) {
+            // The record store writes just the new flight, so it is stored straight away
+            try {
+                FlightBookingSystemData.store(flightBookingSystem);
+            } catch (IOException | URISyntaxException ex) {
+                throw new FlightBookingSystemException("Error storing the flight: " + ex.getMessage());
+            }
+            return;
+        }
+
+        // Queue the new flight, encoded as FlightDataManager stores it, to be appended to the
+        // flights.txt file; the queue keeps the record until it has been written, so the flight
+        // no longer needs storing
+        try {
+            CompletableFuture<Void> written = FlightBookingSystemData.getWriteBehind().append(FlightDataManager.RESOURCE,
+                    FlightDataManager.encode(flight));
+            flight.markPersisted();
+            FlightBookingSystemData.awaitIfDurable(written);
         } catch (IOException ex) {
             throw new FlightBookingSystemException("Error writing to flights.txt: " + ex.getMessage());
         }
@@ -0,0 +1,67 @@
+package bcu.cmp5332.bookingsystem.commands;
+
+import bcu.cmp5332.bookingsystem.data.BulkImporter;
+import bcu.cmp5332.bookingsystem.data.FlightBookingSystemData;
+import bcu.cmp5332.bookingsystem.main.FlightBookingSystemException;
+import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Implements the {@link Command} interface to import flights, customers and bookings in bulk
+ * from the CSV files in a directory. The files are parsed and checked by a {@link BulkImporter};
+ * if every row is valid the new records are added to the system and stored straight away.
+ * 
+ * @author Sugam Adhikari
+ * @author Prasansha Tamang
+ */
+public class BulkImport implements Command {
+
+    /**
+     * The directory holding the CSV files.
+     */
+    private final String directory;
+
+    /**
+     * Constructs a new instance of {@code BulkImport} for the given directory.
+     *
+     * @param directory The directory holding flights.csv, customers.csv and bookings.csv.
+     */
+    public BulkImport(String directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Executes the command to import the CSV files, printing progress as it goes.
+     *
+     * @param fbs The flight booking system instance.
+     * @throws FlightBookingSystemException If a file cannot be read or stored, or contains an invalid row.
+     */
+    @Override
+    public void execute(FlightBookingSystem fbs) throws FlightBookingSystemException {
+        long started = System.nanoTime();
+        BulkImporter importer = new BulkImporter(Paths.get(directory));
+        importer.setJournal(FlightBookingSystemData.getJournal());
+        try {
+            importer.importInto(fbs);
+        } catch (IOException ex) {
+            throw new FlightBookingSystemException("Error reading the import files: " + ex.getMessage());
+        }
+
+        long stored = System.nanoTime();
+        try {
+            FlightBookingSystemData.store(fbs);
+        } catch (IOException | URISyntaxException ex) {
+            throw new FlightBookingSystemException("Error storing the imported data: " + ex.getMessage());
+        }
+        long finished = System.nanoTime();
+        int rows = importer.getFlightCount() + importer.getCustomerCount() + importer.getBookingCount();
+        System.out.println("Stored in " + TimeUnit.NANOSECONDS.toMillis(finished - stored) + " ms");
+        System.out.println(String.format("Imported %,d flight(s), %,d customer(s) and %,d booking(s) in %d ms (%,.0f rows/s)",
+                importer.getFlightCount(), importer.getCustomerCount(), importer.getBookingCount(),
+                TimeUnit.NANOSECONDS.toMillis(finished - started), rows * 1e9 / Math.max(1, finished - started)));
+    }
+}
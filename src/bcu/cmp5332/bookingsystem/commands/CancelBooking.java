@@ -1,7 +1,7 @@
 /**
  * This class represents a command to cancel a booking in the flight booking system.
  * It encapsulates the logic required to find a specific booking associated with a customer and a flight,
- * cancel the booking, and update the stored data accordingly.
+ * cancel the booking, and record the change in the mutation journal.
  *
  * @author Sugam Adhikari
  * @author Prasansha Tamang
@@ -12,7 +12,7 @@ import bcu.cmp5332.bookingsystem.main.FlightBookingSystemException;
 
 import java.io.IOException;
 
-import bcu.cmp5332.bookingsystem.data.BookingDataManager;
+import bcu.cmp5332.bookingsystem.data.FlightBookingSystemData;
 import bcu.cmp5332.bookingsystem.model.Booking;
 import bcu.cmp5332.bookingsystem.model.Customer;
 import bcu.cmp5332.bookingsystem.model.Flight;
@@ -21,7 +21,7 @@ import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
 /**
  * The {@code CancelBooking} class implements the {@link Command} interface, providing functionality
  * to cancel a specific booking in the flight booking system. It searches for the booking associated
- * with a given customer ID and flight ID, cancels the booking, and updates the stored data.
+ * with a given customer ID and flight ID, cancels the booking, and records the change in the mutation journal.
  *
  * @see Command
  */
@@ -50,7 +50,7 @@ public class CancelBooking implements Command {
 
     /**
      * Executes the command to cancel a booking in the flight booking system.
-     * Finds the booking associated with the given customer ID and flight ID, cancels it, and updates the stored data.
+     * Finds the booking associated with the given customer ID and flight ID, cancels it, and records the change in the mutation journal.
      *
      * @param fbs The flight booking system instance.
      * @throws FlightBookingSystemException If the customer, flight, or booking is not found.
@@ -82,12 +82,11 @@ public class CancelBooking implements Command {
         // Cancel the booking
         booking.cancelBooking();
 
-        // Store updated data
-        BookingDataManager dataManager = new BookingDataManager();
+        // Record the cancellation in the journal
         try {
-            dataManager.storeData(fbs);
+            FlightBookingSystemData.getJournal().bookingCancelled(booking);
         } catch (IOException e) {
-            e.printStackTrace();
+            throw new FlightBookingSystemException("Error writing to the booking journal: " + e.getMessage());
         }
 
         System.out.println("Booking successfully canceled for customer ID: " + customerId + " and flight ID: " + flightId);
@@ -38,6 +38,10 @@ public interface Command {
         + "\tshowcustomer [customer id]                show customer details\n"
         + "\tlistallbooking                            show all bookings\n"
         + "\taddbooking                                add a new booking\n"
+        + "\tbulkimport [directory]                    import flights, customers and bookings from CSV files\n"
+        + "\texport [type] [file] [options]            export bookings, manifests or customers as JSON Lines\n"
+        + "\treplication                               show the replication role and lag\n"
+        + "\tpromote                                   make this follower take over from the primary\n"
         + "\tcancelbooking                             cancel a booking\n"
         + "\tloadgui                                   loads the GUI version of the app\n"
         + "\thelp                                      prints this help message\n"
@@ -51,4 +55,29 @@ public interface Command {
      * @throws FlightBookingSystemException If the execution of the command leads to an exception.
      */
     public void execute(FlightBookingSystem flightBookingSystem) throws FlightBookingSystemException;
+
+    /**
+     * Executes the command while holding the monitor of the given system. The command line and
+     * the GUI run every command this way, since replication, the recovery log, the journal
+     * compactor and the data file watcher read or change the system from their own threads
+     * while holding the same monitor.
+     *
+     * @param flightBookingSystem The flight booking system instance to operate on.
+     * @throws FlightBookingSystemException If the execution of the command leads to an exception.
+     */
+    public default void executeLocked(FlightBookingSystem flightBookingSystem) throws FlightBookingSystemException {
+        synchronized (flightBookingSystem) {
+            execute(flightBookingSystem);
+        }
+    }
+
+    /**
+     * Returns whether the command only reads the system, and so can run on a replication
+     * follower.
+     *
+     * @return true if the command makes no changes
+     */
+    public default boolean isReadOnly() {
+        return false;
+    }
 }
@@ -1,13 +1,13 @@
 /**
  * This class represents a command to delete a customer from the flight booking system.
- * It encapsulates the logic required to mark a customer as deleted and update the stored data accordingly.
+ * It encapsulates the logic required to mark a customer as deleted and record the change in the mutation journal.
  *
  * @author Sugam Adhikari
  * @author Prasansha Tamang
  */
 package bcu.cmp5332.bookingsystem.commands;
 
-import bcu.cmp5332.bookingsystem.data.CustomerDataManager;
+import bcu.cmp5332.bookingsystem.data.FlightBookingSystemData;
 import bcu.cmp5332.bookingsystem.main.FlightBookingSystemException;
 import bcu.cmp5332.bookingsystem.model.Customer;
 import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
@@ -17,7 +17,7 @@ import java.io.IOException;
 /**
  * The {@code DeleteCustomer} class implements the {@link Command} interface, providing functionality
  * to delete a specific customer from the flight booking system. It marks the customer as deleted
- * and updates the stored data.
+ * and records the change in the mutation journal.
  *
  * @see Command
  */
@@ -39,7 +39,7 @@ public class DeleteCustomer implements Command {
 
     /**
      * Executes the command to delete a customer from the flight booking system.
-     * Marks the customer as deleted and updates the stored data.
+     * Marks the customer as deleted and records the change in the mutation journal.
      *
      * @param fbs The flight booking system.
      * @throws FlightBookingSystemException If an error occurs while executing the command.
@@ -54,10 +54,9 @@ public class DeleteCustomer implements Command {
         // Mark the customer as deleted
         customer.setDeleted(true);
 
-        // Store updated data
-        CustomerDataManager dataManager = new CustomerDataManager();
+        // Record the deletion in the journal
         try {
-            dataManager.storeData(fbs);
+            FlightBookingSystemData.getJournal().customerDeleted(customer);
         } catch (IOException e) {
             throw new FlightBookingSystemException("Error storing customer data");
         }
@@ -1,6 +1,6 @@
 /**
  * This class represents a command to delete a flight from the flight booking system.
- * It encapsulates the logic required to mark a flight as deleted and update the stored data accordingly.
+ * It encapsulates the logic required to mark a flight as deleted and record the change in the mutation journal.
  *
  * @author Sugam Adhikari
  * @author Prasansha Tamang
@@ -8,7 +8,7 @@
 package bcu.cmp5332.bookingsystem.commands;
 
 import bcu.cmp5332.bookingsystem.main.FlightBookingSystemException;
-import bcu.cmp5332.bookingsystem.data.FlightDataManager;
+import bcu.cmp5332.bookingsystem.data.FlightBookingSystemData;
 import bcu.cmp5332.bookingsystem.model.Flight;
 import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
 
@@ -17,7 +17,7 @@ import java.io.IOException;
 /**
  * The {@code DeleteFlight} class implements the {@link Command} interface, providing functionality
  * to delete a specific flight from the flight booking system. It marks the flight as deleted
- * and updates the stored data.
+ * and records the change in the mutation journal.
  *
  * @see Command
  */
@@ -39,7 +39,7 @@ public class DeleteFlight implements Command {
 
     /**
      * Executes the command to delete a flight from the flight booking system.
-     * Marks the flight as deleted and updates the stored data.
+     * Marks the flight as deleted and records the change in the mutation journal.
      *
      * @param fbs The flight booking system.
      * @throws FlightBookingSystemException If an error occurs while executing the command.
@@ -54,10 +54,9 @@ public class DeleteFlight implements Command {
         // Delete the flight
         flight.setDeleted(true);
 
-        // Store updated data
-        FlightDataManager dataManager = new FlightDataManager();
+        // Record the deletion in the journal
         try {
-            dataManager.storeData(fbs);
+            FlightBookingSystemData.getJournal().flightDeleted(flight);
         } catch (IOException e) {
             throw new FlightBookingSystemException("Error storing flight data");
         }
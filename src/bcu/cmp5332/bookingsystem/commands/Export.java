@@ -0,0 +1,96 @@
+package bcu.cmp5332.bookingsystem.commands;
+
+import bcu.cmp5332.bookingsystem.data.JsonLinesExporter;
+import bcu.cmp5332.bookingsystem.main.FlightBookingSystemException;
+import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Implements the {@link Command} interface to export bookings, flight manifests or customers to
+ * a JSON Lines file, one JSON object per line. The records are streamed to the file by a
+ * {@link JsonLinesExporter} and can be limited to a departure date range, a route and active
+ * records only.
+ *
+ * @author Sugam Adhikari
+ * @author Prasansha Tamang
+ */
+public class Export implements Command {
+
+    /**
+     * The kind of record to export: bookings, manifests or customers.
+     */
+    private final String type;
+
+    /**
+     * The file to write.
+     */
+    private final String file;
+
+    private final LocalDate from;
+    private final LocalDate to;
+    private final String origin;
+    private final String destination;
+    private final boolean activeOnly;
+
+    /**
+     * Constructs a new instance of {@code Export}.
+     *
+     * @param type        The kind of record to export: bookings, manifests or customers.
+     * @param file        The file to write, replacing any existing file.
+     * @param from        The first departure date to export, or null for no lower limit.
+     * @param to          The last departure date to export, or null for no upper limit.
+     * @param origin      The origin airport to export, or null for any.
+     * @param destination The destination airport to export, or null for any.
+     * @param activeOnly  Whether deleted flights and customers and cancelled bookings are left out.
+     */
+    public Export(String type, String file, LocalDate from, LocalDate to, String origin, String destination,
+            boolean activeOnly) {
+        this.type = type;
+        this.file = file;
+        this.from = from;
+        this.to = to;
+        this.origin = origin;
+        this.destination = destination;
+        this.activeOnly = activeOnly;
+    }
+
+    /**
+     * Executes the command to write the export file, printing how many records were written.
+     *
+     * @param fbs The flight booking system instance.
+     * @throws FlightBookingSystemException If the type is unknown or the file cannot be written.
+     */
+    @Override
+    public void execute(FlightBookingSystem fbs) throws FlightBookingSystemException {
+        JsonLinesExporter exporter = new JsonLinesExporter();
+        exporter.setDepartureRange(from, to);
+        exporter.setRoute(origin, destination);
+        exporter.setActiveOnly(activeOnly);
+
+        Path path = Paths.get(file);
+        long started = System.nanoTime();
+        long count;
+        try {
+            if (type.equals("bookings")) {
+                count = exporter.exportBookings(fbs, path);
+            } else if (type.equals("manifests")) {
+                count = exporter.exportManifests(fbs, path);
+            } else if (type.equals("customers")) {
+                count = exporter.exportCustomers(fbs, path);
+            } else {
+                throw new FlightBookingSystemException("Unknown export type: " + type
+                        + ". Use bookings, manifests or customers.");
+            }
+        } catch (IOException ex) {
+            throw new FlightBookingSystemException("Error writing " + file + ": " + ex.getMessage());
+        }
+        long elapsed = Math.max(1, System.nanoTime() - started);
+        System.out.println(String.format("Exported %,d %s to %s in %d ms (%,.1f MB/s)", count, type, file,
+                TimeUnit.NANOSECONDS.toMillis(elapsed), exporter.getBytesWritten() * 1e9 / elapsed / (1 << 20)));
+    }
+}
@@ -28,4 +28,9 @@ public class Help implements Command {
     public void execute(FlightBookingSystem flightBookingSystem) {
         System.out.println(Command.HELP_MESSAGE);
     }
+
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
 }
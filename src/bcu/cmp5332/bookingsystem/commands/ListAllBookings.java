@@ -32,6 +32,7 @@ public class ListAllBookings implements Command {
      */
     @Override
     public void execute(FlightBookingSystem flightBookingSystem) throws FlightBookingSystemException {
+        flightBookingSystem.loadAllPartitions();
         Collection<Customer> customers = flightBookingSystem.getAllCustomers();
         
         for (Customer customer : customers) {
@@ -46,4 +47,9 @@ public class ListAllBookings implements Command {
             }
         }
     }
+
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
 }
@@ -28,4 +28,9 @@ public class ListCustomers implements Command {
         }
         System.out.println(customers.size() + " customer(s)");
     }
+
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
 }
@@ -23,6 +23,7 @@ public class ListFlights implements Command {
 
     @Override
     public void execute(FlightBookingSystem flightBookingSystem) throws FlightBookingSystemException {
+        flightBookingSystem.loadAllPartitions();
         List<Flight> flights = flightBookingSystem.getFlights();
         for (Flight flight : flights) {
             System.out.println(flight.getDetailsShort());
@@ -46,4 +47,9 @@ public class ListFlights implements Command {
                .filter(flight -> flight.getDepartureDate().isAfter(today))
                .collect(Collectors.toList());
     }
+
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
 }
@@ -0,0 +1,37 @@
+package bcu.cmp5332.bookingsystem.commands;
+
+import bcu.cmp5332.bookingsystem.data.FlightBookingSystemData;
+import bcu.cmp5332.bookingsystem.main.FlightBookingSystemException;
+import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
+
+import java.io.IOException;
+
+/**
+ * Implements the {@link Command} interface to make a follower take over from its primary: it
+ * stops following, stores the replicated system in its own data files and accepts every
+ * command from then on.
+ *
+ * @author Sugam Adhikari
+ * @author Prasansha Tamang
+ */
+public class Promote implements Command {
+
+    /**
+     * Promotes this follower.
+     *
+     * @param fbs The flight booking system instance.
+     * @throws FlightBookingSystemException If this process is not a follower or the system cannot be stored.
+     */
+    @Override
+    public void execute(FlightBookingSystem fbs) throws FlightBookingSystemException {
+        if (!FlightBookingSystemData.isFollower()) {
+            throw new FlightBookingSystemException("This process is not a follower.");
+        }
+        try {
+            FlightBookingSystemData.promote(fbs);
+        } catch (IOException ex) {
+            throw new FlightBookingSystemException("Error storing the replicated data: " + ex.getMessage());
+        }
+        System.out.println("Promoted to primary.");
+    }
+}
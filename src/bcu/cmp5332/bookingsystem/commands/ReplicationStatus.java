@@ -0,0 +1,26 @@
+package bcu.cmp5332.bookingsystem.commands;
+
+import bcu.cmp5332.bookingsystem.data.FlightBookingSystemData;
+import bcu.cmp5332.bookingsystem.main.FlightBookingSystemException;
+import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
+
+/**
+ * Implements the {@link Command} interface to print the replication role of this process and
+ * its lag: on a primary, how far each follower is behind, and on a follower, how far it is
+ * behind the primary.
+ *
+ * @author Sugam Adhikari
+ * @author Prasansha Tamang
+ */
+public class ReplicationStatus implements Command {
+
+    @Override
+    public void execute(FlightBookingSystem flightBookingSystem) throws FlightBookingSystemException {
+        System.out.println(FlightBookingSystemData.getReplicationStatus());
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
+}
@@ -27,6 +27,7 @@ public class ShowCustomer implements Command  {
     @Override
     public void execute(FlightBookingSystem fbs) throws FlightBookingSystemException {
         Customer customer = fbs.getCustomerByID(customerId);
+        fbs.loadAllPartitions();
         if (customer == null) {
             throw new FlightBookingSystemException("Customer with ID " + customerId + " not found.");
         }
@@ -52,4 +53,9 @@ public class ShowCustomer implements Command  {
             }
         }
     }
+
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
 }
@@ -29,6 +29,7 @@ public class ShowFlights implements Command {
             throw new FlightBookingSystemException("Flight with ID " + flightId + " not found.");
         }
         
+        fbs.loadPassengers(flight);
         System.out.println(flight.getDetailsLong());
 
         List<Customer> passengers = flight.getPassengers();
@@ -43,4 +44,9 @@ public class ShowFlights implements Command {
             }
         }
     }
+
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
 }
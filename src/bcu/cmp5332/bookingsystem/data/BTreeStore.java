@@ -0,0 +1,657 @@
+package bcu.cmp5332.bookingsystem.data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * A {@link RecordStore} kept in a single file as a B+tree of fixed-size pages, so that data
+ * sets larger than the heap can be read and written a page at a time.
+ * <p>
+ * Every record is keyed by its table and ID. Internal pages hold separator keys and child page
+ * numbers; leaf pages hold the records themselves and are chained in key order, so a scan
+ * walks from leaf to leaf. A page that no longer fits is split in two, and splits move up the
+ * tree as far as needed. Removing a record does not merge pages, so a page can be left partly
+ * or wholly empty and is reused by later inserts into the same range of keys.
+ * </p>
+ * <p>
+ * Pages are decoded into a cache of {@code bookingsystem.btree.cachePages} pages (1024 by
+ * default) that drops the least recently used pages that have not changed. Changed pages stay
+ * in the cache until {@link #commit}, which happens by itself once half of the cache has
+ * changed. A commit first writes every changed page, together with the header page, to a
+ * journal file next to the store and forces it to disk, and only then writes the pages in
+ * place. If the program stops part-way through, the next open writes the journal again when it
+ * is complete and drops it when it is not, so the file always holds the tree as of the last
+ * commit.
+ * </p>
+ *
+ * <pre>
+ * header   : magic, version, pageSize, root, pageCount, records per table
+ * leaf     : type, count, next leaf, (key, length, record)*
+ * internal : type, count, unused, child, (key, child)*
+ * journal  : magic, pages, (page number, page)*, CRC32
+ * </pre>
+ *
+ * @author Sugam Adhikari
+ * @author Prasansha Tamang
+ */
+public class BTreeStore implements RecordStore {
+
+    /** The default path to the store file. */
+    public static final String RESOURCE = "./resources/data/store.btree";
+
+    /** The size of every page in the file. */
+    public static final int PAGE_SIZE = 4096;
+
+    /** The largest record that can be stored, so that any split leaves two pages that fit. */
+    public static final int MAX_RECORD_SIZE = 1024;
+
+    /** The default number of pages kept in memory. */
+    public static final int DEFAULT_CACHE_PAGES = 1024;
+
+    private static final int MAGIC = 0x46424254; // "FBBT"
+    private static final int VERSION = 1;
+    private static final int JOURNAL_MAGIC = 0x46424a4c; // "FBJL"
+    private static final byte LEAF = 0;
+    private static final byte INTERNAL = 1;
+    private static final int NODE_HEADER = 7;
+    private static final int ENTRY_HEADER = 10;
+    private static final int MAX_KEYS = (PAGE_SIZE - NODE_HEADER - 4) / 12;
+    private static final int MAX_DEPTH = 32;
+
+    private final Path file;
+    private final Path journalFile;
+    private final FileChannel channel;
+    private final int cachePages;
+    private final LinkedHashMap<Integer, Node> cache = new LinkedHashMap<>(64, 0.75f, true);
+    private final List<Node> dirty = new ArrayList<>();
+    private final long[] counts = new long[Table.values().length];
+    private int root;
+    private int pageCount;
+    private boolean headerDirty;
+    private boolean closed;
+
+    /**
+     * Opens the default store file, creating it if it does not exist.
+     *
+     * @throws IOException if the file cannot be opened or is not a store
+     */
+    public BTreeStore() throws IOException {
+        this(RESOURCE);
+    }
+
+    /**
+     * Opens a store file with the cache size configured through system properties, creating
+     * the file if it does not exist.
+     *
+     * @param resource the path to the store file
+     * @throws IOException if the file cannot be opened or is not a store
+     */
+    public BTreeStore(String resource) throws IOException {
+        this(resource, Integer.getInteger("bookingsystem.btree.cachePages", DEFAULT_CACHE_PAGES));
+    }
+
+    /**
+     * Opens a store file, creating it if it does not exist. An interrupted commit is finished
+     * or dropped first.
+     *
+     * @param resource   the path to the store file
+     * @param cachePages the number of pages to keep in memory
+     * @throws IOException if the file cannot be opened or is not a store
+     */
+    public BTreeStore(String resource, int cachePages) throws IOException {
+        if (cachePages < 8) {
+            throw new IllegalArgumentException("The cache should hold at least 8 pages");
+        }
+        this.file = Paths.get(resource);
+        this.journalFile = Paths.get(resource + ".journal");
+        this.cachePages = cachePages;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            recover();
+            if (channel.size() == 0) {
+                pageCount = 1;
+                root = newNode(true).page;
+                commit();
+            } else {
+                readHeader();
+            }
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    @Override
+    public synchronized byte[] get(Table table, int id) throws IOException {
+        checkOpen();
+        long key = key(table, id);
+        Node leaf = load(root);
+        while (!leaf.leaf) {
+            leaf = load(leaf.children[leaf.childIndex(key)]);
+        }
+        int i = leaf.search(key);
+        byte[] record = i >= 0 ? leaf.values[i].clone() : null;
+        evict();
+        return record;
+    }
+
+    @Override
+    public synchronized void put(Table table, int id, byte[] record) throws IOException {
+        if (record.length > MAX_RECORD_SIZE) {
+            throw new IllegalArgumentException("Records cannot be larger than " + MAX_RECORD_SIZE + " bytes");
+        }
+        checkOpen();
+        long key = key(table, id);
+        Node[] path = new Node[MAX_DEPTH];
+        int[] slots = new int[MAX_DEPTH];
+        int depth = 0;
+        Node leaf = load(root);
+        while (!leaf.leaf) {
+            int slot = leaf.childIndex(key);
+            path[depth] = leaf;
+            slots[depth] = slot;
+            depth++;
+            leaf = load(leaf.children[slot]);
+        }
+        int i = leaf.search(key);
+        if (i >= 0) {
+            leaf.bytes += record.length - leaf.values[i].length;
+            leaf.values[i] = record.clone();
+        } else {
+            leaf.insertEntry(-i - 1, key, record.clone());
+            counts[table.ordinal()]++;
+            headerDirty = true;
+        }
+        markDirty(leaf);
+        if (leaf.bytes > PAGE_SIZE) {
+            split(leaf, path, slots, depth);
+        }
+        afterWrite();
+    }
+
+    @Override
+    public synchronized boolean delete(Table table, int id) throws IOException {
+        checkOpen();
+        long key = key(table, id);
+        Node leaf = load(root);
+        while (!leaf.leaf) {
+            leaf = load(leaf.children[leaf.childIndex(key)]);
+        }
+        int i = leaf.search(key);
+        if (i < 0) {
+            evict();
+            return false;
+        }
+        leaf.removeEntry(i);
+        counts[table.ordinal()]--;
+        headerDirty = true;
+        markDirty(leaf);
+        afterWrite();
+        return true;
+    }
+
+    @Override
+    public synchronized void scan(Table table, int fromId, int toId, RecordVisitor visitor) throws IOException {
+        checkOpen();
+        long from = key(table, fromId);
+        long to = key(table, toId);
+        Node leaf = load(root);
+        while (!leaf.leaf) {
+            leaf = load(leaf.children[leaf.childIndex(from)]);
+        }
+        int i = leaf.search(from);
+        if (i < 0) {
+            i = -i - 1;
+        }
+        while (true) {
+            for (; i < leaf.size; i++) {
+                if (leaf.keys[i] > to || !visitor.visit((int) leaf.keys[i], leaf.values[i].clone())) {
+                    evict();
+                    return;
+                }
+            }
+            if (leaf.next == 0) {
+                evict();
+                return;
+            }
+            leaf = load(leaf.next);
+            i = 0;
+            evict();
+        }
+    }
+
+    @Override
+    public synchronized long size(Table table) {
+        return counts[table.ordinal()];
+    }
+
+    /**
+     * Writes every changed page through the journal, as described for this class.
+     *
+     * @throws IOException if the pages cannot be written
+     */
+    @Override
+    public synchronized void commit() throws IOException {
+        checkOpen();
+        if (dirty.isEmpty() && !headerDirty) {
+            return;
+        }
+        List<ByteBuffer> pages = new ArrayList<>(dirty.size() + 1);
+        pages.add(encodeHeader());
+        for (Node node : dirty) {
+            pages.add(node.encode());
+        }
+
+        CRC32 crc = new CRC32();
+        ByteBuffer head = ByteBuffer.allocate(8);
+        head.putInt(JOURNAL_MAGIC).putInt(pages.size());
+        crc.update(head.array());
+        for (ByteBuffer page : pages) {
+            crc.update(page.array());
+        }
+        ByteBuffer trailer = ByteBuffer.allocate(8);
+        trailer.putLong(crc.getValue());
+        try (FileChannel journal = FileChannel.open(journalFile, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            head.flip();
+            writeFully(journal, head);
+            for (ByteBuffer page : pages) {
+                writeFully(journal, page);
+                page.flip();
+            }
+            trailer.flip();
+            writeFully(journal, trailer);
+            journal.force(true);
+        }
+
+        writePages(pages);
+        Files.delete(journalFile);
+        for (Node node : dirty) {
+            node.dirty = false;
+        }
+        dirty.clear();
+        headerDirty = false;
+        evict();
+    }
+
+    /**
+     * Commits any changes and closes the file.
+     *
+     * @throws IOException if the changes cannot be written
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            commit();
+        } finally {
+            closed = true;
+            cache.clear();
+            channel.close();
+        }
+    }
+
+    private static long key(Table table, int id) {
+        return ((long) table.ordinal() << 32) | (id & 0xFFFFFFFFL);
+    }
+
+    private void checkOpen() throws IOException {
+        if (closed) {
+            throw new IOException(file + " has been closed");
+        }
+    }
+
+    /**
+     * Splits an overfull leaf and inserts the new separator keys up the path to it, splitting
+     * internal pages and finally the root as needed.
+     */
+    private void split(Node leaf, Node[] path, int[] slots, int depth) {
+        Node left = leaf;
+        Node right = leaf.splitLeaf(newNode(true));
+        long separator = right.keys[0];
+        while (depth > 0) {
+            depth--;
+            Node parent = path[depth];
+            parent.insertChild(slots[depth], separator, right.page);
+            markDirty(parent);
+            if (parent.size <= MAX_KEYS) {
+                return;
+            }
+            left = parent;
+            int middle = parent.size / 2;
+            separator = parent.keys[middle];
+            right = parent.splitInternal(newNode(false), middle);
+        }
+        Node newRoot = newNode(false);
+        newRoot.children[0] = left.page;
+        newRoot.insertChild(0, separator, right.page);
+        root = newRoot.page;
+        headerDirty = true;
+    }
+
+    private Node newNode(boolean leaf) {
+        Node node = new Node(pageCount++, leaf);
+        headerDirty = true;
+        cache.put(node.page, node);
+        markDirty(node);
+        return node;
+    }
+
+    private void markDirty(Node node) {
+        if (!node.dirty) {
+            node.dirty = true;
+            dirty.add(node);
+        }
+    }
+
+    private void afterWrite() throws IOException {
+        if (dirty.size() >= cachePages / 2) {
+            commit();
+        } else {
+            evict();
+        }
+    }
+
+    /**
+     * Drops the least recently used unchanged pages until the cache is back to its size.
+     */
+    private void evict() {
+        Iterator<Node> nodes = cache.values().iterator();
+        while (cache.size() > cachePages && nodes.hasNext()) {
+            if (!nodes.next().dirty) {
+                nodes.remove();
+            }
+        }
+    }
+
+    private Node load(int page) throws IOException {
+        Node node = cache.get(page);
+        if (node != null) {
+            return node;
+        }
+        if (page <= 0 || page >= pageCount) {
+            throw new IOException(file + " refers to missing page " + page);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(PAGE_SIZE);
+        readFully(buffer, (long) page * PAGE_SIZE);
+        buffer.flip();
+        node = Node.decode(page, buffer);
+        cache.put(page, node);
+        return node;
+    }
+
+    private void readHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(PAGE_SIZE);
+        readFully(header, 0);
+        header.flip();
+        if (header.getInt() != MAGIC) {
+            throw new IOException(file + " is not a B+tree store");
+        }
+        int version = header.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported B+tree store version " + version);
+        }
+        if (header.getInt() != PAGE_SIZE) {
+            throw new IOException(file + " uses a different page size");
+        }
+        root = header.getInt();
+        pageCount = header.getInt();
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = header.getLong();
+        }
+    }
+
+    private ByteBuffer encodeHeader() {
+        ByteBuffer page = ByteBuffer.allocate(4 + PAGE_SIZE);
+        page.putInt(0);
+        page.putInt(MAGIC).putInt(VERSION).putInt(PAGE_SIZE).putInt(root).putInt(pageCount);
+        for (long count : counts) {
+            page.putLong(count);
+        }
+        page.position(page.capacity());
+        page.flip();
+        return page;
+    }
+
+    /**
+     * Writes journal entries, each a page number followed by the page, in place and forces
+     * them to disk.
+     */
+    private void writePages(List<ByteBuffer> pages) throws IOException {
+        for (ByteBuffer page : pages) {
+            long position = (long) page.getInt() * PAGE_SIZE;
+            while (page.hasRemaining()) {
+                position += channel.write(page, position);
+            }
+        }
+        channel.force(true);
+    }
+
+    /**
+     * Finishes a commit that was interrupted after its journal was written, or drops a journal
+     * that was itself only partly written.
+     */
+    private void recover() throws IOException {
+        if (!Files.exists(journalFile)) {
+            return;
+        }
+        byte[] journal = Files.readAllBytes(journalFile);
+        ByteBuffer buffer = ByteBuffer.wrap(journal);
+        int entry = 4 + PAGE_SIZE;
+        if (journal.length >= 16 && buffer.getInt() == JOURNAL_MAGIC) {
+            int count = buffer.getInt();
+            if (count > 0 && journal.length == 16 + (long) count * entry) {
+                CRC32 crc = new CRC32();
+                crc.update(journal, 0, journal.length - 8);
+                if (crc.getValue() == buffer.getLong(journal.length - 8)) {
+                    List<ByteBuffer> pages = new ArrayList<>(count);
+                    for (int i = 0; i < count; i++) {
+                        pages.add(ByteBuffer.wrap(journal, 8 + i * entry, entry).slice());
+                    }
+                    writePages(pages);
+                }
+            }
+        }
+        Files.delete(journalFile);
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException(file + " is truncated");
+            }
+            position += read;
+        }
+    }
+
+    private static void writeFully(FileChannel target, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
+        }
+    }
+
+    /**
+     * A page decoded into sorted arrays. Leaves hold records and the next leaf; internal pages
+     * hold one more child than keys, where child i leads to the keys below key i.
+     */
+    private static final class Node {
+        private final int page;
+        private final boolean leaf;
+        private int size;
+        private long[] keys;
+        private byte[][] values;
+        private int[] children;
+        private int next;
+        private int bytes = NODE_HEADER;
+        private boolean dirty;
+
+        private Node(int page, boolean leaf) {
+            this(page, leaf, 16);
+        }
+
+        private Node(int page, boolean leaf, int capacity) {
+            this.page = page;
+            this.leaf = leaf;
+            this.keys = new long[capacity];
+            if (leaf) {
+                values = new byte[capacity][];
+            } else {
+                children = new int[capacity + 1];
+            }
+        }
+
+        private int search(long key) {
+            return Arrays.binarySearch(keys, 0, size, key);
+        }
+
+        private int childIndex(long key) {
+            int i = search(key);
+            return i >= 0 ? i + 1 : -i - 1;
+        }
+
+        private void ensureCapacity() {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                if (leaf) {
+                    values = Arrays.copyOf(values, size * 2);
+                } else {
+                    children = Arrays.copyOf(children, size * 2 + 1);
+                }
+            }
+        }
+
+        private void insertEntry(int i, long key, byte[] value) {
+            ensureCapacity();
+            System.arraycopy(keys, i, keys, i + 1, size - i);
+            System.arraycopy(values, i, values, i + 1, size - i);
+            keys[i] = key;
+            values[i] = value;
+            size++;
+            bytes += ENTRY_HEADER + value.length;
+        }
+
+        private void removeEntry(int i) {
+            bytes -= ENTRY_HEADER + values[i].length;
+            System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+            System.arraycopy(values, i + 1, values, i, size - i - 1);
+            size--;
+            values[size] = null;
+        }
+
+        /**
+         * Inserts a separator key at position i, with the child holding the keys from it onwards.
+         */
+        private void insertChild(int i, long key, int child) {
+            ensureCapacity();
+            System.arraycopy(keys, i, keys, i + 1, size - i);
+            System.arraycopy(children, i + 1, children, i + 2, size - i);
+            keys[i] = key;
+            children[i + 1] = child;
+            size++;
+        }
+
+        /**
+         * Moves the upper half of this leaf, by size, into an empty leaf that follows it.
+         */
+        private Node splitLeaf(Node right) {
+            int half = (bytes - NODE_HEADER) / 2;
+            int kept = 0;
+            int at = 0;
+            while (at < size - 1 && kept < half) {
+                kept += ENTRY_HEADER + values[at].length;
+                at++;
+            }
+            at = Math.max(at, 1);
+            for (int i = at; i < size; i++) {
+                right.insertEntry(right.size, keys[i], values[i]);
+                bytes -= ENTRY_HEADER + values[i].length;
+                values[i] = null;
+            }
+            size = at;
+            right.next = next;
+            next = right.page;
+            return right;
+        }
+
+        /**
+         * Moves the keys above the middle key, and their children, into an empty internal page.
+         * The middle key itself moves up to the parent.
+         */
+        private Node splitInternal(Node right, int middle) {
+            right.children[0] = children[middle + 1];
+            for (int i = middle + 1; i < size; i++) {
+                right.insertChild(right.size, keys[i], children[i + 1]);
+            }
+            size = middle;
+            return right;
+        }
+
+        /**
+         * Encodes the page as a journal entry: the page number followed by the page.
+         */
+        private ByteBuffer encode() {
+            ByteBuffer buffer = ByteBuffer.allocate(4 + PAGE_SIZE);
+            buffer.putInt(page);
+            buffer.put(leaf ? LEAF : INTERNAL);
+            buffer.putShort((short) size);
+            buffer.putInt(next);
+            if (leaf) {
+                for (int i = 0; i < size; i++) {
+                    buffer.putLong(keys[i]);
+                    buffer.putShort((short) values[i].length);
+                    buffer.put(values[i]);
+                }
+            } else {
+                buffer.putInt(children[0]);
+                for (int i = 0; i < size; i++) {
+                    buffer.putLong(keys[i]);
+                    buffer.putInt(children[i + 1]);
+                }
+            }
+            buffer.position(buffer.capacity());
+            buffer.flip();
+            return buffer;
+        }
+
+        private static Node decode(int page, ByteBuffer buffer) throws IOException {
+            byte type = buffer.get();
+            int size = buffer.getShort();
+            if ((type != LEAF && type != INTERNAL) || size < 0) {
+                throw new IOException("Page " + page + " is not a B+tree page");
+            }
+            Node node = new Node(page, type == LEAF, Math.max(size, 16));
+            node.next = buffer.getInt();
+            if (node.leaf) {
+                for (int i = 0; i < size; i++) {
+                    long key = buffer.getLong();
+                    byte[] value = new byte[buffer.getShort()];
+                    buffer.get(value);
+                    node.insertEntry(i, key, value);
+                }
+            } else {
+                node.children[0] = buffer.getInt();
+                for (int i = 0; i < size; i++) {
+                    node.keys[i] = buffer.getLong();
+                    node.children[i + 1] = buffer.getInt();
+                }
+                node.size = size;
+            }
+            return node;
+        }
+    }
+}
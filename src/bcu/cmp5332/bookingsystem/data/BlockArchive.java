@@ -0,0 +1,326 @@
+package bcu.cmp5332.bookingsystem.data;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A read-only, compressed copy of a data file, used for the departure partitions of flights
+ * that are long gone.
+ * <p>
+ * The records are sorted by ID and cut into blocks of about {@link #BLOCK_SIZE} bytes of text,
+ * each of which is compressed on its own with {@link Deflater}. A block index at the end of the
+ * file gives the first and last ID, position, sizes and CRC32 of every block, so that a single
+ * record is found by a binary search over the index and decompressing just one block. Reading
+ * the whole archive decompresses every block in turn. Within a block the records keep the text
+ * format of the data file they came from, so they are parsed with a {@link RecordReader}.
+ * </p>
+ * <p>
+ * The file starts with a four byte magic number, followed by the compressed blocks, the index
+ * entries, and a trailer holding the position of the index, the number of blocks and the magic
+ * number again. An archive is only ever written whole, through {@link DurableFile}.
+ * </p>
+ *
+ * @author Sugam Adhikari
+ * @author Prasansha Tamang
+ */
+public class BlockArchive {
+
+    /** The extension of an archive file. */
+    public static final String SUFFIX = ".blk";
+
+    /** The number of bytes of records after which a block is closed. */
+    static final int BLOCK_SIZE = 64 * 1024;
+
+    private static final int MAGIC = 0x424C4B31; // "BLK1"
+    private static final int ENTRY_SIZE = 4 + 4 + 8 + 4 + 4 + 4;
+    private static final int TRAILER_SIZE = 8 + 4 + 4;
+
+    private final Path file;
+
+    private FileTime readTime;
+    private int[] firstIds;
+    private int[] lastIds;
+    private long[] offsets;
+    private int[] compressedLengths;
+    private int[] rawLengths;
+    private int[] checksums;
+
+    /**
+     * Opens the archive at the given path. Nothing is read until it is first used.
+     *
+     * @param resource the path of the archive file
+     */
+    public BlockArchive(String resource) {
+        this.file = Paths.get(resource);
+    }
+
+    /**
+     * Compresses a data file into a new archive, replacing any archive already at that path.
+     * When the data file holds more than one record for an ID only the last one is kept, as it
+     * is on load. Lines that do not start with an ID are dropped.
+     *
+     * @param source   the data file to compress
+     * @param resource the path of the archive to write
+     * @return the number of records archived
+     * @throws IOException if the data file cannot be read or the archive cannot be written
+     */
+    public static int write(Path source, String resource) throws IOException {
+        TreeMap<Integer, String> records = new TreeMap<>();
+        for (String line : Files.readAllLines(source, StandardCharsets.UTF_8)) {
+            int id = leadingId(line);
+            if (id >= 0) {
+                records.put(id, line);
+            }
+        }
+        DurableFile.replace(resource, stream -> {
+            DataOutputStream out = new DataOutputStream(stream);
+            out.writeInt(MAGIC);
+            long position = 4;
+            ByteArrayOutputStream index = new ByteArrayOutputStream();
+            DataOutputStream indexOut = new DataOutputStream(index);
+            ByteArrayOutputStream block = new ByteArrayOutputStream(BLOCK_SIZE + 1024);
+            int blocks = 0;
+            int firstId = 0;
+            int lastId = 0;
+            Deflater deflater = new Deflater();
+            try {
+                for (Map.Entry<Integer, String> record : records.entrySet()) {
+                    if (block.size() == 0) {
+                        firstId = record.getKey();
+                    }
+                    lastId = record.getKey();
+                    byte[] line = (record.getValue() + "\n").getBytes(StandardCharsets.UTF_8);
+                    block.write(line, 0, line.length);
+                    if (block.size() >= BLOCK_SIZE || record.getKey().equals(records.lastKey())) {
+                        byte[] raw = block.toByteArray();
+                        byte[] compressed = deflate(deflater, raw);
+                        CRC32 crc = new CRC32();
+                        crc.update(raw, 0, raw.length);
+                        out.write(compressed);
+                        indexOut.writeInt(firstId);
+                        indexOut.writeInt(lastId);
+                        indexOut.writeLong(position);
+                        indexOut.writeInt(compressed.length);
+                        indexOut.writeInt(raw.length);
+                        indexOut.writeInt((int) crc.getValue());
+                        position += compressed.length;
+                        blocks++;
+                        block.reset();
+                    }
+                }
+            } finally {
+                deflater.end();
+            }
+            indexOut.flush();
+            index.writeTo(out);
+            out.writeLong(position);
+            out.writeInt(blocks);
+            out.writeInt(MAGIC);
+            out.flush();
+        });
+        return records.size();
+    }
+
+    private static byte[] deflate(Deflater deflater, byte[] raw) {
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.length / 4 + 64);
+        byte[] chunk = new byte[8192];
+        while (!deflater.finished()) {
+            int length = deflater.deflate(chunk);
+            compressed.write(chunk, 0, length);
+        }
+        return compressed.toByteArray();
+    }
+
+    /**
+     * Returns the ID at the start of a record line, or -1 if the line does not start with one.
+     */
+    private static int leadingId(String line) {
+        long id = 0;
+        int start = RecordFrame.headerLength(line);
+        int i = start;
+        while (i < line.length() && i - start < 10 && Character.isDigit(line.charAt(i))) {
+            id = id * 10 + (line.charAt(i) - '0');
+            i++;
+        }
+        if (i == start || i >= line.length() || line.charAt(i) != ':' || id > Integer.MAX_VALUE) {
+            return -1;
+        }
+        return (int) id;
+    }
+
+    /**
+     * Returns the number of blocks in the archive.
+     *
+     * @return the block count
+     * @throws IOException if the archive cannot be read or is not a valid archive
+     */
+    public synchronized int getBlockCount() throws IOException {
+        readIndex();
+        return firstIds.length;
+    }
+
+    /**
+     * Finds the record with the given ID, decompressing only the block that can hold it.
+     *
+     * @param id the record ID
+     * @return a reader positioned before the record's line, or null if there is no such record
+     * @throws IOException if the archive cannot be read or is corrupt
+     */
+    public synchronized RecordReader find(int id) throws IOException {
+        readIndex();
+        int low = 0;
+        int high = firstIds.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (lastIds[mid] < id) {
+                low = mid + 1;
+            } else if (firstIds[mid] > id) {
+                high = mid - 1;
+            } else {
+                byte[] block = readBlock(mid);
+                RecordReader reader = new RecordReader(block, block.length);
+                while (reader.nextRecord()) {
+                    if (reader.nextInt() == id) {
+                        reader.rewind();
+                        return reader;
+                    }
+                }
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Decompresses the whole archive.
+     *
+     * @return a reader over every record in the archive, in ID order
+     * @throws IOException if the archive cannot be read or is corrupt
+     */
+    public synchronized RecordReader readAll() throws IOException {
+        readIndex();
+        long total = 0;
+        for (int length : rawLengths) {
+            total += length;
+        }
+        if (total > Integer.MAX_VALUE) {
+            throw new IOException("Archive too large to read at once: " + file);
+        }
+        byte[] all = new byte[(int) total];
+        int position = 0;
+        for (int i = 0; i < firstIds.length; i++) {
+            byte[] block = readBlock(i);
+            System.arraycopy(block, 0, all, position, block.length);
+            position += block.length;
+        }
+        return new RecordReader(all, all.length);
+    }
+
+    /**
+     * Reads and checks one block.
+     */
+    private byte[] readBlock(int block) throws IOException {
+        ByteBuffer compressed = ByteBuffer.allocate(compressedLengths[block]);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (compressed.hasRemaining()) {
+                if (channel.read(compressed, offsets[block] + compressed.position()) <= 0) {
+                    throw new IOException("Truncated block " + block + " in " + file);
+                }
+            }
+        }
+        byte[] raw = new byte[rawLengths[block]];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed.array());
+            int length = 0;
+            while (length < raw.length && !inflater.finished()) {
+                int read = inflater.inflate(raw, length, raw.length - length);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += read;
+            }
+            if (length != raw.length) {
+                throw new IOException("Corrupt block " + block + " in " + file);
+            }
+        } catch (DataFormatException ex) {
+            throw new IOException("Corrupt block " + block + " in " + file, ex);
+        } finally {
+            inflater.end();
+        }
+        CRC32 crc = new CRC32();
+        crc.update(raw, 0, raw.length);
+        if ((int) crc.getValue() != checksums[block]) {
+            throw new IOException("Checksum mismatch in block " + block + " of " + file);
+        }
+        return raw;
+    }
+
+    /**
+     * Reads the block index, unless it has already been read from the current file.
+     */
+    private void readIndex() throws IOException {
+        FileTime time = Files.getLastModifiedTime(file);
+        if (firstIds != null && time.equals(readTime)) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < 4 + TRAILER_SIZE) {
+                throw new IOException("Not a block archive: " + file);
+            }
+            ByteBuffer trailer = read(channel, size - TRAILER_SIZE, TRAILER_SIZE);
+            long indexOffset = trailer.getLong();
+            int count = trailer.getInt();
+            if (trailer.getInt() != MAGIC || count < 0 || indexOffset < 4
+                    || indexOffset + (long) count * ENTRY_SIZE != size - TRAILER_SIZE) {
+                throw new IOException("Not a block archive: " + file);
+            }
+            ByteBuffer index = read(channel, indexOffset, count * ENTRY_SIZE);
+            firstIds = new int[count];
+            lastIds = new int[count];
+            offsets = new long[count];
+            compressedLengths = new int[count];
+            rawLengths = new int[count];
+            checksums = new int[count];
+            for (int i = 0; i < count; i++) {
+                firstIds[i] = index.getInt();
+                lastIds[i] = index.getInt();
+                offsets[i] = index.getLong();
+                compressedLengths[i] = index.getInt();
+                rawLengths[i] = index.getInt();
+                checksums[i] = index.getInt();
+            }
+            readTime = time;
+        }
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) <= 0) {
+                throw new IOException("Unexpected end of block archive");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
@@ -7,8 +7,17 @@ import bcu.cmp5332.bookingsystem.model.Flight;
 import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
 import java.time.LocalDate;
-import java.util.Scanner;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Manages the loading and storing of booking data for the flight booking system.
@@ -20,8 +29,47 @@ import java.util.Scanner;
  */
 public class BookingDataManager implements DataManager {
 
-    /** The path to the booking data file. */
-    private final static String RESOURCE = "./resources/data/bookings.txt";
+    /** The default path to the booking data file. */
+    public static final String RESOURCE = "./resources/data/bookings.txt";
+
+    private final String resource;
+    private Quarantine quarantine;
+
+    /**
+     * Creates a data manager for the default booking data file.
+     */
+    public BookingDataManager() {
+        this(RESOURCE);
+    }
+
+    /**
+     * Creates a data manager for the given booking data file.
+     *
+     * @param resource the path to the booking data file
+     */
+    public BookingDataManager(String resource) {
+        this.resource = resource;
+    }
+
+    /**
+     * Sets the quarantine that damaged booking records are handed to on load, instead of the
+     * load failing. Every chunk of the file is checked against the same quarantine, which is
+     * committed by the caller once all of them have been read.
+     *
+     * @param quarantine the quarantine, or null to fail on a record that cannot be parsed
+     */
+    public void setQuarantine(Quarantine quarantine) {
+        this.quarantine = quarantine;
+    }
+
+    /**
+     * Returns the quarantine damaged booking records are handed to.
+     *
+     * @return the quarantine, or null if there is none
+     */
+    public Quarantine getQuarantine() {
+        return quarantine;
+    }
 
     /**
      * Loads booking data from the specified resource file into the given FlightBookingSystem instance.
@@ -33,62 +81,290 @@ public class BookingDataManager implements DataManager {
      * @throws FlightBookingSystemException If a booking-related exception occurs.
      */
     public void loadData(FlightBookingSystem fbs) throws IOException, FlightBookingSystemException {
-        try (Scanner scanner = new Scanner(new File(RESOURCE))) {
-            int maxBookingId = 0;
-            while (scanner.hasNextLine()) {
-                String line = scanner.nextLine();
-                String[] properties = line.split(SEPARATOR);
-                if (properties.length >= 5) {
-                    int id = Integer.parseInt(properties[0]);
-                    int customerId = Integer.parseInt(properties[1]);
-                    int flightId = Integer.parseInt(properties[2]);
-                    LocalDate date = LocalDate.parse(properties[3]);
-                    double price = Double.parseDouble(properties[4]); 
-                    boolean cancelled = properties.length > 5 && properties[5].equals("cancelled");
-                    Customer customer = fbs.getCustomerByID(customerId);
-                    Flight flight = fbs.getFlightByID(flightId);
-                    if (customer != null && flight != null) {
-                        Booking booking = new Booking(id, customer, flight, date, price);
-                        if (cancelled) {
-                            booking.cancelBooking();
-                        }
-                        customer.addBooking(booking);
-                        flight.addPassenger(customer);
-                        if (id > maxBookingId) {
-                            maxBookingId = id;
-                        }
-                    }
+        List<List<BookingRecord>> chunks = new ArrayList<>();
+        chunks.add(parseChunk(0, new File(resource).length()));
+        linkBookings(fbs, chunks);
+    }
+
+    /**
+     * Splits the resource file into roughly equal byte ranges that each start at the beginning
+     * of a line, so that the ranges can be parsed independently.
+     *
+     * @param count the number of ranges wanted
+     * @return the boundaries of the ranges; range {@code i} is {@code [b[i], b[i + 1])}
+     * @throws IOException If an error occurs during file reading.
+     */
+    public long[] splitChunks(int count) throws IOException {
+        return splitChunks(Paths.get(resource), count);
+    }
+
+    /**
+     * Splits a text file into roughly equal byte ranges that each start at the beginning of a line.
+     *
+     * @param file  the file to split
+     * @param count the number of ranges wanted
+     * @return the boundaries of the ranges; range {@code i} is {@code [b[i], b[i + 1])}
+     * @throws IOException If an error occurs during file reading.
+     */
+    static long[] splitChunks(Path file, int count) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long[] boundaries = new long[count + 1];
+            boundaries[count] = size;
+            ByteBuffer buffer = ByteBuffer.allocate(4096);
+            for (int i = 1; i < count; i++) {
+                long pos = Math.max(boundaries[i - 1], size * i / count);
+                boundaries[i] = nextLineStart(channel, pos, buffer);
+            }
+            return boundaries;
+        }
+    }
+
+    private static long nextLineStart(FileChannel channel, long pos, ByteBuffer buffer) throws IOException {
+        if (pos == 0) {
+            return 0;
+        }
+        long scan = pos - 1;
+        while (true) {
+            buffer.clear();
+            int read = channel.read(buffer, scan);
+            if (read <= 0) {
+                return channel.size();
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return scan + i + 1;
                 }
             }
+            scan += read;
+        }
+    }
+
+    /**
+     * Parses the bookings in one byte range of the resource file without linking them to
+     * customers or flights. This method does not touch any shared state, so several ranges
+     * can be parsed at the same time.
+     *
+     * @param start the offset of the first byte of the range, at the start of a line
+     * @param end   the offset just past the last byte of the range
+     * @return the parsed booking records in file order
+     * @throws IOException If an error occurs during file reading.
+     */
+    public List<BookingRecord> parseChunk(long start, long end) throws IOException {
+        try (RecordReader reader = new RecordReader(Paths.get(resource), start, end)) {
+            reader.setQuarantine(quarantine);
+            return parseRecords(reader);
+        }
+    }
+
+    /**
+     * Parses every booking remaining in a reader, without linking them to customers or flights.
+     * If the reader has a quarantine, lines that are not valid bookings are handed to it;
+     * otherwise a line with too few fields is skipped and an invalid field is thrown.
+     *
+     * @param reader the reader over booking records
+     * @return the parsed records in reader order
+     * @throws IOException If an error occurs during reading.
+     */
+    static List<BookingRecord> parseRecords(RecordReader reader) throws IOException {
+        List<BookingRecord> records = new ArrayList<>();
+        while (reader.nextRecord()) {
+            BookingRecord record;
+            try {
+                record = parseRecord(reader);
+            } catch (NumberFormatException | DateTimeException ex) {
+                if (reader.reject(ex.getMessage())) {
+                    continue;
+                }
+                throw ex;
+            }
+            if (record != null) {
+                records.add(record);
+            } else {
+                reader.reject("too few fields for a booking");
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Parses the booking on the reader's current line.
+     *
+     * @param reader a reader positioned on a booking record
+     * @return the parsed record, or null if the line has too few fields to be a booking
+     * @throws NumberFormatException if a numeric or date field is invalid
+     */
+    static BookingRecord parseRecord(RecordReader reader) {
+        int fields = reader.fieldCount();
+        if (fields < 5) {
+            return null;
+        }
+        int id = reader.nextInt();
+        int customerId = reader.nextInt();
+        int flightId = reader.nextInt();
+        LocalDate date = reader.nextDate();
+        double price = reader.nextDouble();
+        boolean cancelled = fields > 5 && reader.nextFieldEqualsIgnoreCase("cancelled");
+        return new BookingRecord(id, customerId, flightId, date, price, cancelled, reader.getLineOffset());
+    }
+
+    /**
+     * Creates the bookings for parsed records and attaches them to their customers and flights.
+     * The chunks are linked in order, so bookings end up in the same order as in the file.
+     * When the file holds more than one record for a booking ID, for example because a booking
+     * was appended again after being folded in by the {@link JournalCompactor}, the last record wins.
+     * It also raises the maximum booking ID in the FlightBookingSystem to the highest ID linked.
+     * A record that refers to an unknown customer or flight is handed to the quarantine, if
+     * there is one, by the offset of its line.
+     *
+     * @param fbs    The FlightBookingSystem instance whose customers and flights have been loaded.
+     * @param chunks The parsed records of each range of the file, in file order.
+     * @throws FlightBookingSystemException If a record refers to an unknown customer or flight
+     *         and cannot be quarantined.
+     */
+    public void linkBookings(FlightBookingSystem fbs, List<List<BookingRecord>> chunks)
+            throws FlightBookingSystemException {
+        Map<Integer, BookingRecord> latest = new LinkedHashMap<>();
+        for (List<BookingRecord> chunk : chunks) {
+            for (BookingRecord record : chunk) {
+                latest.put(record.id, record);
+            }
+        }
+        int maxBookingId = 0;
+        for (BookingRecord record : latest.values()) {
+            Customer customer;
+            Flight flight;
+            try {
+                customer = fbs.getCustomerByID(record.customerId);
+                flight = fbs.getFlightByID(record.flightId);
+            } catch (FlightBookingSystemException ex) {
+                if (quarantine == null || record.offset < 0) {
+                    throw ex;
+                }
+                quarantine.reject(record.offset, ex.getMessage());
+                continue;
+            }
+            Booking booking = new Booking(record.id, customer, flight, record.date, record.price);
+            if (record.cancelled) {
+                booking.cancelBooking();
+            }
+            booking.markPersisted();
+            customer.addBooking(booking);
+            flight.addPassenger(customer);
+            if (record.id > maxBookingId) {
+                maxBookingId = record.id;
+            }
+        }
+        if (maxBookingId > fbs.getMaxBookingId()) {
             fbs.setMaxBookingId(maxBookingId);
         }
     }
     /**
      * Stores booking data from the given FlightBookingSystem instance into the specified resource file.
-     * This method iterates through all customers and their bookings, writing each booking's details to the file.
+     * Only bookings that have changed since the file was last loaded or written are stored:
+     * nothing is written if no booking is dirty, new bookings are appended to the end of the file,
+     * and the file is only rewritten in full when a stored booking has been modified or removed.
+     * Bookings on flights that belong to a departure-month partition are left to {@link DeparturePartitions}.
      *
      * @param fbs The FlightBookingSystem instance whose data needs to be stored.
      * @throws IOException If an error occurs during file writing.
      */
-
     @Override
     public void storeData(FlightBookingSystem fbs) throws IOException {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(RESOURCE))) {
-            for (Customer customer : fbs.getAllCustomers()) {
-                for (Booking booking : customer.getBookings()) {
-                    writer.print(booking.getId() + SEPARATOR
-                            + customer.getId() + SEPARATOR
-                            + booking.getFlight().getId() + SEPARATOR
-                            + booking.getBookingDate() + SEPARATOR
-                            + booking.getPrice());
-                    
-                    if (booking.isCancelled()) {
-                        writer.print(SEPARATOR + "cancelled");
-                    }
-                    
-                    writer.println();
+        storeChanges(fbs);
+    }
+
+    /**
+     * Stores the bookings that have changed, as described for {@link #storeData}.
+     *
+     * @param fbs The FlightBookingSystem instance whose data needs to be stored.
+     * @return true if the whole file was rewritten, false if it was appended to or left alone
+     * @throws IOException If an error occurs during file writing.
+     */
+    boolean storeChanges(FlightBookingSystem fbs) throws IOException {
+        boolean rewrite = fbs.hasRemovedCustomers();
+        List<Booking> added = new ArrayList<>();
+        for (Customer customer : fbs.getAllCustomers()) {
+            rewrite |= customer.hasRemovedBookings();
+            if (!customer.isBookingsLoaded()) {
+                continue; // Bookings that have not been read cannot have changed
+            }
+            for (Booking booking : customer.getBookings()) {
+                if (booking.isDirty() && !fbs.isArchived(booking.getFlight().getId())) {
+                    rewrite |= booking.isPersisted();
+                    added.add(booking);
+                }
+            }
+            if (rewrite) {
+                break;
+            }
+        }
+        if (rewrite) {
+            rewrite(fbs);
+        } else if (!added.isEmpty()) {
+            write(added, true);
+        }
+        return rewrite;
+    }
+
+    /**
+     * Rewrites the whole file through {@link DurableFile}, so that a crash part-way through
+     * leaves the previous contents of the file in place.
+     *
+     * @param fbs The FlightBookingSystem instance whose data needs to be stored.
+     * @throws IOException If an error occurs during file writing.
+     */
+    void rewrite(FlightBookingSystem fbs) throws IOException {
+        List<Booking> current = new ArrayList<>();
+        for (Customer customer : fbs.getAllCustomers()) {
+            for (Booking booking : customer.getBookings()) {
+                if (!fbs.isArchived(booking.getFlight().getId())) {
+                    current.add(booking);
                 }
             }
         }
+        write(current, false);
+        for (Customer customer : fbs.getAllCustomers()) {
+            customer.clearRemovedBookings();
+        }
+    }
+
+    /**
+     * Writes the given bookings through {@link DurableFile}, so that a crash part-way through leaves
+     * the previous contents of the file in place. Each record is encoded and framed by a
+     * {@link RecordWriter}.
+     *
+     * @param bookings the bookings to write
+     * @param append   true to append them to the file, false to replace the file with them
+     * @throws IOException If an error occurs during file writing.
+     */
+    void write(List<Booking> bookings, boolean append) throws IOException {
+        DurableFile.RecordContent content = writer -> {
+            for (Booking booking : bookings) {
+                print(writer, booking.getCustomer(), booking);
+            }
+        };
+        if (append) {
+            DurableFile.appendRecords(resource, content);
+        } else {
+            DurableFile.replaceRecords(resource, content);
+        }
+        for (Booking booking : bookings) {
+            booking.markPersisted();
+        }
+    }
+
+    private static void print(RecordWriter writer, Customer customer, Booking booking) throws IOException {
+        writer.field(booking.getId())
+                .field(customer.getId())
+                .field(booking.getFlight().getId())
+                .field(booking.getBookingDate())
+                .field(booking.getPrice());
+        
+        if (booking.isCancelled()) {
+            writer.field("cancelled");
+        }
+        
+        writer.endRecord();
     }
 }
@@ -0,0 +1,38 @@
+package bcu.cmp5332.bookingsystem.data;
+
+import java.time.LocalDate;
+
+/**
+ * A booking as parsed from the booking data file, before it has been linked to its
+ * {@code Customer} and {@code Flight}. Records can be created on any thread, whereas
+ * linking has to happen against a fully loaded FlightBookingSystem. Each record keeps the
+ * offset of its line, so that a record that cannot be linked can be handed to the
+ * {@link Quarantine}; a record that does not come from a line has an offset of -1.
+ *
+ * @author Sugam Adhikari
+ * @author Prasansha Tamang
+ */
+public final class BookingRecord {
+    final int id;
+    final int customerId;
+    final int flightId;
+    final LocalDate date;
+    final double price;
+    final boolean cancelled;
+    final long offset;
+
+    BookingRecord(int id, int customerId, int flightId, LocalDate date, double price, boolean cancelled) {
+        this(id, customerId, flightId, date, price, cancelled, -1);
+    }
+
+    BookingRecord(int id, int customerId, int flightId, LocalDate date, double price, boolean cancelled,
+            long offset) {
+        this.id = id;
+        this.customerId = customerId;
+        this.flightId = flightId;
+        this.date = date;
+        this.price = price;
+        this.cancelled = cancelled;
+        this.offset = offset;
+    }
+}
@@ -0,0 +1,679 @@
+package bcu.cmp5332.bookingsystem.data;
+
+import bcu.cmp5332.bookingsystem.main.FlightBookingSystemException;
+import bcu.cmp5332.bookingsystem.model.Booking;
+import bcu.cmp5332.bookingsystem.model.Customer;
+import bcu.cmp5332.bookingsystem.model.Flight;
+import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Imports flights, customers and bookings in bulk from CSV files, for onboarding a whole
+ * airline at once.
+ * <p>
+ * The directory may hold any of these files, each starting with a header line that is skipped:
+ * </p>
+ * <ul>
+ * <li>{@code flights.csv}: flight number, origin, destination, departure date, seats, price;</li>
+ * <li>{@code customers.csv}: name, phone, email;</li>
+ * <li>{@code bookings.csv}: customer email, flight number, departure date, booking date, price.</li>
+ * </ul>
+ * <p>
+ * Bookings refer to their customer by email and to their flight by flight number and departure
+ * date, so they can refer to rows of the same import as well as to existing data. Fields may be
+ * quoted, but may not span lines.
+ * </p>
+ * <p>
+ * Every file is split into line-aligned byte ranges that are parsed and checked row by row on a
+ * thread pool. The checks that involve other rows (duplicate flights and customers, unknown
+ * references, seats left on each flight) are then made once for the whole batch with hash
+ * lookups. If any row fails, nothing is imported and the first errors are reported with their
+ * file and line. Otherwise IDs are assigned in one block per file range, following the highest
+ * IDs in use, and the records are added through the bulk-load methods of the
+ * {@link FlightBookingSystem}, which skip the per-record checks that the batch check has
+ * already made. Progress is printed every second, and each phase reports its rows per second.
+ * If a {@link #setJournal journal} is set, the new records are passed to its listeners in the
+ * order flights, customers, bookings.
+ * </p>
+ *
+ * @author Sugam Adhikari
+ * @author Prasansha Tamang
+ */
+public class BulkImporter {
+
+    /** The name of the flights file in an import directory. */
+    public static final String FLIGHTS_FILE = "flights.csv";
+
+    /** The name of the customers file in an import directory. */
+    public static final String CUSTOMERS_FILE = "customers.csv";
+
+    /** The name of the bookings file in an import directory. */
+    public static final String BOOKINGS_FILE = "bookings.csv";
+
+    /** The largest byte range of a file parsed by a single task. */
+    private static final long MAX_CHUNK_BYTES = 8L * 1024 * 1024;
+
+    /** The number of errors listed when an import is rejected. */
+    private static final int MAX_REPORTED_ERRORS = 10;
+
+    private final Path dir;
+    private final int threads;
+    private PrintStream out = System.out;
+    private MutationJournal journal;
+
+    private int flightCount;
+    private int customerCount;
+    private int bookingCount;
+
+    /**
+     * Creates an importer for the CSV files in the given directory that uses one thread per
+     * available processor.
+     *
+     * @param dir the directory holding the CSV files
+     */
+    public BulkImporter(Path dir) {
+        this(dir, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates an importer for the CSV files in the given directory.
+     *
+     * @param dir     the directory holding the CSV files
+     * @param threads the number of parser threads
+     */
+    public BulkImporter(Path dir, int threads) {
+        this.dir = dir;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Sets the stream progress is printed to.
+     *
+     * @param out the stream for progress messages, or null for none
+     */
+    public void setOutput(PrintStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Sets the journal whose listeners are told of each imported flight, customer and booking,
+     * so that followers, the recovery log and the change feed see the import. Nothing is
+     * written to the journal itself, since the imported records are stored in the base files.
+     *
+     * @param journal the journal to publish through, or null for none
+     */
+    public void setJournal(MutationJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Returns the number of flights added by the last import.
+     *
+     * @return the number of flights
+     */
+    public int getFlightCount() {
+        return flightCount;
+    }
+
+    /**
+     * Returns the number of customers added by the last import.
+     *
+     * @return the number of customers
+     */
+    public int getCustomerCount() {
+        return customerCount;
+    }
+
+    /**
+     * Returns the number of bookings added by the last import.
+     *
+     * @return the number of bookings
+     */
+    public int getBookingCount() {
+        return bookingCount;
+    }
+
+    /**
+     * Parses, checks and adds the contents of the CSV files to the given system. The new records
+     * are not stored; they are dirty, so the next store appends them to the data files.
+     *
+     * @param fbs the system to import into
+     * @throws IOException if a file cannot be read
+     * @throws FlightBookingSystemException if there is nothing to import or a row is invalid;
+     *         nothing has been added in that case
+     */
+    public void importInto(FlightBookingSystem fbs) throws IOException, FlightBookingSystemException {
+        Path flightsFile = dir.resolve(FLIGHTS_FILE);
+        Path customersFile = dir.resolve(CUSTOMERS_FILE);
+        Path bookingsFile = dir.resolve(BOOKINGS_FILE);
+        if (!Files.isDirectory(dir)) {
+            throw new FlightBookingSystemException("There is no directory " + dir + ".");
+        }
+        if (!Files.exists(flightsFile) && !Files.exists(customersFile) && !Files.exists(bookingsFile)) {
+            throw new FlightBookingSystemException("There is no " + FLIGHTS_FILE + ", " + CUSTOMERS_FILE
+                    + " or " + BOOKINGS_FILE + " in " + dir + ".");
+        }
+
+        // Parse every range of every file on the pool
+        long started = System.nanoTime();
+        AtomicLong parsed = new AtomicLong();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "bulk-import");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "bulk-import-progress");
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<Chunk<FlightRow>> flightChunks;
+        List<Chunk<CustomerRow>> customerChunks;
+        List<Chunk<BookingRow>> bookingChunks;
+        try {
+            ticker.scheduleAtFixedRate(() -> progress("  %,d rows parsed...", parsed.get()), 1, 1, TimeUnit.SECONDS);
+            List<Future<Chunk<FlightRow>>> flightTasks = submit(pool, flightsFile, parsed, BulkImporter::parseFlight);
+            List<Future<Chunk<CustomerRow>>> customerTasks = submit(pool, customersFile, parsed, BulkImporter::parseCustomer);
+            List<Future<Chunk<BookingRow>>> bookingTasks = submit(pool, bookingsFile, parsed, BulkImporter::parseBooking);
+            flightChunks = await(flightTasks);
+            customerChunks = await(customerTasks);
+            bookingChunks = await(bookingTasks);
+        } finally {
+            ticker.shutdownNow();
+            pool.shutdownNow();
+        }
+        List<String> errors = new ArrayList<>();
+        collectErrors(FLIGHTS_FILE, flightChunks, errors);
+        collectErrors(CUSTOMERS_FILE, customerChunks, errors);
+        collectErrors(BOOKINGS_FILE, bookingChunks, errors);
+        reject(errors);
+        long rows = parsed.get();
+        phase("Parsed", rows, started);
+
+        // Check the rows against each other and the system, then build the records
+        long checked = System.nanoTime();
+        List<Flight> flights = createFlights(fbs, flightChunks, errors);
+        List<Customer> customers = createCustomers(fbs, customerChunks, errors);
+        List<BookingRow> bookings = resolveBookings(fbs, bookingChunks, flights, customers, errors);
+        reject(errors);
+        phase("Checked", rows, checked);
+
+        long inserted = System.nanoTime();
+        fbs.addFlights(flights);
+        fbs.addCustomers(customers);
+        if (journal != null) {
+            for (Flight flight : flights) {
+                journal.publishFlightAdded(flight);
+            }
+            for (Customer customer : customers) {
+                journal.publishCustomerAdded(customer);
+            }
+        }
+        int bookingId = fbs.getMaxBookingId();
+        for (BookingRow row : bookings) {
+            Booking booking = new Booking(++bookingId, row.customer, row.flight, row.bookingDate, row.price);
+            row.customer.addBooking(booking);
+            row.flight.addPassenger(row.customer);
+            if (journal != null) {
+                journal.publishBookingCreated(booking);
+            }
+        }
+        fbs.setMaxBookingId(bookingId);
+        phase("Inserted", rows, inserted);
+
+        flightCount = flights.size();
+        customerCount = customers.size();
+        bookingCount = bookings.size();
+    }
+
+    /**
+     * Builds the flights, with IDs assigned in one block per range following the highest
+     * flight ID in use, and checks that no two flights share a number and departure date.
+     */
+    private static List<Flight> createFlights(FlightBookingSystem fbs, List<Chunk<FlightRow>> chunks,
+            List<String> errors) throws FlightBookingSystemException {
+        Set<YearMonth> months = new HashSet<>();
+        for (Chunk<FlightRow> chunk : chunks) {
+            for (FlightRow row : chunk.rows) {
+                months.add(YearMonth.from(row.departureDate));
+            }
+        }
+        fbs.loadPartitions(months);
+        Set<String> keys = new HashSet<>();
+        for (Flight existing : fbs.getFlights()) {
+            keys.add(flightKey(existing.getFlightNumber(), existing.getDepartureDate()));
+        }
+        List<Flight> flights = new ArrayList<>();
+        int id = fbs.getMaxFlightId();
+        for (Chunk<FlightRow> chunk : chunks) {
+            for (FlightRow row : chunk.rows) {
+                if (!keys.add(flightKey(row.flightNumber, row.departureDate))) {
+                    errors.add(FLIGHTS_FILE + " line " + row.line + ": there is already a flight "
+                            + row.flightNumber + " departing on " + row.departureDate);
+                    continue;
+                }
+                flights.add(new Flight(++id, row.flightNumber, row.origin, row.destination,
+                        row.departureDate, row.seats, row.price));
+            }
+        }
+        return flights;
+    }
+
+    /**
+     * Builds the customers, with IDs following the highest customer ID in use, and checks that
+     * every email address is new.
+     */
+    private static List<Customer> createCustomers(FlightBookingSystem fbs, List<Chunk<CustomerRow>> chunks,
+            List<String> errors) {
+        Set<String> emails = new HashSet<>();
+        int id = 0;
+        for (Customer existing : fbs.getAllCustomers()) {
+            emails.add(existing.getEmail().toLowerCase());
+            id = Math.max(id, existing.getId());
+        }
+        List<Customer> customers = new ArrayList<>();
+        for (Chunk<CustomerRow> chunk : chunks) {
+            for (CustomerRow row : chunk.rows) {
+                if (!emails.add(row.email.toLowerCase())) {
+                    errors.add(CUSTOMERS_FILE + " line " + row.line + ": there is already a customer with email "
+                            + row.email);
+                    continue;
+                }
+                customers.add(new Customer(++id, row.name, row.phone, row.email));
+            }
+        }
+        return customers;
+    }
+
+    /**
+     * Links each booking row to its customer and flight, and checks that no customer books a
+     * flight twice and that no flight is overbooked.
+     */
+    private static List<BookingRow> resolveBookings(FlightBookingSystem fbs, List<Chunk<BookingRow>> chunks,
+            List<Flight> newFlights, List<Customer> newCustomers, List<String> errors)
+            throws FlightBookingSystemException {
+        List<BookingRow> bookings = new ArrayList<>();
+        if (chunks.isEmpty()) {
+            return bookings;
+        }
+        Set<YearMonth> months = new HashSet<>();
+        for (Chunk<BookingRow> chunk : chunks) {
+            for (BookingRow row : chunk.rows) {
+                months.add(YearMonth.from(row.departureDate));
+            }
+        }
+        fbs.loadPartitions(months);
+        Map<String, Flight> flights = new HashMap<>();
+        for (Flight flight : fbs.getFlights()) {
+            if (!flight.isDeleted()) {
+                flights.put(flightKey(flight.getFlightNumber(), flight.getDepartureDate()), flight);
+            }
+        }
+        for (Flight flight : newFlights) {
+            flights.put(flightKey(flight.getFlightNumber(), flight.getDepartureDate()), flight);
+        }
+        Map<String, Customer> customers = new HashMap<>();
+        for (Customer customer : fbs.getAllCustomers()) {
+            if (!customer.isDeleted()) {
+                customers.putIfAbsent(customer.getEmail().toLowerCase(), customer);
+            }
+        }
+        for (Customer customer : newCustomers) {
+            customers.put(customer.getEmail().toLowerCase(), customer);
+        }
+
+        Map<Flight, Integer> seatsTaken = new HashMap<>();
+        Set<String> pairs = new HashSet<>();
+        for (Chunk<BookingRow> chunk : chunks) {
+            for (BookingRow row : chunk.rows) {
+                String where = BOOKINGS_FILE + " line " + row.line + ": ";
+                row.customer = customers.get(row.email.toLowerCase());
+                row.flight = flights.get(flightKey(row.flightNumber, row.departureDate));
+                if (row.customer == null) {
+                    errors.add(where + "there is no customer with email " + row.email);
+                } else if (row.flight == null) {
+                    errors.add(where + "there is no flight " + row.flightNumber + " departing on "
+                            + row.departureDate);
+                } else if (!pairs.add(row.customer.getId() + "@" + row.flight.getId())
+                        || row.customer.getBookingByFlightId(row.flight.getId()) != null) {
+                    errors.add(where + row.email + " already has a booking on this flight");
+                } else {
+                    int taken = seatsTaken.getOrDefault(row.flight, row.flight.getPassengerCount()) + 1;
+                    seatsTaken.put(row.flight, taken);
+                    if (taken > row.flight.getNumberOfSeats()) {
+                        errors.add(where + "flight " + row.flightNumber + " on " + row.departureDate
+                                + " has no seats left");
+                    } else {
+                        bookings.add(row);
+                    }
+                }
+            }
+        }
+        return bookings;
+    }
+
+    private static String flightKey(String flightNumber, LocalDate departureDate) {
+        return flightNumber + "@" + departureDate;
+    }
+
+    private void reject(List<String> errors) throws FlightBookingSystemException {
+        if (errors.isEmpty()) {
+            return;
+        }
+        StringBuilder message = new StringBuilder("Import cancelled, " + errors.size() + " invalid row(s):");
+        for (int i = 0; i < errors.size() && i < MAX_REPORTED_ERRORS; i++) {
+            message.append("\n  ").append(errors.get(i));
+        }
+        if (errors.size() > MAX_REPORTED_ERRORS) {
+            message.append("\n  ...");
+        }
+        throw new FlightBookingSystemException(message.toString());
+    }
+
+    private void phase(String name, long rows, long started) {
+        long nanos = Math.max(1, System.nanoTime() - started);
+        progress("%s %,d rows in %d ms (%,.0f rows/s)", name, rows, TimeUnit.NANOSECONDS.toMillis(nanos),
+                rows * 1e9 / nanos);
+    }
+
+    private void progress(String format, Object... args) {
+        PrintStream current = out;
+        if (current != null) {
+            current.println(String.format(format, args));
+        }
+    }
+
+    // Parsing
+
+    /**
+     * Parses the fields of one row into a typed row, or throws with the reason it is invalid.
+     */
+    private interface RowParser<T extends Row> {
+        T parse(String[] fields);
+    }
+
+    /**
+     * The rows parsed from one byte range of a file, with the errors found in it. Line numbers
+     * count from the start of the range until {@link #collectErrors} makes them absolute.
+     */
+    private static final class Chunk<T extends Row> {
+        private final List<T> rows = new ArrayList<>();
+        private final List<Integer> errorLines = new ArrayList<>();
+        private final List<String> errors = new ArrayList<>();
+        private int lines;
+    }
+
+    private static <T extends Row> List<Future<Chunk<T>>> submit(ExecutorService pool, Path file, AtomicLong parsed,
+            RowParser<T> parser) throws IOException {
+        List<Future<Chunk<T>>> tasks = new ArrayList<>();
+        if (!Files.exists(file)) {
+            return tasks;
+        }
+        long size = Files.size(file);
+        int count = (int) Math.max(1, Math.min(Integer.MAX_VALUE, (size + MAX_CHUNK_BYTES - 1) / MAX_CHUNK_BYTES));
+        long[] boundaries = BookingDataManager.splitChunks(file, count);
+        for (int i = 0; i < count; i++) {
+            final long start = boundaries[i];
+            final long end = boundaries[i + 1];
+            tasks.add(pool.submit((Callable<Chunk<T>>) () -> parseChunk(file, start, end, parsed, parser)));
+        }
+        return tasks;
+    }
+
+    private static <T extends Row> List<Chunk<T>> await(List<Future<Chunk<T>>> tasks) throws IOException {
+        List<Chunk<T>> chunks = new ArrayList<>(tasks.size());
+        try {
+            for (Future<Chunk<T>> task : tasks) {
+                chunks.add(task.get());
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while importing", ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        }
+        return chunks;
+    }
+
+    /**
+     * Adds the errors of every range of a file, numbering lines from the start of the file.
+     */
+    private static <T extends Row> void collectErrors(String name, List<Chunk<T>> chunks, List<String> errors) {
+        int firstLine = 1;
+        for (Chunk<T> chunk : chunks) {
+            for (int i = 0; i < chunk.errors.size(); i++) {
+                errors.add(name + " line " + (firstLine + chunk.errorLines.get(i)) + ": " + chunk.errors.get(i));
+            }
+            for (Row row : chunk.rows) {
+                row.line += firstLine;
+            }
+            firstLine += chunk.lines;
+        }
+    }
+
+    private static <T extends Row> Chunk<T> parseChunk(Path file, long start, long end, AtomicLong parsed,
+            RowParser<T> parser) throws IOException {
+        Chunk<T> chunk = new Chunk<>();
+        if (end <= start) {
+            return chunk;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) (end - start));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, start + buffer.position()) <= 0) {
+                    break;
+                }
+            }
+        }
+        String text = new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8);
+        int pos = 0;
+        int line = 0;
+        int unreported = 0;
+        while (pos < text.length()) {
+            int next = text.indexOf('\n', pos);
+            int lineEnd = next < 0 ? text.length() : next;
+            String content = text.substring(pos, lineEnd > pos && text.charAt(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd);
+            pos = lineEnd + 1;
+            int number = line++;
+            if ((start == 0 && number == 0) || content.trim().isEmpty()) {
+                continue; // The header, or a blank line
+            }
+            try {
+                T row = parser.parse(splitCsv(content));
+                row.line = number;
+                chunk.rows.add(row);
+            } catch (IllegalArgumentException ex) {
+                chunk.errorLines.add(number);
+                chunk.errors.add(ex.getMessage());
+            }
+            if (++unreported == 10_000) {
+                parsed.addAndGet(unreported);
+                unreported = 0;
+            }
+        }
+        chunk.lines = line;
+        parsed.addAndGet(unreported);
+        return chunk;
+    }
+
+    /**
+     * Splits a CSV line into its fields. A field may be enclosed in double quotes, in which
+     * case it may contain commas and a doubled quote stands for one quote.
+     */
+    static String[] splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        int i = 0;
+        while (true) {
+            field.setLength(0);
+            if (i < line.length() && line.charAt(i) == '"') {
+                i++;
+                while (true) {
+                    if (i >= line.length()) {
+                        throw new IllegalArgumentException("unterminated quoted field");
+                    }
+                    char c = line.charAt(i++);
+                    if (c == '"') {
+                        if (i < line.length() && line.charAt(i) == '"') {
+                            field.append('"');
+                            i++;
+                        } else {
+                            break;
+                        }
+                    } else {
+                        field.append(c);
+                    }
+                }
+                if (i < line.length() && line.charAt(i) != ',') {
+                    throw new IllegalArgumentException("unexpected text after a quoted field");
+                }
+            } else {
+                int comma = line.indexOf(',', i);
+                int fieldEnd = comma < 0 ? line.length() : comma;
+                field.append(line, i, fieldEnd);
+                i = fieldEnd;
+            }
+            fields.add(field.toString().trim());
+            if (i >= line.length()) {
+                return fields.toArray(new String[0]);
+            }
+            i++; // Skip the comma
+        }
+    }
+
+    private static void expect(String[] fields, int count) {
+        if (fields.length != count) {
+            throw new IllegalArgumentException("expected " + count + " fields but found " + fields.length);
+        }
+        for (String field : fields) {
+            if (field.isEmpty()) {
+                throw new IllegalArgumentException("empty field");
+            }
+            if (field.contains(DataManager.SEPARATOR)) {
+                throw new IllegalArgumentException("field \"" + field + "\" contains \"" + DataManager.SEPARATOR + "\"");
+            }
+        }
+    }
+
+    private static int parseInt(String field, String name) {
+        try {
+            return Integer.parseInt(field);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException(name + " \"" + field + "\" is not a whole number");
+        }
+    }
+
+    private static double parsePrice(String field) {
+        double price;
+        try {
+            price = Double.parseDouble(field);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("price \"" + field + "\" is not a number");
+        }
+        if (!(price >= 0) || Double.isInfinite(price)) {
+            throw new IllegalArgumentException("price should not be negative");
+        }
+        return price;
+    }
+
+    private static LocalDate parseDate(String field) {
+        try {
+            return LocalDate.parse(field);
+        } catch (DateTimeParseException ex) {
+            throw new IllegalArgumentException("date \"" + field + "\" is not in YYYY-MM-DD format");
+        }
+    }
+
+    private static FlightRow parseFlight(String[] fields) {
+        expect(fields, 6);
+        FlightRow row = new FlightRow();
+        row.flightNumber = fields[0];
+        row.origin = fields[1];
+        row.destination = fields[2];
+        row.departureDate = parseDate(fields[3]);
+        row.seats = parseInt(fields[4], "seats");
+        if (row.seats < 1) {
+            throw new IllegalArgumentException("seats should be higher than 0");
+        }
+        row.price = parsePrice(fields[5]);
+        return row;
+    }
+
+    private static CustomerRow parseCustomer(String[] fields) {
+        expect(fields, 3);
+        CustomerRow row = new CustomerRow();
+        row.name = fields[0];
+        row.phone = fields[1];
+        row.email = fields[2];
+        return row;
+    }
+
+    private static BookingRow parseBooking(String[] fields) {
+        expect(fields, 5);
+        BookingRow row = new BookingRow();
+        row.email = fields[0];
+        row.flightNumber = fields[1];
+        row.departureDate = parseDate(fields[2]);
+        row.bookingDate = parseDate(fields[3]);
+        row.price = parsePrice(fields[4]);
+        return row;
+    }
+
+    private static class Row {
+        int line;
+    }
+
+    private static final class FlightRow extends Row {
+        private String flightNumber;
+        private String origin;
+        private String destination;
+        private LocalDate departureDate;
+        private int seats;
+        private double price;
+    }
+
+    private static final class CustomerRow extends Row {
+        private String name;
+        private String phone;
+        private String email;
+    }
+
+    private static final class BookingRow extends Row {
+        private String email;
+        private String flightNumber;
+        private LocalDate departureDate;
+        private LocalDate bookingDate;
+        private double price;
+        private Customer customer;
+        private Flight flight;
+    }
+}
@@ -0,0 +1,342 @@
+package bcu.cmp5332.bookingsystem.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes every mutation of the flight booking system as an ordered change feed, which
+ * other systems can follow with a {@link ChangeFeedConsumer} instead of re-reading the data
+ * files.
+ * <p>
+ * The feed is fed by the {@link MutationJournal}, as a
+ * {@link MutationJournal.MutationListener}, so it sees new, changed, cancelled and deleted bookings,
+ * flights and customers in the order they are journalled. Each change is given the next
+ * sequence number, which keeps increasing across restarts, and is appended in the background
+ * through a {@link GroupCommitter}, framed by {@link RecordFrame}, with the time it was made,
+ * the {@link MutationJournal#getPosition journal position} of the last journalled record the
+ * feed has received, and the journal record. The feed is split into segments named after the
+ * sequence number of their first change; a new segment is started once the current one reaches
+ * {@code bookingsystem.cdc.segmentBytes} bytes (64 MB by default), and segments last changed
+ * more than {@code bookingsystem.cdc.retainHours} hours ago (a week by default) are deleted,
+ * apart from the current one. When the feed is started, the end of a change whose write was cut
+ * short by a crash is removed, and numbering carries on from the last change that was written
+ * in full. The journal records after the journal position of that change, which were durable in
+ * the journal but still queued for the feed at the crash, are then published again, so that no
+ * mutation is missing from the feed. Since every change carries the position, this does not
+ * depend on older segments having been kept.
+ * </p>
+ * <p>
+ * The feed is published if the {@code bookingsystem.cdc.enabled} system property is {@code true}.
+ * </p>
+ *
+ * <pre>
+ * changes/changes-&lt;first sequence&gt;.txt : (sequence::millis::journal position::record)*
+ * </pre>
+ *
+ * @author Sugam Adhikari
+ * @author Prasansha Tamang
+ */
+public class ChangeFeed implements MutationJournal.MutationListener, Closeable {
+
+    /** The default directory holding the feed. */
+    public static final String RESOURCE = "./resources/data/changes";
+
+    /** The default size at which a new segment is started, in bytes. */
+    public static final long DEFAULT_SEGMENT_BYTES = 64L * 1024 * 1024;
+
+    /** The default time segments are kept for, in hours. */
+    public static final long DEFAULT_RETAIN_HOURS = 24 * 7;
+
+    static final String PREFIX = "changes-";
+    static final String SUFFIX = ".txt";
+
+    private final Path dir;
+    private final long segmentBytes;
+    private final long retainMillis;
+    private FileChannel channel;
+    private GroupCommitter committer;
+    private MutationJournal journal;
+    private long nextSequence = 1;
+    private long journalPosition = -1;
+    private long written;
+
+    /**
+     * Creates a change feed in the default directory, with the segment size and retention
+     * configured through system properties.
+     */
+    public ChangeFeed() {
+        this(RESOURCE, Long.getLong("bookingsystem.cdc.segmentBytes", DEFAULT_SEGMENT_BYTES),
+                TimeUnit.HOURS.toMillis(Long.getLong("bookingsystem.cdc.retainHours", DEFAULT_RETAIN_HOURS)));
+    }
+
+    /**
+     * Creates a change feed in the given directory.
+     *
+     * @param resource     the directory holding the feed
+     * @param segmentBytes the size at which a new segment is started, in bytes
+     * @param retainMillis the time segments are kept for, in milliseconds
+     */
+    public ChangeFeed(String resource, long segmentBytes, long retainMillis) {
+        if (segmentBytes < 1 || retainMillis < 1) {
+            throw new IllegalArgumentException("Segment size and retention should be higher than 0");
+        }
+        this.dir = Paths.get(resource);
+        this.segmentBytes = segmentBytes;
+        this.retainMillis = retainMillis;
+    }
+
+    /**
+     * Starts publishing the mutations recorded by the journal, carrying on from the last
+     * change already in the feed and first publishing the journal records after its journal
+     * position. A feed that holds no change yet starts from the end of the journal.
+     *
+     * @param journal the journal whose mutations are published
+     * @throws IOException if the feed or the journal cannot be read
+     */
+    public void start(MutationJournal journal) throws IOException {
+        Files.createDirectories(dir);
+        synchronized (this) {
+            TreeMap<Long, Path> segments = list(dir);
+            if (segments.isEmpty()) {
+                open(nextSequence);
+            } else {
+                recover(segments);
+                open(segments.lastKey());
+            }
+            if (journalPosition < 0) {
+                journalPosition = journal.getPosition();
+            }
+        }
+        this.journal = journal;
+        journal.addListener(this, journalPosition);
+    }
+
+    /**
+     * Cuts off a change at the end of the last segment that was not written in full, and finds
+     * the sequence number that follows the last complete change and the journal position it
+     * carries. Earlier segments are only read if the later ones hold no change.
+     */
+    private void recover(TreeMap<Long, Path> segments) throws IOException {
+        Path last = segments.lastEntry().getValue();
+        try (FileChannel file = FileChannel.open(last, StandardOpenOption.WRITE, StandardOpenOption.READ)) {
+            long complete = RecordReader.completeLength(file, file.size());
+            if (complete < file.size()) {
+                file.truncate(complete);
+                file.force(true);
+            }
+        }
+        nextSequence = segments.lastKey();
+        for (Path segment : segments.descendingMap().values()) {
+            boolean found = false;
+            try (RecordReader reader = new RecordReader(segment)) {
+                while (reader.nextRecord()) {
+                    try {
+                        long sequence = reader.nextLong() + 1;
+                        reader.skipField();
+                        long position = reader.nextLong();
+                        nextSequence = Math.max(nextSequence, sequence);
+                        journalPosition = position;
+                        found = true;
+                    } catch (NumberFormatException ex) {
+                        // Not a change; damaged changes are already skipped by their frame
+                    }
+                }
+            }
+            if (found) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Gives a record that is only passed to listeners the next sequence number and appends it,
+     * as {@link #mutationLogged(String, long)} does.
+     *
+     * @param record the record
+     */
+    @Override
+    public void mutationLogged(String record) {
+        mutationLogged(record, -1);
+    }
+
+    /**
+     * Gives a record the next sequence number and appends it to the current segment, stamped
+     * with the current time and the journal position of the last journalled record. The record
+     * is written in the background.
+     *
+     * @param record   the record
+     * @param position the position in the journal after the record, or -1 if it is not journalled
+     */
+    @Override
+    public synchronized void mutationLogged(String record, long position) {
+        if (committer == null) {
+            return;
+        }
+        if (position >= 0) {
+            journalPosition = position;
+        }
+        long sequence = nextSequence++;
+        byte[] line = (RecordFrame.frame(sequence + DataManager.SEPARATOR + System.currentTimeMillis()
+                + DataManager.SEPARATOR + journalPosition + DataManager.SEPARATOR + record) + "\n")
+                .getBytes(StandardCharsets.UTF_8);
+        committer.submit(line);
+        written += line.length;
+        if (written >= segmentBytes) {
+            try {
+                closeSegment();
+                open(nextSequence);
+                prune();
+            } catch (IOException ex) {
+                System.err.println("Error starting a new change feed segment: " + ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Returns the sequence number the next change will be given.
+     *
+     * @return the next sequence number
+     */
+    public synchronized long getNextSequence() {
+        return nextSequence;
+    }
+
+    private void open(long first) throws IOException {
+        Path segment = dir.resolve(PREFIX + first + SUFFIX);
+        channel = FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        written = channel.size();
+        committer = new GroupCommitter(channel);
+    }
+
+    private void closeSegment() throws IOException {
+        if (committer != null) {
+            committer.shutdown();
+            committer = null;
+        }
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    /**
+     * Deletes the segments last changed before the retention period, apart from the current one.
+     */
+    private void prune() throws IOException {
+        TreeMap<Long, Path> segments = list(dir);
+        segments.remove(segments.lastKey());
+        long cutoff = System.currentTimeMillis() - retainMillis;
+        for (Path segment : segments.values()) {
+            if (Files.getLastModifiedTime(segment).toMillis() < cutoff) {
+                Files.deleteIfExists(segment);
+            }
+        }
+    }
+
+    /**
+     * Lists the segments of a feed by the sequence number of their first change.
+     */
+    static TreeMap<Long, Path> list(Path dir) throws IOException {
+        TreeMap<Long, Path> files = new TreeMap<>();
+        if (!Files.isDirectory(dir)) {
+            return files;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, PREFIX + "*" + SUFFIX)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                try {
+                    files.put(Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length())), file);
+                } catch (NumberFormatException ex) {
+                    // Not one of ours
+                }
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Stops publishing, writing any changes still queued.
+     *
+     * @throws IOException if the feed cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (journal != null) {
+            journal.removeListener(this);
+        }
+        synchronized (this) {
+            closeSegment();
+        }
+    }
+
+    /**
+     * A change read from the feed.
+     */
+    public static final class Change {
+        private final long sequence;
+        private final Instant time;
+        private final MutationJournal.MutationType type;
+        private final String record;
+
+        Change(long sequence, Instant time, MutationJournal.MutationType type, String record) {
+            this.sequence = sequence;
+            this.time = time;
+            this.type = type;
+            this.record = record;
+        }
+
+        /**
+         * Returns the sequence number of the change.
+         *
+         * @return the sequence number
+         */
+        public long getSequence() {
+            return sequence;
+        }
+
+        /**
+         * Returns the time the change was made.
+         *
+         * @return the time of the change
+         */
+        public Instant getTime() {
+            return time;
+        }
+
+        /**
+         * Returns the kind of change.
+         *
+         * @return the mutation type
+         */
+        public MutationJournal.MutationType getType() {
+            return type;
+        }
+
+        /**
+         * Returns the journal record of the change, whose fields are described by its
+         * {@link MutationJournal.MutationType type} and which can be applied to a system with
+         * {@link MutationJournal#apply}.
+         *
+         * @return the record
+         */
+        public String getRecord() {
+            return record;
+        }
+
+        @Override
+        public String toString() {
+            return sequence + DataManager.SEPARATOR + time.toEpochMilli() + DataManager.SEPARATOR + record;
+        }
+    }
+}
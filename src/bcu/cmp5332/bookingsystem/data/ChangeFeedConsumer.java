@@ -0,0 +1,206 @@
+package bcu.cmp5332.bookingsystem.data;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Follows a {@link ChangeFeed} from a saved position, so that a downstream system only reads
+ * the changes made since it last looked.
+ * <p>
+ * Each consumer has a name, and {@link #commit()} saves the sequence number of the last change
+ * it has handled to {@code <name>.offset} in the feed's directory; a consumer created later
+ * with the same name carries on from the change after it. A consumer that stops before
+ * committing sees the uncommitted changes again, so every change is delivered at least once.
+ * {@link #poll(int)} reads on from where the last call stopped, and only reads changes whose
+ * write has finished, so following the feed never re-reads it from the start. A consumer that
+ * falls behind the feed's retention carries on from the oldest change still kept; the gap
+ * shows in the sequence numbers.
+ * </p>
+ *
+ * @author Sugam Adhikari
+ * @author Prasansha Tamang
+ */
+public class ChangeFeedConsumer {
+
+    private static final String OFFSET_SUFFIX = ".offset";
+    private static final long WAIT_MILLIS = 50;
+
+    private final Path dir;
+    private final Path offsetFile;
+    private long nextSequence = 1;
+    private long segmentFirst = -1; // The segment being read, by its first sequence number
+    private long position; // The offset in that segment to read on from
+
+    /**
+     * Creates a consumer of the feed in the default directory.
+     *
+     * @param name the name the consumer's position is saved under
+     * @throws IOException if the saved position cannot be read
+     */
+    public ChangeFeedConsumer(String name) throws IOException {
+        this(ChangeFeed.RESOURCE, name);
+    }
+
+    /**
+     * Creates a consumer of the feed in the given directory, starting after the last change it
+     * committed, or at the start of the feed if it has never committed.
+     *
+     * @param resource the directory holding the feed
+     * @param name     the name the consumer's position is saved under; letters, digits, '-' and '_'
+     * @throws IOException if the saved position cannot be read
+     */
+    public ChangeFeedConsumer(String resource, String name) throws IOException {
+        if (!name.matches("[A-Za-z0-9_-]+")) {
+            throw new IllegalArgumentException("Consumer names should only hold letters, digits, '-' and '_'");
+        }
+        this.dir = Paths.get(resource);
+        this.offsetFile = dir.resolve(name + OFFSET_SUFFIX);
+        DurableFile.recover(offsetFile.toString());
+        try {
+            String saved = new String(Files.readAllBytes(offsetFile), StandardCharsets.UTF_8).trim();
+            nextSequence = Long.parseLong(saved) + 1;
+        } catch (NoSuchFileException ex) {
+            // Never committed
+        } catch (NumberFormatException ex) {
+            throw new IOException("Invalid offset in " + offsetFile, ex);
+        }
+    }
+
+    /**
+     * Returns the sequence number of the next change the consumer will be given.
+     *
+     * @return the next sequence number
+     */
+    public long getPosition() {
+        return nextSequence;
+    }
+
+    /**
+     * Moves the consumer, so that the next change it is given is the one with the given
+     * sequence number. The move is only saved by {@link #commit()}.
+     *
+     * @param sequence the sequence number to carry on from
+     */
+    public void seek(long sequence) {
+        nextSequence = sequence;
+        segmentFirst = -1;
+    }
+
+    /**
+     * Saves the consumer's position, so that it carries on after the last change it has been
+     * given.
+     *
+     * @throws IOException if the position cannot be written
+     */
+    public void commit() throws IOException {
+        Files.createDirectories(dir);
+        long committed = nextSequence - 1;
+        DurableFile.replaceText(offsetFile.toString(), out -> out.println(committed));
+    }
+
+    /**
+     * Reads the changes after the consumer's position that are already in the feed, without
+     * waiting for more.
+     *
+     * @param max the largest number of changes to return
+     * @return the changes, in sequence order; empty if there are none yet
+     * @throws IOException if the feed cannot be read
+     */
+    public List<ChangeFeed.Change> poll(int max) throws IOException {
+        List<ChangeFeed.Change> changes = new ArrayList<>();
+        TreeMap<Long, Path> segments = ChangeFeed.list(dir);
+        if (segments.isEmpty()) {
+            return changes;
+        }
+        if (segmentFirst < 0 || !segments.containsKey(segmentFirst)) {
+            Long floor = segments.floorKey(nextSequence);
+            segmentFirst = floor != null ? floor : segments.firstKey();
+            position = 0;
+        }
+        while (true) {
+            // A segment that has a later one after it is complete, since the feed finishes
+            // writing a segment before starting the next
+            Long later = segments.higherKey(segmentFirst);
+            if (!read(segments.get(segmentFirst), changes, max) || later == null) {
+                return changes;
+            }
+            segmentFirst = later;
+            position = 0;
+        }
+    }
+
+    /**
+     * Reads the changes after the consumer's position, waiting up to the given time for the
+     * first one to be written if there are none yet.
+     *
+     * @param max     the largest number of changes to return
+     * @param timeout the longest time to wait
+     * @param unit    the unit of the timeout
+     * @return the changes, in sequence order; empty if none was written in time
+     * @throws IOException if the feed cannot be read
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public List<ChangeFeed.Change> poll(int max, long timeout, TimeUnit unit) throws IOException, InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        List<ChangeFeed.Change> changes = poll(max);
+        while (changes.isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(Math.max(1, Math.min(WAIT_MILLIS, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()))));
+            changes = poll(max);
+        }
+        return changes;
+    }
+
+    /**
+     * Reads the complete changes of a segment from the current position onwards.
+     *
+     * @return true if the end of the segment was reached, false if {@code max} changes were read first
+     */
+    private boolean read(Path segment, List<ChangeFeed.Change> changes, int max) throws IOException {
+        long end;
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            end = RecordReader.completeLength(channel, channel.size());
+        } catch (NoSuchFileException ex) {
+            return true; // Removed by the feed's retention
+        }
+        if (end <= position) {
+            return true;
+        }
+        try (RecordReader reader = new RecordReader(segment, position, end)) {
+            while (reader.nextRecord()) {
+                if (changes.size() >= max) {
+                    position = reader.getLineOffset();
+                    return false;
+                }
+                try {
+                    long sequence = reader.nextLong();
+                    if (sequence < nextSequence) {
+                        continue;
+                    }
+                    Instant time = Instant.ofEpochMilli(reader.nextLong());
+                    reader.skipField(); // The journal position, which only the feed needs
+                    String record = reader.restOfLine();
+                    int separator = record.indexOf(DataManager.SEPARATOR);
+                    MutationJournal.MutationType type = MutationJournal.MutationType.valueOf(
+                            separator < 0 ? record : record.substring(0, separator));
+                    changes.add(new ChangeFeed.Change(sequence, time, type, record));
+                    nextSequence = sequence + 1;
+                } catch (IllegalArgumentException ex) {
+                    System.err.println("Skipping change \"" + reader.getLine() + "\": " + ex.getMessage());
+                }
+            }
+        }
+        position = end;
+        return true;
+    }
+}
@@ -0,0 +1,96 @@
+package bcu.cmp5332.bookingsystem.data;
+
+import java.util.zip.Checksum;
+
+/**
+ * Computes the CRC-32C (Castagnoli) checksum used to frame the records of the data files.
+ * <p>
+ * CRC-32C detects more of the errors seen in storage than the CRC-32 of {@code java.util.zip},
+ * but its class only arrived in Java 9, so it is computed here. Eight bytes are folded in per
+ * step through eight lookup tables ("slicing-by-8"), which checks records several times faster
+ * than a byte at a time.
+ * </p>
+ *
+ * @author Sugam Adhikari
+ * @author Prasansha Tamang
+ */
+public final class Crc32c implements Checksum {
+
+    /** The reversed Castagnoli polynomial. */
+    private static final int POLYNOMIAL = 0x82F63B78;
+
+    /** Table {@code k} is at {@code TABLE[k * 256]}: the CRC of a byte followed by {@code k} zeros. */
+    private static final int[] TABLE = new int[8 * 256];
+
+    static {
+        for (int n = 0; n < 256; n++) {
+            int crc = n;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = (crc & 1) != 0 ? (crc >>> 1) ^ POLYNOMIAL : crc >>> 1;
+            }
+            TABLE[n] = crc;
+        }
+        for (int n = 0; n < 256; n++) {
+            int crc = TABLE[n];
+            for (int k = 1; k < 8; k++) {
+                crc = TABLE[crc & 0xff] ^ (crc >>> 8);
+                TABLE[k * 256 + n] = crc;
+            }
+        }
+    }
+
+    private int crc = 0xFFFFFFFF;
+
+    /**
+     * Computes the checksum of part of an array.
+     *
+     * @param bytes  the array
+     * @param offset the offset of the first byte
+     * @param length the number of bytes
+     * @return the checksum
+     */
+    public static int compute(byte[] bytes, int offset, int length) {
+        return ~update(0xFFFFFFFF, bytes, offset, length);
+    }
+
+    @Override
+    public void update(int b) {
+        crc = (crc >>> 8) ^ TABLE[(crc ^ b) & 0xff];
+    }
+
+    @Override
+    public void update(byte[] bytes, int offset, int length) {
+        crc = update(crc, bytes, offset, length);
+    }
+
+    private static int update(int crc, byte[] bytes, int offset, int length) {
+        int i = offset;
+        int end = offset + length;
+        for (; end - i >= 8; i += 8) {
+            int low = crc ^ ((bytes[i] & 0xff) | (bytes[i + 1] & 0xff) << 8
+                    | (bytes[i + 2] & 0xff) << 16 | (bytes[i + 3] & 0xff) << 24);
+            crc = TABLE[7 * 256 + (low & 0xff)]
+                    ^ TABLE[6 * 256 + ((low >>> 8) & 0xff)]
+                    ^ TABLE[5 * 256 + ((low >>> 16) & 0xff)]
+                    ^ TABLE[4 * 256 + (low >>> 24)]
+                    ^ TABLE[3 * 256 + (bytes[i + 4] & 0xff)]
+                    ^ TABLE[2 * 256 + (bytes[i + 5] & 0xff)]
+                    ^ TABLE[256 + (bytes[i + 6] & 0xff)]
+                    ^ TABLE[bytes[i + 7] & 0xff];
+        }
+        for (; i < end; i++) {
+            crc = (crc >>> 8) ^ TABLE[(crc ^ bytes[i]) & 0xff];
+        }
+        return crc;
+    }
+
+    @Override
+    public long getValue() {
+        return ~crc & 0xFFFFFFFFL;
+    }
+
+    @Override
+    public void reset() {
+        crc = 0xFFFFFFFF;
+    }
+}
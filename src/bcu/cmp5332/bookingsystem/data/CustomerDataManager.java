@@ -4,11 +4,15 @@ import bcu.cmp5332.bookingsystem.main.FlightBookingSystemException;
 import bcu.cmp5332.bookingsystem.model.Customer;
 import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
 
-import java.io.File;
-import java.io.FileWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.util.Scanner;
+import java.nio.channels.Channels;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Manages the loading and storing of customer data for the flight booking system.
@@ -21,7 +25,46 @@ import java.util.Scanner;
 
 public class CustomerDataManager implements DataManager {
 
-    private final String RESOURCE = "./resources/data/customers.txt";
+    /** The default path to the customer data file. */
+    public static final String RESOURCE = "./resources/data/customers.txt";
+
+    private final String resource;
+    private Quarantine quarantine;
+
+    /**
+     * Creates a data manager for the default customer data file.
+     */
+    public CustomerDataManager() {
+        this(RESOURCE);
+    }
+
+    /**
+     * Creates a data manager for the given customer data file.
+     *
+     * @param resource the path to the customer data file
+     */
+    public CustomerDataManager(String resource) {
+        this.resource = resource;
+    }
+
+    /**
+     * Sets the quarantine that damaged customer records are handed to on load, instead of the
+     * load failing. It is committed by the caller once the file has been read.
+     *
+     * @param quarantine the quarantine, or null to fail on a record that cannot be parsed
+     */
+    public void setQuarantine(Quarantine quarantine) {
+        this.quarantine = quarantine;
+    }
+
+    /**
+     * Returns the quarantine damaged customer records are handed to.
+     *
+     * @return the quarantine, or null if there is none
+     */
+    public Quarantine getQuarantine() {
+        return quarantine;
+    }
    
     /**
      * Loads customer data from the specified resource file into the given FlightBookingSystem instance.
@@ -33,39 +76,169 @@ public class CustomerDataManager implements DataManager {
      */
     @Override
     public void loadData(FlightBookingSystem fbs) throws IOException, FlightBookingSystemException {
-         try (Scanner sc = new Scanner(new File(RESOURCE))) {
-            while (sc.hasNextLine()) {
-                String line = sc.nextLine();
-                String[] properties = line.split(SEPARATOR, -1);
-                int id = Integer.parseInt(properties[0]);
-                String name = properties[1];
-                String phone = properties[2];
-                String email = properties[3];
-                boolean deleted = "deleted".equalsIgnoreCase(properties[4]); 
-                Customer customer = new Customer(id, name, phone, email, deleted);
-                fbs.addCustomer(customer);
+        for (Customer customer : parseData()) {
+            fbs.addCustomer(customer);
+        }
+    }
+
+    /**
+     * Parses every customer in the resource file without adding them to a FlightBookingSystem.
+     * This method does not touch any shared state, so it can run on a worker thread while
+     * other data files are being parsed.
+     *
+     * @return the customers in file order, keeping only the last record for each customer ID
+     * @throws IOException If an error occurs during file reading.
+     */
+    public List<Customer> parseData() throws IOException {
+        try (RecordReader reader = new RecordReader(Paths.get(resource))) {
+            reader.setQuarantine(quarantine);
+            return parseCustomers(reader);
+        }
+    }
+
+    /**
+     * Parses every customer remaining in a reader.
+     *
+     * @param reader the reader over customer records
+     * @return the customers in reader order, keeping only the last record for each customer ID
+     * @throws IOException If an error occurs during reading.
+     * @throws NumberFormatException If a customer ID is invalid and the reader has no quarantine
+     *         to hand it to.
+     */
+    static List<Customer> parseCustomers(RecordReader reader) throws IOException {
+        Map<Integer, Customer> customers = new LinkedHashMap<>();
+        while (reader.nextRecord()) {
+            Customer customer;
+            try {
+                customer = parseCustomer(reader);
+            } catch (NumberFormatException ex) {
+                if (reader.reject(ex.getMessage())) {
+                    continue;
+                }
+                throw ex;
             }
+            customers.put(customer.getId(), customer); // A later record for the same customer supersedes an earlier one
         }
+        return new ArrayList<>(customers.values());
+    }
+
+    /**
+     * Parses the customer on the reader's current line.
+     *
+     * @param reader a reader positioned on a customer record
+     * @return the customer, marked as persisted
+     * @throws NumberFormatException if the customer ID is invalid
+     */
+    static Customer parseCustomer(RecordReader reader) {
+        int id = reader.nextInt();
+        String name = reader.nextString();
+        String phone = reader.nextString();
+        String email = reader.nextString();
+        boolean deleted = reader.nextFieldEqualsIgnoreCase("deleted");
+        Customer customer = new Customer(id, name, phone, email, deleted);
+        customer.markPersisted();
+        return customer;
     }
 
     /**
      * Stores customer data from the given FlightBookingSystem instance into the specified resource file.
-     * This method iterates through all customers, writing each customer's details to the file.
+     * Only customers that have changed since the file was last loaded or written are stored:
+     * nothing is written if no customer is dirty, new customers are appended to the end of the
+     * file, and the file is only rewritten in full when a stored customer has been modified or removed.
      *
      * @param fbs The FlightBookingSystem instance whose data needs to be stored.
      * @throws IOException If an error occurs during file writing.
      */
     @Override
     public void storeData(FlightBookingSystem fbs) throws IOException {
-        try (PrintWriter out = new PrintWriter(new FileWriter(RESOURCE))) {
-            for (Customer customer : fbs.getAllCustomers()) {
-                out.print(customer.getId() + SEPARATOR);
-                out.print(customer.getName() + SEPARATOR);
-                out.print(customer.getPhone() + SEPARATOR);
-                out.print(customer.getEmail() + SEPARATOR);
-                out.print(customer.isDeleted() ? "deleted" : "" +  SEPARATOR); // Store 'deleted' status
-                out.println();
+        storeChanges(fbs);
+    }
+
+    /**
+     * Stores the customers that have changed, as described for {@link #storeData}.
+     *
+     * @param fbs The FlightBookingSystem instance whose data needs to be stored.
+     * @return true if the whole file was rewritten, false if it was appended to or left alone
+     * @throws IOException If an error occurs during file writing.
+     */
+    boolean storeChanges(FlightBookingSystem fbs) throws IOException {
+        boolean rewrite = fbs.hasRemovedCustomers();
+        List<Customer> added = new ArrayList<>();
+        for (Customer customer : fbs.getAllCustomers()) {
+            if (customer.isDirty()) {
+                if (customer.isPersisted()) {
+                    rewrite = true;
+                    break;
+                }
+                added.add(customer);
+            }
+        }
+        if (rewrite) {
+            rewrite(fbs);
+        } else if (!added.isEmpty()) {
+            write(added, true);
+        }
+        return rewrite;
+    }
+
+    /**
+     * Rewrites the whole file from the given system, whether or not anything has changed.
+     *
+     * @param fbs The FlightBookingSystem instance whose customer data needs to be stored.
+     * @throws IOException If an error occurs during file writing.
+     */
+    void rewrite(FlightBookingSystem fbs) throws IOException {
+        write(fbs.getAllCustomers(), false);
+    }
+
+    /**
+     * Writes the given customers through {@link DurableFile}, so that a crash part-way through leaves
+     * the previous contents of the file in place. Each record is encoded and framed by a
+     * {@link RecordWriter}.
+     */
+    private void write(Collection<Customer> customers, boolean append) throws IOException {
+        DurableFile.RecordContent content = out -> {
+            for (Customer customer : customers) {
+                print(out, customer);
             }
+        };
+        if (append) {
+            DurableFile.appendRecords(resource, content);
+        } else {
+            DurableFile.replaceRecords(resource, content);
+        }
+        for (Customer customer : customers) {
+            customer.markPersisted();
+        }
+    }
+
+    /**
+     * Encodes a single customer as one framed line of the customer data file, with its line
+     * separator, exactly as {@link #storeData} would write it, so that it can be queued on the
+     * {@link WriteBehindQueue}.
+     *
+     * @param customer the customer to encode
+     * @return the encoded line
+     * @throws IOException if the record cannot be encoded
+     */
+    public static byte[] encode(Customer customer) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(96);
+        try (RecordWriter writer = new RecordWriter(Channels.newChannel(bytes))) {
+            print(writer, customer);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void print(RecordWriter writer, Customer customer) throws IOException {
+        writer.field(customer.getId())
+                .field(customer.getName())
+                .field(customer.getPhone())
+                .field(customer.getEmail());
+        if (customer.isDeleted()) {
+            writer.field("deleted"); // Store 'deleted' status
+        } else {
+            writer.field("").field("");
         }
+        writer.endRecord();
     }
-}
\ No newline at end of file
+}
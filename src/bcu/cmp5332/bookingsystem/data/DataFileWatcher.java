@@ -0,0 +1,384 @@
+package bcu.cmp5332.bookingsystem.data;
+
+import bcu.cmp5332.bookingsystem.main.FlightBookingSystemException;
+import bcu.cmp5332.bookingsystem.model.Customer;
+import bcu.cmp5332.bookingsystem.model.Flight;
+import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the flight and customer data files and applies the records changed in them to the
+ * running system, so that corrected files dropped into the data directory are picked up
+ * without a restart.
+ * <p>
+ * The watcher keeps the {@link RecordReader#checksum checksum} of the last record it has seen
+ * for each ID, so only the records whose checksum has changed are parsed and compared with the
+ * system. A file that has only been appended to, as it is when the application adds a record,
+ * is read from where the last read stopped; the last bytes before that point are checked, as
+ * {@link RecordIndex} does, to tell an append from a file replaced with the same prefix length.
+ * A changed record is applied while holding the system's monitor, which every command also
+ * holds ({@link bcu.cmp5332.bookingsystem.commands.Command#executeLocked}): a new ID is added, and an existing flight or customer is updated in
+ * place, so that its bookings stay attached. A flight whose new number of seats is below the
+ * seats already booked on it is left as it is. A record that the application itself has changed
+ * and not yet stored is left alone, since its own change is newer. Records that are missing from
+ * a new file are not removed from the system, because a rewrite by the application may leave
+ * out flights that have moved to a {@link DeparturePartitions departure partition}; a flight
+ * or customer is removed by marking its record as deleted.
+ * </p>
+ * <p>
+ * Changes are noticed through a {@link WatchService} on the data directory and applied once
+ * the file has been left alone for {@link #SETTLE_MILLIS} milliseconds, so that a file being
+ * copied in is not read half-written. The records are already in the base files, so they are
+ * not written to the {@link MutationJournal}, but if a {@link #setJournal journal} is set each
+ * added or updated flight and customer is passed to its listeners, so that followers, the
+ * recovery log and the change feed see it.
+ * </p>
+ * <p>
+ * The files are watched if the {@code bookingsystem.watch.enabled} system property is
+ * {@code true}, unless the data is kept in the record store.
+ * </p>
+ *
+ * @author Sugam Adhikari
+ * @author Prasansha Tamang
+ */
+public class DataFileWatcher implements Closeable {
+
+    /** The time a file must be left alone after a change before it is read, in milliseconds. */
+    public static final long SETTLE_MILLIS = 200;
+
+    private static final int CHECK_BYTES = 64;
+
+    private final FlightBookingSystem fbs;
+    private final Path flightFile;
+    private final Path customerFile;
+    private final Map<Path, FileState> states = new HashMap<>();
+    private MutationJournal journal;
+    private WatchService watcher;
+    private Thread thread;
+
+    /**
+     * Creates a watcher over the given data files. Nothing is read until it is started.
+     *
+     * @param fbs              the system the changes are applied to
+     * @param flightResource   the path of the flight data file
+     * @param customerResource the path of the customer data file
+     */
+    public DataFileWatcher(FlightBookingSystem fbs, String flightResource, String customerResource) {
+        this.fbs = fbs;
+        this.flightFile = Paths.get(flightResource).toAbsolutePath().normalize();
+        this.customerFile = Paths.get(customerResource).toAbsolutePath().normalize();
+        states.put(flightFile, new FileState());
+        states.put(customerFile, new FileState());
+    }
+
+    /**
+     * Sets the journal whose listeners are told of each flight and customer added or updated.
+     *
+     * @param journal the journal to publish through, or null for none
+     */
+    public void setJournal(MutationJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Reads the checksums of the records currently in the files, which the system is assumed to
+     * have been loaded from, and starts watching for changes.
+     *
+     * @throws IOException if a file cannot be read or the directory cannot be watched
+     */
+    public void start() throws IOException {
+        for (Path file : states.keySet()) {
+            scan(file, false);
+        }
+        watcher = FileSystems.getDefault().newWatchService();
+        Set<Path> directories = new HashSet<>();
+        for (Path file : states.keySet()) {
+            if (directories.add(file.getParent())) {
+                file.getParent().register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY);
+            }
+        }
+        thread = new Thread(this::run, "data-file-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Applies the records that have changed in a data file since it was last read.
+     *
+     * @param file the flight or customer data file
+     * @return the number of flights or customers added or updated
+     * @throws IOException if the file cannot be read
+     */
+    public int refresh(Path file) throws IOException {
+        return scan(file.toAbsolutePath().normalize(), true);
+    }
+
+    private void run() {
+        Set<Path> pending = new HashSet<>();
+        try {
+            while (true) {
+                WatchKey key = pending.isEmpty() ? watcher.take()
+                        : watcher.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS);
+                if (key == null) {
+                    // Nothing has changed for a while, so the files can be read
+                    for (Path file : pending) {
+                        try {
+                            long start = System.nanoTime();
+                            int applied = refresh(file);
+                            if (applied > 0) {
+                                System.err.println("Applied " + applied + " changed record(s) from "
+                                        + file.getFileName() + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+                            }
+                        } catch (IOException | RuntimeException ex) {
+                            System.err.println("Error reloading " + file.getFileName() + ": " + ex.getMessage());
+                        }
+                    }
+                    pending.clear();
+                    continue;
+                }
+                Path directory = (Path) key.watchable();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        pending.addAll(states.keySet());
+                        continue;
+                    }
+                    Path file = directory.resolve((Path) event.context()).toAbsolutePath().normalize();
+                    if (states.containsKey(file)) {
+                        pending.add(file);
+                    }
+                }
+                key.reset();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ex) {
+            // Closed
+        }
+    }
+
+    /**
+     * Reads the records of a file that may have changed, and applies the changed ones if asked.
+     */
+    private synchronized int scan(Path file, boolean apply) throws IOException {
+        FileState state = states.get(file);
+        if (state == null) {
+            throw new IllegalArgumentException(file + " is not watched");
+        }
+        long size;
+        long key;
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            size = attributes.size();
+            key = attributes.fileKey() == null ? 0 : attributes.fileKey().hashCode();
+        } catch (NoSuchFileException ex) {
+            return 0;
+        }
+        boolean flights = file.equals(flightFile);
+        Map<Integer, Flight> changedFlights = new LinkedHashMap<>();
+        Map<Integer, Customer> changedCustomers = new LinkedHashMap<>();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long end = RecordReader.completeLength(channel, size);
+            long from = 0;
+            if (key == state.fileKey && end >= state.length && checksum(channel, state.length) == state.tailCheck) {
+                from = state.length;
+            }
+            if (end > from) {
+                try (RecordReader reader = new RecordReader(file, from, end)) {
+                    while (reader.nextRecord()) {
+                        int id;
+                        try {
+                            id = reader.nextInt();
+                        } catch (NumberFormatException ex) {
+                            continue; // Not a record; the loader quarantines such lines
+                        }
+                        int checksum = reader.checksum();
+                        Integer previous = state.checksums.put(id, checksum);
+                        if (!apply || (previous != null && previous == checksum)) {
+                            continue;
+                        }
+                        reader.rewind();
+                        try {
+                            // A later record for the same ID supersedes an earlier one
+                            if (flights) {
+                                changedFlights.put(id, FlightDataManager.parseFlight(reader));
+                            } else {
+                                changedCustomers.put(id, CustomerDataManager.parseCustomer(reader));
+                            }
+                        } catch (RuntimeException ex) {
+                            System.err.println("Skipping \"" + reader.getLine() + "\": " + ex.getMessage());
+                        }
+                    }
+                }
+            }
+            state.length = end;
+            state.fileKey = key;
+            state.tailCheck = checksum(channel, end);
+        }
+        return flights ? applyFlights(changedFlights.values()) : applyCustomers(changedCustomers.values());
+    }
+
+    private int applyFlights(Collection<Flight> parsed) {
+        if (parsed.isEmpty()) {
+            return 0;
+        }
+        int applied = 0;
+        List<Flight> added = new ArrayList<>();
+        synchronized (fbs) {
+            for (Flight flight : parsed) {
+                if (fbs.isArchived(flight.getId())) {
+                    continue;
+                }
+                Flight current;
+                try {
+                    current = fbs.getFlightByID(flight.getId());
+                } catch (FlightBookingSystemException ex) {
+                    added.add(flight);
+                    continue;
+                }
+                if (!current.isDirty() && !sameFlight(current, flight)) {
+                    if (flight.getNumberOfSeats() < current.getBookedSeats()) {
+                        System.err.println("Skipping flight #" + flight.getId() + ": it has " + flight.getNumberOfSeats()
+                                + " seat(s), fewer than the " + current.getBookedSeats() + " already booked");
+                        continue;
+                    }
+                    current.setFlightNumber(flight.getFlightNumber());
+                    current.setOrigin(flight.getOrigin());
+                    current.setDestination(flight.getDestination());
+                    current.setDepartureDate(flight.getDepartureDate());
+                    current.setNumberOfSeats(flight.getNumberOfSeats());
+                    current.setPrice(flight.getPrice());
+                    current.setDeleted(flight.isDeleted());
+                    current.markPersisted();
+                    if (journal != null) {
+                        journal.publishFlightUpdated(current);
+                    }
+                    applied++;
+                }
+            }
+            if (!added.isEmpty()) {
+                try {
+                    fbs.addFlights(added);
+                    applied += added.size();
+                    if (journal != null) {
+                        for (Flight flight : added) {
+                            journal.publishFlightAdded(flight);
+                        }
+                    }
+                } catch (FlightBookingSystemException | IllegalArgumentException ex) {
+                    System.err.println("Skipping " + added.size() + " new flight(s): " + ex.getMessage());
+                }
+            }
+        }
+        return applied;
+    }
+
+    private int applyCustomers(Collection<Customer> parsed) {
+        if (parsed.isEmpty()) {
+            return 0;
+        }
+        int applied = 0;
+        List<Customer> added = new ArrayList<>();
+        synchronized (fbs) {
+            for (Customer customer : parsed) {
+                Customer current;
+                try {
+                    current = fbs.getCustomerByID(customer.getId());
+                } catch (FlightBookingSystemException ex) {
+                    added.add(customer);
+                    continue;
+                }
+                if (!current.isDirty() && !sameCustomer(current, customer)) {
+                    current.setName(customer.getName());
+                    current.setPhone(customer.getPhone());
+                    current.setEmail(customer.getEmail());
+                    current.setDeleted(customer.isDeleted());
+                    current.markPersisted();
+                    if (journal != null) {
+                        journal.publishCustomerUpdated(current);
+                    }
+                    applied++;
+                }
+            }
+            fbs.addCustomers(added);
+            applied += added.size();
+            if (journal != null) {
+                for (Customer customer : added) {
+                    journal.publishCustomerAdded(customer);
+                }
+            }
+        }
+        return applied;
+    }
+
+    private static boolean sameFlight(Flight a, Flight b) {
+        return a.getFlightNumber().equals(b.getFlightNumber()) && a.getOrigin().equals(b.getOrigin())
+                && a.getDestination().equals(b.getDestination())
+                && a.getDepartureDate().equals(b.getDepartureDate())
+                && a.getNumberOfSeats() == b.getNumberOfSeats()
+                && Double.compare(a.getPrice(), b.getPrice()) == 0 && a.isDeleted() == b.isDeleted();
+    }
+
+    private static boolean sameCustomer(Customer a, Customer b) {
+        return a.getName().equals(b.getName()) && Objects.equals(a.getPhone(), b.getPhone())
+                && Objects.equals(a.getEmail(), b.getEmail()) && a.isDeleted() == b.isDeleted();
+    }
+
+    /**
+     * Computes the checksum of the bytes just before the given length of the file.
+     */
+    private static int checksum(FileChannel channel, long length) throws IOException {
+        int size = (int) Math.min(CHECK_BYTES, length);
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        while (buffer.hasRemaining() && channel.read(buffer, length - size + buffer.position()) > 0) {
+            // Keep reading until the buffer is full
+        }
+        return Crc32c.compute(buffer.array(), 0, buffer.position());
+    }
+
+    /**
+     * Stops watching the files.
+     *
+     * @throws IOException if the watch service cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (watcher != null) {
+            watcher.close();
+        }
+    }
+
+    /**
+     * What is known about a watched file from its last read.
+     */
+    private static final class FileState {
+        final Map<Integer, Integer> checksums = new HashMap<>();
+        long length;
+        long fileKey;
+        int tailCheck;
+    }
+}
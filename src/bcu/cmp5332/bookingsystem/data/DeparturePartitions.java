@@ -0,0 +1,494 @@
+package bcu.cmp5332.bookingsystem.data;
+
+import bcu.cmp5332.bookingsystem.main.FlightBookingSystemException;
+import bcu.cmp5332.bookingsystem.model.Booking;
+import bcu.cmp5332.bookingsystem.model.Customer;
+import bcu.cmp5332.bookingsystem.model.Flight;
+import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Stores flights that departed before the current month in partitions, one per departure month,
+ * so that start-up only has to load current and future flights.
+ * <p>
+ * Each partition is a pair of files in the partition directory, {@code flights-yyyy-MM.txt} and
+ * {@code bookings-yyyy-MM.txt}, in the same format as {@code flights.txt} and {@code bookings.txt};
+ * a booking belongs to the partition of its flight. A manifest lists, for every partition, the
+ * flights it holds and its highest booking ID, so that a system can register every past flight
+ * without reading the partitions themselves and never reuses an ID. Customers are not partitioned.
+ * </p>
+ * <p>
+ * {@link #roll} moves the current flights that have since departed into their partitions: the
+ * records are appended to the partition files, the manifest is updated, and the flights are
+ * unloaded so that the next store drops them from the current files. A flight listed in the
+ * manifest always comes from its partition, so a copy still left in the current files by an
+ * interrupted roll is ignored. A partition is loaded by {@link #loadPartition} the first time one
+ * of its flights is looked up, and written back in full by {@link #storeChanges} if anything in it
+ * changes.
+ * </p>
+ * <p>
+ * Partitions that are older still can be compressed by {@link #archive} into a
+ * {@link BlockArchive} each, {@code flights-yyyy-MM.blk} and {@code bookings-yyyy-MM.blk}, which
+ * replace the text files. An archived partition is loaded and looked up in the same way. When a
+ * flight of an archived month is rolled in, or a change to one is stored, the month goes back
+ * to text files until it is archived again. Where both a text file and an archive exist, the
+ * text file is the current one.
+ * </p>
+ * <p>
+ * Past flights are always registered from the manifest on start-up. Rolling and archiving only
+ * happen on start-up if the {@code bookingsystem.partitioning.enabled} system property is
+ * {@code true}; partitions more than {@code bookingsystem.partitioning.archiveAfterMonths}
+ * months old (three by default) are then archived.
+ * </p>
+ *
+ * @author Sugam Adhikari
+ * @author Prasansha Tamang
+ */
+public class DeparturePartitions implements FlightBookingSystem.PartitionLoader {
+
+    /** The default directory holding the partitions. */
+    public static final String DIRECTORY = "./resources/data/partitions";
+
+    private static final String MANIFEST = "manifest.txt";
+
+    private final Path directory;
+
+    /**
+     * The contents of one partition, as listed in the manifest.
+     */
+    static final class Partition {
+        int maxBookingId;
+        final List<Integer> flightIds = new ArrayList<>();
+    }
+
+    /**
+     * Creates partitions in the default directory.
+     */
+    public DeparturePartitions() {
+        this(DIRECTORY);
+    }
+
+    /**
+     * Creates partitions in the given directory.
+     *
+     * @param directory the directory holding the partition files and manifest
+     */
+    public DeparturePartitions(String directory) {
+        this.directory = Paths.get(directory);
+    }
+
+    /**
+     * Returns the path of the flight file for a departure month.
+     *
+     * @param month the departure month
+     * @return the path of the partition's flight file
+     */
+    public String getFlightResource(YearMonth month) {
+        return directory.resolve("flights-" + month + ".txt").toString();
+    }
+
+    /**
+     * Returns the path of the booking file for a departure month.
+     *
+     * @param month the departure month
+     * @return the path of the partition's booking file
+     */
+    public String getBookingResource(YearMonth month) {
+        return directory.resolve("bookings-" + month + ".txt").toString();
+    }
+
+    /**
+     * Returns the path of the compressed archive that replaces a partition text file.
+     *
+     * @param resource the path of a partition's flight or booking file
+     * @return the path of its archive
+     */
+    public static String getArchiveResource(String resource) {
+        return resource.substring(0, resource.length() - ".txt".length()) + BlockArchive.SUFFIX;
+    }
+
+    /**
+     * Opens a reader over a partition file, or over its archive if it has been archived.
+     *
+     * @param resource the path of a partition's flight or booking file
+     * @return the reader, or null if there is neither a file nor an archive
+     * @throws IOException if the file or archive cannot be read
+     */
+    RecordReader open(String resource) throws IOException {
+        Path text = Paths.get(resource);
+        if (Files.exists(text)) {
+            return new RecordReader(text);
+        }
+        String archive = getArchiveResource(resource);
+        if (Files.exists(Paths.get(archive))) {
+            return new BlockArchive(archive).readAll();
+        }
+        return null;
+    }
+
+    /**
+     * Turns an archived partition file back into a text file, so that records can be appended.
+     */
+    private void thaw(String resource) throws IOException {
+        Path archive = Paths.get(getArchiveResource(resource));
+        if (!Files.exists(archive)) {
+            return;
+        }
+        if (!Files.exists(Paths.get(resource))) {
+            try (RecordReader reader = new BlockArchive(archive.toString()).readAll()) {
+                DurableFile.replaceText(resource, out -> {
+                    while (reader.nextRecord()) {
+                        out.println(RecordFrame.frame(reader.getLine()));
+                    }
+                });
+            }
+        }
+        Files.delete(archive);
+    }
+
+    /**
+     * Returns the path of the manifest.
+     *
+     * @return the manifest path
+     */
+    Path getManifest() {
+        return directory.resolve(MANIFEST);
+    }
+
+    /**
+     * Reads the manifest.
+     *
+     * @return the partitions by departure month, oldest first; empty if there are no partitions
+     * @throws IOException if the manifest cannot be read
+     */
+    Map<YearMonth, Partition> readManifest() throws IOException {
+        Map<YearMonth, Partition> partitions = new TreeMap<>();
+        if (!Files.exists(getManifest())) {
+            return partitions;
+        }
+        try (RecordReader reader = new RecordReader(getManifest())) {
+            while (reader.nextRecord()) {
+                YearMonth month = YearMonth.parse(reader.nextString());
+                Partition partition = new Partition();
+                partition.maxBookingId = reader.nextInt();
+                while (reader.hasNextField()) {
+                    partition.flightIds.add(reader.nextInt());
+                }
+                partitions.put(month, partition);
+            }
+        }
+        return partitions;
+    }
+
+    private void writeManifest(Map<YearMonth, Partition> partitions) throws IOException {
+        Files.createDirectories(directory);
+        DurableFile.replaceText(getManifest().toString(), out -> {
+            for (Map.Entry<YearMonth, Partition> entry : partitions.entrySet()) {
+                out.print(entry.getKey() + DataManager.SEPARATOR + entry.getValue().maxBookingId);
+                for (int id : entry.getValue().flightIds) {
+                    out.print(DataManager.SEPARATOR + id);
+                }
+                out.println();
+            }
+        });
+    }
+
+    /**
+     * Registers every partitioned flight with the given system, which has been loaded from the
+     * current data files, and makes this object its partition loader. Any flight that was loaded
+     * from the current files but is listed in the manifest is unloaded again, since its
+     * partition holds the authoritative copy.
+     *
+     * @param fbs the system loaded from the current data files
+     * @throws IOException if the manifest cannot be read
+     */
+    public void register(FlightBookingSystem fbs) throws IOException {
+        Map<YearMonth, Partition> partitions = readManifest();
+        int maxBookingId = fbs.getMaxBookingId();
+        for (Map.Entry<YearMonth, Partition> entry : partitions.entrySet()) {
+            for (int id : entry.getValue().flightIds) {
+                fbs.archiveFlight(id, entry.getKey());
+            }
+            maxBookingId = Math.max(maxBookingId, entry.getValue().maxBookingId);
+        }
+        fbs.setMaxBookingId(maxBookingId);
+        fbs.setPartitionLoader(this);
+
+        List<Flight> stale = new ArrayList<>();
+        for (Flight flight : fbs.getFlights()) {
+            if (fbs.isArchived(flight.getId())) {
+                stale.add(flight);
+            }
+        }
+        fbs.unloadFlights(stale);
+    }
+
+    /**
+     * Moves every current flight that departs before the given month, with its bookings, into
+     * the partition for its departure month, and unloads them from the system.
+     *
+     * @param fbs     the system, already {@link #register registered}
+     * @param current the current month; flights departing in it or later stay current
+     * @return the number of flights moved
+     * @throws IOException if a partition or the manifest cannot be written
+     */
+    public int roll(FlightBookingSystem fbs, YearMonth current) throws IOException {
+        Map<YearMonth, List<Flight>> flightsByMonth = new TreeMap<>();
+        Map<Integer, YearMonth> months = new HashMap<>();
+        for (Flight flight : fbs.getFlights()) {
+            YearMonth month = YearMonth.from(flight.getDepartureDate());
+            if (!fbs.isArchived(flight.getId()) && month.isBefore(current)) {
+                flightsByMonth.computeIfAbsent(month, m -> new ArrayList<>()).add(flight);
+                months.put(flight.getId(), month);
+            }
+        }
+        if (flightsByMonth.isEmpty()) {
+            return 0;
+        }
+        Map<YearMonth, List<Booking>> bookingsByMonth = new HashMap<>();
+        for (Customer customer : fbs.getAllCustomers()) {
+            for (Booking booking : customer.getBookings()) {
+                YearMonth month = months.get(booking.getFlight().getId());
+                if (month != null) {
+                    bookingsByMonth.computeIfAbsent(month, m -> new ArrayList<>()).add(booking);
+                }
+            }
+        }
+
+        Files.createDirectories(directory);
+        Map<YearMonth, Partition> partitions = readManifest();
+        List<Flight> rolled = new ArrayList<>();
+        for (Map.Entry<YearMonth, List<Flight>> entry : flightsByMonth.entrySet()) {
+            YearMonth month = entry.getKey();
+            List<Booking> bookings = bookingsByMonth.getOrDefault(month, Collections.emptyList());
+            thaw(getFlightResource(month));
+            thaw(getBookingResource(month));
+            new FlightDataManager(getFlightResource(month)).write(entry.getValue(), true);
+            new BookingDataManager(getBookingResource(month)).write(bookings, true);
+
+            Partition partition = partitions.computeIfAbsent(month, m -> new Partition());
+            for (Flight flight : entry.getValue()) {
+                partition.flightIds.add(flight.getId());
+            }
+            for (Booking booking : bookings) {
+                partition.maxBookingId = Math.max(partition.maxBookingId, booking.getId());
+            }
+            rolled.addAll(entry.getValue());
+        }
+        writeManifest(partitions);
+
+        for (Flight flight : rolled) {
+            fbs.archiveFlight(flight.getId(), months.get(flight.getId()));
+        }
+        fbs.unloadFlights(rolled);
+        return rolled.size();
+    }
+
+    /**
+     * Loads the flights of a partition that are not already in memory, and the bookings on them.
+     * Bookings made by customers who are no longer in the system are skipped.
+     *
+     * @param fbs   the system to load into
+     * @param month the departure month of the partition
+     * @throws FlightBookingSystemException if the partition cannot be read or is invalid
+     */
+    @Override
+    public void loadPartition(FlightBookingSystem fbs, YearMonth month) throws FlightBookingSystemException {
+        try {
+            Set<Integer> added = new HashSet<>();
+            List<Flight> flights = Collections.emptyList();
+            try (RecordReader reader = open(getFlightResource(month))) {
+                if (reader != null) {
+                    flights = FlightDataManager.parseFlights(reader);
+                }
+            }
+            Set<Integer> loaded = new HashSet<>();
+            for (Flight flight : fbs.getFlights()) {
+                loaded.add(flight.getId());
+            }
+            for (Flight flight : flights) {
+                if (month.equals(fbs.getPartition(flight.getId())) && !loaded.contains(flight.getId())) {
+                    fbs.addFlight(flight);
+                    added.add(flight.getId());
+                }
+            }
+            if (added.isEmpty()) {
+                return;
+            }
+            List<BookingRecord> records = Collections.emptyList();
+            try (RecordReader reader = open(getBookingResource(month))) {
+                if (reader != null) {
+                    records = BookingDataManager.parseRecords(reader);
+                }
+            }
+            Set<Integer> customers = new HashSet<>();
+            for (Customer customer : fbs.getAllCustomers()) {
+                customers.add(customer.getId());
+            }
+            List<BookingRecord> linked = new ArrayList<>();
+            for (BookingRecord record : records) {
+                if (added.contains(record.flightId) && customers.contains(record.customerId)) {
+                    linked.add(record);
+                }
+            }
+            new BookingDataManager(getBookingResource(month)).linkBookings(fbs, Collections.singletonList(linked));
+        } catch (IOException ex) {
+            throw new FlightBookingSystemException("Unable to load the flights of " + month + ": " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Writes back every partition holding a flight or booking that has changed since it was
+     * loaded. Each such partition is loaded completely and rewritten in full. If flights or
+     * customers have been removed from the system, every loaded partition is rewritten so that
+     * their records disappear. This has to run before the current data files are stored, which
+     * clears the record of removed bookings.
+     *
+     * @param fbs the system to store
+     * @throws IOException if a partition cannot be read or written
+     */
+    public void storeChanges(FlightBookingSystem fbs) throws IOException {
+        Map<YearMonth, Partition> partitions = readManifest();
+        boolean removals = fbs.hasRemovedFlights() || fbs.hasRemovedCustomers();
+        Set<YearMonth> changed = new HashSet<>();
+        for (Customer customer : fbs.getAllCustomers()) {
+            removals |= customer.hasRemovedBookings();
+            if (!customer.isBookingsLoaded()) {
+                continue; // Loading a partition loads the customers with bookings in it
+            }
+            for (Booking booking : customer.getBookings()) {
+                YearMonth month = fbs.getPartition(booking.getFlight().getId());
+                if (month != null && booking.isDirty()) {
+                    changed.add(month);
+                }
+            }
+        }
+        for (Flight flight : fbs.getFlights()) {
+            YearMonth month = fbs.getPartition(flight.getId());
+            if (month != null && flight.isDirty()) {
+                changed.add(month);
+            }
+        }
+        if (removals) {
+            for (YearMonth month : partitions.keySet()) {
+                if (fbs.isPartitionLoaded(month)) {
+                    changed.add(month);
+                }
+            }
+        }
+        if (changed.isEmpty()) {
+            return;
+        }
+
+        for (YearMonth month : changed) {
+            try {
+                fbs.loadPartition(month);
+            } catch (FlightBookingSystemException ex) {
+                throw new IOException(ex.getMessage(), ex);
+            }
+        }
+        Map<YearMonth, List<Flight>> flights = new HashMap<>();
+        for (Flight flight : fbs.getFlights()) {
+            YearMonth month = fbs.getPartition(flight.getId());
+            if (changed.contains(month)) {
+                flights.computeIfAbsent(month, m -> new ArrayList<>()).add(flight);
+            }
+        }
+        Map<YearMonth, List<Booking>> bookings = new HashMap<>();
+        for (Customer customer : fbs.getAllCustomers()) {
+            if (!customer.isBookingsLoaded()) {
+                continue;
+            }
+            for (Booking booking : customer.getBookings()) {
+                YearMonth month = fbs.getPartition(booking.getFlight().getId());
+                if (changed.contains(month)) {
+                    bookings.computeIfAbsent(month, m -> new ArrayList<>()).add(booking);
+                }
+            }
+        }
+        boolean manifestChanged = false;
+        for (YearMonth month : changed) {
+            List<Booking> monthBookings = bookings.getOrDefault(month, Collections.emptyList());
+            new FlightDataManager(getFlightResource(month)).write(
+                    flights.getOrDefault(month, Collections.emptyList()), false);
+            new BookingDataManager(getBookingResource(month)).write(monthBookings, false);
+            Files.deleteIfExists(Paths.get(getArchiveResource(getFlightResource(month))));
+            Files.deleteIfExists(Paths.get(getArchiveResource(getBookingResource(month))));
+            Partition partition = partitions.get(month);
+            for (Booking booking : monthBookings) {
+                if (partition != null && booking.getId() > partition.maxBookingId) {
+                    partition.maxBookingId = booking.getId();
+                    manifestChanged = true;
+                }
+            }
+        }
+        if (manifestChanged) {
+            writeManifest(partitions);
+        }
+    }
+
+    /**
+     * Compresses every partition of a month before the given one that is still held in text
+     * files into a {@link BlockArchive}, and removes the text files. Each archive is complete
+     * before its text file is removed, so an interrupted run leaves both, and the text file wins.
+     *
+     * @param before the first month that is left as text
+     * @return the number of partitions archived
+     * @throws IOException if a partition cannot be read or its archive cannot be written
+     */
+    public int archive(YearMonth before) throws IOException {
+        int archived = 0;
+        for (YearMonth month : readManifest().keySet()) {
+            if (!month.isBefore(before)) {
+                continue;
+            }
+            boolean changed = false;
+            for (String resource : new String[] {getFlightResource(month), getBookingResource(month)}) {
+                Path text = Paths.get(resource);
+                if (Files.exists(text)) {
+                    BlockArchive.write(text, getArchiveResource(resource));
+                    Files.delete(text);
+                    Files.deleteIfExists(Paths.get(resource + RecordIndex.SUFFIX));
+                    changed = true;
+                }
+            }
+            if (changed) {
+                archived++;
+            }
+        }
+        return archived;
+    }
+
+    /**
+     * Deletes every partition and the manifest, once the flights they held have been written to
+     * the current files instead. The manifest goes first, so an interrupted run only leaves
+     * files that nothing refers to.
+     *
+     * @throws IOException if a file cannot be deleted
+     */
+    public void clear() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        Files.deleteIfExists(directory.resolve(MANIFEST));
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path file : stream) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,337 @@
+package bcu.cmp5332.bookingsystem.data;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes data files so that a crash at any point leaves either the old or the new contents,
+ * never a truncated or half-written file.
+ * <p>
+ * A full rewrite goes through two side files next to the target:
+ * </p>
+ * <ol>
+ * <li>the new contents are written to {@code <file>.tmp} and forced to disk;</li>
+ * <li>{@code <file>.tmp} is renamed to {@code <file>.new}, which marks it as complete;</li>
+ * <li>{@code <file>.new} is renamed over the target.</li>
+ * </ol>
+ * <p>
+ * An append first records the current length of the target in {@code <file>.append}, then
+ * appends and forces the new records, and finally deletes the marker. {@link #recover} is run
+ * before a file is loaded: it finishes a swap whose {@code .new} file is complete, discards an
+ * unfinished {@code .tmp} file, and truncates away the records of an append that was cut short.
+ * </p>
+ *
+ * @author Sugam Adhikari
+ * @author Prasansha Tamang
+ */
+public final class DurableFile {
+
+    private static final String TMP_SUFFIX = ".tmp";
+    private static final String READY_SUFFIX = ".new";
+    private static final String APPEND_SUFFIX = ".append";
+
+    private static final AtomicLong replacements = new AtomicLong();
+
+    /**
+     * Writes the contents of a file to a byte stream.
+     */
+    public interface Content {
+        /**
+         * Writes the contents.
+         *
+         * @param out the stream to write to; it must not be closed
+         * @throws IOException if the contents cannot be written
+         */
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    /**
+     * Writes the contents of a text file.
+     */
+    public interface TextContent {
+        /**
+         * Writes the contents.
+         *
+         * @param out the writer to write to; it must not be closed
+         * @throws IOException if the contents cannot be written
+         */
+        void writeTo(PrintWriter out) throws IOException;
+    }
+
+    /**
+     * Writes the records of a data file.
+     */
+    public interface RecordContent {
+        /**
+         * Writes the records.
+         *
+         * @param out the writer to write to; it must not be closed
+         * @throws IOException if the records cannot be written
+         */
+        void writeTo(RecordWriter out) throws IOException;
+    }
+
+    /**
+     * Writes straight to the channel of the file being written.
+     */
+    private interface ChannelContent {
+        void writeTo(FileChannel channel) throws IOException;
+    }
+
+    private DurableFile() {
+    }
+
+    /**
+     * Returns the number of files replaced so far by {@link #install} or {@link #recover}. A
+     * channel kept open on a data file has to be reopened once this changes, since it may still
+     * refer to the file that was replaced.
+     *
+     * @return the number of replacements
+     */
+    public static long getReplacementCount() {
+        return replacements.get();
+    }
+
+    /**
+     * Atomically replaces the given file with new contents.
+     *
+     * @param resource the path of the file to replace
+     * @param content  writes the new contents
+     * @throws IOException if the new contents cannot be written; the old file is then untouched
+     */
+    public static void replace(String resource, Content content) throws IOException {
+        stage(resource + TMP_SUFFIX, content);
+        install(resource + TMP_SUFFIX, resource);
+    }
+
+    /**
+     * Writes a complete file to a staging path and forces it to disk, so that it can later be
+     * {@link #install installed} over a data file. The staging file is deleted if writing fails.
+     *
+     * @param staged  the path of the staging file
+     * @param content writes the contents
+     * @throws IOException if the contents cannot be written
+     */
+    public static void stage(String staged, Content content) throws IOException {
+        stageChannel(staged, channel -> {
+            OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16);
+            content.writeTo(out);
+            out.flush();
+        });
+    }
+
+    private static void stageChannel(String staged, ChannelContent content) throws IOException {
+        Path path = Paths.get(staged);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            content.writeTo(channel);
+            channel.force(true);
+        } catch (IOException | RuntimeException ex) {
+            Files.deleteIfExists(path);
+            throw ex;
+        }
+    }
+
+    /**
+     * Writes a complete text file to a staging path, as {@link #stage} does.
+     *
+     * @param staged  the path of the staging file
+     * @param content writes the contents
+     * @throws IOException if the contents cannot be written
+     */
+    public static void stageText(String staged, TextContent content) throws IOException {
+        stage(staged, out -> writeText(out, content));
+    }
+
+    /**
+     * Atomically replaces a data file with a file written by {@link #stage}. The staged file is
+     * first renamed to {@code <file>.new}, so that {@link #recover} can finish the swap if it
+     * is interrupted.
+     *
+     * @param staged   the path of the staged file
+     * @param resource the path of the file to replace
+     * @throws IOException if the file cannot be renamed
+     */
+    public static void install(String staged, String resource) throws IOException {
+        Path target = Paths.get(resource);
+        Path ready = Paths.get(resource + READY_SUFFIX);
+        move(Paths.get(staged), ready);
+        syncDirectory(target);
+        move(ready, target);
+        replacements.incrementAndGet();
+        syncDirectory(target);
+    }
+
+    /**
+     * Atomically replaces the given text file with new contents.
+     *
+     * @param resource the path of the file to replace
+     * @param content  writes the new contents
+     * @throws IOException if the new contents cannot be written; the old file is then untouched
+     */
+    public static void replaceText(String resource, TextContent content) throws IOException {
+        stageText(resource + TMP_SUFFIX, content);
+        install(resource + TMP_SUFFIX, resource);
+    }
+
+    /**
+     * Appends records to the end of the given text file and forces them to disk. If the append
+     * is interrupted, {@link #recover} removes whatever part of it reached the file.
+     *
+     * @param resource the path of the file to append to; it is created if it does not exist
+     * @param content  writes the records to append
+     * @throws IOException if the records cannot be written
+     */
+    public static void appendText(String resource, TextContent content) throws IOException {
+        appendChannel(resource, channel -> {
+            OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16);
+            writeText(out, content);
+        });
+    }
+
+    /**
+     * Atomically replaces the given data file with new records, written through a
+     * {@link RecordWriter} straight to the file's channel.
+     *
+     * @param resource the path of the file to replace
+     * @param content  writes the new records
+     * @throws IOException if the records cannot be written; the old file is then untouched
+     */
+    public static void replaceRecords(String resource, RecordContent content) throws IOException {
+        stageChannel(resource + TMP_SUFFIX, channel -> writeRecords(channel, content));
+        install(resource + TMP_SUFFIX, resource);
+    }
+
+    /**
+     * Appends records to the end of the given data file through a {@link RecordWriter}, as
+     * {@link #appendText} does.
+     *
+     * @param resource the path of the file to append to; it is created if it does not exist
+     * @param content  writes the records to append
+     * @throws IOException if the records cannot be written
+     */
+    public static void appendRecords(String resource, RecordContent content) throws IOException {
+        appendChannel(resource, channel -> writeRecords(channel, content));
+    }
+
+    private static void appendChannel(String resource, ChannelContent content) throws IOException {
+        Path target = Paths.get(resource);
+        Path marker = Paths.get(resource + APPEND_SUFFIX);
+        long length = Files.exists(target) ? Files.size(target) : 0;
+        try (FileChannel channel = FileChannel.open(marker, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+            buffer.putLong(length).flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        syncDirectory(target);
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            try {
+                content.writeTo(channel);
+                channel.force(false);
+            } catch (IOException | RuntimeException ex) {
+                channel.truncate(length);
+                throw ex;
+            }
+        }
+        Files.delete(marker);
+    }
+
+    /**
+     * Brings the given file back to a consistent state after a crash during
+     * {@link #replace}, {@link #appendText} or {@link #appendRecords}. It does nothing if the last write completed.
+     *
+     * @param resource the path of the file to check
+     * @return true if an interrupted write was found and cleaned up
+     * @throws IOException if the file cannot be repaired
+     */
+    public static boolean recover(String resource) throws IOException {
+        Path target = Paths.get(resource);
+        Path tmp = Paths.get(resource + TMP_SUFFIX);
+        Path ready = Paths.get(resource + READY_SUFFIX);
+        Path marker = Paths.get(resource + APPEND_SUFFIX);
+        boolean recovered = false;
+        if (Files.exists(ready)) {
+            move(ready, target);
+            replacements.incrementAndGet();
+            syncDirectory(target);
+            recovered = true;
+        }
+        if (Files.deleteIfExists(tmp)) {
+            recovered = true;
+        }
+        if (Files.exists(marker)) {
+            byte[] bytes = Files.readAllBytes(marker);
+            if (bytes.length == Long.BYTES && Files.exists(target)) {
+                long length = ByteBuffer.wrap(bytes).getLong();
+                try (FileChannel channel = FileChannel.open(target, StandardOpenOption.WRITE)) {
+                    if (channel.size() > length) {
+                        channel.truncate(length);
+                        channel.force(true);
+                    }
+                }
+            }
+            Files.delete(marker);
+            recovered = true;
+        }
+        return recovered;
+    }
+
+    private static void writeText(OutputStream stream, TextContent content) throws IOException {
+        PrintWriter out = new PrintWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8));
+        content.writeTo(out);
+        out.flush();
+        if (out.checkError()) {
+            throw new IOException("Error writing text data");
+        }
+    }
+
+    private static void writeRecords(FileChannel channel, RecordContent content) throws IOException {
+        try (RecordWriter out = new RecordWriter(channel)) {
+            content.writeTo(out);
+        }
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Forces the directory holding the given file to disk, so that a rename or a new file is
+     * durable. Not every platform allows a directory to be opened, in which case the rename is
+     * left to the file system.
+     */
+    private static void syncDirectory(Path file) {
+        Path dir = file.toAbsolutePath().getParent();
+        if (dir == null) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ex) {
+            // Directories cannot be opened on this platform.
+        }
+    }
+}
@@ -5,8 +5,11 @@ import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
 
 import java.io.IOException;
 import java.net.URISyntaxException;
-import java.util.ArrayList;
-import java.util.List;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Centralizes the management of data for the flight booking system.
@@ -18,47 +21,502 @@ import java.util.List;
  */
 public class FlightBookingSystemData {
     
-    private static final List<DataManager> dataManagers = new ArrayList<>();
-    
-    // runs only once when the object gets loaded to memory
+    private static final MutationJournal journal = new MutationJournal();
+    private static final SnapshotDataManager snapshot = new SnapshotDataManager();
+    private static final FlightDataManager flightData = new FlightDataManager();
+    private static final CustomerDataManager customerData = new CustomerDataManager();
+    private static final BookingDataManager bookingData = new BookingDataManager();
+    private static final DeparturePartitions partitions = new DeparturePartitions();
+    private static final Lock fileLock = new ReentrantLock();
+    private static final WriteBehindQueue writeBehind = new WriteBehindQueue(fileLock);
+    private static final JournalCompactor compactor = new JournalCompactor(journal,
+            FlightDataManager.RESOURCE, CustomerDataManager.RESOURCE, BookingDataManager.RESOURCE,
+            SnapshotDataManager.RESOURCE, fileLock);
+    private static StoreDataManager storeData;
+    private static RecordStore recordStore;
+    private static ReplicationPrimary primary;
+    private static ReplicationFollower follower;
+    private static RecoveryLog recoveryLog;
+    private static DataFileWatcher watcher;
+    private static ChangeFeed changeFeed;
+
     static {
-        dataManagers.add(new FlightDataManager());
-        
-        /* Uncomment the two lines below when the implementation of their 
-        loadData() and storeData() methods is complete */
-         dataManagers.add(new CustomerDataManager());
-         dataManagers.add(new BookingDataManager());
+        compactor.setPartitions(partitions);
+        flightData.setQuarantine(new Quarantine(FlightDataManager.RESOURCE));
+        customerData.setQuarantine(new Quarantine(CustomerDataManager.RESOURCE));
+        bookingData.setQuarantine(new Quarantine(BookingDataManager.RESOURCE));
+        // Queued records are written before the program exits
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            writeBehind.shutdown();
+            try {
+                closeWatcher();
+            } catch (IOException ex) {
+                System.err.println("Error closing the data file watcher: " + ex.getMessage());
+            }
+            try {
+                closeRecoveryLog();
+            } catch (IOException ex) {
+                System.err.println("Error closing the recovery log: " + ex.getMessage());
+            }
+            try {
+                closeChangeFeed();
+            } catch (IOException ex) {
+                System.err.println("Error closing the change feed: " + ex.getMessage());
+            }
+            try {
+                journal.close();
+            } catch (IOException ex) {
+                System.err.println("Error closing the journal: " + ex.getMessage());
+            }
+            closeRecordStore();
+        }, "data-shutdown"));
     }
     
+    /**
+     * Returns the write-ahead journal that commands use to record individual mutations.
+     *
+     * @return the shared mutation journal
+     */
+    public static MutationJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * Returns the lock that must be held while writing to the base data files, so that a
+     * command appending to a file does not race with the {@link JournalCompactor} replacing it.
+     *
+     * @return the shared file lock
+     */
+    public static Lock getFileLock() {
+        return fileLock;
+    }
+
+    /**
+     * Returns the queue through which commands append new records to the base files.
+     *
+     * @return the shared write-behind queue
+     */
+    public static WriteBehindQueue getWriteBehind() {
+        return writeBehind;
+    }
+
+    /**
+     * Waits for a queued write if the {@code bookingsystem.writebehind.durable} system property
+     * is {@code true}, so that a command only returns once its record is on disk. Otherwise it
+     * returns at once, and a failed write is reported on standard error.
+     *
+     * @param written the future returned when the write was queued
+     * @throws IOException if the write failed while it was waited for
+     */
+    public static void awaitIfDurable(CompletableFuture<Void> written) throws IOException {
+        if (Boolean.getBoolean("bookingsystem.writebehind.durable")) {
+            WriteBehindQueue.await(written);
+        } else {
+            written.whenComplete((ignored, ex) -> {
+                if (ex != null) {
+                    System.err.println("Error writing a queued record: " + ex.getMessage());
+                }
+            });
+        }
+    }
+
+    /**
+     * Returns whether the data is kept in a {@link RecordStore} rather than the text files,
+     * which is the case when the {@code bookingsystem.storage} system property is {@code btree}
+     * or {@code lsm}. The store is then the single-file {@link BTreeStore} or, for write-heavy
+     * use such as a ticket sale, the {@link LsmStore}, and a change is written by storing only
+     * the records that changed.
+     *
+     * @return true if the data is kept in the record store
+     */
+    public static boolean usesRecordStore() {
+        String storage = System.getProperty("bookingsystem.storage");
+        return "btree".equals(storage) || "lsm".equals(storage);
+    }
+
+    /**
+     * Returns the partitions holding the flights that departed in earlier months.
+     *
+     * @return the shared departure partitions
+     */
+    public static DeparturePartitions getPartitions() {
+        return partitions;
+    }
+
+    /**
+     * Returns the background compactor that folds the journal into the base files.
+     *
+     * @return the shared journal compactor
+     */
+    public static JournalCompactor getCompactor() {
+        return compactor;
+    }
+
     /**
      * Loads the flight booking system data from persistent storage into a new FlightBookingSystem instance.
-     * This method iterates over all registered DataManager instances, calling their loadData() method
-     * to populate the FlightBookingSystem with the necessary data.
+     * Interrupted writes are first recovered by {@link DurableFile#recover}. The base data then comes
+     * from the record store, the binary snapshot or the text files, and the mutation journal is
+     * replayed over it. Once loaded, the optional background services enabled by system properties
+     * are started: the {@link JournalCompactor}, {@link ReplicationPrimary}, {@link RecoveryLog},
+     * {@link ChangeFeed} and {@link DataFileWatcher}. Each of them documents its own settings.
      *
      * @return A populated FlightBookingSystem instance representing the current state of the system.
      * @throws FlightBookingSystemException If an exception occurs during the loading process.
      * @throws IOException If an error occurs during file operations.
      */
     public static FlightBookingSystem load() throws FlightBookingSystemException, IOException {
-        FlightBookingSystem fbs = new FlightBookingSystem();
-        for (DataManager dm : dataManagers) {
-            dm.loadData(fbs);
+        FlightBookingSystem fbs;
+        fileLock.lock();
+        try {
+            recover();
+            fbs = usesRecordStore() ? loadRecordStore() : loadFiles();
+            journal.replay(fbs);
+        } finally {
+            fileLock.unlock();
         }
+        if (!usesRecordStore() && !"false".equals(System.getProperty("bookingsystem.compaction.enabled"))) {
+            compactor.setSystem(fbs);
+            compactor.start();
+        }
+        startPrimary(fbs);
+        startRecoveryLog(fbs);
+        startChangeFeed();
+        startWatcher(fbs);
         return fbs;
     }
 
+    private static synchronized void startChangeFeed() throws IOException {
+        if (Boolean.getBoolean("bookingsystem.cdc.enabled")) {
+            changeFeed = new ChangeFeed();
+            changeFeed.start(journal);
+        }
+    }
+
+    private static synchronized void startWatcher(FlightBookingSystem fbs) throws IOException {
+        if (Boolean.getBoolean("bookingsystem.watch.enabled") && !usesRecordStore()) {
+            watcher = new DataFileWatcher(fbs, FlightDataManager.RESOURCE, CustomerDataManager.RESOURCE);
+            watcher.setJournal(journal);
+            watcher.start();
+        }
+    }
+
+    private static synchronized void startRecoveryLog(FlightBookingSystem fbs) throws IOException {
+        if (Boolean.getBoolean("bookingsystem.pitr.enabled")) {
+            recoveryLog = new RecoveryLog();
+            recoveryLog.start(fbs, journal);
+        }
+    }
+
+    private static synchronized void startPrimary(FlightBookingSystem fbs) throws IOException {
+        Integer port = Integer.getInteger("bookingsystem.replication.port");
+        if (port != null) {
+            primary = new ReplicationPrimary(fbs, journal, port);
+        }
+    }
+
+    /**
+     * Builds the system as a follower of the {@link ReplicationPrimary} listening on the given
+     * port, instead of loading it from the data files. Until it is {@link #promote promoted},
+     * the follower only applies the primary's mutations and nothing is stored.
+     *
+     * @param port the port of the primary
+     * @return the replicated system
+     * @throws FlightBookingSystemException If the primary sends something unexpected.
+     * @throws IOException If the primary cannot be reached.
+     */
+    public static synchronized FlightBookingSystem follow(int port) throws FlightBookingSystemException, IOException {
+        follower = new ReplicationFollower(port);
+        return follower.connect();
+    }
+
+    /**
+     * Returns whether this process is a replication follower that has not been promoted.
+     *
+     * @return true if the system is a read-only copy of a primary
+     */
+    public static synchronized boolean isFollower() {
+        return follower != null;
+    }
+
+    /**
+     * Makes a follower take over from its primary: it disconnects, the whole system is written
+     * to this process's own data files through {@link #replace}, and a
+     * {@link ReplicationPrimary}, {@link RecoveryLog}, {@link ChangeFeed} and
+     * {@link DataFileWatcher} are started if they are enabled. The
+     * follower should therefore run in its own directory.
+     *
+     * @param fbs The replicated FlightBookingSystem instance.
+     * @throws IOException If the data cannot be written.
+     */
+    public static synchronized void promote(FlightBookingSystem fbs) throws IOException {
+        follower.close();
+        follower = null;
+        replace(fbs);
+        startPrimary(fbs);
+        startRecoveryLog(fbs);
+        startChangeFeed();
+        startWatcher(fbs);
+    }
+
+    /**
+     * Rebuilds the system as it was at the given instant from the {@link RecoveryLog}, and
+     * replaces the data files with it through {@link #replace}. A checkpoint of the restored
+     * system is then added to the log, so that it is where later history starts from. This is
+     * meant to be run while the application is stopped.
+     *
+     * @param log the recovery log to restore from
+     * @param at  the instant to restore
+     * @return the restored system
+     * @throws FlightBookingSystemException If there is no checkpoint at or before the instant.
+     * @throws IOException If the log cannot be read or the data cannot be written.
+     */
+    public static FlightBookingSystem restore(RecoveryLog log, Instant at) throws FlightBookingSystemException, IOException {
+        FlightBookingSystem fbs = log.restore(at);
+        fileLock.lock();
+        try {
+            recover();
+        } finally {
+            fileLock.unlock();
+        }
+        replace(fbs);
+        log.writeCheckpoint(fbs, System.currentTimeMillis());
+        return fbs;
+    }
+
+    /**
+     * Replaces everything in the data files with the given system: the text files are rewritten
+     * in full and the departure partitions deleted, since their flights are now in the current
+     * files, or the record store is made to hold exactly the system. The journal is then
+     * truncated.
+     *
+     * @param fbs The FlightBookingSystem instance to store.
+     * @throws IOException If the data cannot be written.
+     */
+    public static void replace(FlightBookingSystem fbs) throws IOException {
+        writeBehind.flush();
+        synchronized (fbs) {
+            fileLock.lock();
+            try {
+                if (usesRecordStore()) {
+                    getStoreData().replaceData(fbs);
+                } else {
+                    flightData.rewrite(fbs);
+                    customerData.rewrite(fbs);
+                    bookingData.rewrite(fbs);
+                    partitions.clear();
+                    if (!isLazyBookings()) {
+                        snapshot.storeData(fbs);
+                    }
+                }
+                fbs.clearRemovals();
+                journal.truncate();
+            } finally {
+                fileLock.unlock();
+            }
+        }
+        if (!usesRecordStore()) {
+            RecordIndex.update(FlightDataManager.RESOURCE);
+            RecordIndex.update(CustomerDataManager.RESOURCE);
+            RecordIndex.update(BookingDataManager.RESOURCE);
+        }
+    }
+
+    /**
+     * Describes the replication role of this process and its lag.
+     *
+     * @return the description
+     */
+    public static synchronized String getReplicationStatus() {
+        if (follower != null) {
+            return follower.describe();
+        }
+        if (primary != null) {
+            return primary.describe();
+        }
+        return "Replication is not enabled; set bookingsystem.replication.port to accept followers.";
+    }
+
+    /**
+     * Loads the base data from the snapshot or the text files and registers the partitions.
+     */
+    private static FlightBookingSystem loadFiles() throws FlightBookingSystemException, IOException {
+        boolean lazy = isLazyBookings();
+        FlightBookingSystem fbs = lazy ? null : loadSnapshot();
+        if (fbs == null) {
+            fbs = new FlightBookingSystem();
+            ParallelLoader loader = new ParallelLoader(flightData, customerData, bookingData,
+                    BookingDataManager.RESOURCE);
+            loader.setLazyBookings(lazy);
+            loader.load(fbs);
+            flightData.getQuarantine().commit();
+            customerData.getQuarantine().commit();
+            bookingData.getQuarantine().commit();
+        }
+        partitions.register(fbs);
+        if (Boolean.getBoolean("bookingsystem.partitioning.enabled")) {
+            partitions.roll(fbs, YearMonth.now());
+            int archiveAfter = Integer.getInteger("bookingsystem.partitioning.archiveAfterMonths", 3);
+            partitions.archive(YearMonth.now().minusMonths(archiveAfter));
+        }
+        return fbs;
+    }
+
+    /**
+     * Loads the base data from the record store, filling the store from the text files first
+     * if it is empty.
+     */
+    private static FlightBookingSystem loadRecordStore() throws FlightBookingSystemException, IOException {
+        StoreDataManager data = getStoreData();
+        if (data.isEmpty()) {
+            FlightBookingSystem fbs = loadFiles();
+            fbs.loadAllPartitions();
+            data.importData(fbs);
+            return fbs;
+        }
+        FlightBookingSystem fbs = new FlightBookingSystem();
+        data.loadData(fbs);
+        return fbs;
+    }
+
+    private static synchronized StoreDataManager getStoreData() throws IOException {
+        if (storeData == null) {
+            recordStore = "lsm".equals(System.getProperty("bookingsystem.storage"))
+                    ? new LsmStore() : new BTreeStore();
+            storeData = new StoreDataManager(recordStore);
+        }
+        return storeData;
+    }
+
+    private static synchronized void closeWatcher() throws IOException {
+        if (watcher != null) {
+            watcher.close();
+            watcher = null;
+        }
+    }
+
+    private static synchronized void closeChangeFeed() throws IOException {
+        if (changeFeed != null) {
+            changeFeed.close();
+            changeFeed = null;
+        }
+    }
+
+    private static synchronized void closeRecoveryLog() throws IOException {
+        if (recoveryLog != null) {
+            recoveryLog.close();
+            recoveryLog = null;
+        }
+    }
+
+    private static synchronized void closeRecordStore() {
+        if (recordStore != null) {
+            try {
+                recordStore.close();
+            } catch (IOException ex) {
+                System.err.println("Error closing the record store: " + ex.getMessage());
+            }
+            recordStore = null;
+            storeData = null;
+        }
+    }
+
+    /**
+     * Returns whether bookings are loaded per customer when first needed, which is set by the
+     * {@code bookingsystem.bookings.lazy} system property. A lazily loaded system does not write
+     * the snapshot, since that would mean reading every booking.
+     *
+     * @return true if bookings are loaded lazily
+     */
+    private static boolean isLazyBookings() {
+        return Boolean.getBoolean("bookingsystem.bookings.lazy");
+    }
+
+    /**
+     * Repairs the data files after an interrupted store, so that each one holds either its old
+     * or its new contents.
+     *
+     * @throws IOException if a data file cannot be repaired
+     */
+    private static void recover() throws IOException {
+        String[] resources = {FlightDataManager.RESOURCE, CustomerDataManager.RESOURCE,
+                BookingDataManager.RESOURCE, SnapshotDataManager.RESOURCE};
+        for (String resource : resources) {
+            if (DurableFile.recover(resource)) {
+                System.err.println("Recovered an interrupted write to " + resource);
+            }
+        }
+    }
+
+    /**
+     * Loads the binary snapshot, and what has been appended to the text files since, if the
+     * text files still begin with what the snapshot was written from.
+     *
+     * @return the loaded system, or null if the text files have to be loaded instead
+     */
+    private static FlightBookingSystem loadSnapshot() {
+        if (!snapshot.isUpToDate()) {
+            return null;
+        }
+        try {
+            FlightBookingSystem fbs = new FlightBookingSystem();
+            snapshot.loadData(fbs);
+            return fbs;
+        } catch (IOException | FlightBookingSystemException | RuntimeException ex) {
+            System.err.println("Ignoring unreadable snapshot: " + ex.getMessage());
+            return null;
+        }
+    }
+
     /**
      * Stores the current state of the FlightBookingSystem into persistent storage.
-     * This method iterates over all registered DataManager instances, calling their storeData() method
-     * to persist the current state of the system.
+     * Each text data manager only writes what has changed since the last load or store, so the
+     * cost of a store depends on the number of changes rather than the size of the data: files
+     * with no dirty records are left alone and new records are appended. The binary snapshot is
+     * refreshed only when one of the text files had to be rewritten in full; after an append,
+     * start-up loads it and then parses just the appended records. Changes to flights in a
+     * departure partition are written to that partition first. Once every base file has
+     * been written the mutation journal is truncated, since its records are now part of the base files.
+     * Records still waiting in the {@link WriteBehindQueue} are written before anything else.
+     * The whole store holds the system's monitor and then the shared file lock, in the same order
+     * as commands, so it never overlaps a command or a compaction. Afterwards
+     * the {@link RecordIndex} of each text file that has one is brought up to date. If the data
+     * is kept in the record store, only the changed records are written to it instead.
      *
      * @param fbs The FlightBookingSystem instance whose data needs to be stored.
      * @throws IOException If an error occurs during file operations.
      * @throws URISyntaxException If a URI syntax exception occurs.
      */
     public static void store(FlightBookingSystem fbs) throws IOException, URISyntaxException {
-        for (DataManager dm: dataManagers ){
-            dm.storeData(fbs);
+        synchronized (fbs) {
+            writeBehind.flush();
+            if (usesRecordStore()) {
+                fileLock.lock();
+                try {
+                    getStoreData().storeData(fbs);
+                    fbs.clearRemovals();
+                    journal.truncate();
+                } finally {
+                    fileLock.unlock();
+                }
+                return;
+            }
+            fileLock.lock();
+            try {
+                partitions.storeChanges(fbs);
+                boolean rewritten = flightData.storeChanges(fbs);
+                rewritten |= customerData.storeChanges(fbs);
+                rewritten |= bookingData.storeChanges(fbs);
+                fbs.clearRemovals();
+                if (rewritten && !isLazyBookings()) {
+                    snapshot.storeData(fbs);
+                }
+                journal.truncate();
+            } finally {
+                fileLock.unlock();
+            }
         }
+        RecordIndex.update(FlightDataManager.RESOURCE);
+        RecordIndex.update(CustomerDataManager.RESOURCE);
+        RecordIndex.update(BookingDataManager.RESOURCE);
     }
 }
@@ -1,26 +1,74 @@
 package bcu.cmp5332.bookingsystem.data;
 
 import bcu.cmp5332.bookingsystem.main.FlightBookingSystemException;
+import bcu.cmp5332.bookingsystem.model.CodeTable;
 import bcu.cmp5332.bookingsystem.model.Flight;
 import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
-import java.io.File;
-import java.io.FileWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.nio.channels.Channels;
+import java.nio.file.Paths;
+import java.time.DateTimeException;
 import java.time.LocalDate;
-import java.util.Scanner;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Manages the loading and storing of flight data for the flight booking system.
  * This class reads flight data from a file and writes flight data to a file,
- * facilitating persistence of flight information across sessions.
+ * facilitating persistence of flight information across sessions. Flight numbers and airport
+ * codes are read through the shared {@link CodeTable}, so that a String is only created for
+ * each distinct value rather than for every line.
  * 
  * @author Sugam Adhikari
  * @author Prasansha Tamang
  */
 public class FlightDataManager implements DataManager {
     
-    private final String RESOURCE = "./resources/data/flights.txt";
+    /** The default path to the flight data file. */
+    public static final String RESOURCE = "./resources/data/flights.txt";
+
+    private static final CodeTable CODES = CodeTable.getInstance();
+
+    private final String resource;
+    private Quarantine quarantine;
+
+    /**
+     * Creates a data manager for the default flight data file.
+     */
+    public FlightDataManager() {
+        this(RESOURCE);
+    }
+
+    /**
+     * Creates a data manager for the given flight data file.
+     *
+     * @param resource the path to the flight data file
+     */
+    public FlightDataManager(String resource) {
+        this.resource = resource;
+    }
+
+    /**
+     * Sets the quarantine that damaged flight records are handed to on load, instead of the
+     * load failing. It is committed by the caller once the file has been read.
+     *
+     * @param quarantine the quarantine, or null to fail on a record that cannot be parsed
+     */
+    public void setQuarantine(Quarantine quarantine) {
+        this.quarantine = quarantine;
+    }
+
+    /**
+     * Returns the quarantine damaged flight records are handed to.
+     *
+     * @return the quarantine, or null if there is none
+     */
+    public Quarantine getQuarantine() {
+        return quarantine;
+    }
 
      /**
      * Loads flight data from the specified resource file into the given FlightBookingSystem instance.
@@ -33,53 +81,191 @@ public class FlightDataManager implements DataManager {
      */
     @Override
     public void loadData(FlightBookingSystem fbs) throws IOException, FlightBookingSystemException {
-        try (Scanner sc = new Scanner(new File(RESOURCE))) {
-            int line_idx = 1;
-            while (sc.hasNextLine()) {
-                String line = sc.nextLine();
-                String[] properties = line.split(SEPARATOR, -1);
-                try {
-                    int id = Integer.parseInt(properties[0]);
-                    String flightNumber = properties[1];
-                    String origin = properties[2];
-                    String destination = properties[3];
-                    LocalDate departureDate = LocalDate.parse(properties[4]);
-                    int numberOfSeats = Integer.parseInt(properties[5]);
-                    double price = Double.parseDouble(properties[6]);
-                    boolean deleted = "deleted".equalsIgnoreCase(properties[7]); // Check if the flight is marked as deleted
-
-                    Flight flight = new Flight(id, flightNumber, origin, destination, departureDate, numberOfSeats, price, deleted);
-                    fbs.addFlight(flight);
-                } catch (NumberFormatException ex) {
-                    throw new FlightBookingSystemException("Unable to parse flight id " + properties[0] + " on line " + line_idx
-                        + "\nError: " + ex);
+        for (Flight flight : parseData()) {
+            fbs.addFlight(flight);
+        }
+    }
+
+    /**
+     * Parses every flight in the resource file without adding them to a FlightBookingSystem.
+     * This method does not touch any shared state, so it can run on a worker thread while
+     * other data files are being parsed.
+     *
+     * @return the flights in file order, keeping only the last record for each flight ID
+     * @throws IOException If an error occurs during file reading.
+     * @throws FlightBookingSystemException If a line cannot be parsed, such as an invalid flight ID.
+     */
+    public List<Flight> parseData() throws IOException, FlightBookingSystemException {
+        try (RecordReader reader = new RecordReader(Paths.get(resource))) {
+            reader.setQuarantine(quarantine);
+            return parseFlights(reader);
+        }
+    }
+
+    /**
+     * Parses every flight remaining in a reader.
+     *
+     * @param reader the reader over flight records
+     * @return the flights in reader order, keeping only the last record for each flight ID
+     * @throws IOException If an error occurs during reading.
+     * @throws FlightBookingSystemException If a line cannot be parsed, such as an invalid flight ID,
+     *         and the reader has no quarantine to hand it to.
+     */
+    static List<Flight> parseFlights(RecordReader reader) throws IOException, FlightBookingSystemException {
+        Map<Integer, Flight> flights = new LinkedHashMap<>();
+        while (reader.nextRecord()) {
+            try {
+                Flight flight = parseFlight(reader);
+                flights.put(flight.getId(), flight); // A later record for the same flight supersedes an earlier one
+            } catch (NumberFormatException ex) {
+                if (!reader.reject(ex.getMessage())) {
+                    throw new FlightBookingSystemException("Unable to parse flight \"" + reader.getLine() + "\" on line "
+                        + reader.getLineNumber() + "\nError: " + ex);
+                }
+            } catch (DateTimeException ex) {
+                if (!reader.reject(ex.getMessage())) {
+                    throw ex;
                 }
-                line_idx++;
             }
         }
+        return new ArrayList<>(flights.values());
+    }
+
+    /**
+     * Parses the flight on the reader's current line.
+     *
+     * @param reader a reader positioned on a flight record
+     * @return the flight, marked as persisted
+     * @throws NumberFormatException if a numeric or date field is invalid
+     */
+    static Flight parseFlight(RecordReader reader) {
+        int id = reader.nextInt();
+        String flightNumber = reader.nextString(CODES);
+        String origin = reader.nextString(CODES);
+        String destination = reader.nextString(CODES);
+        LocalDate departureDate = reader.nextDate();
+        int numberOfSeats = reader.nextInt();
+        double price = reader.nextDouble();
+        boolean deleted = reader.nextFieldEqualsIgnoreCase("deleted"); // Check if the flight is marked as deleted
+
+        Flight flight = new Flight(id, flightNumber, origin, destination, departureDate, numberOfSeats, price, deleted);
+        flight.markPersisted();
+        return flight;
     }
     
     /**
      * Stores flight data from the given FlightBookingSystem instance into the specified resource file.
-     * This method iterates through all flights, writing each flight's details to the file.
+     * Only flights that have changed since the file was last loaded or written are stored:
+     * nothing is written if no flight is dirty, new flights are appended to the end of the file,
+     * and the file is only rewritten in full when a stored flight has been modified or removed.
+     * Flights that belong to a departure-month partition are left to {@link DeparturePartitions}.
      *
      * @param fbs The FlightBookingSystem instance whose flight data needs to be stored.
      * @throws IOException If an error occurs during file writing.
      */
     @Override
     public void storeData(FlightBookingSystem fbs) throws IOException {
-        try (PrintWriter out = new PrintWriter(new FileWriter(RESOURCE))) {
-            for (Flight flight : fbs.getFlights()) {
-                out.print(flight.getId() + SEPARATOR);
-                out.print(flight.getFlightNumber() + SEPARATOR);
-                out.print(flight.getOrigin() + SEPARATOR);
-                out.print(flight.getDestination() + SEPARATOR);
-                out.print(flight.getDepartureDate() + SEPARATOR);
-                out.print(flight.getNumberOfSeats() + SEPARATOR);
-                out.print(flight.getPrice() + SEPARATOR);
-                out.print(flight.isDeleted() ? "deleted" : "" +  SEPARATOR); // Store 'deleted' status
-                out.println();
+        storeChanges(fbs);
+    }
+
+    /**
+     * Stores the flights that have changed, as described for {@link #storeData}.
+     *
+     * @param fbs The FlightBookingSystem instance whose flight data needs to be stored.
+     * @return true if the whole file was rewritten, false if it was appended to or left alone
+     * @throws IOException If an error occurs during file writing.
+     */
+    boolean storeChanges(FlightBookingSystem fbs) throws IOException {
+        boolean rewrite = fbs.hasRemovedFlights();
+        List<Flight> added = new ArrayList<>();
+        for (Flight flight : fbs.getFlights()) {
+            if (flight.isDirty() && !fbs.isArchived(flight.getId())) {
+                if (flight.isPersisted()) {
+                    rewrite = true;
+                    break;
+                }
+                added.add(flight);
+            }
+        }
+        if (rewrite) {
+            rewrite(fbs);
+        } else if (!added.isEmpty()) {
+            write(added, true);
+        }
+        return rewrite;
+    }
+
+    /**
+     * Rewrites the whole file from the given system, whether or not anything has changed.
+     *
+     * @param fbs The FlightBookingSystem instance whose flight data needs to be stored.
+     * @throws IOException If an error occurs during file writing.
+     */
+    void rewrite(FlightBookingSystem fbs) throws IOException {
+        List<Flight> current = new ArrayList<>();
+        for (Flight flight : fbs.getFlights()) {
+            if (!fbs.isArchived(flight.getId())) {
+                current.add(flight);
+            }
+        }
+        write(current, false);
+    }
+
+    /**
+     * Writes the given flights through {@link DurableFile}, so that a crash part-way through leaves
+     * the previous contents of the file in place. Each record is encoded and framed by a
+     * {@link RecordWriter}.
+     *
+     * @param flights the flights to write
+     * @param append  true to append them to the file, false to replace the file with them
+     * @throws IOException If an error occurs during file writing.
+     */
+    void write(List<Flight> flights, boolean append) throws IOException {
+        DurableFile.RecordContent content = out -> {
+            for (Flight flight : flights) {
+                print(out, flight);
             }
+        };
+        if (append) {
+            DurableFile.appendRecords(resource, content);
+        } else {
+            DurableFile.replaceRecords(resource, content);
+        }
+        for (Flight flight : flights) {
+            flight.markPersisted();
+        }
+    }
+
+    /**
+     * Encodes a single flight as one framed line of the flight data file, with its line
+     * separator, exactly as {@link #storeData} would write it, so that it can be queued on the
+     * {@link WriteBehindQueue}.
+     *
+     * @param flight the flight to encode
+     * @return the encoded line
+     * @throws IOException if the record cannot be encoded
+     */
+    public static byte[] encode(Flight flight) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(96);
+        try (RecordWriter writer = new RecordWriter(Channels.newChannel(bytes))) {
+            print(writer, flight);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void print(RecordWriter writer, Flight flight) throws IOException {
+        writer.field(flight.getId())
+                .field(flight.getFlightNumber())
+                .field(flight.getOrigin())
+                .field(flight.getDestination())
+                .field(flight.getDepartureDate())
+                .field(flight.getNumberOfSeats())
+                .field(flight.getPrice());
+        if (flight.isDeleted()) {
+            writer.field("deleted"); // Store 'deleted' status
+        } else {
+            writer.field("").field("");
         }
+        writer.endRecord();
     }
 }
@@ -0,0 +1,268 @@
+package bcu.cmp5332.bookingsystem.data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Makes appended records durable in groups so that many concurrent writers share one fsync.
+ * <p>
+ * Writers hand their encoded record to {@link #commit(byte[])}, which blocks until the record
+ * has been written and forced to disk. A single background thread collects the records that
+ * arrive within the commit window (or until the maximum batch size is reached), writes them with
+ * one gathering write and then calls {@link FileChannel#force(boolean)} once for the whole batch.
+ * </p>
+ * <p>
+ * The window and batch size can be tuned with the {@code bookingsystem.groupcommit.windowMillis}
+ * and {@code bookingsystem.groupcommit.maxBatch} system properties. At most
+ * {@code bookingsystem.groupcommit.capacity} records wait to be written; once that many are
+ * queued, {@link #submit} waits for the commit thread to catch up. Setting
+ * {@code bookingsystem.groupcommit.trace} to {@code true} prints the size and latency of every
+ * batch to standard error.
+ * </p>
+ *
+ * @author Sugam Adhikari
+ * @author Prasansha Tamang
+ */
+public class GroupCommitter {
+
+    /** The default time a batch is held open waiting for more records, in milliseconds. */
+    public static final long DEFAULT_WINDOW_MILLIS = 2;
+
+    /** The default maximum number of records forced together. */
+    public static final int DEFAULT_MAX_BATCH = 256;
+
+    /** The default maximum number of records waiting to be written. */
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    /**
+     * Receives a callback after every batch has been made durable.
+     */
+    public interface BatchListener {
+        /**
+         * Called on the commit thread after a batch has been forced to disk.
+         *
+         * @param batchSize    the number of records in the batch
+         * @param latencyNanos the time from the first record being submitted to the batch being durable
+         */
+        void batchCommitted(int batchSize, long latencyNanos);
+    }
+
+    private static final PendingWrite SHUTDOWN = new PendingWrite(new byte[0]);
+
+    private final FileChannel channel;
+    private final long windowNanos;
+    private final int maxBatch;
+    private final BlockingQueue<PendingWrite> queue = new LinkedBlockingQueue<>(
+            Math.max(1, Integer.getInteger("bookingsystem.groupcommit.capacity", DEFAULT_CAPACITY)));
+    private final Thread thread;
+    private volatile BatchListener listener;
+
+    private long batches;
+    private long records;
+    private long totalLatencyNanos;
+    private long maxLatencyNanos;
+    private int largestBatch;
+
+    /**
+     * Creates a group committer for the given channel using the window and batch size
+     * configured through system properties.
+     *
+     * @param channel the channel records are appended to
+     */
+    public GroupCommitter(FileChannel channel) {
+        this(channel, Long.getLong("bookingsystem.groupcommit.windowMillis", DEFAULT_WINDOW_MILLIS),
+                Integer.getInteger("bookingsystem.groupcommit.maxBatch", DEFAULT_MAX_BATCH));
+    }
+
+    /**
+     * Creates a group committer for the given channel.
+     *
+     * @param channel      the channel records are appended to
+     * @param windowMillis how long a batch waits for more records after the first one arrives
+     * @param maxBatch     the maximum number of records written and forced together
+     */
+    public GroupCommitter(FileChannel channel, long windowMillis, int maxBatch) {
+        if (maxBatch < 1) {
+            throw new IllegalArgumentException("Batch size should be higher than 0");
+        }
+        this.channel = channel;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.maxBatch = maxBatch;
+        if (Boolean.getBoolean("bookingsystem.groupcommit.trace")) {
+            this.listener = (size, latency) -> System.err.printf("group commit: %d record(s) in %.3f ms%n",
+                    size, latency / 1_000_000.0);
+        }
+        this.thread = new Thread(this::run, "group-commit");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Sets the listener notified after every batch, replacing any existing one.
+     *
+     * @param listener the listener, or null to remove it
+     */
+    public void setBatchListener(BatchListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Queues a record to be appended and returns a future that completes once the
+     * record is durable on disk.
+     *
+     * @param record the encoded record
+     * @return a future completed when the batch containing the record has been forced
+     */
+    public CompletableFuture<Void> submit(byte[] record) {
+        PendingWrite write = new PendingWrite(record);
+        try {
+            queue.put(write);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            write.future.completeExceptionally(new IOException("Interrupted while queueing a record", ex));
+        }
+        return write.future;
+    }
+
+    /**
+     * Appends a record and waits until it is durable on disk.
+     *
+     * @param record the encoded record
+     * @throws IOException if the record could not be written or forced
+     */
+    public void commit(byte[] record) throws IOException {
+        try {
+            submit(record).get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for group commit", ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        }
+    }
+
+    private void run() {
+        List<PendingWrite> batch = new ArrayList<>(maxBatch);
+        boolean running = true;
+        while (running) {
+            try {
+                PendingWrite first = queue.take();
+                if (first == SHUTDOWN) {
+                    break;
+                }
+                batch.add(first);
+                long deadline = first.submitted + windowNanos;
+                while (batch.size() < maxBatch) {
+                    PendingWrite next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    if (next == SHUTDOWN) {
+                        running = false;
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException ex) {
+                running = false;
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<PendingWrite> batch) {
+        ByteBuffer[] buffers = new ByteBuffer[batch.size()];
+        long remaining = 0;
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = ByteBuffer.wrap(batch.get(i).record);
+            remaining += buffers[i].remaining();
+        }
+        try {
+            while (remaining > 0) {
+                remaining -= channel.write(buffers);
+            }
+            channel.force(false);
+        } catch (IOException ex) {
+            for (PendingWrite write : batch) {
+                write.future.completeExceptionally(ex);
+            }
+            return;
+        }
+        long latency = System.nanoTime() - batch.get(0).submitted;
+        synchronized (this) {
+            batches++;
+            records += batch.size();
+            totalLatencyNanos += latency;
+            maxLatencyNanos = Math.max(maxLatencyNanos, latency);
+            largestBatch = Math.max(largestBatch, batch.size());
+        }
+        for (PendingWrite write : batch) {
+            write.future.complete(null);
+        }
+        BatchListener current = listener;
+        if (current != null) {
+            current.batchCommitted(batch.size(), latency);
+        }
+    }
+
+    /**
+     * Returns a one-line summary of the batches committed so far.
+     *
+     * @return the number of batches and records, and the average and worst batch latency
+     */
+    public synchronized String getStatistics() {
+        double avgSize = batches == 0 ? 0 : (double) records / batches;
+        double avgLatency = batches == 0 ? 0 : totalLatencyNanos / (batches * 1_000_000.0);
+        return String.format("%d batch(es), %d record(s), avg %.1f / max %d records per batch, "
+                + "avg %.3f ms / max %.3f ms latency", batches, records, avgSize, largestBatch,
+                avgLatency, maxLatencyNanos / 1_000_000.0);
+    }
+
+    /**
+     * Flushes any queued records and stops the commit thread. The channel itself is left open.
+     */
+    public void shutdown() {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(SHUTDOWN);
+                break;
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException ex) {
+            interrupted = true;
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * A record waiting to be committed.
+     */
+    private static final class PendingWrite {
+        private final byte[] record;
+        private final long submitted = System.nanoTime();
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        private PendingWrite(byte[] record) {
+            this.record = record;
+        }
+    }
+}
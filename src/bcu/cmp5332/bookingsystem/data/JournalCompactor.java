@@ -0,0 +1,559 @@
+package bcu.cmp5332.bookingsystem.data;
+
+import bcu.cmp5332.bookingsystem.main.FlightBookingSystemException;
+import bcu.cmp5332.bookingsystem.model.Booking;
+import bcu.cmp5332.bookingsystem.model.Customer;
+import bcu.cmp5332.bookingsystem.model.Flight;
+import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Folds the sealed segments of the {@link MutationJournal} into fresh, compact base files on a
+ * background thread.
+ * <p>
+ * A compaction rotates the journal, loads the base text files into a private
+ * FlightBookingSystem, replays the sealed segments over it and writes the result to staging
+ * files next to the base files, together with a new binary snapshot. Superseded records
+ * disappear in the process: a booking created and later cancelled becomes a single record, a
+ * soft delete becomes a flag on its entity, and duplicate records for the same ID collapse into
+ * the last one. None of this holds any lock that commands use, so commands keep running.
+ * Mutations of flights in a {@link DeparturePartitions departure partition} are written to
+ * that partition once the staged files have been installed.
+ * </p>
+ * <p>
+ * Only installing the staged files takes the shared file lock, and the monitor of the
+ * {@link #setSystem live system} before it, in the same order as commands. If a base file or the
+ * set of segments changed while the staged files were being built (because a command appended
+ * to a base file, or the system was stored), the staged files are thrown away and the
+ * compaction is retried; the last attempt holds both locks throughout so that it always
+ * finishes. The live records the installed files now hold are marked as persisted at the same
+ * time, so that they are not appended again by the next store.
+ * </p>
+ * <p>
+ * A compaction is started when the journal reaches {@code bookingsystem.compaction.minBytes}
+ * bytes, or when it has held records for {@code bookingsystem.compaction.maxAgeSeconds} seconds.
+ * The journal is checked every {@code bookingsystem.compaction.checkSeconds} seconds. The
+ * compactor is not started if {@code bookingsystem.compaction.enabled} is {@code false}, or if
+ * the data is kept in the record store. Setting
+ * {@code bookingsystem.compaction.trace} to {@code true} prints every compaction to standard error.
+ * </p>
+ *
+ * @author Sugam Adhikari
+ * @author Prasansha Tamang
+ */
+public class JournalCompactor {
+
+    /** The default journal size that triggers a compaction, in bytes. */
+    public static final long DEFAULT_MIN_BYTES = 1024 * 1024;
+
+    /** The default time the journal may hold records before it is compacted, in seconds. */
+    public static final long DEFAULT_MAX_AGE_SECONDS = 600;
+
+    /** The default interval between checks of the trigger, in seconds. */
+    public static final long DEFAULT_CHECK_SECONDS = 30;
+
+    private static final String STAGED_SUFFIX = ".compact";
+    private static final int UNLOCKED_ATTEMPTS = 2;
+
+    /**
+     * Receives a callback after every compaction.
+     */
+    public interface CompactionListener {
+        /**
+         * Called on the compacting thread after the compacted files have been installed.
+         *
+         * @param bytesBefore    the size of the base text files and folded segments before compacting
+         * @param bytesAfter     the size of the compacted base text files
+         * @param recordsFolded  the number of journal records that changed the base data
+         * @param durationMillis the time the compaction took
+         */
+        void compacted(long bytesBefore, long bytesAfter, int recordsFolded, long durationMillis);
+    }
+
+    private final MutationJournal journal;
+    private final String[] baseResources;
+    private final String snapshotResource;
+    private final Lock fileLock;
+    private final long minBytes;
+    private final long maxAgeMillis;
+    private final long checkMillis;
+    private final Object compactionLock = new Object();
+    private volatile CompactionListener listener;
+    private volatile DeparturePartitions partitions;
+    private volatile FlightBookingSystem system;
+
+    private ScheduledExecutorService scheduler;
+    private long pendingSince = -1;
+
+    private long compactions;
+    private long retries;
+    private long recordsFolded;
+    private long bytesReclaimed;
+    private long lastBytesBefore;
+    private long lastBytesAfter;
+    private long lastDurationMillis;
+
+    /**
+     * Creates a compactor using the trigger configured through system properties.
+     *
+     * @param journal           the journal to compact
+     * @param flightsResource   the path of the flight data file
+     * @param customersResource the path of the customer data file
+     * @param bookingsResource  the path of the booking data file
+     * @param snapshotResource  the path of the binary snapshot
+     * @param fileLock          the lock held by anything that writes to the base files
+     */
+    public JournalCompactor(MutationJournal journal, String flightsResource, String customersResource,
+            String bookingsResource, String snapshotResource, Lock fileLock) {
+        this(journal, flightsResource, customersResource, bookingsResource, snapshotResource, fileLock,
+                Long.getLong("bookingsystem.compaction.minBytes", DEFAULT_MIN_BYTES),
+                TimeUnit.SECONDS.toMillis(Long.getLong("bookingsystem.compaction.maxAgeSeconds", DEFAULT_MAX_AGE_SECONDS)),
+                TimeUnit.SECONDS.toMillis(Long.getLong("bookingsystem.compaction.checkSeconds", DEFAULT_CHECK_SECONDS)));
+    }
+
+    /**
+     * Creates a compactor.
+     *
+     * @param journal           the journal to compact
+     * @param flightsResource   the path of the flight data file
+     * @param customersResource the path of the customer data file
+     * @param bookingsResource  the path of the booking data file
+     * @param snapshotResource  the path of the binary snapshot
+     * @param fileLock          the lock held by anything that writes to the base files
+     * @param minBytes          the journal size that triggers a compaction
+     * @param maxAgeMillis      how long the journal may hold records before it is compacted
+     * @param checkMillis       the interval between checks of the trigger
+     */
+    public JournalCompactor(MutationJournal journal, String flightsResource, String customersResource,
+            String bookingsResource, String snapshotResource, Lock fileLock,
+            long minBytes, long maxAgeMillis, long checkMillis) {
+        if (checkMillis < 1) {
+            throw new IllegalArgumentException("Check interval should be higher than 0");
+        }
+        this.journal = journal;
+        this.baseResources = new String[] {flightsResource, customersResource, bookingsResource};
+        this.snapshotResource = snapshotResource;
+        this.fileLock = fileLock;
+        this.minBytes = minBytes;
+        this.maxAgeMillis = maxAgeMillis;
+        this.checkMillis = checkMillis;
+        if (Boolean.getBoolean("bookingsystem.compaction.trace")) {
+            this.listener = (before, after, folded, millis) -> System.err.printf(
+                    "compaction: %d record(s) folded, %d -> %d bytes in %d ms%n", folded, before, after, millis);
+        }
+    }
+
+    /**
+     * Sets the listener notified after every compaction, replacing any existing one.
+     *
+     * @param listener the listener, or null to remove it
+     */
+    public void setCompactionListener(CompactionListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Sets the departure partitions holding the flights that are no longer in the base files.
+     *
+     * @param partitions the partitions, or null if flights are not partitioned
+     */
+    public void setPartitions(DeparturePartitions partitions) {
+        this.partitions = partitions;
+    }
+
+    /**
+     * Sets the live system whose journal is compacted. Once the compacted files are installed,
+     * the records they now hold are marked as persisted in the live system, so that the next
+     * store does not append them to the base files a second time.
+     *
+     * @param system the live system, or null to leave its records dirty
+     */
+    public void setSystem(FlightBookingSystem system) {
+        this.system = system;
+    }
+
+    /**
+     * Starts checking the trigger on a background thread. Calling this again has no effect.
+     */
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "journal-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::check, checkMillis, checkMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the background thread, waiting for a compaction in progress to finish.
+     */
+    public void stop() {
+        ScheduledExecutorService current;
+        synchronized (this) {
+            current = scheduler;
+            scheduler = null;
+        }
+        if (current != null) {
+            current.shutdown();
+            try {
+                current.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void check() {
+        try {
+            compactIfNeeded();
+        } catch (IOException | FlightBookingSystemException | RuntimeException ex) {
+            // Keep the schedule alive; the next check retries.
+            System.err.println("Journal compaction failed: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Compacts the journal if it has reached the size or age trigger.
+     *
+     * @return true if a compaction ran
+     * @throws IOException if a data file cannot be read or written
+     * @throws FlightBookingSystemException if a base file contains invalid data
+     */
+    public boolean compactIfNeeded() throws IOException, FlightBookingSystemException {
+        synchronized (compactionLock) {
+            long size = journal.size();
+            if (size == 0) {
+                pendingSince = -1;
+                return false;
+            }
+            long now = System.currentTimeMillis();
+            if (pendingSince < 0) {
+                pendingSince = now;
+            }
+            if (size < minBytes && now - pendingSince < maxAgeMillis) {
+                return false;
+            }
+            compact();
+            pendingSince = -1;
+            return true;
+        }
+    }
+
+    /**
+     * Rotates the journal and folds every sealed segment into new base files. Any
+     * {@link RecordIndex} kept next to a base file is then rebuilt for the new file, after the
+     * shared file lock has been released.
+     *
+     * @return true if there was anything to fold
+     * @throws IOException if a data file cannot be read or written
+     * @throws FlightBookingSystemException if a base file contains invalid data
+     */
+    public boolean compact() throws IOException, FlightBookingSystemException {
+        synchronized (compactionLock) {
+            boolean compacted = compact(System.nanoTime());
+            if (compacted) {
+                for (String resource : baseResources) {
+                    RecordIndex.update(resource);
+                }
+            }
+            return compacted;
+        }
+    }
+
+    private boolean compact(long started) throws IOException, FlightBookingSystemException {
+        journal.rotate();
+        for (int attempt = 0; ; attempt++) {
+            Boolean compacted;
+            if (attempt >= UNLOCKED_ATTEMPTS) {
+                synchronized (systemMonitor()) {
+                    fileLock.lock();
+                    try {
+                        compacted = attempt(started, true);
+                    } finally {
+                        fileLock.unlock();
+                    }
+                }
+            } else {
+                compacted = attempt(started, false);
+            }
+            if (compacted != null) {
+                return compacted;
+            }
+            countRetry();
+        }
+    }
+
+    /**
+     * Folds the sealed segments and installs the result. Unless the locks are already held,
+     * the fold runs without them and they are only taken to install.
+     *
+     * @return whether there was anything to fold, or null if a base file or segment changed
+     *         and the compaction has to be retried
+     */
+    private Boolean attempt(long started, boolean locked) throws IOException, FlightBookingSystemException {
+        discardStaged();
+        List<Path> segments = journal.getSealedSegments();
+        if (segments.isEmpty()) {
+            return false;
+        }
+        String fingerprint = fingerprint(segments);
+        long bytesBefore = baseSize();
+        for (Path segment : segments) {
+            bytesBefore += segment.toFile().length();
+        }
+        FlightBookingSystem fbs = new FlightBookingSystem();
+        int folded;
+        try {
+            folded = foldAndStage(segments, fbs);
+        } catch (IOException | FlightBookingSystemException | RuntimeException ex) {
+            // A base file replaced while it was being read looks corrupt; only
+            // trust the failure if nothing changed underneath.
+            if (locked || fingerprint.equals(fingerprint(segments))) {
+                throw ex;
+            }
+            return null;
+        }
+        if (locked) {
+            return install(started, segments, fingerprint, fbs, folded, bytesBefore);
+        }
+        synchronized (systemMonitor()) {
+            fileLock.lock();
+            try {
+                return install(started, segments, fingerprint, fbs, folded, bytesBefore);
+            } finally {
+                fileLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Installs the staged files if nothing has changed since they were built, while holding the
+     * live system's monitor and the shared file lock.
+     *
+     * @return true, or null if a base file or segment changed and the compaction has to be retried
+     */
+    private Boolean install(long started, List<Path> segments, String fingerprint, FlightBookingSystem fbs,
+            int folded, long bytesBefore) throws IOException {
+        if (!fingerprint.equals(fingerprint(segments))) {
+            return null;
+        }
+        installStaged();
+        markFolded(fbs);
+        DeparturePartitions current = partitions;
+        if (current != null) {
+            current.storeChanges(fbs);
+        }
+        journal.discard(segments);
+        long bytesAfter = baseSize();
+        long durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        synchronized (this) {
+            compactions++;
+            recordsFolded += folded;
+            bytesReclaimed += bytesBefore - bytesAfter;
+            lastBytesBefore = bytesBefore;
+            lastBytesAfter = bytesAfter;
+            lastDurationMillis = durationMillis;
+        }
+        CompactionListener notified = listener;
+        if (notified != null) {
+            notified.compacted(bytesBefore, bytesAfter, folded, durationMillis);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the monitor of the live system, which commands hold while they change it and which
+     * is taken before the file lock, or the compactor's own lock if no system has been set.
+     */
+    private Object systemMonitor() {
+        FlightBookingSystem current = system;
+        return current != null ? current : compactionLock;
+    }
+
+    /**
+     * Marks the flights, customers and bookings of the live system that the installed base files
+     * now hold exactly as they are as persisted, so that the next store does not write them
+     * again. A record changed again since its segment was sealed stays dirty, and so do records
+     * that the base files leave to a departure partition; a booking that changed again is
+     * rewritten by the next store rather than appended after its folded record.
+     */
+    private void markFolded(FlightBookingSystem folded) {
+        FlightBookingSystem live = system;
+        if (live == null) {
+            return;
+        }
+        Map<Integer, Flight> flights = new HashMap<>();
+        for (Flight flight : folded.getFlights()) {
+            if (!folded.isArchived(flight.getId())) {
+                flights.put(flight.getId(), flight);
+            }
+        }
+        for (Flight flight : live.getFlights()) {
+            Flight stored = flights.get(flight.getId());
+            if (flight.isDirty() && stored != null && !live.isArchived(flight.getId()) && same(flight, stored)) {
+                flight.markPersisted();
+            }
+        }
+        for (Customer customer : live.getAllCustomers()) {
+            Customer stored = find(folded, customer.getId());
+            if (stored == null) {
+                continue;
+            }
+            if (customer.isDirty() && same(customer, stored)) {
+                customer.markPersisted();
+            }
+            if (!customer.isBookingsLoaded()) {
+                continue; // Bookings that have not been read cannot be dirty
+            }
+            for (Booking booking : customer.getBookings()) {
+                int flightId = booking.getFlight().getId();
+                if (!booking.isDirty() || live.isArchived(flightId) || folded.isArchived(flightId)) {
+                    continue;
+                }
+                for (Booking storedBooking : stored.getBookings()) {
+                    if (storedBooking.getId() == booking.getId()) {
+                        if (same(booking, storedBooking)) {
+                            booking.markPersisted();
+                        } else {
+                            booking.markRecordOutdated();
+                        }
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    private static Customer find(FlightBookingSystem fbs, int customerId) {
+        try {
+            return fbs.getCustomerByID(customerId);
+        } catch (FlightBookingSystemException ex) {
+            return null;
+        }
+    }
+
+    private static boolean same(Flight a, Flight b) {
+        return Objects.equals(a.getFlightNumber(), b.getFlightNumber())
+                && Objects.equals(a.getOrigin(), b.getOrigin())
+                && Objects.equals(a.getDestination(), b.getDestination())
+                && Objects.equals(a.getDepartureDate(), b.getDepartureDate())
+                && a.getNumberOfSeats() == b.getNumberOfSeats()
+                && Double.compare(a.getPrice(), b.getPrice()) == 0
+                && a.isDeleted() == b.isDeleted();
+    }
+
+    private static boolean same(Customer a, Customer b) {
+        return Objects.equals(a.getName(), b.getName())
+                && Objects.equals(a.getPhone(), b.getPhone())
+                && Objects.equals(a.getEmail(), b.getEmail())
+                && a.isDeleted() == b.isDeleted();
+    }
+
+    private static boolean same(Booking a, Booking b) {
+        return a.getCustomer().getId() == b.getCustomer().getId()
+                && a.getFlight().getId() == b.getFlight().getId()
+                && Objects.equals(a.getBookingDate(), b.getBookingDate())
+                && Double.compare(a.getPrice(), b.getPrice()) == 0
+                && a.isCancelled() == b.isCancelled();
+    }
+
+    private synchronized void countRetry() {
+        retries++;
+    }
+
+    /**
+     * Loads the base files into the given private system, replays the sealed segments over it
+     * and writes the result to the staging files.
+     */
+    private int foldAndStage(List<Path> segments, FlightBookingSystem fbs)
+            throws IOException, FlightBookingSystemException {
+        FlightDataManager flights = new FlightDataManager(baseResources[0]);
+        CustomerDataManager customers = new CustomerDataManager(baseResources[1]);
+        BookingDataManager bookings = new BookingDataManager(baseResources[2]);
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        new ParallelLoader(flights, customers, bookings, baseResources[2], threads).load(fbs);
+        DeparturePartitions current = partitions;
+        if (current != null) {
+            current.register(fbs);
+        }
+        int folded = journal.replay(fbs, segments);
+
+        new FlightDataManager(baseResources[0] + STAGED_SUFFIX).rewrite(fbs);
+        new CustomerDataManager(baseResources[1] + STAGED_SUFFIX).rewrite(fbs);
+        new BookingDataManager(baseResources[2] + STAGED_SUFFIX).rewrite(fbs);
+        new SnapshotDataManager(snapshotResource + STAGED_SUFFIX, baseResources[0] + STAGED_SUFFIX,
+                baseResources[1] + STAGED_SUFFIX, baseResources[2] + STAGED_SUFFIX).storeData(fbs);
+        return folded;
+    }
+
+    /**
+     * Moves the staged files over the base files. The staged snapshot records the checksums
+     * of the staged text files, so it matches the base files once they are all installed.
+     */
+    private void installStaged() throws IOException {
+        for (String resource : baseResources) {
+            DurableFile.install(resource + STAGED_SUFFIX, resource);
+        }
+        DurableFile.install(snapshotResource + STAGED_SUFFIX, snapshotResource);
+    }
+
+    private void discardStaged() throws IOException {
+        for (String resource : baseResources) {
+            DurableFile.recover(resource + STAGED_SUFFIX);
+            Files.deleteIfExists(Paths.get(resource + STAGED_SUFFIX));
+        }
+        DurableFile.recover(snapshotResource + STAGED_SUFFIX);
+        Files.deleteIfExists(Paths.get(snapshotResource + STAGED_SUFFIX));
+    }
+
+    /**
+     * Describes the current state of the base files and segments, so that a change made while
+     * a compaction was being prepared can be detected.
+     */
+    private String fingerprint(List<Path> segments) {
+        StringBuilder sb = new StringBuilder();
+        for (String resource : baseResources) {
+            File file = new File(resource);
+            sb.append(file.length()).append('@').append(file.lastModified()).append(';');
+        }
+        for (Path segment : segments) {
+            sb.append(segment.getFileName()).append('=').append(segment.toFile().exists()).append(';');
+        }
+        return sb.toString();
+    }
+
+    private long baseSize() {
+        long size = 0;
+        for (String resource : baseResources) {
+            size += new File(resource).length();
+        }
+        return size;
+    }
+
+    /**
+     * Returns a one-line summary of the compactions run so far.
+     *
+     * @return the number of compactions, records folded and bytes reclaimed, and the last run
+     */
+    public synchronized String getStatistics() {
+        return String.format("%d compaction(s), %d retry(ies), %d journal record(s) folded, "
+                + "%d bytes reclaimed; last run %d -> %d bytes in %d ms", compactions, retries,
+                recordsFolded, bytesReclaimed, lastBytesBefore, lastBytesAfter, lastDurationMillis);
+    }
+}
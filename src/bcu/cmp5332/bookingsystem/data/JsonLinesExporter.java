@@ -0,0 +1,408 @@
+package bcu.cmp5332.bookingsystem.data;
+
+import bcu.cmp5332.bookingsystem.main.FlightBookingSystemException;
+import bcu.cmp5332.bookingsystem.model.Booking;
+import bcu.cmp5332.bookingsystem.model.Customer;
+import bcu.cmp5332.bookingsystem.model.Flight;
+import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Exports bookings, flight manifests and customers as JSON Lines, one JSON object per line, for
+ * downstream systems.
+ * <p>
+ * Records are written as they are visited: each one is encoded into a reused line buffer and
+ * then as UTF-8 straight into a direct {@link ByteBuffer} that is written to a
+ * {@link FileChannel} whenever it fills up. No list of results is built, so the memory used
+ * does not grow with the size of the export. Bookings are visited customer by customer.
+ * </p>
+ * <p>
+ * The export can be limited to flights departing in a date range, to one route, and to active
+ * records only: flights and customers that are not deleted, and bookings that are not
+ * cancelled on flights and for customers that are not deleted. Only the partitions of past
+ * flights that can match the date range are loaded. When bookings are loaded lazily, exporting
+ * bookings or manifests reads every customer's bookings that is needed.
+ * </p>
+ *
+ * @author Sugam Adhikari
+ * @author Prasansha Tamang
+ */
+public class JsonLinesExporter {
+
+    /** The size of the buffer records are encoded into before they are written. */
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private LocalDate from;
+    private LocalDate to;
+    private String origin;
+    private String destination;
+    private boolean activeOnly;
+    private long bytesWritten;
+
+    /**
+     * Limits the export to flights departing between the given dates, inclusive.
+     *
+     * @param from the first departure date, or null for no lower limit
+     * @param to   the last departure date, or null for no upper limit
+     */
+    public void setDepartureRange(LocalDate from, LocalDate to) {
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * Limits the export to flights between the given airports. Customers are not limited.
+     *
+     * @param origin      the origin airport, or null for any
+     * @param destination the destination airport, or null for any
+     */
+    public void setRoute(String origin, String destination) {
+        this.origin = origin;
+        this.destination = destination;
+    }
+
+    /**
+     * Sets whether deleted flights and customers and cancelled bookings are left out.
+     *
+     * @param activeOnly true to export active records only
+     */
+    public void setActiveOnly(boolean activeOnly) {
+        this.activeOnly = activeOnly;
+    }
+
+    /**
+     * Returns the number of bytes written by the last export.
+     *
+     * @return the size of the last export file
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Writes one line per booking on a matching flight.
+     *
+     * @param fbs  the system to export
+     * @param file the file to write, replacing any existing file
+     * @return the number of bookings written
+     * @throws IOException if the file cannot be written
+     * @throws FlightBookingSystemException if a partition of past flights cannot be loaded
+     */
+    public long exportBookings(FlightBookingSystem fbs, Path file) throws IOException, FlightBookingSystemException {
+        loadPartitions(fbs);
+        long count = 0;
+        try (JsonOutput out = new JsonOutput(file)) {
+            for (Customer customer : fbs.getAllCustomers()) {
+                if (activeOnly && customer.isDeleted()) {
+                    continue;
+                }
+                for (Booking booking : customer.getBookings()) {
+                    Flight flight = booking.getFlight();
+                    if (!matches(flight) || (activeOnly && booking.isCancelled())) {
+                        continue;
+                    }
+                    out.beginObject();
+                    out.name("id").value(booking.getId());
+                    out.name("customerId").value(customer.getId());
+                    out.name("customerName").value(customer.getName());
+                    out.name("flightId").value(flight.getId());
+                    out.name("flightNumber").value(flight.getFlightNumber());
+                    out.name("origin").value(flight.getOrigin());
+                    out.name("destination").value(flight.getDestination());
+                    out.name("departureDate").value(flight.getDepartureDate().toString());
+                    out.name("bookingDate").value(booking.getBookingDate().toString());
+                    out.name("price").value(booking.getPrice());
+                    out.name("cancelled").value(booking.isCancelled());
+                    out.endObject();
+                    out.endLine();
+                    count++;
+                }
+            }
+            bytesWritten = out.finish();
+        }
+        return count;
+    }
+
+    /**
+     * Writes one line per matching flight, with the flight's passengers.
+     *
+     * @param fbs  the system to export
+     * @param file the file to write, replacing any existing file
+     * @return the number of flights written
+     * @throws IOException if the file cannot be written
+     * @throws FlightBookingSystemException if a partition of past flights cannot be loaded
+     */
+    public long exportManifests(FlightBookingSystem fbs, Path file) throws IOException, FlightBookingSystemException {
+        loadPartitions(fbs);
+        long count = 0;
+        try (JsonOutput out = new JsonOutput(file)) {
+            for (Flight flight : fbs.getFlights()) {
+                if (!matches(flight)) {
+                    continue;
+                }
+                fbs.loadPassengers(flight);
+                out.beginObject();
+                out.name("flightId").value(flight.getId());
+                out.name("flightNumber").value(flight.getFlightNumber());
+                out.name("origin").value(flight.getOrigin());
+                out.name("destination").value(flight.getDestination());
+                out.name("departureDate").value(flight.getDepartureDate().toString());
+                out.name("seats").value(flight.getNumberOfSeats());
+                out.name("price").value(flight.getPrice());
+                out.name("deleted").value(flight.isDeleted());
+                out.name("passengers").beginArray();
+                for (Customer passenger : flight.getPassengers()) {
+                    if (activeOnly && passenger.isDeleted()) {
+                        continue;
+                    }
+                    out.beginObject();
+                    out.name("customerId").value(passenger.getId());
+                    out.name("name").value(passenger.getName());
+                    out.name("phone").value(passenger.getPhone());
+                    out.name("email").value(passenger.getEmail());
+                    out.endObject();
+                }
+                out.endArray();
+                out.endObject();
+                out.endLine();
+                count++;
+            }
+            bytesWritten = out.finish();
+        }
+        return count;
+    }
+
+    /**
+     * Writes one line per customer. The date range and route do not apply to customers.
+     *
+     * @param fbs  the system to export
+     * @param file the file to write, replacing any existing file
+     * @return the number of customers written
+     * @throws IOException if the file cannot be written
+     */
+    public long exportCustomers(FlightBookingSystem fbs, Path file) throws IOException {
+        long count = 0;
+        try (JsonOutput out = new JsonOutput(file)) {
+            for (Customer customer : fbs.getAllCustomers()) {
+                if (activeOnly && customer.isDeleted()) {
+                    continue;
+                }
+                out.beginObject();
+                out.name("id").value(customer.getId());
+                out.name("name").value(customer.getName());
+                out.name("phone").value(customer.getPhone());
+                out.name("email").value(customer.getEmail());
+                out.name("deleted").value(customer.isDeleted());
+                out.endObject();
+                out.endLine();
+                count++;
+            }
+            bytesWritten = out.finish();
+        }
+        return count;
+    }
+
+    private boolean matches(Flight flight) {
+        LocalDate departure = flight.getDepartureDate();
+        return (from == null || !departure.isBefore(from))
+                && (to == null || !departure.isAfter(to))
+                && (origin == null || origin.equalsIgnoreCase(flight.getOrigin()))
+                && (destination == null || destination.equalsIgnoreCase(flight.getDestination()))
+                && !(activeOnly && flight.isDeleted());
+    }
+
+    /**
+     * Loads the partitions of past flights that can hold flights departing in the date range.
+     */
+    private void loadPartitions(FlightBookingSystem fbs) throws FlightBookingSystemException {
+        if (from == null || to == null) {
+            fbs.loadAllPartitions();
+            return;
+        }
+        List<YearMonth> months = new ArrayList<>();
+        for (YearMonth month = YearMonth.from(from); !month.isAfter(YearMonth.from(to)); month = month.plusMonths(1)) {
+            months.add(month);
+        }
+        fbs.loadPartitions(months);
+    }
+
+    /**
+     * Writes JSON values into a reused line buffer and encodes each finished line as UTF-8 into
+     * a direct buffer that is written to the file when it fills up.
+     */
+    private static final class JsonOutput implements Closeable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private final StringBuilder line = new StringBuilder(256);
+        private boolean first = true;
+        private long written;
+
+        private JsonOutput(Path file) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        private void separate() {
+            if (!first) {
+                line.append(',');
+            }
+            first = false;
+        }
+
+        private JsonOutput name(String name) {
+            separate();
+            string(name);
+            line.append(':');
+            first = true; // The value follows without a comma
+            return this;
+        }
+
+        private void beginObject() {
+            separate();
+            line.append('{');
+            first = true;
+        }
+
+        private void endObject() {
+            line.append('}');
+            first = false;
+        }
+
+        private void beginArray() {
+            separate();
+            line.append('[');
+            first = true;
+        }
+
+        private void endArray() {
+            line.append(']');
+            first = false;
+        }
+
+        private void value(String value) {
+            separate();
+            if (value == null) {
+                line.append("null");
+            } else {
+                string(value);
+            }
+        }
+
+        private void value(long value) {
+            separate();
+            line.append(value);
+        }
+
+        private void value(double value) {
+            separate();
+            if (Double.isNaN(value) || Double.isInfinite(value)) {
+                line.append("null");
+            } else {
+                line.append(value);
+            }
+        }
+
+        private void value(boolean value) {
+            separate();
+            line.append(value);
+        }
+
+        private void string(String value) {
+            line.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '"':
+                        line.append("\\\"");
+                        break;
+                    case '\\':
+                        line.append("\\\\");
+                        break;
+                    case '\n':
+                        line.append("\\n");
+                        break;
+                    case '\r':
+                        line.append("\\r");
+                        break;
+                    case '\t':
+                        line.append("\\t");
+                        break;
+                    default:
+                        if (c < 0x20) {
+                            line.append(String.format("\\u%04x", (int) c));
+                        } else {
+                            line.append(c);
+                        }
+                }
+            }
+            line.append('"');
+        }
+
+        /**
+         * Encodes the current line, followed by a line feed, and starts a new one.
+         */
+        private void endLine() throws IOException {
+            line.append('\n');
+            for (int i = 0; i < line.length(); i++) {
+                if (buffer.remaining() < 4) {
+                    drain();
+                }
+                char c = line.charAt(i);
+                if (c < 0x80) {
+                    buffer.put((byte) c);
+                } else if (c < 0x800) {
+                    buffer.put((byte) (0xC0 | (c >> 6)));
+                    buffer.put((byte) (0x80 | (c & 0x3F)));
+                } else if (Character.isHighSurrogate(c) && i + 1 < line.length()
+                        && Character.isLowSurrogate(line.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, line.charAt(++i));
+                    buffer.put((byte) (0xF0 | (codePoint >> 18)));
+                    buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                    buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                    buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+                } else if (Character.isSurrogate(c)) {
+                    buffer.put((byte) '?'); // An unpaired surrogate cannot be encoded
+                } else {
+                    buffer.put((byte) (0xE0 | (c >> 12)));
+                    buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                    buffer.put((byte) (0x80 | (c & 0x3F)));
+                }
+            }
+            line.setLength(0);
+            first = true;
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                written += channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        /**
+         * Writes whatever is left in the buffer.
+         *
+         * @return the total number of bytes written
+         */
+        private long finish() throws IOException {
+            drain();
+            return written;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
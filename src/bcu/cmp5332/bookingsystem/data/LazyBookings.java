@@ -0,0 +1,409 @@
+package bcu.cmp5332.bookingsystem.data;
+
+import bcu.cmp5332.bookingsystem.main.FlightBookingSystemException;
+import bcu.cmp5332.bookingsystem.model.Booking;
+import bcu.cmp5332.bookingsystem.model.Customer;
+import bcu.cmp5332.bookingsystem.model.Flight;
+import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Leaves the bookings in the booking data file at start-up, and reads the bookings of each
+ * customer the first time they are needed.
+ * <p>
+ * {@link #attach} scans the file once without creating any {@code Booking}, keeping only the
+ * IDs and the cancellation flag of each line; the date and price are checked, but only kept
+ * once the booking is loaded. A line that cannot be parsed, or that refers to a customer or
+ * flight that does not exist, is handed to the booking file's {@link Quarantine}, as on an
+ * eager load. For each customer it keeps only the offsets of the customer's booking
+ * lines, packed into shared arrays, and makes itself the customer's
+ * {@link Customer.BookingLoader}. Every flight is given a summary of its passengers with
+ * {@link Flight#setPendingPassengers}, so seat counts are right before any booking has been
+ * loaded. The file channel is opened before the scan, the scan reads through it, and the lines of
+ * a customer are read through the same channel, which is kept open until every customer has been
+ * loaded. The offsets therefore stay valid even after the file has been replaced by a full
+ * rewrite, a compaction or a quarantine, since the channel still reads the file it was opened on.
+ * </p>
+ * <p>
+ * Code that only looks for changes skips customers whose bookings are not loaded, since those
+ * cannot have changed. Code that needs every booking, such as a full rewrite of the booking
+ * file, simply loads every customer.
+ * </p>
+ * <p>
+ * Bookings are loaded this way if the {@code bookingsystem.bookings.lazy} system property is
+ * {@code true}, in which case the binary snapshot is not used.
+ * </p>
+ *
+ * @author Sugam Adhikari
+ * @author Prasansha Tamang
+ */
+public class LazyBookings implements Customer.BookingLoader {
+
+    private final FlightBookingSystem fbs;
+    private final FileChannel channel;
+    private final int[] customerIds;
+    private final int[] starts;
+    private final long[] offsets;
+    private final boolean[] cancelled;
+    private int pending;
+
+    private LazyBookings(FlightBookingSystem fbs, FileChannel channel, int[] customerIds, int[] starts,
+            long[] offsets, boolean[] cancelled) {
+        this.fbs = fbs;
+        this.channel = channel;
+        this.customerIds = customerIds;
+        this.starts = starts;
+        this.offsets = offsets;
+        this.cancelled = cancelled;
+        this.pending = customerIds.length;
+    }
+
+    /**
+     * Scans a booking file and attaches its bookings to the customers and flights already loaded
+     * into the system, as {@link #attach(FlightBookingSystem, String, Quarantine)} does, without
+     * a quarantine.
+     *
+     * @param fbs      the system, with its flights and customers loaded
+     * @param resource the path of the booking data file
+     * @return the loader, or null if the file holds no bookings
+     * @throws IOException if the file cannot be read
+     * @throws FlightBookingSystemException if a booking refers to a customer or flight that does
+     *         not exist, or a line cannot be parsed
+     */
+    public static LazyBookings attach(FlightBookingSystem fbs, String resource)
+            throws IOException, FlightBookingSystemException {
+        return attach(fbs, resource, null);
+    }
+
+    /**
+     * Scans a booking file and attaches its bookings to the customers and flights already loaded
+     * into the system, to be read when they are first needed. When the file holds more than one
+     * record for a booking ID only the last one is kept, as it is by an eager load. A line whose
+     * frame does not match, that cannot be parsed, or whose last record refers to a customer or
+     * flight that does not exist is handed to the quarantine and left out.
+     *
+     * @param fbs        the system, with its flights and customers loaded
+     * @param resource   the path of the booking data file
+     * @param quarantine the quarantine of the booking data file, or null to fail on such a line
+     * @return the loader, or null if the file holds no bookings
+     * @throws IOException if the file cannot be read
+     * @throws FlightBookingSystemException if there is no quarantine and a booking refers to a
+     *         customer or flight that does not exist, or a line cannot be parsed
+     */
+    public static LazyBookings attach(FlightBookingSystem fbs, String resource, Quarantine quarantine)
+            throws IOException, FlightBookingSystemException {
+        FileChannel channel = FileChannel.open(Paths.get(resource), StandardOpenOption.READ);
+        LazyBookings loader = null;
+        try {
+            loader = attach(fbs, channel, quarantine);
+            return loader;
+        } finally {
+            if (loader == null) {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Scans the booking file through the channel that the bookings are later read through.
+     */
+    private static LazyBookings attach(FlightBookingSystem fbs, FileChannel channel, Quarantine quarantine)
+            throws IOException, FlightBookingSystemException {
+        int count = 0;
+        int[] ids = new int[1024];
+        int[] customers = new int[1024];
+        int[] flights = new int[1024];
+        long[] lines = new long[1024];
+        boolean[] lineCancelled = new boolean[1024];
+        boolean ordered = true;
+        int maxBookingId = 0;
+        try (RecordReader reader = new RecordReader(channel, 0, Long.MAX_VALUE)) {
+            reader.setQuarantine(quarantine);
+            while (reader.nextRecord()) {
+                int fields = reader.fieldCount();
+                if (fields < 5) {
+                    reader.reject("too few fields for a booking"); // As on an eager load
+                    continue;
+                }
+                if (count == ids.length) {
+                    int capacity = count * 2;
+                    ids = Arrays.copyOf(ids, capacity);
+                    customers = Arrays.copyOf(customers, capacity);
+                    flights = Arrays.copyOf(flights, capacity);
+                    lines = Arrays.copyOf(lines, capacity);
+                    lineCancelled = Arrays.copyOf(lineCancelled, capacity);
+                }
+                lines[count] = reader.getLineOffset();
+                try {
+                    ids[count] = reader.nextInt();
+                    customers[count] = reader.nextInt();
+                    flights[count] = reader.nextInt();
+                    reader.nextDate(); // The booking date and price are only kept when loaded
+                    reader.nextDouble();
+                } catch (NumberFormatException | DateTimeException ex) {
+                    if (reader.reject(ex.getMessage())) {
+                        continue;
+                    }
+                    throw new FlightBookingSystemException("Unable to parse booking \"" + reader.getLine()
+                            + "\" on line " + reader.getLineNumber() + "\nError: " + ex);
+                }
+                lineCancelled[count] = fields > 5 && reader.nextFieldEqualsIgnoreCase("cancelled");
+                ordered &= count == 0 || ids[count] > ids[count - 1];
+                maxBookingId = Math.max(maxBookingId, ids[count]);
+                count++;
+            }
+        }
+        if (count == 0) {
+            return null;
+        }
+        boolean[] superseded = null;
+        if (!ordered) {
+            superseded = findSuperseded(ids, customers, flights, lines, lineCancelled, count);
+        }
+
+        // Map IDs to positions in sorted arrays of the loaded customers and flights
+        Customer[] customerList = fbs.getAllCustomers().toArray(new Customer[0]);
+        Arrays.sort(customerList, (a, b) -> Integer.compare(a.getId(), b.getId()));
+        int[] customerKeys = new int[customerList.length];
+        for (int i = 0; i < customerList.length; i++) {
+            customerKeys[i] = customerList[i].getId();
+        }
+        List<Flight> flightList = fbs.getFlights();
+        Flight[] flightArray = flightList.toArray(new Flight[0]);
+        Arrays.sort(flightArray, (a, b) -> Integer.compare(a.getId(), b.getId()));
+        int[] flightKeys = new int[flightArray.length];
+        for (int i = 0; i < flightArray.length; i++) {
+            flightKeys[i] = flightArray[i].getId();
+        }
+
+        // Count the bookings of each customer and note whether any of them is cancelled
+        if (superseded == null) {
+            superseded = new boolean[count];
+        }
+        int[] perCustomer = new int[customerList.length + 1];
+        boolean[] customerCancelled = new boolean[customerList.length];
+        for (int i = 0; i < count; i++) {
+            if (superseded[i]) {
+                continue;
+            }
+            int c = Arrays.binarySearch(customerKeys, customers[i]);
+            int f = Arrays.binarySearch(flightKeys, flights[i]);
+            if (c < 0 || f < 0) {
+                String reason = c < 0 ? "There is no customer with that ID." : "There is no flight with that ID.";
+                if (quarantine == null) {
+                    throw new FlightBookingSystemException(reason);
+                }
+                quarantine.reject(lines[i], reason);
+                superseded[i] = true; // Left out like a superseded record
+                continue;
+            }
+            customers[i] = c;
+            flights[i] = f;
+            perCustomer[c + 1]++;
+            customerCancelled[c] |= lineCancelled[i];
+        }
+        for (int c = 0; c < customerList.length; c++) {
+            perCustomer[c + 1] += perCustomer[c];
+        }
+
+        // Group the line offsets, and the flights they refer to, by customer
+        int total = perCustomer[customerList.length];
+        long[] grouped = new long[total];
+        int[] groupedFlights = new int[total];
+        int[] fill = Arrays.copyOf(perCustomer, customerList.length);
+        for (int i = 0; i < count; i++) {
+            if (!superseded[i]) {
+                int slot = fill[customers[i]]++;
+                grouped[slot] = lines[i];
+                groupedFlights[slot] = flights[i];
+            }
+        }
+
+        // Summarize the distinct passengers of each flight
+        int[] passengerCounts = new int[flightArray.length];
+        int[] bookedSeats = new int[flightArray.length];
+        int[] lastSeen = new int[flightArray.length];
+        Arrays.fill(lastSeen, -1);
+        for (int c = 0; c < customerList.length; c++) {
+            for (int i = perCustomer[c]; i < perCustomer[c + 1]; i++) {
+                int f = groupedFlights[i];
+                if (lastSeen[f] != c) {
+                    lastSeen[f] = c;
+                    passengerCounts[f]++;
+                    if (!customerCancelled[c]) {
+                        bookedSeats[f]++;
+                    }
+                }
+            }
+        }
+        int[][] passengers = new int[flightArray.length][];
+        for (int f = 0; f < flightArray.length; f++) {
+            passengers[f] = new int[passengerCounts[f]];
+            passengerCounts[f] = 0;
+        }
+        Arrays.fill(lastSeen, -1);
+        for (int c = 0; c < customerList.length; c++) {
+            for (int i = perCustomer[c]; i < perCustomer[c + 1]; i++) {
+                int f = groupedFlights[i];
+                if (lastSeen[f] != c) {
+                    lastSeen[f] = c;
+                    passengers[f][passengerCounts[f]++] = customerKeys[c];
+                }
+            }
+        }
+        for (int f = 0; f < flightArray.length; f++) {
+            if (passengers[f].length > 0) {
+                flightArray[f].setPendingPassengers(passengers[f], bookedSeats[f]);
+            }
+        }
+
+        // Keep only the customers that have bookings
+        int withBookings = 0;
+        for (int c = 0; c < customerList.length; c++) {
+            if (perCustomer[c + 1] > perCustomer[c]) {
+                withBookings++;
+            }
+        }
+        int[] ownerIds = new int[withBookings];
+        int[] ownerStarts = new int[withBookings + 1];
+        boolean[] ownerCancelled = new boolean[withBookings];
+        int owner = 0;
+        for (int c = 0; c < customerList.length; c++) {
+            if (perCustomer[c + 1] > perCustomer[c]) {
+                ownerIds[owner] = customerKeys[c];
+                ownerStarts[owner] = perCustomer[c];
+                ownerCancelled[owner] = customerCancelled[c];
+                owner++;
+            }
+        }
+        ownerStarts[withBookings] = total;
+
+        LazyBookings loader = new LazyBookings(fbs, channel, ownerIds, ownerStarts, grouped, ownerCancelled);
+        for (int c = 0; c < customerList.length; c++) {
+            if (perCustomer[c + 1] > perCustomer[c]) {
+                customerList[c].setBookingLoader(loader, customerCancelled[c]);
+            }
+        }
+        if (maxBookingId > fbs.getMaxBookingId()) {
+            fbs.setMaxBookingId(maxBookingId);
+        }
+        return loader;
+    }
+
+    /**
+     * Marks every record that follows an earlier record with the same ID, after moving the last
+     * such record into the place of the first, which is where an eager load keeps it.
+     */
+    private static boolean[] findSuperseded(int[] ids, int[] customers, int[] flights, long[] lines,
+            boolean[] lineCancelled, int count) {
+        long[] order = new long[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = ((long) ids[i] << 32) | i;
+        }
+        Arrays.sort(order);
+        boolean[] superseded = new boolean[count];
+        for (int i = 0; i + 1 < count; i++) {
+            if ((order[i] >> 32) != (order[i + 1] >> 32)) {
+                continue;
+            }
+            int first = (int) order[i];
+            int last = first;
+            while (i + 1 < count && (order[i + 1] >> 32) == (order[i] >> 32)) {
+                i++;
+                last = (int) order[i];
+                superseded[last] = true;
+            }
+            customers[first] = customers[last];
+            flights[first] = flights[last];
+            lines[first] = lines[last];
+            lineCancelled[first] = lineCancelled[last];
+        }
+        return superseded;
+    }
+
+    /**
+     * Returns the number of customers whose bookings have not been loaded yet.
+     *
+     * @return the number of pending customers
+     */
+    public synchronized int getPendingCustomers() {
+        return pending;
+    }
+
+    /**
+     * Reads the stored bookings of a customer and adds them to it and to their flights.
+     *
+     * @param customer the customer whose bookings are needed
+     * @throws FlightBookingSystemException if the booking file cannot be read, or a booking
+     *         refers to a flight that no longer exists
+     */
+    @Override
+    public synchronized void loadBookings(Customer customer) throws FlightBookingSystemException {
+        int index = Arrays.binarySearch(customerIds, customer.getId());
+        if (index < 0) {
+            return;
+        }
+        try {
+            for (int i = starts[index]; i < starts[index + 1]; i++) {
+                BookingRecord record = readRecord(offsets[i]);
+                Flight flight = fbs.getFlightByID(record.flightId);
+                Booking booking = new Booking(record.id, customer, flight, record.date, record.price);
+                if (record.cancelled) {
+                    booking.cancelBooking();
+                }
+                booking.markPersisted();
+                flight.removePendingPassenger(customer.getId(), !cancelled[index]);
+                customer.addBooking(booking);
+                flight.addPassenger(customer);
+            }
+            if (--pending == 0) {
+                channel.close();
+            }
+        } catch (IOException | NumberFormatException ex) {
+            throw new FlightBookingSystemException("Unable to read the bookings of customer "
+                    + customer.getId() + ": " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Reads and parses the booking line starting at the given offset.
+     */
+    private BookingRecord readRecord(long offset) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        int length = 0;
+        while (true) {
+            int read = channel.read(buffer, offset + buffer.position());
+            boolean newline = false;
+            for (int i = length; i < buffer.position(); i++) {
+                if (buffer.get(i) == '\n') {
+                    newline = true;
+                    break;
+                }
+            }
+            length = buffer.position();
+            if (newline || read < 0) {
+                break;
+            }
+            if (!buffer.hasRemaining()) {
+                ByteBuffer bigger = ByteBuffer.allocate(buffer.capacity() * 2);
+                buffer.flip();
+                bigger.put(buffer);
+                buffer = bigger;
+            }
+        }
+        RecordReader reader = new RecordReader(buffer.array(), length);
+        BookingRecord record = reader.nextRecord() ? BookingDataManager.parseRecord(reader) : null;
+        if (record == null) {
+            throw new IOException("No booking at offset " + offset);
+        }
+        return record;
+    }
+}
@@ -0,0 +1,990 @@
+package bcu.cmp5332.bookingsystem.data;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
+
+/**
+ * A log-structured merge {@link RecordStore} for write-heavy use, such as bookings during a
+ * fare sale, kept as a directory of files.
+ * <p>
+ * Writes go to a sorted in-memory memtable and are appended to a write-ahead log, which
+ * {@link #commit} forces to disk. Once the memtable holds
+ * {@code bookingsystem.lsm.memtableBytes} bytes (4 MiB by default) it is frozen and a new one
+ * is started, and a background thread writes the frozen one out as an immutable sorted run and
+ * deletes its log. A put only waits when the previous memtable has not been written yet, so
+ * inserts run at the speed of the log rather than of the run files. Removing a record writes a
+ * tombstone that hides older versions until a merge drops it.
+ * </p>
+ * <p>
+ * Each run holds its records in key order, followed by a sparse index of every
+ * {@value #INDEX_INTERVAL}th key and a Bloom filter of all its keys; both are kept in memory, so
+ * a point lookup by ID skips any run whose filter rules the key out and reads at most one block
+ * of the others. Lookups go from the memtable to the newest run and stop at the first match.
+ * The background thread also merges runs: when {@code bookingsystem.lsm.mergeRuns} (4 by
+ * default) neighbouring runs are of a similar size, or there are three times as many runs as
+ * that, they are merged into one, keeping the newest version of each record. Should merges fall
+ * further behind, to four times as many runs, writes wait for them.
+ * </p>
+ * <p>
+ * Every file name carries sequence numbers: {@code wal-N.log} is the log of memtable N, and
+ * {@code run-M-N.sst} holds memtables M to N. Runs are written to a temporary file and renamed
+ * into place, so on open any log whose memtable is already in a run, and any run covered by a
+ * wider one from an unfinished merge, is deleted; the remaining logs are replayed up to their
+ * first torn record and written out as a run.
+ * </p>
+ *
+ * <pre>
+ * log entry : key, length, record, CRC32
+ * run       : (key, length, record)*, index (key, offset)*, Bloom filter, footer
+ * footer    : indexOffset, indexCount, bloomOffset, entryCount, magic
+ * </pre>
+ *
+ * @author Sugam Adhikari
+ * @author Prasansha Tamang
+ */
+public class LsmStore implements RecordStore {
+
+    /** The default path to the store directory. */
+    public static final String RESOURCE = "./resources/data/store.lsm";
+
+    /** The default size of the memtable before it is written out as a run. */
+    public static final int DEFAULT_MEMTABLE_BYTES = 4 << 20;
+
+    /** The default number of similar runs that are merged together. */
+    public static final int DEFAULT_MERGE_RUNS = 4;
+
+    /** The number of records between keys in a run's sparse index. */
+    public static final int INDEX_INTERVAL = 32;
+
+    private static final int MAGIC = 0x46424c53; // "FBLS"
+    private static final int FOOTER_SIZE = 32;
+    private static final int ENTRY_OVERHEAD = 64; // Estimated memory per memtable entry
+    private static final int BLOOM_BITS_PER_KEY = 10;
+    private static final int BLOOM_HASHES = 7;
+    private static final int LOG_BUFFER_SIZE = 64 * 1024;
+    private static final byte[] TOMBSTONE = new byte[0]; // Compared by identity
+
+    private final Path directory;
+    private final int memtableBytes;
+    private final int mergeRuns;
+    private final Thread background;
+
+    // Guarded by this
+    private TreeMap<Long, byte[]> memtable = new TreeMap<>();
+    private int memtableSize;
+    private long memtableSeq;
+    private TreeMap<Long, byte[]> frozen;
+    private long frozenSeq;
+    private List<Run> runs = new ArrayList<>(); // Newest first
+    private FileChannel log;
+    private final ByteBuffer logBuffer = ByteBuffer.allocate(LOG_BUFFER_SIZE);
+    private final CRC32 crc = new CRC32();
+    private final long[] sizes = new long[Table.values().length];
+    private boolean sizesKnown;
+    private IOException failure;
+    private boolean closed;
+
+    /**
+     * Opens the default store directory, creating it if it does not exist.
+     *
+     * @throws IOException if the store cannot be opened or recovered
+     */
+    public LsmStore() throws IOException {
+        this(RESOURCE);
+    }
+
+    /**
+     * Opens a store directory with the sizes configured through system properties, creating it
+     * if it does not exist.
+     *
+     * @param resource the path to the store directory
+     * @throws IOException if the store cannot be opened or recovered
+     */
+    public LsmStore(String resource) throws IOException {
+        this(resource, Integer.getInteger("bookingsystem.lsm.memtableBytes", DEFAULT_MEMTABLE_BYTES),
+                Integer.getInteger("bookingsystem.lsm.mergeRuns", DEFAULT_MERGE_RUNS));
+    }
+
+    /**
+     * Opens a store directory, creating it if it does not exist, and recovers it as described
+     * for this class.
+     *
+     * @param resource      the path to the store directory
+     * @param memtableBytes the size of the memtable before it is written out
+     * @param mergeRuns     the number of similar runs that are merged together
+     * @throws IOException if the store cannot be opened or recovered
+     */
+    public LsmStore(String resource, int memtableBytes, int mergeRuns) throws IOException {
+        if (memtableBytes < 1 || mergeRuns < 2) {
+            throw new IllegalArgumentException("The memtable should be larger than 0 and at least 2 runs merged");
+        }
+        this.directory = Paths.get(resource);
+        this.memtableBytes = memtableBytes;
+        this.mergeRuns = mergeRuns;
+        Files.createDirectories(directory);
+        try {
+            recover();
+        } catch (IOException | RuntimeException ex) {
+            closeRuns(runs);
+            throw ex;
+        }
+        background = new Thread(this::runBackground, "lsm-writer");
+        background.setDaemon(true);
+        background.start();
+    }
+
+    @Override
+    public synchronized byte[] get(Table table, int id) throws IOException {
+        checkOpen();
+        long key = key(table, id);
+        byte[] record = memtable.get(key);
+        if (record == null && frozen != null) {
+            record = frozen.get(key);
+        }
+        if (record != null) {
+            return record == TOMBSTONE ? null : record.clone();
+        }
+        for (Run run : runs) {
+            record = run.get(key);
+            if (record != null) {
+                return record == TOMBSTONE ? null : record;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public synchronized void put(Table table, int id, byte[] record) throws IOException {
+        checkOpen();
+        write(key(table, id), record.clone());
+    }
+
+    @Override
+    public synchronized boolean delete(Table table, int id) throws IOException {
+        if (get(table, id) == null) {
+            return false;
+        }
+        write(key(table, id), TOMBSTONE);
+        return true;
+    }
+
+    @Override
+    public synchronized void scan(Table table, int fromId, int toId, RecordVisitor visitor) throws IOException {
+        checkOpen();
+        long from = key(table, fromId);
+        long to = key(table, toId);
+        PriorityQueue<Source> queue = new PriorityQueue<>();
+        int age = 0;
+        addSource(queue, new MapSource(memtable.subMap(from, true, to, true), age++));
+        if (frozen != null) {
+            addSource(queue, new MapSource(frozen.subMap(from, true, to, true), age++));
+        }
+        for (Run run : runs) {
+            addSource(queue, new RunSource(run, from, to, age++));
+        }
+        while (!queue.isEmpty()) {
+            Source newest = queue.poll();
+            long key = newest.key;
+            byte[] record = newest.record;
+            addSource(queue, newest);
+            while (!queue.isEmpty() && queue.peek().key == key) {
+                addSource(queue, queue.poll()); // Older versions of the same record
+            }
+            if (record != TOMBSTONE && !visitor.visit((int) key, record.clone())) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of records in a table. The count is worked out by a scan the first
+     * time it is asked for after a write, since an LSM write does not know whether it replaces
+     * an older record.
+     *
+     * @param table the table
+     * @return the number of records
+     */
+    @Override
+    public synchronized long size(Table table) {
+        if (!sizesKnown) {
+            try {
+                for (Table each : Table.values()) {
+                    long[] count = {0};
+                    scan(each, 0, Integer.MAX_VALUE, (id, record) -> {
+                        count[0]++;
+                        return true;
+                    });
+                    sizes[each.ordinal()] = count[0];
+                }
+                sizesKnown = true;
+            } catch (IOException ex) {
+                throw new IllegalStateException("Cannot count the records in " + directory, ex);
+            }
+        }
+        return sizes[table.ordinal()];
+    }
+
+    /**
+     * Forces the write-ahead log to disk, so that every write so far survives a crash.
+     *
+     * @throws IOException if the log cannot be written
+     */
+    @Override
+    public synchronized void commit() throws IOException {
+        checkOpen();
+        writeLogBuffer();
+        log.force(false);
+    }
+
+    /**
+     * Commits, waits for a memtable that is being written out, and closes the store. A merge in
+     * progress is finished first; the current memtable stays in its log until the next open.
+     *
+     * @throws IOException if the log cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            try {
+                if (failure == null) {
+                    commit();
+                }
+            } finally {
+                closed = true;
+                notifyAll();
+            }
+        }
+        boolean interrupted = false;
+        while (true) {
+            try {
+                background.join();
+                break;
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            log.close();
+            closeRuns(runs);
+            runs = new ArrayList<>();
+        }
+    }
+
+    /**
+     * Returns the number of runs on disk, for monitoring and tests.
+     *
+     * @return the number of runs
+     */
+    public synchronized int getRunCount() {
+        return runs.size();
+    }
+
+    private static long key(Table table, int id) {
+        return ((long) table.ordinal() << 32) | (id & 0xFFFFFFFFL);
+    }
+
+    private void checkOpen() throws IOException {
+        if (closed) {
+            throw new IOException(directory + " has been closed");
+        }
+        if (failure != null) {
+            throw new IOException("Writing to " + directory + " failed", failure);
+        }
+    }
+
+    private static void addSource(PriorityQueue<Source> queue, Source source) throws IOException {
+        if (source.advance()) {
+            queue.add(source);
+        }
+    }
+
+    /**
+     * Logs a write and applies it to the memtable, freezing the memtable once it is full.
+     */
+    private void write(long key, byte[] record) throws IOException {
+        int length = record == TOMBSTONE ? -1 : record.length;
+        int size = 16 + Math.max(length, 0);
+        if (logBuffer.remaining() < size) {
+            writeLogBuffer();
+        }
+        if (size > logBuffer.capacity()) {
+            writeLogEntry(ByteBuffer.allocate(size), key, record, length);
+        } else {
+            writeLogEntry(logBuffer, key, record, length);
+        }
+
+        byte[] old = memtable.put(key, record);
+        memtableSize += ENTRY_OVERHEAD + Math.max(length, 0) - (old == null ? 0 : ENTRY_OVERHEAD + old.length);
+        sizesKnown = false;
+        if (memtableSize >= memtableBytes) {
+            freeze();
+        }
+    }
+
+    private void writeLogEntry(ByteBuffer buffer, long key, byte[] record, int length) throws IOException {
+        int start = buffer.position();
+        buffer.putLong(key).putInt(length);
+        if (length > 0) {
+            buffer.put(record);
+        }
+        crc.reset();
+        crc.update(buffer.array(), start, buffer.position() - start);
+        buffer.putInt((int) crc.getValue());
+        if (buffer != logBuffer) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                log.write(buffer);
+            }
+        }
+    }
+
+    private void writeLogBuffer() throws IOException {
+        logBuffer.flip();
+        while (logBuffer.hasRemaining()) {
+            log.write(logBuffer);
+        }
+        logBuffer.clear();
+    }
+
+    /**
+     * Hands the full memtable to the background thread and starts a new one with its own log,
+     * waiting first if the previous memtable is still being written out or merges have fallen
+     * so far behind that lookups would have to read too many runs.
+     */
+    private void freeze() throws IOException {
+        while ((frozen != null || runs.size() >= 4 * mergeRuns) && failure == null) {
+            try {
+                wait();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for the memtable to be written", ex);
+            }
+        }
+        checkOpen();
+        writeLogBuffer();
+        log.close();
+        frozen = memtable;
+        frozenSeq = memtableSeq;
+        memtable = new TreeMap<>();
+        memtableSize = 0;
+        openLog(memtableSeq + 1);
+        notifyAll();
+    }
+
+    private void openLog(long seq) throws IOException {
+        memtableSeq = seq;
+        log = FileChannel.open(logPath(seq), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    private Path logPath(long seq) {
+        return directory.resolve("wal-" + seq + ".log");
+    }
+
+    private Path runPath(long minSeq, long maxSeq) {
+        return directory.resolve("run-" + minSeq + "-" + maxSeq + ".sst");
+    }
+
+    /**
+     * Opens the runs and replays the logs left by the last session, as described for this class.
+     */
+    private void recover() throws IOException {
+        List<Run> found = new ArrayList<>();
+        TreeSet<Long> logs = new TreeSet<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(".tmp")) {
+                    Files.delete(file);
+                } else if (name.startsWith("wal-") && name.endsWith(".log")) {
+                    logs.add(Long.parseLong(name.substring(4, name.length() - 4)));
+                } else if (name.startsWith("run-") && name.endsWith(".sst")) {
+                    String[] seqs = name.substring(4, name.length() - 4).split("-");
+                    found.add(new Run(file, Long.parseLong(seqs[0]), Long.parseLong(seqs[1])));
+                }
+            }
+        }
+        long maxSeq = 0;
+        for (Run run : found) {
+            boolean covered = false;
+            for (Run other : found) {
+                covered |= other != run && other.minSeq <= run.minSeq && run.maxSeq <= other.maxSeq
+                        && other.maxSeq - other.minSeq > run.maxSeq - run.minSeq;
+            }
+            if (covered) {
+                run.close();
+                Files.delete(run.file); // An input of a merge that finished
+            } else {
+                runs.add(run);
+                maxSeq = Math.max(maxSeq, run.maxSeq);
+            }
+        }
+        runs.sort((a, b) -> Long.compare(b.maxSeq, a.maxSeq));
+
+        TreeMap<Long, byte[]> replayed = new TreeMap<>();
+        long firstSeq = 0;
+        long replayedSeq = 0;
+        for (long seq : logs) {
+            if (seq > maxSeq) {
+                replay(logPath(seq), replayed);
+                firstSeq = firstSeq == 0 ? seq : firstSeq;
+                replayedSeq = seq;
+            }
+        }
+        if (!replayed.isEmpty()) {
+            runs.add(0, writeRun(replayed.entrySet().iterator(), replayed.size(), firstSeq, replayedSeq, false));
+        }
+        for (long seq : logs) {
+            Files.delete(logPath(seq));
+        }
+        openLog(Math.max(maxSeq, replayedSeq) + 1);
+    }
+
+    private static void replay(Path file, Map<Long, byte[]> into) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        CRC32 check = new CRC32();
+        while (buffer.remaining() >= 16) {
+            int start = buffer.position();
+            long key = buffer.getLong();
+            int length = buffer.getInt();
+            if (length < -1 || buffer.remaining() < Math.max(length, 0) + 4) {
+                return; // A torn write at the end of the log
+            }
+            byte[] record = length < 0 ? TOMBSTONE : new byte[length];
+            buffer.get(record);
+            check.reset();
+            check.update(buffer.array(), start, buffer.position() - start);
+            if (buffer.getInt() != (int) check.getValue()) {
+                return;
+            }
+            into.put(key, record);
+        }
+    }
+
+    /**
+     * Writes sorted records to a new run through a temporary file.
+     *
+     * @param dropTombstones true if no older run remains, so removed records can be left out
+     */
+    private Run writeRun(Iterator<Map.Entry<Long, byte[]>> entries, long expected, long minSeq, long maxSeq,
+            boolean dropTombstones) throws IOException {
+        Path file = runPath(minSeq, maxSeq);
+        Path temp = directory.resolve(file.getFileName() + ".tmp");
+        BloomFilter bloom = new BloomFilter(expected);
+        long[] indexKeys = new long[16];
+        long[] indexOffsets = new long[16];
+        int indexCount = 0;
+        long count = 0;
+        try (FileOutputStream stream = new FileOutputStream(temp.toFile())) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 64 * 1024));
+            while (entries.hasNext()) {
+                Map.Entry<Long, byte[]> entry = entries.next();
+                byte[] record = entry.getValue();
+                if (record == TOMBSTONE && dropTombstones) {
+                    continue;
+                }
+                if (count % INDEX_INTERVAL == 0) {
+                    if (indexCount == indexKeys.length) {
+                        indexKeys = Arrays.copyOf(indexKeys, indexCount * 2);
+                        indexOffsets = Arrays.copyOf(indexOffsets, indexCount * 2);
+                    }
+                    indexKeys[indexCount] = entry.getKey();
+                    indexOffsets[indexCount++] = out.size();
+                }
+                out.writeLong(entry.getKey());
+                if (record == TOMBSTONE) {
+                    out.writeInt(-1);
+                } else {
+                    out.writeInt(record.length);
+                    out.write(record);
+                }
+                bloom.add(entry.getKey());
+                count++;
+            }
+            long indexOffset = out.size();
+            for (int i = 0; i < indexCount; i++) {
+                out.writeLong(indexKeys[i]);
+                out.writeLong(indexOffsets[i]);
+            }
+            long bloomOffset = out.size();
+            out.writeInt(bloom.words.length);
+            for (long word : bloom.words) {
+                out.writeLong(word);
+            }
+            out.writeLong(indexOffset);
+            out.writeInt(indexCount);
+            out.writeLong(bloomOffset);
+            out.writeLong(count);
+            out.writeInt(MAGIC);
+            out.flush();
+            stream.getFD().sync();
+        }
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+        return new Run(file, minSeq, maxSeq);
+    }
+
+    /**
+     * Writes frozen memtables out and merges runs until the store is closed.
+     */
+    private void runBackground() {
+        while (true) {
+            TreeMap<Long, byte[]> flush;
+            long flushSeq;
+            List<Run> merge;
+            synchronized (this) {
+                while (!closed && frozen == null && pickMerge() == null) {
+                    try {
+                        wait();
+                    } catch (InterruptedException ex) {
+                        return;
+                    }
+                }
+                if (frozen == null && closed) {
+                    return;
+                }
+                flush = frozen;
+                flushSeq = frozenSeq;
+                merge = flush == null ? pickMerge() : null;
+            }
+            try {
+                if (flush != null) {
+                    Run run = writeRun(flush.entrySet().iterator(), flush.size(), flushSeq, flushSeq, false);
+                    synchronized (this) {
+                        List<Run> updated = new ArrayList<>(runs);
+                        updated.add(0, run);
+                        runs = updated;
+                        frozen = null;
+                        notifyAll();
+                    }
+                    Files.delete(logPath(flushSeq));
+                } else {
+                    merge(merge);
+                }
+            } catch (IOException | RuntimeException ex) {
+                synchronized (this) {
+                    failure = ex instanceof IOException ? (IOException) ex : new IOException(ex);
+                    notifyAll();
+                }
+                System.err.println("Error writing " + directory + ": " + ex.getMessage());
+                return;
+            }
+        }
+    }
+
+    /**
+     * Chooses the runs to merge next: the newest {@code mergeRuns} neighbouring runs whose sizes
+     * are within four times of each other or, if there are too many runs, the neighbouring runs
+     * that are smallest together.
+     *
+     * @return the runs to merge, newest first, or null if no merge is needed
+     */
+    private List<Run> pickMerge() {
+        if (closed || runs.size() < mergeRuns) {
+            return null;
+        }
+        for (int i = 0; i + mergeRuns <= runs.size(); i++) {
+            List<Run> window = runs.subList(i, i + mergeRuns);
+            long smallest = Long.MAX_VALUE;
+            long largest = 0;
+            for (Run run : window) {
+                smallest = Math.min(smallest, run.size);
+                largest = Math.max(largest, run.size);
+            }
+            if (largest <= 4 * Math.max(smallest, 1)) {
+                return new ArrayList<>(window);
+            }
+        }
+        if (runs.size() < 3 * mergeRuns) {
+            return null;
+        }
+        int cheapest = 0;
+        long cheapestSize = Long.MAX_VALUE;
+        for (int i = 0; i + mergeRuns <= runs.size(); i++) {
+            long total = 0;
+            for (Run run : runs.subList(i, i + mergeRuns)) {
+                total += run.size;
+            }
+            if (total < cheapestSize) {
+                cheapest = i;
+                cheapestSize = total;
+            }
+        }
+        return new ArrayList<>(runs.subList(cheapest, cheapest + mergeRuns));
+    }
+
+    private void merge(List<Run> inputs) throws IOException {
+        boolean oldest;
+        synchronized (this) {
+            oldest = runs.get(runs.size() - 1) == inputs.get(inputs.size() - 1);
+        }
+        long expected = 0;
+        PriorityQueue<Source> queue = new PriorityQueue<>();
+        int age = 0;
+        for (Run run : inputs) {
+            expected += run.count;
+            addSource(queue, new RunSource(run, Long.MIN_VALUE, Long.MAX_VALUE, age++));
+        }
+        Iterator<Map.Entry<Long, byte[]>> merged = new Iterator<Map.Entry<Long, byte[]>>() {
+            @Override
+            public boolean hasNext() {
+                return !queue.isEmpty();
+            }
+
+            @Override
+            public Map.Entry<Long, byte[]> next() {
+                try {
+                    Source newest = queue.poll();
+                    Map.Entry<Long, byte[]> entry = new AbstractMap.SimpleImmutableEntry<>(newest.key,
+                            newest.record);
+                    addSource(queue, newest);
+                    while (!queue.isEmpty() && queue.peek().key == entry.getKey()) {
+                        addSource(queue, queue.poll());
+                    }
+                    return entry;
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            }
+        };
+        Run run;
+        try {
+            run = writeRun(merged, expected, inputs.get(inputs.size() - 1).minSeq, inputs.get(0).maxSeq, oldest);
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+        synchronized (this) {
+            List<Run> updated = new ArrayList<>(runs);
+            int at = updated.indexOf(inputs.get(0));
+            updated.removeAll(inputs);
+            updated.add(at, run);
+            runs = updated;
+            notifyAll();
+        }
+        closeRuns(inputs);
+        for (Run input : inputs) {
+            Files.delete(input.file);
+        }
+    }
+
+    private static void closeRuns(List<Run> closing) {
+        for (Run run : closing) {
+            try {
+                run.close();
+            } catch (IOException ex) {
+                System.err.println("Error closing " + run.file + ": " + ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * An immutable sorted run on disk, with its sparse index and Bloom filter in memory.
+     */
+    private static final class Run {
+        private final Path file;
+        private final long minSeq;
+        private final long maxSeq;
+        private final FileChannel channel;
+        private final long[] indexKeys;
+        private final long[] indexOffsets;
+        private final long dataEnd;
+        private final long count;
+        private final long size;
+        private final BloomFilter bloom;
+
+        private Run(Path file, long minSeq, long maxSeq) throws IOException {
+            this.file = file;
+            this.minSeq = minSeq;
+            this.maxSeq = maxSeq;
+            this.channel = FileChannel.open(file, StandardOpenOption.READ);
+            try {
+                size = channel.size();
+                if (size < FOOTER_SIZE) {
+                    throw new IOException(file + " is not a run file");
+                }
+                ByteBuffer footer = read(size - FOOTER_SIZE, FOOTER_SIZE);
+                dataEnd = footer.getLong();
+                int indexCount = footer.getInt();
+                long bloomOffset = footer.getLong();
+                count = footer.getLong();
+                if (footer.getInt() != MAGIC) {
+                    throw new IOException(file + " is not a run file");
+                }
+                ByteBuffer index = read(dataEnd, indexCount * 16);
+                indexKeys = new long[indexCount];
+                indexOffsets = new long[indexCount];
+                for (int i = 0; i < indexCount; i++) {
+                    indexKeys[i] = index.getLong();
+                    indexOffsets[i] = index.getLong();
+                }
+                int words = read(bloomOffset, 4).getInt();
+                ByteBuffer filter = read(bloomOffset + 4, words * 8);
+                long[] bits = new long[words];
+                filter.asLongBuffer().get(bits);
+                bloom = new BloomFilter(bits);
+            } catch (IOException | RuntimeException ex) {
+                channel.close();
+                throw ex;
+            }
+        }
+
+        private ByteBuffer read(long position, int length) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new IOException(file + " is truncated");
+                }
+            }
+            buffer.flip();
+            return buffer;
+        }
+
+        /**
+         * Returns the index block that may hold the key, or -1 if the key is below the run.
+         */
+        private int block(long key) {
+            int i = Arrays.binarySearch(indexKeys, key);
+            return i >= 0 ? i : -i - 2;
+        }
+
+        /**
+         * Looks a key up in the block the index points to.
+         *
+         * @return the record, the tombstone, or null if the run does not hold the key
+         */
+        private byte[] get(long key) throws IOException {
+            if (!bloom.mightContain(key)) {
+                return null;
+            }
+            int block = block(key);
+            if (block < 0) {
+                return null;
+            }
+            long end = block + 1 < indexOffsets.length ? indexOffsets[block + 1] : dataEnd;
+            ByteBuffer buffer = read(indexOffsets[block], (int) (end - indexOffsets[block]));
+            while (buffer.hasRemaining()) {
+                long found = buffer.getLong();
+                int length = buffer.getInt();
+                if (found == key) {
+                    if (length < 0) {
+                        return TOMBSTONE;
+                    }
+                    byte[] record = new byte[length];
+                    buffer.get(record);
+                    return record;
+                }
+                if (found > key) {
+                    return null;
+                }
+                buffer.position(buffer.position() + Math.max(length, 0));
+            }
+            return null;
+        }
+
+        private void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * A Bloom filter over the keys of a run, using double hashing of a mixed key.
+     */
+    private static final class BloomFilter {
+        private final long[] words;
+
+        private BloomFilter(long expected) {
+            long bits = Math.max(64, expected * BLOOM_BITS_PER_KEY);
+            this.words = new long[(int) Math.min(Integer.MAX_VALUE - 8, (bits + 63) / 64)];
+        }
+
+        private BloomFilter(long[] words) {
+            this.words = words;
+        }
+
+        private void add(long key) {
+            long hash = mix(key);
+            long bits = words.length * 64L;
+            for (int i = 0; i < BLOOM_HASHES; i++) {
+                long bit = ((hash + i * (hash >>> 32)) & Long.MAX_VALUE) % bits;
+                words[(int) (bit >>> 6)] |= 1L << bit;
+            }
+        }
+
+        private boolean mightContain(long key) {
+            long hash = mix(key);
+            long bits = words.length * 64L;
+            for (int i = 0; i < BLOOM_HASHES; i++) {
+                long bit = ((hash + i * (hash >>> 32)) & Long.MAX_VALUE) % bits;
+                if ((words[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static long mix(long key) {
+            key ^= key >>> 33;
+            key *= 0xff51afd7ed558ccdL;
+            key ^= key >>> 33;
+            key *= 0xc4ceb9fe1a85ec53L;
+            key ^= key >>> 33;
+            return key;
+        }
+    }
+
+    /**
+     * One sorted input of a scan or merge. Sources are ordered by key and then by age, so the
+     * newest version of a record comes out first.
+     */
+    private abstract static class Source implements Comparable<Source> {
+        private final int age;
+        protected long key;
+        protected byte[] record;
+
+        private Source(int age) {
+            this.age = age;
+        }
+
+        /**
+         * Moves to the next record.
+         *
+         * @return false if there are no more records
+         */
+        abstract boolean advance() throws IOException;
+
+        @Override
+        public int compareTo(Source other) {
+            int order = Long.compare(key, other.key);
+            return order != 0 ? order : Integer.compare(age, other.age);
+        }
+    }
+
+    private static final class MapSource extends Source {
+        private final Iterator<Map.Entry<Long, byte[]>> entries;
+
+        private MapSource(Map<Long, byte[]> map, int age) {
+            super(age);
+            this.entries = map.entrySet().iterator();
+        }
+
+        @Override
+        boolean advance() {
+            if (!entries.hasNext()) {
+                return false;
+            }
+            Map.Entry<Long, byte[]> entry = entries.next();
+            key = entry.getKey();
+            record = entry.getValue();
+            return true;
+        }
+    }
+
+    /**
+     * Reads a run in order from the block that may hold the first key, through a buffer filled
+     * by positional reads so that several readers can share the channel.
+     */
+    private static final class RunSource extends Source {
+        private final Run run;
+        private final long to;
+        private final long from;
+        private ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        private long position;
+
+        private RunSource(Run run, long from, long to, int age) {
+            super(age);
+            this.run = run;
+            this.from = from;
+            this.to = to;
+            int block = run.block(from);
+            this.position = block < 0 ? 0 : run.indexOffsets[block];
+            buffer.limit(0);
+        }
+
+        @Override
+        boolean advance() throws IOException {
+            while (true) {
+                if (!fill(12)) {
+                    return false;
+                }
+                key = buffer.getLong();
+                int length = buffer.getInt();
+                if (length < 0) {
+                    record = TOMBSTONE;
+                } else {
+                    if (!fill(length)) {
+                        throw new IOException(run.file + " is truncated");
+                    }
+                    if (key < from) {
+                        buffer.position(buffer.position() + length);
+                        continue;
+                    }
+                    record = new byte[length];
+                    buffer.get(record);
+                }
+                if (key < from) {
+                    continue;
+                }
+                return key <= to;
+            }
+        }
+
+        /**
+         * Makes at least the given number of bytes of the data section available, growing the
+         * buffer for a record larger than it.
+         *
+         * @return false if the data section ends first
+         */
+        private boolean fill(int needed) throws IOException {
+            if (buffer.remaining() >= needed) {
+                return true;
+            }
+            long available = run.dataEnd - position;
+            if (buffer.remaining() + available < needed) {
+                return false;
+            }
+            if (needed > buffer.capacity()) {
+                ByteBuffer larger = ByteBuffer.allocate(needed);
+                larger.put(buffer);
+                larger.flip();
+                buffer = larger;
+            }
+            buffer.compact();
+            buffer.limit(buffer.position() + (int) Math.min(buffer.remaining(), available));
+            while (buffer.hasRemaining()) {
+                int read = run.channel.read(buffer, position);
+                if (read < 0) {
+                    throw new IOException(run.file + " is truncated");
+                }
+                position += read;
+            }
+            buffer.flip();
+            return true;
+        }
+    }
+}
@@ -0,0 +1,945 @@
+package bcu.cmp5332.bookingsystem.data;
+
+import bcu.cmp5332.bookingsystem.main.FlightBookingSystemException;
+import bcu.cmp5332.bookingsystem.model.Booking;
+import bcu.cmp5332.bookingsystem.model.Customer;
+import bcu.cmp5332.bookingsystem.model.Flight;
+import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An append-only write-ahead journal of the mutations made to the flight booking system.
+ * <p>
+ * Every state change that would otherwise require one of the data files to be rewritten
+ * (a booking being created or cancelled, a flight or customer being soft-deleted) is recorded
+ * as a single line at the end of the journal, so the cost of persisting one operation does not
+ * depend on the size of the data set. On start-up the journal is replayed over the base files,
+ * and once the base files have been rewritten by {@link FlightBookingSystemData#store} the
+ * journal is truncated.
+ * </p>
+ * <p>
+ * Appends are made durable through a {@link GroupCommitter}, so a mutation is on disk before
+ * the command that made it returns, while concurrent mutations share a single fsync. A new
+ * booking can instead be queued with {@link #submitBookingCreated}, which returns as soon as
+ * the record is queued; queued records are always written before the journal is rotated,
+ * truncated or closed.
+ * </p>
+ * <p>
+ * The journal can be {@link #rotate() rotated}: the current file is sealed as a numbered
+ * segment ({@code journal.txt.1}, {@code journal.txt.2}, ...) and appends continue in a new
+ * file. Sealed segments never change again, so the {@link JournalCompactor} can fold them into
+ * the base files in the background. Replay reads the sealed segments in order, then the current file.
+ * </p>
+ * <p>
+ * A position in the journal is the number of bytes written to it so far, counting the files
+ * that have since been sealed, folded or truncated away, and listeners are given the position
+ * after each record. A file started by a rotation or a truncation begins with a
+ * {@link MutationType#JOURNAL_POSITION} record holding the position of its first byte, so
+ * positions keep increasing across restarts and truncations and never name two records.
+ * </p>
+ * <p>
+ * {@link MutationListener}s can be told of every record as it is handed to the committer, in
+ * the same order as the records reach the file, which is how the {@link ReplicationPrimary}
+ * streams mutations to followers and the {@link RecoveryLog} keeps its history. New flights and
+ * customers are already appended to their base files, so they are not journalled;
+ * {@link #publishFlightAdded} and {@link #publishCustomerAdded} only pass them to the listeners.
+ * So do {@link #publishBookingCreated} for bookings written straight to the base files by a
+ * {@link BulkImporter}, and {@link #publishFlightUpdated} and {@link #publishCustomerUpdated}
+ * for records changed in place by the {@link DataFileWatcher}.
+ * </p>
+ *
+ * @author Sugam Adhikari
+ * @author Prasansha Tamang
+ */
+public class MutationJournal {
+
+    /** The default path of the journal file. */
+    public static final String RESOURCE = "./resources/data/journal.txt";
+
+    /**
+     * The kinds of mutation recorded in the journal.
+     */
+    public enum MutationType {
+        /** A new booking: id, customer id, flight id, booking date, price. */
+        BOOKING_CREATED,
+        /** A booking was cancelled: booking id, customer id. */
+        BOOKING_CANCELLED,
+        /** A flight was soft-deleted: flight id. */
+        FLIGHT_DELETED,
+        /** A customer was soft-deleted: customer id. */
+        CUSTOMER_DELETED,
+        /** A new flight, only passed to listeners: id, number, origin, destination, date, seats, price. */
+        FLIGHT_ADDED,
+        /** A new customer, only passed to listeners: id, name, phone, email. */
+        CUSTOMER_ADDED,
+        /** A changed flight, only passed to listeners: the fields of FLIGHT_ADDED, then deleted. */
+        FLIGHT_UPDATED,
+        /** A changed customer, only passed to listeners: the fields of CUSTOMER_ADDED, then deleted. */
+        CUSTOMER_UPDATED,
+        /** Starts a file after a rotation or truncation, never passed to listeners: the file's position. */
+        JOURNAL_POSITION
+    }
+
+    /**
+     * Receives each mutation record as it is logged.
+     */
+    public interface MutationListener {
+        /**
+         * Called with each record, in the order the records are written, while the journal's
+         * lock is held; it should hand the record on rather than do any slow work itself.
+         *
+         * @param record the record, without its line terminator
+         */
+        void mutationLogged(String record);
+
+        /**
+         * Called with each record and the position in the journal just after it, which a
+         * listener can keep to {@link MutationJournal#addListener(MutationListener, long)
+         * carry on} from after a restart. By default only the record is passed on.
+         *
+         * @param record   the record, without its line terminator
+         * @param position the position in the journal after the record, or -1 if the record is
+         *                 only passed to listeners and not journalled
+         */
+        default void mutationLogged(String record, long position) {
+            mutationLogged(record);
+        }
+    }
+
+    private final Path path;
+    private final ReadWriteLock rotationLock = new ReentrantReadWriteLock();
+    private final Object publishLock = new Object();
+    private FileChannel channel;
+    private GroupCommitter committer;
+    private long position = -1;
+    private final List<MutationListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Creates a journal backed by the default journal file.
+     */
+    public MutationJournal() {
+        this(RESOURCE);
+    }
+
+    /**
+     * Creates a journal backed by the given file.
+     *
+     * @param resource the path of the journal file
+     */
+    public MutationJournal(String resource) {
+        this.path = Paths.get(resource);
+    }
+
+    /**
+     * Records that a booking has been created.
+     *
+     * @param booking the new booking
+     * @throws IOException if the record cannot be written
+     */
+    public void bookingCreated(Booking booking) throws IOException {
+        append(MutationType.BOOKING_CREATED, booking.getId(), booking.getCustomer().getId(),
+                booking.getFlight().getId(), booking.getBookingDate(), booking.getPrice());
+    }
+
+    /**
+     * Queues a record that a booking has been created, without waiting for it to be written.
+     *
+     * @param booking the new booking
+     * @return a future completed once the record is durable on disk
+     * @throws IOException if the journal file cannot be opened
+     */
+    public CompletableFuture<Void> submitBookingCreated(Booking booking) throws IOException {
+        byte[] record = encode(MutationType.BOOKING_CREATED, booking.getId(), booking.getCustomer().getId(),
+                booking.getFlight().getId(), booking.getBookingDate(), booking.getPrice());
+        rotationLock.readLock().lock();
+        try {
+            return enqueue(record);
+        } finally {
+            rotationLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Records that a booking has been cancelled.
+     *
+     * @param booking the cancelled booking
+     * @throws IOException if the record cannot be written
+     */
+    public void bookingCancelled(Booking booking) throws IOException {
+        append(MutationType.BOOKING_CANCELLED, booking.getId(), booking.getCustomer().getId());
+    }
+
+    /**
+     * Records that a flight has been marked as deleted.
+     *
+     * @param flight the deleted flight
+     * @throws IOException if the record cannot be written
+     */
+    public void flightDeleted(Flight flight) throws IOException {
+        append(MutationType.FLIGHT_DELETED, flight.getId());
+    }
+
+    /**
+     * Records that a customer has been marked as deleted.
+     *
+     * @param customer the deleted customer
+     * @throws IOException if the record cannot be written
+     */
+    public void customerDeleted(Customer customer) throws IOException {
+        append(MutationType.CUSTOMER_DELETED, customer.getId());
+    }
+
+    /**
+     * Passes a new flight to the listeners. Nothing is written to the journal.
+     *
+     * @param flight the new flight
+     */
+    public void publishFlightAdded(Flight flight) {
+        publish(MutationType.FLIGHT_ADDED, flight.getId(), flight.getFlightNumber(),
+                flight.getOrigin(), flight.getDestination(), flight.getDepartureDate(),
+                flight.getNumberOfSeats(), flight.getPrice());
+    }
+
+    /**
+     * Passes a new customer to the listeners. Nothing is written to the journal.
+     *
+     * @param customer the new customer
+     */
+    public void publishCustomerAdded(Customer customer) {
+        publish(MutationType.CUSTOMER_ADDED, customer.getId(), customer.getName(),
+                customer.getPhone(), customer.getEmail());
+    }
+
+    /**
+     * Passes a new booking to the listeners. Nothing is written to the journal, so this is only
+     * for bookings that are stored in the base files by other means.
+     *
+     * @param booking the new booking
+     */
+    public void publishBookingCreated(Booking booking) {
+        publish(MutationType.BOOKING_CREATED, booking.getId(), booking.getCustomer().getId(),
+                booking.getFlight().getId(), booking.getBookingDate(), booking.getPrice());
+    }
+
+    /**
+     * Passes a flight changed in place to the listeners. Nothing is written to the journal.
+     *
+     * @param flight the changed flight
+     */
+    public void publishFlightUpdated(Flight flight) {
+        publish(MutationType.FLIGHT_UPDATED, flight.getId(), flight.getFlightNumber(),
+                flight.getOrigin(), flight.getDestination(), flight.getDepartureDate(),
+                flight.getNumberOfSeats(), flight.getPrice(), flight.isDeleted());
+    }
+
+    /**
+     * Passes a customer changed in place to the listeners. Nothing is written to the journal.
+     *
+     * @param customer the changed customer
+     */
+    public void publishCustomerUpdated(Customer customer) {
+        publish(MutationType.CUSTOMER_UPDATED, customer.getId(), customer.getName(),
+                customer.getPhone(), customer.getEmail(), customer.isDeleted());
+    }
+
+    /**
+     * Adds a listener to be told of every record from now on.
+     *
+     * @param listener the listener
+     */
+    public void addListener(MutationListener listener) {
+        synchronized (publishLock) {
+            listeners.add(listener);
+        }
+    }
+
+    /**
+     * Adds a listener, first passing it, in order, the records in the journal that end after the
+     * given position, such as those a listener that was stopped by a crash had not yet handled.
+     * Appends wait while this is done, and records still queued are written first, so the
+     * listener misses no record between the journal and those that follow.
+     *
+     * @param listener the listener
+     * @param position the position in the journal up to which the listener has the records
+     * @throws IOException if the journal cannot be read
+     */
+    public void addListener(MutationListener listener, long position) throws IOException {
+        rotationLock.writeLock().lock();
+        try {
+            synchronized (this) {
+                closeFile();
+                long start = 0;
+                for (Path file : getFiles()) {
+                    if (!Files.exists(file)) {
+                        continue;
+                    }
+                    byte[] bytes = Files.readAllBytes(file);
+                    long header = readPosition(file);
+                    if (header >= 0) {
+                        start = header;
+                    }
+                    int lineStart = 0;
+                    for (int i = 0; i < bytes.length; i++) {
+                        if (bytes[i] == '\n') {
+                            String record = new String(bytes, lineStart, i - lineStart, StandardCharsets.UTF_8);
+                            long end = start + i + 1;
+                            lineStart = i + 1;
+                            if (end > position && !record.isEmpty()
+                                    && !record.startsWith(MutationType.JOURNAL_POSITION.name())) {
+                                listener.mutationLogged(record, end);
+                            }
+                        }
+                    }
+                    start += bytes.length;
+                }
+            }
+            addListener(listener);
+        } finally {
+            rotationLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a listener, which is told of no further records.
+     *
+     * @param listener the listener
+     */
+    public void removeListener(MutationListener listener) {
+        synchronized (publishLock) {
+            listeners.remove(listener);
+        }
+    }
+
+    /**
+     * Appends a single record to the end of the journal and waits until it is durable.
+     * The underlying channel is kept open between calls so that each mutation costs one write,
+     * and the wait is not made while holding the journal's lock so that concurrent appends can
+     * be committed in the same batch. Only a rotation excludes appends, and only while the
+     * current file is being sealed.
+     *
+     * @param type   the kind of mutation
+     * @param fields the fields of the record
+     * @throws IOException if the record cannot be written
+     */
+    private void append(MutationType type, Object... fields) throws IOException {
+        byte[] record = encode(type, fields);
+        rotationLock.readLock().lock();
+        try {
+            enqueue(record).get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for group commit", ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        } finally {
+            rotationLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Hands a record to the committer and then to the listeners, so that the listeners see the
+     * records in the order they are written.
+     */
+    private CompletableFuture<Void> enqueue(byte[] record) throws IOException {
+        synchronized (publishLock) {
+            CompletableFuture<Void> written = getCommitter().submit(record);
+            publish(record, advance(record.length));
+            return written;
+        }
+    }
+
+    /**
+     * Moves the position past a record handed to the committer.
+     *
+     * @return the position after the record
+     */
+    private synchronized long advance(int length) throws IOException {
+        position = getPosition() + length;
+        return position;
+    }
+
+    /**
+     * Returns the position in the journal after the last record handed to the committer. Until
+     * a record is appended, it is found from the header and size of the last journal file.
+     *
+     * @return the position, in bytes written to the journal
+     * @throws IOException if the journal cannot be read
+     */
+    public synchronized long getPosition() throws IOException {
+        if (position < 0) {
+            long end = 0;
+            for (Path file : getFiles()) {
+                if (Files.exists(file)) {
+                    long header = readPosition(file);
+                    end = (header >= 0 ? header : end) + Files.size(file);
+                }
+            }
+            position = end;
+        }
+        return position;
+    }
+
+    /**
+     * Returns the sealed segments and then the current file.
+     */
+    private List<Path> getFiles() throws IOException {
+        List<Path> files = getSealedSegments();
+        files.add(path);
+        return files;
+    }
+
+    /**
+     * Reads the position of a file from its {@link MutationType#JOURNAL_POSITION} record.
+     *
+     * @return the position of the file's first byte, or -1 if it has no such record
+     */
+    private static long readPosition(Path file) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line = reader.readLine();
+            String prefix = MutationType.JOURNAL_POSITION.name() + DataManager.SEPARATOR;
+            if (line != null && line.startsWith(prefix)) {
+                try {
+                    return Long.parseLong(line.substring(prefix.length()));
+                } catch (NumberFormatException ex) {
+                    // Cut off by a crash
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * Starts a new, empty journal file at the current position, so that the positions of the
+     * records appended to it follow those of the records before it.
+     */
+    private void startFile() throws IOException {
+        long start = getPosition();
+        byte[] header = encode(MutationType.JOURNAL_POSITION, start);
+        try (FileChannel fc = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            fc.truncate(0);
+            fc.write(ByteBuffer.wrap(header));
+            fc.force(true);
+        }
+        position = start + header.length;
+    }
+
+    /**
+     * Passes a record that is not journalled to the listeners, encoding it only if there are any.
+     */
+    private void publish(MutationType type, Object... fields) {
+        synchronized (publishLock) {
+            if (!listeners.isEmpty()) {
+                publish(encode(type, fields), -1);
+            }
+        }
+    }
+
+    private void publish(byte[] record, long position) {
+        synchronized (publishLock) {
+            if (!listeners.isEmpty()) {
+                String text = new String(record, 0, record.length - 1, StandardCharsets.UTF_8);
+                for (MutationListener listener : listeners) {
+                    listener.mutationLogged(text, position);
+                }
+            }
+        }
+    }
+
+    private static byte[] encode(MutationType type, Object... fields) {
+        StringBuilder sb = new StringBuilder(type.name());
+        for (Object field : fields) {
+            sb.append(DataManager.SEPARATOR).append(field);
+        }
+        sb.append('\n');
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the group committer for the journal file, opening the file if necessary.
+     *
+     * @return the group committer
+     * @throws IOException if the journal file cannot be opened
+     */
+    public synchronized GroupCommitter getCommitter() throws IOException {
+        if (committer == null) {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            committer = new GroupCommitter(channel);
+        }
+        return committer;
+    }
+
+    /**
+     * Seals the current journal file as the next numbered segment and starts a new, empty
+     * journal file. Appends already in progress finish first; later appends go to the new file.
+     *
+     * @return the sealed segment, or null if the journal was empty and nothing was sealed
+     * @throws IOException if the journal file cannot be renamed
+     */
+    public Path rotate() throws IOException {
+        rotationLock.writeLock().lock();
+        try {
+            synchronized (this) {
+                if (!Files.exists(path) || Files.size(path) == headerLength(path)) {
+                    return null;
+                }
+                closeFile();
+                getPosition();
+                List<Path> sealed = getSealedSegments();
+                int next = sealed.isEmpty() ? 1 : segmentNumber(sealed.get(sealed.size() - 1)) + 1;
+                Path segment = Paths.get(path + "." + next);
+                Files.move(path, segment, StandardCopyOption.ATOMIC_MOVE);
+                startFile();
+                return segment;
+            }
+        } finally {
+            rotationLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the sealed segments of the journal, oldest first.
+     *
+     * @return the sealed segment files
+     * @throws IOException if the journal directory cannot be listed
+     */
+    public List<Path> getSealedSegments() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        Path dir = path.toAbsolutePath().getParent();
+        if (dir == null || !Files.isDirectory(dir)) {
+            return segments;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, path.getFileName() + ".*")) {
+            for (Path segment : stream) {
+                if (segmentNumber(segment) > 0) {
+                    segments.add(segment);
+                }
+            }
+        }
+        segments.sort(Comparator.comparingInt(this::segmentNumber));
+        return segments;
+    }
+
+    /**
+     * Returns the length of the {@link MutationType#JOURNAL_POSITION} record a file starts with,
+     * or 0 if it has none.
+     */
+    private static long headerLength(Path file) throws IOException {
+        long start = readPosition(file);
+        return start < 0 ? 0 : encode(MutationType.JOURNAL_POSITION, start).length;
+    }
+
+    private int segmentNumber(Path segment) {
+        String suffix = segment.getFileName().toString().substring(path.getFileName().toString().length() + 1);
+        try {
+            return Integer.parseInt(suffix);
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+
+    /**
+     * Returns the total size of the journal, including its sealed segments.
+     *
+     * @return the size in bytes
+     * @throws IOException if the journal directory cannot be listed
+     */
+    public long size() throws IOException {
+        long size = path.toFile().length();
+        for (Path segment : getSealedSegments()) {
+            size += segment.toFile().length();
+        }
+        return size;
+    }
+
+    /**
+     * Replays every record in the journal, sealed segments first, over the given system.
+     * Replay is idempotent, so records that are already reflected in the base files are skipped.
+     * A record that cannot be parsed (for example a partially written last line after a crash)
+     * is ignored.
+     *
+     * @param fbs the system loaded from the base files
+     * @return the number of records applied
+     * @throws IOException if the journal cannot be read
+     */
+    public synchronized int replay(FlightBookingSystem fbs) throws IOException {
+        return replay(fbs, getFiles());
+    }
+
+    /**
+     * Replays the records of the given journal files, in order, over the given system.
+     *
+     * @param fbs   the system loaded from the base files
+     * @param files the journal files to replay; missing files are skipped
+     * @return the number of records applied
+     * @throws IOException if a journal file cannot be read
+     */
+    public synchronized int replay(FlightBookingSystem fbs, List<Path> files) throws IOException {
+        int applied = 0;
+        for (Path file : files) {
+            if (!Files.exists(file)) {
+                continue;
+            }
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isEmpty()) {
+                        continue;
+                    }
+                    try {
+                        if (apply(fbs, line.split(DataManager.SEPARATOR, -1))) {
+                            applied++;
+                        }
+                    } catch (FlightBookingSystemException | RuntimeException ex) {
+                        System.err.println("Skipping journal record '" + line + "': " + ex.getMessage());
+                    }
+                }
+            }
+        }
+        return applied;
+    }
+
+    /**
+     * Applies a single record, as passed to a {@link MutationListener}, to the system. Like
+     * replay it is idempotent, so a record that is already reflected in the system is skipped.
+     *
+     * @param fbs    the system to update
+     * @param record the record
+     * @return true if the record changed the system, false if it was already applied
+     * @throws FlightBookingSystemException if the record refers to an unknown flight or customer
+     */
+    public static boolean apply(FlightBookingSystem fbs, String record) throws FlightBookingSystemException {
+        return apply(fbs, record.split(DataManager.SEPARATOR, -1));
+    }
+
+    /**
+     * Returns records that rebuild the given system when applied, in order, to an empty one:
+     * each flight and customer, each booking, then each cancellation and deletion. Flights in
+     * departure partitions are only included if their partition is loaded.
+     *
+     * @param fbs the system to describe
+     * @return the records
+     */
+    public static List<String> describe(FlightBookingSystem fbs) {
+        List<String> records = new ArrayList<>();
+        List<String> later = new ArrayList<>();
+        describeFlights(fbs.getFlights(), records, later);
+        describeCustomers(fbs, records, later);
+        describeBookings(fbs, null, records, later);
+        records.addAll(later);
+        return records;
+    }
+
+    /**
+     * Returns records that rebuild the whole of the given system, as {@link #describe} does, but
+     * including every departure partition. A partition that is not in memory is loaded just long
+     * enough to be described and is then dropped again, one partition at a time, so describing
+     * the system never holds more than one extra partition in memory. The caller must hold the
+     * system's monitor.
+     *
+     * @param fbs the system to describe
+     * @return the records
+     * @throws FlightBookingSystemException if a partition cannot be loaded
+     */
+    public static List<String> describeAll(FlightBookingSystem fbs) throws FlightBookingSystemException {
+        List<String> records = new ArrayList<>();
+        List<String> later = new ArrayList<>();
+        describeFlights(fbs.getFlights(), records, later);
+        describeCustomers(fbs, records, later);
+        describeBookings(fbs, null, records, later);
+        Set<Flight> described = Collections.newSetFromMap(new IdentityHashMap<>());
+        described.addAll(fbs.getFlights());
+        for (YearMonth month : fbs.getUnloadedPartitions()) {
+            Set<Flight> flights = Collections.newSetFromMap(new IdentityHashMap<>());
+            try {
+                fbs.loadPartition(month);
+                for (Flight flight : fbs.getFlights()) {
+                    if (!described.contains(flight) && month.equals(fbs.getPartition(flight.getId()))) {
+                        flights.add(flight);
+                    }
+                }
+                describeFlights(flights, records, later);
+                describeBookings(fbs, flights, records, later);
+            } finally {
+                fbs.unloadPartition(month, flights);
+            }
+        }
+        records.addAll(later);
+        return records;
+    }
+
+    private static void describeFlights(Collection<Flight> flights, List<String> records, List<String> later) {
+        for (Flight flight : flights) {
+            records.add(text(MutationType.FLIGHT_ADDED, flight.getId(), flight.getFlightNumber(),
+                    flight.getOrigin(), flight.getDestination(), flight.getDepartureDate(),
+                    flight.getNumberOfSeats(), flight.getPrice()));
+            if (flight.isDeleted()) {
+                later.add(text(MutationType.FLIGHT_DELETED, flight.getId()));
+            }
+        }
+    }
+
+    private static void describeCustomers(FlightBookingSystem fbs, List<String> records, List<String> later) {
+        for (Customer customer : fbs.getAllCustomers()) {
+            records.add(text(MutationType.CUSTOMER_ADDED, customer.getId(), customer.getName(),
+                    customer.getPhone(), customer.getEmail()));
+            if (customer.isDeleted()) {
+                later.add(text(MutationType.CUSTOMER_DELETED, customer.getId()));
+            }
+        }
+    }
+
+    /**
+     * Describes the bookings of every customer, or, if flights are given, only the bookings on
+     * those flights, which have all been loaded along with their partition.
+     */
+    private static void describeBookings(FlightBookingSystem fbs, Set<Flight> flights, List<String> records,
+            List<String> later) {
+        for (Customer customer : fbs.getAllCustomers()) {
+            if (flights != null && !customer.isBookingsLoaded()) {
+                continue;
+            }
+            for (Booking booking : customer.getBookings()) {
+                if (flights != null && !flights.contains(booking.getFlight())) {
+                    continue;
+                }
+                records.add(text(MutationType.BOOKING_CREATED, booking.getId(), customer.getId(),
+                        booking.getFlight().getId(), booking.getBookingDate(), booking.getPrice()));
+                if (booking.isCancelled()) {
+                    later.add(text(MutationType.BOOKING_CANCELLED, booking.getId(), customer.getId()));
+                }
+            }
+        }
+    }
+
+    private static String text(MutationType type, Object... fields) {
+        byte[] record = encode(type, fields);
+        return new String(record, 0, record.length - 1, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Applies a single parsed record to the system.
+     *
+     * @param fbs    the system to update
+     * @param fields the fields of the record, starting with the mutation type
+     * @return true if the record changed the system, false if it was already applied
+     * @throws FlightBookingSystemException if the record refers to an unknown flight or customer
+     */
+    private static boolean apply(FlightBookingSystem fbs, String[] fields) throws FlightBookingSystemException {
+        switch (MutationType.valueOf(fields[0])) {
+            case BOOKING_CREATED: {
+                int id = Integer.parseInt(fields[1]);
+                Customer customer = fbs.getCustomerByID(Integer.parseInt(fields[2]));
+                Flight flight = fbs.getFlightByID(Integer.parseInt(fields[3]));
+                if (findBooking(customer, id) != null) {
+                    return false;
+                }
+                Booking booking = new Booking(id, customer, flight, LocalDate.parse(fields[4]),
+                        Double.parseDouble(fields[5]));
+                customer.addBooking(booking);
+                flight.addPassenger(customer);
+                if (id > fbs.getMaxBookingId()) {
+                    fbs.setMaxBookingId(id);
+                }
+                return true;
+            }
+            case BOOKING_CANCELLED: {
+                Customer customer = fbs.getCustomerByID(Integer.parseInt(fields[2]));
+                Booking booking = findBooking(customer, Integer.parseInt(fields[1]));
+                if (booking == null) {
+                    // The record does not name the flight, so it may be in any unloaded partition
+                    fbs.loadAllPartitions();
+                    booking = findBooking(customer, Integer.parseInt(fields[1]));
+                }
+                if (booking == null || booking.isCancelled()) {
+                    return false;
+                }
+                booking.cancelBooking();
+                return true;
+            }
+            case FLIGHT_DELETED: {
+                Flight flight = fbs.getFlightByID(Integer.parseInt(fields[1]));
+                if (flight.isDeleted()) {
+                    return false;
+                }
+                flight.setDeleted(true);
+                return true;
+            }
+            case CUSTOMER_DELETED: {
+                Customer customer = fbs.getCustomerByID(Integer.parseInt(fields[1]));
+                if (customer.isDeleted()) {
+                    return false;
+                }
+                customer.setDeleted(true);
+                return true;
+            }
+            case FLIGHT_ADDED: {
+                int id = Integer.parseInt(fields[1]);
+                if (hasFlight(fbs, id)) {
+                    return false;
+                }
+                fbs.addFlight(new Flight(id, fields[2], fields[3], fields[4], LocalDate.parse(fields[5]),
+                        Integer.parseInt(fields[6]), Double.parseDouble(fields[7])));
+                return true;
+            }
+            case CUSTOMER_ADDED: {
+                int id = Integer.parseInt(fields[1]);
+                if (hasCustomer(fbs, id)) {
+                    return false;
+                }
+                fbs.addCustomer(new Customer(id, fields[2], fields[3], fields[4]));
+                return true;
+            }
+            case FLIGHT_UPDATED: {
+                Flight flight = fbs.getFlightByID(Integer.parseInt(fields[1]));
+                LocalDate departureDate = LocalDate.parse(fields[5]);
+                int seats = Integer.parseInt(fields[6]);
+                double price = Double.parseDouble(fields[7]);
+                boolean deleted = Boolean.parseBoolean(fields[8]);
+                if (flight.getFlightNumber().equals(fields[2]) && flight.getOrigin().equals(fields[3])
+                        && flight.getDestination().equals(fields[4])
+                        && flight.getDepartureDate().equals(departureDate) && flight.getNumberOfSeats() == seats
+                        && Double.compare(flight.getPrice(), price) == 0 && flight.isDeleted() == deleted) {
+                    return false;
+                }
+                flight.setNumberOfSeats(seats);
+                flight.setFlightNumber(fields[2]);
+                flight.setOrigin(fields[3]);
+                flight.setDestination(fields[4]);
+                flight.setDepartureDate(departureDate);
+                flight.setPrice(price);
+                flight.setDeleted(deleted);
+                return true;
+            }
+            case CUSTOMER_UPDATED: {
+                Customer customer = fbs.getCustomerByID(Integer.parseInt(fields[1]));
+                boolean deleted = Boolean.parseBoolean(fields[5]);
+                if (customer.getName().equals(fields[2]) && fields[3].equals(customer.getPhone())
+                        && fields[4].equals(customer.getEmail()) && customer.isDeleted() == deleted) {
+                    return false;
+                }
+                customer.setName(fields[2]);
+                customer.setPhone(fields[3]);
+                customer.setEmail(fields[4]);
+                customer.setDeleted(deleted);
+                return true;
+            }
+            default:
+                return false;
+        }
+    }
+
+    private static boolean hasFlight(FlightBookingSystem fbs, int id) {
+        try {
+            fbs.getFlightByID(id);
+            return true;
+        } catch (FlightBookingSystemException ex) {
+            return false;
+        }
+    }
+
+    private static boolean hasCustomer(FlightBookingSystem fbs, int id) {
+        try {
+            fbs.getCustomerByID(id);
+            return true;
+        } catch (FlightBookingSystemException ex) {
+            return false;
+        }
+    }
+
+    private static Booking findBooking(Customer customer, int bookingId) {
+        for (Booking booking : customer.getBookings()) {
+            if (booking.getId() == bookingId) {
+                return booking;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Discards every record in the journal, including the sealed segments. This is called once
+     * the base files have been rewritten and so already contain the effect of all the journalled
+     * mutations. The journal file is left holding only its position, which the next record follows.
+     *
+     * @throws IOException if the journal cannot be truncated
+     */
+    public void truncate() throws IOException {
+        rotationLock.writeLock().lock();
+        try {
+            synchronized (this) {
+                closeFile(); // Queued records are written first, so none lands after the truncation
+                if (getPosition() > 0) {
+                    discard(getSealedSegments());
+                    startFile();
+                }
+            }
+        } finally {
+            rotationLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Deletes sealed segments whose records have been folded into the base files.
+     *
+     * @param segments the segments to delete
+     * @throws IOException if a segment cannot be deleted
+     */
+    public void discard(List<Path> segments) throws IOException {
+        for (Path segment : segments) {
+            Files.deleteIfExists(segment);
+        }
+    }
+
+    /**
+     * Commits any queued records and closes the journal file. It is reopened on the next append.
+     *
+     * @throws IOException if the file cannot be closed
+     */
+    public void close() throws IOException {
+        rotationLock.writeLock().lock();
+        try {
+            synchronized (this) {
+                closeFile();
+            }
+        } finally {
+            rotationLock.writeLock().unlock();
+        }
+    }
+
+    private void closeFile() throws IOException {
+        if (committer != null) {
+            committer.shutdown();
+            committer = null;
+        }
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package bcu.cmp5332.bookingsystem.data;
+
+import bcu.cmp5332.bookingsystem.main.FlightBookingSystemException;
+import bcu.cmp5332.bookingsystem.model.Customer;
+import bcu.cmp5332.bookingsystem.model.Flight;
+import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Loads the text data files on a thread pool, following the dependencies between them.
+ * <p>
+ * Flights and customers do not depend on each other, so both files are parsed at the same
+ * time. Bookings refer to both, but only through their IDs, so the booking file is split into
+ * line-aligned byte ranges that are parsed in parallel as well. Only the final merge step, which
+ * adds flights and customers to the FlightBookingSystem and links every booking to its
+ * {@code Customer} and {@code Flight}, runs on the calling thread, because the model is not
+ * thread-safe.
+ * </p>
+ * <p>
+ * With {@link #setLazyBookings lazy bookings} the booking file is not parsed into bookings at
+ * all: once flights and customers are merged it is handed to {@link LazyBookings}, which only
+ * records where each customer's bookings are.
+ * </p>
+ * <p>
+ * Every record's {@link RecordFrame} is checked as it is parsed, so the booking file is also
+ * checked in parallel, and a record that is damaged or cannot be parsed is handed to the
+ * {@link Quarantine} of its file instead of stopping the load. The loader is used on start-up
+ * whenever the binary snapshot does not match the text files.
+ * </p>
+ * <pre>
+ *   flights ---+
+ *              +--&gt; merge --&gt; link bookings
+ *   customers -+                  ^
+ *   bookings[0..n] ---------------+
+ * </pre>
+ *
+ * @author Sugam Adhikari
+ * @author Prasansha Tamang
+ */
+public class ParallelLoader {
+
+    /** The largest byte range of the booking file parsed by a single task. */
+    private static final long MAX_CHUNK_BYTES = 64L * 1024 * 1024;
+
+    private final FlightDataManager flights;
+    private final CustomerDataManager customers;
+    private final BookingDataManager bookings;
+    private final String bookingResource;
+    private final int threads;
+    private boolean lazyBookings;
+
+    /**
+     * Creates a loader for the given data managers that uses one thread per available processor.
+     *
+     * @param flights         the flight data manager
+     * @param customers       the customer data manager
+     * @param bookings        the booking data manager
+     * @param bookingResource the path of the booking data file, used to size the parse chunks
+     */
+    public ParallelLoader(FlightDataManager flights, CustomerDataManager customers,
+            BookingDataManager bookings, String bookingResource) {
+        this(flights, customers, bookings, bookingResource, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a loader for the given data managers.
+     *
+     * @param flights         the flight data manager
+     * @param customers       the customer data manager
+     * @param bookings        the booking data manager
+     * @param bookingResource the path of the booking data file, used to size the parse chunks
+     * @param threads         the number of worker threads
+     */
+    public ParallelLoader(FlightDataManager flights, CustomerDataManager customers,
+            BookingDataManager bookings, String bookingResource, int threads) {
+        this.flights = flights;
+        this.customers = customers;
+        this.bookings = bookings;
+        this.bookingResource = bookingResource;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Sets whether the bookings are left in the file and read per customer when first needed.
+     *
+     * @param lazyBookings true to attach the bookings through {@link LazyBookings}
+     */
+    public void setLazyBookings(boolean lazyBookings) {
+        this.lazyBookings = lazyBookings;
+    }
+
+    /**
+     * Loads flights, customers and bookings into the given system.
+     *
+     * @param fbs the empty system to populate
+     * @throws IOException if a data file cannot be read
+     * @throws FlightBookingSystemException if a data file contains invalid data
+     */
+    public void load(FlightBookingSystem fbs) throws IOException, FlightBookingSystemException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "data-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            Future<List<Flight>> flightsParsed = pool.submit(flights::parseData);
+            Future<List<Customer>> customersParsed = pool.submit(customers::parseData);
+
+            if (lazyBookings) {
+                fbs.addFlights(await(flightsParsed));
+                fbs.addCustomers(await(customersParsed));
+                if (new File(bookingResource).exists()) {
+                    LazyBookings.attach(fbs, bookingResource, bookings.getQuarantine());
+                }
+                return;
+            }
+            long size = new File(bookingResource).length();
+            int chunkCount = (int) Math.max(threads, (size + MAX_CHUNK_BYTES - 1) / MAX_CHUNK_BYTES);
+            long[] boundaries = bookings.splitChunks(chunkCount);
+            List<Future<List<BookingRecord>>> bookingsParsed = new ArrayList<>(chunkCount);
+            for (int i = 0; i < chunkCount; i++) {
+                final long start = boundaries[i];
+                final long end = boundaries[i + 1];
+                bookingsParsed.add(pool.submit((Callable<List<BookingRecord>>) () -> bookings.parseChunk(start, end)));
+            }
+
+            fbs.addFlights(await(flightsParsed));
+            fbs.addCustomers(await(customersParsed));
+            List<List<BookingRecord>> chunks = new ArrayList<>(chunkCount);
+            for (Future<List<BookingRecord>> chunk : bookingsParsed) {
+                chunks.add(await(chunk));
+            }
+            bookings.linkBookings(fbs, chunks);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Waits for a parse task and rethrows its failure as the checked exception it was raised with.
+     */
+    private static <T> T await(Future<T> task) throws IOException, FlightBookingSystemException {
+        try {
+            return task.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while loading data", ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof FlightBookingSystemException) {
+                throw (FlightBookingSystemException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package bcu.cmp5332.bookingsystem.data;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Collects the damaged records found while loading a data file and moves them out of it.
+ * <p>
+ * A {@link RecordReader} given a quarantine hands it every line whose {@link RecordFrame} does
+ * not match, and the data managers hand it every line they cannot parse, instead of stopping
+ * the load. Several readers over different chunks of the file can report to the same
+ * quarantine at once. A record that parses but refers to a customer or flight that does not
+ * exist is only found once every chunk has been read, so it is handed over by its offset alone,
+ * and its line is read back from the file when it is moved. Once the file has been read, {@link #commit} appends the lines to
+ * {@code <file>.quarantine}, with their offset and the reason, for someone to repair by hand,
+ * and rewrites the data file without them, so that the next load does not find them again.
+ * </p>
+ * <pre>
+ * &lt;offset&gt;::&lt;reason&gt;::&lt;line&gt;
+ * </pre>
+ *
+ * @author Sugam Adhikari
+ * @author Prasansha Tamang
+ */
+public class Quarantine {
+
+    /** The suffix of the file the damaged records are moved to. */
+    public static final String SUFFIX = ".quarantine";
+
+    private final String resource;
+    private final List<Rejected> rejected = new ArrayList<>();
+
+    /**
+     * Creates an empty quarantine for the given data file.
+     *
+     * @param resource the path of the data file
+     */
+    public Quarantine(String resource) {
+        this.resource = resource;
+    }
+
+    /**
+     * Returns the path of the data file.
+     *
+     * @return the path
+     */
+    public String getResource() {
+        return resource;
+    }
+
+    /**
+     * Records a damaged line.
+     *
+     * @param offset the offset of the start of the line in the data file
+     * @param length the length of the line in bytes, including its terminator
+     * @param line   the text of the line, for the quarantine file
+     * @param reason why the line was rejected
+     */
+    public synchronized void reject(long offset, int length, String line, String reason) {
+        rejected.add(new Rejected(offset, length, line, reason));
+    }
+
+    /**
+     * Records a damaged line by its offset alone; the line is read from the data file when the
+     * quarantine is committed.
+     *
+     * @param offset the offset of the start of the line in the data file
+     * @param reason why the line was rejected
+     */
+    public synchronized void reject(long offset, String reason) {
+        rejected.add(new Rejected(offset, -1, null, reason));
+    }
+
+    /**
+     * Returns the number of lines rejected and not yet committed.
+     *
+     * @return the number of lines
+     */
+    public synchronized int size() {
+        return rejected.size();
+    }
+
+    /**
+     * Moves the rejected lines to the quarantine file, as described for this class. Nothing is
+     * written if no line was rejected.
+     *
+     * @return the number of lines moved
+     * @throws IOException if the quarantine file or the data file cannot be written
+     */
+    public synchronized int commit() throws IOException {
+        if (rejected.isEmpty()) {
+            return 0;
+        }
+        rejected.sort(Comparator.comparingLong(r -> r.offset));
+        Path data = Paths.get(resource);
+        try (FileChannel channel = FileChannel.open(data, StandardOpenOption.READ)) {
+            for (int i = 0; i < rejected.size(); i++) {
+                if (rejected.get(i).line == null) {
+                    rejected.set(i, readLine(channel, rejected.get(i)));
+                }
+            }
+            DurableFile.appendText(resource + SUFFIX, out -> {
+                for (Rejected r : rejected) {
+                    out.println(r.offset + DataManager.SEPARATOR + r.reason + DataManager.SEPARATOR + r.line);
+                }
+            });
+            DurableFile.replace(resource, out -> {
+                long position = 0;
+                for (Rejected r : rejected) {
+                    copy(channel, position, r.offset, out);
+                    position = r.offset + r.length;
+                }
+                copy(channel, position, channel.size(), out);
+            });
+        }
+        RecordIndex.update(resource);
+        int count = rejected.size();
+        System.err.println("Moved " + count + " damaged record(s) from " + resource + " to "
+                + resource + SUFFIX + "; first: line at offset " + rejected.get(0).offset + ", "
+                + rejected.get(0).reason);
+        rejected.clear();
+        return count;
+    }
+
+    /**
+     * Reads the line of a line rejected by its offset, up to and including its terminator.
+     */
+    private static Rejected readLine(FileChannel channel, Rejected r) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        long position = r.offset;
+        boolean ended = false;
+        while (!ended && channel.read(buffer, position) > 0) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                byte b = buffer.get();
+                line.write(b);
+                if (b == '\n') {
+                    ended = true;
+                    break;
+                }
+            }
+            position += buffer.position();
+            buffer.clear();
+        }
+        byte[] bytes = line.toByteArray();
+        int end = bytes.length;
+        while (end > 0 && (bytes[end - 1] == '\n' || bytes[end - 1] == '\r')) {
+            end--;
+        }
+        return new Rejected(r.offset, bytes.length, new String(bytes, 0, end, StandardCharsets.UTF_8), r.reason);
+    }
+
+    private static void copy(FileChannel channel, long from, long to, OutputStream out) throws IOException {
+        if (to <= from) {
+            return;
+        }
+        channel.position(from);
+        InputStream in = Channels.newInputStream(channel);
+        byte[] buffer = new byte[64 * 1024];
+        long remaining = to - from;
+        while (remaining > 0) {
+            int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (read < 0) {
+                break;
+            }
+            out.write(buffer, 0, read);
+            remaining -= read;
+        }
+    }
+
+    /**
+     * A rejected line.
+     */
+    private static final class Rejected {
+        final long offset;
+        final int length;
+        final String line;
+        final String reason;
+
+        Rejected(long offset, int length, String line, String reason) {
+            this.offset = offset;
+            this.length = length;
+            this.line = line;
+            this.reason = reason;
+        }
+    }
+}
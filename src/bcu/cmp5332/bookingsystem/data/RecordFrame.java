@@ -0,0 +1,106 @@
+package bcu.cmp5332.bookingsystem.data;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Frames the records of the text data files with their length and a {@link Crc32c} checksum,
+ * so that a damaged record can be recognised and set aside on load instead of stopping it.
+ * <p>
+ * A framed record is still one line, with a header in front of the record:
+ * </p>
+ * <pre>
+ * #&lt;length&gt;#&lt;crc32c&gt;#&lt;record&gt;
+ * #46#f1d86da8#1::BA123::LHR::JFK::2030-07-01::200::500.0::::
+ * </pre>
+ * <p>
+ * The length is the number of UTF-8 bytes of the record, in decimal, and the checksum is
+ * eight lowercase hexadecimal digits. A record cut short or run into the next one fails the
+ * length check, and any other change to its bytes fails the checksum. A line that does not
+ * start with {@code #} has no frame; such lines, written before records were framed, are read
+ * as they are and gain a frame the next time their file is rewritten.
+ * </p>
+ *
+ * @author Sugam Adhikari
+ * @author Prasansha Tamang
+ */
+public final class RecordFrame {
+
+    /** Returned by {@link #payloadStart} for a line whose frame does not match its record. */
+    public static final int CORRUPT = -1;
+
+    private static final byte MARK = '#';
+    private static final int CHECKSUM_DIGITS = 8;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private RecordFrame() {
+    }
+
+    /**
+     * Frames a record.
+     *
+     * @param record the record, without a line terminator
+     * @return the framed record
+     */
+    public static String frame(String record) {
+        byte[] bytes = record.getBytes(StandardCharsets.UTF_8);
+        int crc = Crc32c.compute(bytes, 0, bytes.length);
+        StringBuilder sb = new StringBuilder(record.length() + 20);
+        sb.append('#').append(bytes.length).append('#');
+        for (int shift = 28; shift >= 0; shift -= 4) {
+            sb.append(HEX[(crc >>> shift) & 0xf]);
+        }
+        return sb.append('#').append(record).toString();
+    }
+
+    /**
+     * Checks the frame of a line and finds where its record starts.
+     *
+     * @param buf   the bytes holding the line
+     * @param start the offset of the start of the line
+     * @param end   the offset just past the end of the line, without its terminator
+     * @return the offset of the record: {@code start} if the line has no frame, just past the
+     *         header if the frame matches the record, or {@link #CORRUPT} if it does not
+     */
+    public static int payloadStart(byte[] buf, int start, int end) {
+        if (start >= end || buf[start] != MARK) {
+            return start;
+        }
+        int i = start + 1;
+        long length = 0;
+        int digits = 0;
+        while (i < end && buf[i] >= '0' && buf[i] <= '9' && digits < 10) {
+            length = length * 10 + (buf[i++] - '0');
+            digits++;
+        }
+        if (digits == 0 || i >= end || buf[i++] != MARK) {
+            return CORRUPT;
+        }
+        int crc = 0;
+        for (int stop = i + CHECKSUM_DIGITS; i < stop; i++) {
+            int digit = i < end ? Character.digit(buf[i], 16) : -1;
+            if (digit < 0) {
+                return CORRUPT;
+            }
+            crc = crc << 4 | digit;
+        }
+        if (i >= end || buf[i++] != MARK || end - i != length || Crc32c.compute(buf, i, end - i) != crc) {
+            return CORRUPT;
+        }
+        return i;
+    }
+
+    /**
+     * Returns the length of the header of a framed line, without checking it.
+     *
+     * @param line the line
+     * @return the number of characters before the record, or 0 if the line has no frame
+     */
+    public static int headerLength(String line) {
+        if (line.isEmpty() || line.charAt(0) != MARK) {
+            return 0;
+        }
+        int second = line.indexOf(MARK, 1);
+        int third = second < 0 ? -1 : line.indexOf(MARK, second + 1);
+        return third < 0 ? 0 : third + 1;
+    }
+}
@@ -0,0 +1,366 @@
+package bcu.cmp5332.bookingsystem.data;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * A sidecar index that maps record IDs to the byte offset of their line in a data file, so
+ * that a single record can be read without loading the whole file.
+ * <p>
+ * The index lives next to the data file as {@code <file>.idx}: a small header describing the
+ * data file it was built from, followed by {@code (id, offset)} entries sorted by ID. The
+ * index is memory-mapped and searched by binary search. Records appended to the data file after
+ * the index was written are scanned into an in-memory tail on the next lookup, and the index is
+ * written again once that tail grows past {@link #TAIL_LIMIT} bytes of data. When the data
+ * file has been replaced, for example by a full rewrite or a compaction, the index is rebuilt.
+ * When a data file holds more than one record for an ID the last one wins, as it does on load.
+ * </p>
+ * <p>
+ * The index is only a cache: it is written through {@link DurableFile}, and a caller that finds
+ * a different record at an offset than the one it asked for should {@link #rebuild} it.
+ * </p>
+ *
+ * @author Sugam Adhikari
+ * @author Prasansha Tamang
+ */
+public class RecordIndex {
+
+    /** The suffix appended to a data file's path to name its index. */
+    public static final String SUFFIX = ".idx";
+
+    /** The number of unindexed bytes at the end of the data file that triggers a rewrite of the index. */
+    static final long TAIL_LIMIT = 64 * 1024;
+
+    private static final int MAGIC = 0x49445831; // "IDX1"
+    private static final int HEADER_SIZE = 4 + 8 + 8 + 4 + 4;
+    private static final int ENTRY_SIZE = 4 + 8;
+    private static final int CHECK_BYTES = 64;
+
+    private final Path data;
+    private final Path index;
+
+    private MappedByteBuffer entries;
+    private int count;
+    private long indexedLength;
+    private long fileKey;
+    private int tailCheck;
+
+    private int[] tailIds = new int[16];
+    private long[] tailOffsets = new long[16];
+    private int tailCount;
+    private long scannedLength;
+
+    /**
+     * Creates an index for the given data file. Nothing is read until the first lookup.
+     *
+     * @param resource the path of the data file
+     */
+    public RecordIndex(String resource) {
+        this.data = Paths.get(resource);
+        this.index = Paths.get(resource + SUFFIX);
+    }
+
+    /**
+     * Brings the index of the given data file up to date, if the file has one. This is called
+     * after the data file has been written, so that the next lookup does not have to do the work.
+     *
+     * @param resource the path of the data file
+     * @throws IOException if the data file or index cannot be read or written
+     */
+    public static void update(String resource) throws IOException {
+        if (Files.exists(Paths.get(resource + SUFFIX))) {
+            RecordIndex recordIndex = new RecordIndex(resource);
+            recordIndex.refresh();
+            if (recordIndex.tailCount > 0) {
+                recordIndex.write(recordIndex.merge());
+            }
+        }
+    }
+
+    /**
+     * Finds the offset of the last record with the given ID.
+     *
+     * @param id the record ID
+     * @return the byte offset of the start of the record's line, or -1 if there is no such record
+     * @throws IOException if the data file or index cannot be read or written
+     */
+    public synchronized long find(int id) throws IOException {
+        refresh();
+        for (int i = tailCount - 1; i >= 0; i--) {
+            if (tailIds[i] == id) {
+                return tailOffsets[i];
+            }
+        }
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midId = entries.getInt(HEADER_SIZE + mid * ENTRY_SIZE);
+            if (midId < id) {
+                low = mid + 1;
+            } else if (midId > id) {
+                high = mid - 1;
+            } else {
+                return entries.getLong(HEADER_SIZE + mid * ENTRY_SIZE + 4);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Discards the index and builds it again from the whole data file.
+     *
+     * @throws IOException if the data file cannot be read or the index cannot be written
+     */
+    public synchronized void rebuild() throws IOException {
+        entries = null;
+        count = 0;
+        tailCount = 0;
+        scannedLength = 0;
+        scan(Files.exists(data) ? Files.size(data) : 0);
+        write(merge());
+    }
+
+    /**
+     * Makes sure the index describes the current data file, opening, extending or rebuilding it
+     * as needed.
+     */
+    private void refresh() throws IOException {
+        long size;
+        try {
+            size = Files.size(data);
+        } catch (NoSuchFileException ex) {
+            size = 0;
+        }
+        if (entries == null && !open()) {
+            rebuild();
+            return;
+        }
+        if (size < scannedLength || fileKey(data) != fileKey || checksum(indexedLength) != tailCheck) {
+            rebuild();
+            return;
+        }
+        if (size > scannedLength) {
+            scan(size);
+            if (scannedLength - indexedLength > TAIL_LIMIT) {
+                write(merge());
+            }
+        }
+    }
+
+    /**
+     * Maps an existing index file, checking that it is complete.
+     *
+     * @return true if a usable index was mapped
+     */
+    private boolean open() throws IOException {
+        if (!Files.exists(index)) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(index, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE) {
+                return false;
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int entryCount = mapped.getInt(HEADER_SIZE - 4);
+            if (mapped.getInt(0) != MAGIC || entryCount < 0 || size != HEADER_SIZE + (long) entryCount * ENTRY_SIZE) {
+                return false;
+            }
+            entries = mapped;
+            indexedLength = mapped.getLong(4);
+            fileKey = mapped.getLong(12);
+            tailCheck = mapped.getInt(20);
+            count = entryCount;
+            tailCount = 0;
+            scannedLength = indexedLength;
+            return true;
+        }
+    }
+
+    /**
+     * Reads the complete lines between the end of what has been indexed and {@code size},
+     * adding an entry for each record to the in-memory tail. A last line that has no newline
+     * yet, such as one that is still being appended, is left for a later scan. The
+     * {@link RecordFrame} header of a framed line is skipped to find its ID.
+     */
+    private void scan(long size) throws IOException {
+        if (size <= scannedLength) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(data, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            byte[] bytes = buffer.array();
+            long position = scannedLength;
+            long lineStart = position;
+            long id = 0;
+            int digits = 0;
+            boolean inId = true;
+            boolean keyed = false;
+            int marks = 0; // The '#' characters of a frame header seen so far
+            boolean framed = false;
+            while (position < size) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), size - position));
+                int read = channel.read(buffer, position);
+                if (read <= 0) {
+                    break;
+                }
+                for (int i = 0; i < read; i++) {
+                    byte b = bytes[i];
+                    if (b == '\n') {
+                        if (keyed && id <= Integer.MAX_VALUE) {
+                            addTail((int) id, lineStart);
+                        }
+                        lineStart = position + i + 1;
+                        id = 0;
+                        digits = 0;
+                        inId = true;
+                        keyed = false;
+                        marks = 0;
+                        framed = false;
+                    } else if (framed && marks < 3) {
+                        marks += b == '#' ? 1 : 0;
+                    } else if (inId && b == '#' && position + i == lineStart) {
+                        framed = true;
+                        marks = 1;
+                    } else if (inId) {
+                        if (b >= '0' && b <= '9' && digits < 10) {
+                            id = id * 10 + (b - '0');
+                            digits++;
+                        } else {
+                            inId = false;
+                            keyed = b == ':' && digits > 0;
+                        }
+                    }
+                }
+                position += read;
+            }
+            scannedLength = lineStart;
+        }
+    }
+
+    private void addTail(int id, long offset) {
+        if (tailCount == tailIds.length) {
+            tailIds = Arrays.copyOf(tailIds, tailCount * 2);
+            tailOffsets = Arrays.copyOf(tailOffsets, tailCount * 2);
+        }
+        tailIds[tailCount] = id;
+        tailOffsets[tailCount] = offset;
+        tailCount++;
+    }
+
+    /**
+     * Merges the mapped entries and the in-memory tail into one list sorted by ID, keeping the
+     * last entry for each ID.
+     *
+     * @return the merged entries as {@code id, offset} pairs, packed as in {@link #write}
+     */
+    private long[][] merge() {
+        int total = count + tailCount;
+        long[] order = new long[total];
+        long[] offsets = new long[total];
+        for (int i = 0; i < count; i++) {
+            order[i] = ((long) entries.getInt(HEADER_SIZE + i * ENTRY_SIZE) << 32) | i;
+            offsets[i] = entries.getLong(HEADER_SIZE + i * ENTRY_SIZE + 4);
+        }
+        for (int i = 0; i < tailCount; i++) {
+            order[count + i] = ((long) tailIds[i] << 32) | (count + i);
+            offsets[count + i] = tailOffsets[i];
+        }
+        Arrays.sort(order);
+        long[] ids = new long[total];
+        long[] sortedOffsets = new long[total];
+        int unique = 0;
+        for (int i = 0; i < total; i++) {
+            if (i + 1 < total && (order[i] >> 32) == (order[i + 1] >> 32)) {
+                continue; // A later record for the same ID sorts after this one and wins
+            }
+            ids[unique] = order[i] >> 32;
+            sortedOffsets[unique] = offsets[(int) order[i]];
+            unique++;
+        }
+        return new long[][] {Arrays.copyOf(ids, unique), Arrays.copyOf(sortedOffsets, unique)};
+    }
+
+    /**
+     * Writes the given entries as the index of everything scanned so far and maps the result.
+     */
+    private void write(long[][] merged) throws IOException {
+        long[] ids = merged[0];
+        long[] offsets = merged[1];
+        long length = scannedLength;
+        long key = fileKey(data);
+        int check = checksum(length);
+        DurableFile.replace(index.toString(), stream -> {
+            DataOutputStream out = new DataOutputStream(stream);
+            out.writeInt(MAGIC);
+            out.writeLong(length);
+            out.writeLong(key);
+            out.writeInt(check);
+            out.writeInt(ids.length);
+            for (int i = 0; i < ids.length; i++) {
+                out.writeInt((int) ids[i]);
+                out.writeLong(offsets[i]);
+            }
+            out.flush();
+        });
+        if (!open()) {
+            throw new IOException("Unable to read back the index " + index);
+        }
+    }
+
+    /**
+     * Identifies the data file on disk, so that a file replaced by a rename is not mistaken for
+     * the one the index was built from. Returns 0 where the platform has no file keys.
+     */
+    private long fileKey(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        Object key = Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+        if (key == null) {
+            return 0;
+        }
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.toString().getBytes(StandardCharsets.UTF_8)) {
+            hash = (hash ^ b) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Checksums the last few bytes before {@code length}, which an append leaves unchanged.
+     */
+    private int checksum(long length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        int size = (int) Math.min(CHECK_BYTES, length);
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        try (FileChannel channel = FileChannel.open(data, StandardOpenOption.READ)) {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, length - size + buffer.position()) <= 0) {
+                    return -1;
+                }
+            }
+        } catch (NoSuchFileException ex) {
+            return -1;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, size);
+        return (int) crc.getValue();
+    }
+}
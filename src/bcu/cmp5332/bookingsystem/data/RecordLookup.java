@@ -0,0 +1,379 @@
+package bcu.cmp5332.bookingsystem.data;
+
+import bcu.cmp5332.bookingsystem.main.FlightBookingSystemException;
+import bcu.cmp5332.bookingsystem.model.Booking;
+import bcu.cmp5332.bookingsystem.model.Customer;
+import bcu.cmp5332.bookingsystem.model.Flight;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Looks up single flights, customers and bookings by ID without loading the data files.
+ * <p>
+ * Each data file has a {@link RecordIndex} from which the offset of a record is found, and
+ * only that line is read and parsed. A booking is returned together with its customer and
+ * flight, which are looked up the same way; nothing else is materialized, so a looked-up
+ * customer does not carry its other bookings and a flight does not carry its passengers.
+ * Mutations still waiting in the {@link MutationJournal} are applied to the result, so a
+ * lookup sees the same state a full load would. Flights listed in the manifest of the
+ * {@link DeparturePartitions} are read from their partition, and a booking that is not in the
+ * current booking file is searched for in the partitions, newest first. In an archived partition
+ * the record is found through the block index of its {@link BlockArchive}.
+ * </p>
+ * <p>
+ * A lookup never writes to the data files or the journal, so it can safely be run against the
+ * data directory of a running system. Only the index files next to the data files are written.
+ * </p>
+ *
+ * @author Sugam Adhikari
+ * @author Prasansha Tamang
+ */
+public class RecordLookup {
+
+    private final Path flights;
+    private final Path customers;
+    private final Path bookings;
+    private final RecordIndex flightIndex;
+    private final RecordIndex customerIndex;
+    private final RecordIndex bookingIndex;
+    private final MutationJournal journal;
+    private final Path journalPath;
+    private final DeparturePartitions partitions;
+    private final Map<String, RecordIndex> partitionIndexes = new HashMap<>();
+    private final Map<String, BlockArchive> partitionArchives = new HashMap<>();
+    private Map<Integer, YearMonth> archivedFlights = Collections.emptyMap();
+    private List<YearMonth> partitionMonths = Collections.emptyList();
+    private FileTime manifestTime;
+
+    private final Map<Integer, String[]> journalBookings = new HashMap<>();
+    private final Set<Integer> cancelledBookings = new HashSet<>();
+    private final Set<Integer> deletedFlights = new HashSet<>();
+    private final Set<Integer> deletedCustomers = new HashSet<>();
+    private List<Path> journalSegments;
+    private long journalRead;
+
+    /**
+     * Creates a lookup over the default data files.
+     */
+    public RecordLookup() {
+        this(FlightDataManager.RESOURCE, CustomerDataManager.RESOURCE, BookingDataManager.RESOURCE,
+                MutationJournal.RESOURCE, DeparturePartitions.DIRECTORY);
+    }
+
+    /**
+     * Creates a lookup over the given data files, without partitions.
+     *
+     * @param flightResource   the path to the flight data file
+     * @param customerResource the path to the customer data file
+     * @param bookingResource  the path to the booking data file
+     * @param journalResource  the path to the mutation journal
+     */
+    public RecordLookup(String flightResource, String customerResource, String bookingResource,
+            String journalResource) {
+        this(flightResource, customerResource, bookingResource, journalResource, null);
+    }
+
+    /**
+     * Creates a lookup over the given data files and partitions.
+     *
+     * @param flightResource   the path to the flight data file
+     * @param customerResource the path to the customer data file
+     * @param bookingResource  the path to the booking data file
+     * @param journalResource  the path to the mutation journal
+     * @param partitionDirectory the directory holding the departure partitions, or null if
+     *                           there are none
+     */
+    public RecordLookup(String flightResource, String customerResource, String bookingResource,
+            String journalResource, String partitionDirectory) {
+        this.flights = Paths.get(flightResource);
+        this.customers = Paths.get(customerResource);
+        this.bookings = Paths.get(bookingResource);
+        this.flightIndex = new RecordIndex(flightResource);
+        this.customerIndex = new RecordIndex(customerResource);
+        this.bookingIndex = new RecordIndex(bookingResource);
+        this.journal = new MutationJournal(journalResource);
+        this.journalPath = Paths.get(journalResource);
+        this.partitions = partitionDirectory == null ? null : new DeparturePartitions(partitionDirectory);
+    }
+
+    /**
+     * Looks up a single flight.
+     *
+     * @param id the flight ID
+     * @return the flight, without passengers
+     * @throws IOException if a data file cannot be read
+     * @throws FlightBookingSystemException if there is no flight with that ID
+     */
+    public synchronized Flight findFlight(int id) throws IOException, FlightBookingSystemException {
+        refreshJournal();
+        Flight flight = readFlight(id);
+        if (flight == null) {
+            throw new FlightBookingSystemException("There is no flight with that ID.");
+        }
+        return flight;
+    }
+
+    /**
+     * Looks up a single customer.
+     *
+     * @param id the customer ID
+     * @return the customer, without bookings
+     * @throws IOException if a data file cannot be read
+     * @throws FlightBookingSystemException if there is no customer with that ID
+     */
+    public synchronized Customer findCustomer(int id) throws IOException, FlightBookingSystemException {
+        refreshJournal();
+        Customer customer = readCustomer(id);
+        if (customer == null) {
+            throw new FlightBookingSystemException("There is no customer with that ID.");
+        }
+        return customer;
+    }
+
+    /**
+     * Looks up a single booking together with its customer and flight.
+     *
+     * @param id the booking ID
+     * @return the booking, attached to its customer and flight
+     * @throws IOException if a data file cannot be read
+     * @throws FlightBookingSystemException if there is no booking with that ID, or it refers
+     *         to a customer or flight that does not exist
+     */
+    public synchronized Booking findBooking(int id) throws IOException, FlightBookingSystemException {
+        refreshJournal();
+        BookingRecord record = readBooking(id);
+        if (record == null) {
+            String[] fields = journalBookings.get(id);
+            if (fields == null) {
+                throw new FlightBookingSystemException("There is no booking with that ID.");
+            }
+            record = new BookingRecord(id, Integer.parseInt(fields[2]), Integer.parseInt(fields[3]),
+                    LocalDate.parse(fields[4]), Double.parseDouble(fields[5]), false);
+        }
+        Customer customer = readCustomer(record.customerId);
+        Flight flight = readFlight(record.flightId);
+        if (customer == null || flight == null) {
+            throw new FlightBookingSystemException("Customer or Flight not found.");
+        }
+        Booking booking = new Booking(record.id, customer, flight, record.date, record.price);
+        if (record.cancelled || cancelledBookings.contains(id)) {
+            booking.cancelBooking();
+        }
+        booking.markPersisted();
+        customer.addBooking(booking);
+        flight.addPassenger(customer);
+        return booking;
+    }
+
+    private Flight readFlight(int id) throws IOException {
+        Flight flight = null;
+        refreshManifest();
+        YearMonth month = archivedFlights.get(id);
+        try (RecordReader reader = month == null ? seek(flights, flightIndex, id)
+                : seekPartition(partitions.getFlightResource(month), id)) {
+            if (reader != null) {
+                flight = FlightDataManager.parseFlight(reader);
+            }
+        }
+        if (flight != null && deletedFlights.contains(id)) {
+            flight.setDeleted(true);
+            flight.markPersisted();
+        }
+        return flight;
+    }
+
+    private Customer readCustomer(int id) throws IOException {
+        Customer customer = null;
+        try (RecordReader reader = seek(customers, customerIndex, id)) {
+            if (reader != null) {
+                customer = CustomerDataManager.parseCustomer(reader);
+            }
+        }
+        if (customer != null && deletedCustomers.contains(id)) {
+            customer.setDeleted(true);
+            customer.markPersisted();
+        }
+        return customer;
+    }
+
+    private BookingRecord readBooking(int id) throws IOException {
+        BookingRecord record = readBooking(bookings, bookingIndex, id);
+        refreshManifest();
+        for (int i = partitionMonths.size() - 1; i >= 0 && record == null; i--) {
+            try (RecordReader reader = seekPartition(partitions.getBookingResource(partitionMonths.get(i)), id)) {
+                record = reader == null ? null : BookingDataManager.parseRecord(reader);
+            }
+        }
+        return record;
+    }
+
+    private static BookingRecord readBooking(Path file, RecordIndex index, int id) throws IOException {
+        try (RecordReader reader = seek(file, index, id)) {
+            return reader == null ? null : BookingDataManager.parseRecord(reader);
+        }
+    }
+
+    /**
+     * Opens a reader positioned on a record in a partition file, or in its archive if the
+     * partition has been archived.
+     *
+     * @return the reader, or null if there is no such record
+     */
+    private RecordReader seekPartition(String resource, int id) throws IOException {
+        Path file = Paths.get(resource);
+        if (Files.exists(file)) {
+            return seek(file, partitionIndexes.computeIfAbsent(resource, RecordIndex::new), id);
+        }
+        String archive = DeparturePartitions.getArchiveResource(resource);
+        if (Files.exists(Paths.get(archive))) {
+            return partitionArchives.computeIfAbsent(archive, BlockArchive::new).find(id);
+        }
+        return null;
+    }
+
+    /**
+     * Reads the partition manifest again if it has been replaced since it was last read.
+     */
+    private void refreshManifest() throws IOException {
+        if (partitions == null || !Files.exists(partitions.getManifest())) {
+            return;
+        }
+        FileTime time = Files.getLastModifiedTime(partitions.getManifest());
+        if (time.equals(manifestTime)) {
+            return;
+        }
+        Map<YearMonth, DeparturePartitions.Partition> manifest = partitions.readManifest();
+        Map<Integer, YearMonth> archived = new HashMap<>();
+        for (Map.Entry<YearMonth, DeparturePartitions.Partition> entry : manifest.entrySet()) {
+            for (int flightId : entry.getValue().flightIds) {
+                archived.put(flightId, entry.getKey());
+            }
+        }
+        archivedFlights = archived;
+        partitionMonths = new ArrayList<>(manifest.keySet());
+        manifestTime = time;
+    }
+
+    /**
+     * Opens a reader positioned on the record with the given ID. If the index points at a line
+     * holding a different record, the index is stale and is rebuilt before trying once more.
+     *
+     * @return the reader, or null if there is no such record
+     */
+    private static RecordReader seek(Path file, RecordIndex index, int id) throws IOException {
+        for (int attempt = 0; attempt < 2; attempt++) {
+            long offset = index.find(id);
+            if (offset < 0) {
+                return null;
+            }
+            RecordReader reader = new RecordReader(file, offset, Long.MAX_VALUE);
+            try {
+                if (reader.nextRecord() && reader.nextInt() == id) {
+                    reader.rewind();
+                    return reader;
+                }
+            } catch (NumberFormatException ex) {
+                // Not the start of a record, so the index is out of date
+            }
+            reader.close();
+            index.rebuild();
+        }
+        return null;
+    }
+
+    /**
+     * Reads any journal records written since the last lookup. The journal only grows until
+     * its sealed segments are folded into the base files or it is truncated, and in either case
+     * the records read so far are dropped and the journal is read again from the start.
+     */
+    private void refreshJournal() throws IOException {
+        List<Path> segments = journal.getSealedSegments();
+        long size = Files.exists(journalPath) ? Files.size(journalPath) : 0;
+        if (!segments.equals(journalSegments) || size < journalRead) {
+            journalBookings.clear();
+            cancelledBookings.clear();
+            deletedFlights.clear();
+            deletedCustomers.clear();
+            journalRead = 0;
+            for (Path segment : segments) {
+                readJournal(segment, 0, Long.MAX_VALUE);
+            }
+            journalSegments = new ArrayList<>(segments);
+        }
+        if (size > journalRead) {
+            journalRead = readJournal(journalPath, journalRead, size);
+        }
+    }
+
+    /**
+     * Reads the complete journal records in a byte range of a journal file.
+     *
+     * @return the offset just past the last complete record read
+     */
+    private long readJournal(Path file, long start, long end) throws IOException {
+        byte[] bytes;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long limit = Math.min(end, channel.size());
+            if (limit <= start) {
+                return start;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) (limit - start));
+            while (buffer.hasRemaining() && channel.read(buffer, start + buffer.position()) > 0) {
+                // Keep reading until the range is full
+            }
+            bytes = buffer.array();
+        } catch (NoSuchFileException ex) {
+            return start;
+        }
+        int lineStart = 0;
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] == '\n') {
+                String line = new String(bytes, lineStart, i - lineStart, StandardCharsets.UTF_8);
+                lineStart = i + 1;
+                try {
+                    note(line.split(DataManager.SEPARATOR, -1));
+                } catch (RuntimeException ex) {
+                    // Ignored, as on replay
+                }
+            }
+        }
+        return start + lineStart;
+    }
+
+    private void note(String[] fields) {
+        switch (MutationJournal.MutationType.valueOf(fields[0])) {
+            case BOOKING_CREATED:
+                journalBookings.put(Integer.parseInt(fields[1]), fields);
+                break;
+            case BOOKING_CANCELLED:
+                cancelledBookings.add(Integer.parseInt(fields[1]));
+                break;
+            case FLIGHT_DELETED:
+                deletedFlights.add(Integer.parseInt(fields[1]));
+                break;
+            case CUSTOMER_DELETED:
+                deletedCustomers.add(Integer.parseInt(fields[1]));
+                break;
+            default:
+                break;
+        }
+    }
+}
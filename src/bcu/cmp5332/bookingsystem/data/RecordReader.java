@@ -0,0 +1,592 @@
+package bcu.cmp5332.bookingsystem.data;
+
+import bcu.cmp5332.bookingsystem.model.CodeTable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+
+/**
+ * Reads {@link DataManager#SEPARATOR}-separated records from a data file without splitting
+ * lines into Strings.
+ * <p>
+ * The file is read through a single reusable byte buffer. {@link #nextRecord()} moves to the
+ * next line, and the {@code next...} methods consume that line's fields one at a time. Numbers
+ * and ISO dates are parsed straight from the bytes of the field; a String is only created by
+ * {@link #nextString()}, for fields that really are text, and by {@link #nextString(CodeTable)}
+ * the first time a repeated value is seen. The separator and all numeric
+ * characters are ASCII, so working on UTF-8 bytes is safe.
+ * </p>
+ * <p>
+ * A line with a {@link RecordFrame} is checked as it is read, and only its record is exposed
+ * to the {@code next...} methods. A line whose frame does not match is skipped, after being
+ * handed to the {@link Quarantine} if the reader has one. Lines that cannot be parsed can be
+ * handed to it through {@link #reject}.
+ * </p>
+ *
+ * @author Sugam Adhikari
+ * @author Prasansha Tamang
+ */
+public final class RecordReader implements Closeable {
+
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final byte SEPARATOR_CHAR = ':';
+
+    private final FileChannel channel;
+    private final boolean ownsChannel;
+    private long filePosition;
+    private final long end;
+
+    private byte[] buf;
+    private int limit;
+    private boolean eof;
+
+    private int next;
+    private int rawStart;
+    private int rawEnd;
+    private int lineStart;
+    private int lineEnd;
+    private int cursor;
+    private int lineNumber;
+    private Quarantine quarantine;
+
+    /**
+     * Opens a reader over the whole of the given file.
+     *
+     * @param path the data file
+     * @throws IOException if the file cannot be opened
+     */
+    public RecordReader(Path path) throws IOException {
+        this(path, 0, Long.MAX_VALUE);
+    }
+
+    /**
+     * Opens a reader over a byte range of the given file. The range should start at the
+     * beginning of a line.
+     *
+     * @param path  the data file
+     * @param start the offset of the first byte to read
+     * @param end   the offset just past the last byte to read
+     * @throws IOException if the file cannot be opened
+     */
+    public RecordReader(Path path, long start, long end) throws IOException {
+        this(FileChannel.open(path, StandardOpenOption.READ), start, end, true);
+    }
+
+    /**
+     * Opens a reader over a byte range of a file that is already open. The channel is only read
+     * at explicit offsets, so it can be shared, and it is left open when the reader is closed.
+     *
+     * @param channel the open data file
+     * @param start   the offset of the first byte to read
+     * @param end     the offset just past the last byte to read
+     * @throws IOException if the size of the file cannot be read
+     */
+    public RecordReader(FileChannel channel, long start, long end) throws IOException {
+        this(channel, start, end, false);
+    }
+
+    private RecordReader(FileChannel channel, long start, long end, boolean ownsChannel) throws IOException {
+        this.channel = channel;
+        this.ownsChannel = ownsChannel;
+        this.filePosition = start;
+        this.end = Math.min(end, channel.size());
+        this.buf = new byte[(int) Math.max(16, Math.min(DEFAULT_BUFFER_SIZE, this.end - start))];
+    }
+
+    /**
+     * Opens a reader over records that are already in memory, such as a decompressed block.
+     * The array is used as it is, not copied.
+     *
+     * @param bytes  the records
+     * @param length the number of bytes of the array holding records
+     */
+    public RecordReader(byte[] bytes, int length) {
+        this.channel = null;
+        this.ownsChannel = false;
+        this.filePosition = length;
+        this.end = length;
+        this.buf = bytes;
+        this.limit = length;
+        this.eof = true;
+    }
+
+    /**
+     * Sets the quarantine that damaged lines are handed to.
+     *
+     * @param quarantine the quarantine, or null to skip damaged lines without a record of them
+     */
+    public void setQuarantine(Quarantine quarantine) {
+        this.quarantine = quarantine;
+    }
+
+    /**
+     * Advances to the next non-empty line, skipping lines whose frame does not match.
+     *
+     * @return true if there is another record, false at the end of the file or range
+     * @throws IOException if the file cannot be read
+     */
+    public boolean nextRecord() throws IOException {
+        while (true) {
+            int newline = indexOfNewline(next);
+            while (newline < 0 && !eof) {
+                refill();
+                newline = indexOfNewline(next);
+            }
+            if (newline < 0) {
+                if (next >= limit) {
+                    return false;
+                }
+                newline = limit;
+            }
+            lineNumber++;
+            rawStart = next;
+            lineEnd = newline;
+            next = Math.min(newline + 1, limit);
+            rawEnd = next;
+            if (lineEnd > rawStart && buf[lineEnd - 1] == '\r') {
+                lineEnd--;
+            }
+            lineStart = RecordFrame.payloadStart(buf, rawStart, lineEnd);
+            if (lineStart == RecordFrame.CORRUPT) {
+                lineStart = rawStart;
+                reject("the length or checksum does not match");
+                continue;
+            }
+            if (lineEnd > lineStart) {
+                cursor = lineStart;
+                return true;
+            }
+        }
+    }
+
+    private int indexOfNewline(int from) {
+        for (int i = from; i < limit; i++) {
+            if (buf[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Moves the unread part of the buffer to the front, growing the buffer if a single line
+     * does not fit, and reads more of the file after it.
+     */
+    private void refill() throws IOException {
+        int start = next;
+        int remaining = limit - start;
+        if (remaining == buf.length) {
+            byte[] bigger = new byte[buf.length * 2];
+            System.arraycopy(buf, start, bigger, 0, remaining);
+            buf = bigger;
+        } else {
+            System.arraycopy(buf, start, buf, 0, remaining);
+        }
+        next = 0;
+        limit = remaining;
+        int wanted = (int) Math.min(buf.length - limit, end - filePosition);
+        if (wanted <= 0) {
+            eof = true;
+            return;
+        }
+        ByteBuffer target = ByteBuffer.wrap(buf, limit, wanted);
+        int read = channel.read(target, filePosition);
+        if (read <= 0) {
+            eof = true;
+        } else {
+            filePosition += read;
+            limit += read;
+        }
+    }
+
+    /**
+     * Returns the 1-based number of the current line within the file or range.
+     *
+     * @return the current line number
+     */
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * Returns the offset of the start of the current line within the file.
+     *
+     * @return the byte offset of the current line
+     */
+    public long getLineOffset() {
+        return filePosition - limit + rawStart;
+    }
+
+    /**
+     * Computes the {@link Crc32c} checksum of the record on the current line, without its frame,
+     * so that a framed and an unframed copy of the same record have the same checksum.
+     *
+     * @return the checksum
+     */
+    public int checksum() {
+        return Crc32c.compute(buf, lineStart, lineEnd - lineStart);
+    }
+
+    /**
+     * Hands the current line, frame and all, to the quarantine, if the reader has one.
+     *
+     * @param reason why the line is rejected
+     * @return true if the line was quarantined, false if the reader has no quarantine
+     */
+    public boolean reject(String reason) {
+        if (quarantine == null) {
+            return false;
+        }
+        quarantine.reject(getLineOffset(), rawEnd - rawStart,
+                new String(buf, rawStart, lineEnd - rawStart, StandardCharsets.UTF_8), reason);
+        return true;
+    }
+
+    /**
+     * Returns the record on the current line as a String, without its frame. Intended for error
+     * messages only.
+     *
+     * @return the text of the current record
+     */
+    public String getLine() {
+        return new String(buf, lineStart, lineEnd - lineStart, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Counts the fields of the current line, including empty trailing ones.
+     *
+     * @return the number of fields
+     */
+    public int fieldCount() {
+        int count = 1;
+        for (int i = lineStart; i + 1 < lineEnd; i++) {
+            if (buf[i] == SEPARATOR_CHAR && buf[i + 1] == SEPARATOR_CHAR) {
+                count++;
+                i++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Checks whether the current line has another field to read.
+     *
+     * @return true if another field follows
+     */
+    public boolean hasNextField() {
+        return cursor <= lineEnd;
+    }
+
+    /**
+     * Finds the end of the field starting at the cursor.
+     */
+    private int fieldEnd() {
+        for (int i = cursor; i + 1 < lineEnd; i++) {
+            if (buf[i] == SEPARATOR_CHAR && buf[i + 1] == SEPARATOR_CHAR) {
+                return i;
+            }
+        }
+        return lineEnd;
+    }
+
+    /**
+     * Moves the cursor past the field ending at {@code fieldEnd} and its separator.
+     */
+    private void advance(int fieldEnd) {
+        cursor = fieldEnd < lineEnd ? fieldEnd + 2 : lineEnd + 1;
+    }
+
+    /**
+     * Moves back to the first field of the current line, so that it can be read again.
+     */
+    public void rewind() {
+        cursor = lineStart;
+    }
+
+    /**
+     * Skips the next field.
+     */
+    public void skipField() {
+        if (hasNextField()) {
+            advance(fieldEnd());
+        }
+    }
+
+    /**
+     * Reads the next field as text.
+     *
+     * @return the field, or an empty string if the line has no more fields
+     */
+    public String nextString() {
+        if (!hasNextField()) {
+            return "";
+        }
+        int fieldEnd = fieldEnd();
+        String value = new String(buf, cursor, fieldEnd - cursor, StandardCharsets.UTF_8);
+        advance(fieldEnd);
+        return value;
+    }
+
+    /**
+     * Reads the next field as a value of a {@link CodeTable}, such as an airport code, which
+     * only creates a String the first time the table sees the value.
+     *
+     * @param table the table the value is looked up in
+     * @return the table's copy of the field, or an empty string if the line has no more fields
+     */
+    public String nextString(CodeTable table) {
+        if (!hasNextField()) {
+            return "";
+        }
+        int fieldEnd = fieldEnd();
+        String value = table.value(table.code(buf, cursor, fieldEnd - cursor));
+        advance(fieldEnd);
+        return value;
+    }
+
+    /**
+     * Reads the next field and compares it with an ASCII keyword, ignoring case, without
+     * creating a String.
+     *
+     * @param keyword the keyword to compare with
+     * @return true if the field matches the keyword; false if it does not or there is no field
+     */
+    public boolean nextFieldEqualsIgnoreCase(String keyword) {
+        if (!hasNextField()) {
+            return false;
+        }
+        int fieldEnd = fieldEnd();
+        boolean equal = fieldEnd - cursor == keyword.length();
+        for (int i = 0; equal && i < keyword.length(); i++) {
+            equal = Character.toLowerCase((char) buf[cursor + i]) == Character.toLowerCase(keyword.charAt(i));
+        }
+        advance(fieldEnd);
+        return equal;
+    }
+
+    /**
+     * Reads the next field as a decimal integer.
+     *
+     * @return the parsed value
+     * @throws NumberFormatException if the field is missing or is not a valid integer
+     */
+    public int nextInt() {
+        int fieldEnd = requireField();
+        int i = cursor;
+        boolean negative = false;
+        if (i < fieldEnd && (buf[i] == '-' || buf[i] == '+')) {
+            negative = buf[i] == '-';
+            i++;
+        }
+        if (i == fieldEnd) {
+            throw invalid("integer", fieldEnd);
+        }
+        long value = 0;
+        for (; i < fieldEnd; i++) {
+            int digit = buf[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw invalid("integer", fieldEnd);
+            }
+            value = value * 10 + digit;
+            if (value > (long) Integer.MAX_VALUE + 1) {
+                throw invalid("integer", fieldEnd);
+            }
+        }
+        value = negative ? -value : value;
+        if (value > Integer.MAX_VALUE) {
+            throw invalid("integer", fieldEnd);
+        }
+        advance(fieldEnd);
+        return (int) value;
+    }
+
+    /**
+     * Reads the next field as a decimal long integer.
+     *
+     * @return the parsed value
+     * @throws NumberFormatException if the field is missing or is not a valid long integer
+     */
+    public long nextLong() {
+        int fieldEnd = requireField();
+        int i = cursor;
+        boolean negative = false;
+        if (i < fieldEnd && (buf[i] == '-' || buf[i] == '+')) {
+            negative = buf[i] == '-';
+            i++;
+        }
+        if (i == fieldEnd || fieldEnd - i > 18) {
+            // Too long to be sure it fits without checking every step
+            long value = Long.parseLong(new String(buf, cursor, fieldEnd - cursor, StandardCharsets.US_ASCII));
+            advance(fieldEnd);
+            return value;
+        }
+        long value = 0;
+        for (; i < fieldEnd; i++) {
+            int digit = buf[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw invalid("long integer", fieldEnd);
+            }
+            value = value * 10 + digit;
+        }
+        advance(fieldEnd);
+        return negative ? -value : value;
+    }
+
+    /**
+     * Reads the rest of the current line as text, separators and all.
+     *
+     * @return the rest of the line, or an empty string if the line has no more fields
+     */
+    public String restOfLine() {
+        if (!hasNextField()) {
+            return "";
+        }
+        String value = new String(buf, cursor, lineEnd - cursor, StandardCharsets.UTF_8);
+        cursor = lineEnd + 1;
+        return value;
+    }
+
+    /**
+     * Reads the next field as a decimal number. Plain decimals with up to 18 significant digits
+     * are converted without allocating; anything else falls back to {@link Double#parseDouble}.
+     *
+     * @return the parsed value
+     * @throws NumberFormatException if the field is missing or is not a valid number
+     */
+    public double nextDouble() {
+        int fieldEnd = requireField();
+        int i = cursor;
+        boolean negative = false;
+        if (i < fieldEnd && (buf[i] == '-' || buf[i] == '+')) {
+            negative = buf[i] == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int scale = -1;
+        boolean sawDigit = false;
+        boolean simple = i < fieldEnd;
+        for (; simple && i < fieldEnd; i++) {
+            byte b = buf[i];
+            if (b == '.' && scale < 0) {
+                scale = 0;
+            } else if (b >= '0' && b <= '9' && digits < 18) {
+                mantissa = mantissa * 10 + (b - '0');
+                sawDigit = true;
+                if (mantissa != 0) {
+                    digits++;
+                }
+                if (scale >= 0) {
+                    scale++;
+                }
+            } else {
+                simple = false;
+            }
+        }
+        double value;
+        if (simple && sawDigit && scale < POWERS_OF_TEN.length && mantissa < (1L << 53)) {
+            value = scale > 0 ? mantissa / POWERS_OF_TEN[scale] : mantissa;
+            value = negative ? -value : value;
+        } else {
+            value = Double.parseDouble(new String(buf, cursor, fieldEnd - cursor, StandardCharsets.US_ASCII));
+        }
+        advance(fieldEnd);
+        return value;
+    }
+
+    /**
+     * Reads the next field as an ISO-8601 date ({@code yyyy-MM-dd}).
+     *
+     * @return the parsed date
+     * @throws NumberFormatException if the field is missing
+     * @throws java.time.DateTimeException if the field is not a valid date
+     */
+    public LocalDate nextDate() {
+        int fieldEnd = requireField();
+        LocalDate date;
+        if (fieldEnd - cursor == 10 && buf[cursor + 4] == '-' && buf[cursor + 7] == '-') {
+            int year = digits(cursor, 4, fieldEnd);
+            int month = digits(cursor + 5, 2, fieldEnd);
+            int day = digits(cursor + 8, 2, fieldEnd);
+            date = LocalDate.of(year, month, day);
+        } else {
+            date = LocalDate.parse(new String(buf, cursor, fieldEnd - cursor, StandardCharsets.US_ASCII));
+        }
+        advance(fieldEnd);
+        return date;
+    }
+
+    private int digits(int from, int count, int fieldEnd) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            int digit = buf[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw invalid("date", fieldEnd);
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private int requireField() {
+        if (!hasNextField()) {
+            throw new NumberFormatException("Missing field on line " + lineNumber);
+        }
+        return fieldEnd();
+    }
+
+    private NumberFormatException invalid(String type, int fieldEnd) {
+        return new NumberFormatException("Invalid " + type + " \""
+                + new String(buf, cursor, fieldEnd - cursor, StandardCharsets.UTF_8) + "\"");
+    }
+
+    /**
+     * Finds the end of the last complete line of a file that may still be being appended to,
+     * so that a record whose write has not finished is left for a later read.
+     *
+     * @param channel the file
+     * @param size    the size of the file to look within
+     * @return the offset just past the last line terminator, or 0 if there is none
+     * @throws IOException if the file cannot be read
+     */
+    static long completeLength(FileChannel channel, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        long position = size;
+        while (position > 0) {
+            int length = (int) Math.min(buffer.capacity(), position);
+            position -= length;
+            buffer.clear().limit(length);
+            while (buffer.hasRemaining() && channel.read(buffer, position + buffer.position()) > 0) {
+                // Keep reading until the block is full
+            }
+            for (int i = buffer.position() - 1; i >= 0; i--) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Closes the underlying file, if the reader opened it.
+     *
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (ownsChannel) {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package bcu.cmp5332.bookingsystem.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Defines record-level storage for the flight booking system. Where a {@link DataManager}
+ * loads and stores the whole data set at once, a record store reads and writes single flights,
+ * customers and bookings by ID, and scans them in ID order, so that only the records that are
+ * needed or have changed are touched.
+ * <p>
+ * Records are opaque byte arrays; {@link StoreDataManager} decides how flights, customers and
+ * bookings are encoded. Changes may be kept in memory until {@link #commit} makes them durable,
+ * and a store that is reopened after a crash holds the records as of the last commit.
+ * </p>
+ *
+ * @author Sugam Adhikari
+ * @author Prasansha Tamang
+ */
+public interface RecordStore extends Closeable {
+
+    /**
+     * The kinds of record held by a store, each with its own range of IDs.
+     */
+    public enum Table {
+        FLIGHTS, CUSTOMERS, BOOKINGS
+    }
+
+    /**
+     * Receives the records found by a scan.
+     */
+    public interface RecordVisitor {
+
+        /**
+         * Visits one record.
+         *
+         * @param id     the ID of the record
+         * @param record the record
+         * @return true to carry on with the next record, false to stop the scan
+         * @throws IOException if the record cannot be handled
+         */
+        boolean visit(int id, byte[] record) throws IOException;
+    }
+
+    /**
+     * Reads one record.
+     *
+     * @param table the table holding the record
+     * @param id    the ID of the record
+     * @return the record, or null if there is none with that ID
+     * @throws IOException if the store cannot be read
+     */
+    public byte[] get(Table table, int id) throws IOException;
+
+    /**
+     * Adds a record, or replaces the record with the same ID.
+     *
+     * @param table  the table to hold the record
+     * @param id     the ID of the record
+     * @param record the record
+     * @throws IOException if the store cannot be written
+     */
+    public void put(Table table, int id, byte[] record) throws IOException;
+
+    /**
+     * Removes a record.
+     *
+     * @param table the table holding the record
+     * @param id    the ID of the record
+     * @return true if there was a record to remove
+     * @throws IOException if the store cannot be written
+     */
+    public boolean delete(Table table, int id) throws IOException;
+
+    /**
+     * Visits the records with IDs in a range, in ascending ID order. The visitor must not
+     * change the store.
+     *
+     * @param table   the table to scan
+     * @param fromId  the lowest ID to visit
+     * @param toId    the highest ID to visit
+     * @param visitor the visitor to pass each record to
+     * @throws IOException if the store cannot be read, or the visitor fails
+     */
+    public void scan(Table table, int fromId, int toId, RecordVisitor visitor) throws IOException;
+
+    /**
+     * Returns the number of records in a table.
+     *
+     * @param table the table
+     * @return the number of records
+     */
+    public long size(Table table);
+
+    /**
+     * Makes every change so far durable.
+     *
+     * @throws IOException if the changes cannot be written
+     */
+    public void commit() throws IOException;
+}
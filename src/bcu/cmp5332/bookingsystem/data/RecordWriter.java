@@ -0,0 +1,304 @@
+package bcu.cmp5332.bookingsystem.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * Writes {@link DataManager#SEPARATOR}-separated records to a channel, encoding each field
+ * straight into a reusable byte buffer rather than building a String per record.
+ * <p>
+ * The {@code field} methods add the fields of a record one at a time, with a separator before
+ * every field but the first, and {@link #endRecord()} gives the record its {@link RecordFrame}
+ * and ends the line. Integers and dates are written digit by digit, text is copied character
+ * by character when it is ASCII, and a price with no fraction is written without going through
+ * {@link Double#toString}; the bytes are the same as the text of each value, so the files read
+ * exactly as before. When the buffer is full the complete records in it are written to the
+ * channel in one call. The buffer is handed back to the thread when the writer is closed
+ * and reused by its next writer, so writing a file allocates nothing per record for ASCII data.
+ * </p>
+ * <p>
+ * This is the counterpart of {@link RecordReader}, and is used by the text data managers
+ * through {@link DurableFile#replaceRecords} and {@link DurableFile#appendRecords}.
+ * </p>
+ *
+ * @author Sugam Adhikari
+ * @author Prasansha Tamang
+ */
+public final class RecordWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 256 * 1024;
+    private static final int MAX_HEADER = 21; // "#" + 10 digits + "#" + 8 hex digits + "#"
+    private static final byte[] SEPARATOR = DataManager.SEPARATOR.getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] LINE_END = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final ThreadLocal<byte[]> BUFFERS = ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
+
+    private final WritableByteChannel channel;
+    private byte[] buf;
+    private int position; // End of the complete records in the buffer
+    private int recordStart; // Start of the record being written, after room for its header
+    private int cursor; // End of the record being written
+    private long written;
+
+    /**
+     * Creates a writer over the given channel. Nothing reaches the channel until the buffer is
+     * full or the writer is {@link #flush() flushed}.
+     *
+     * @param channel the channel to write to
+     */
+    public RecordWriter(WritableByteChannel channel) {
+        this.channel = channel;
+        this.buf = BUFFERS.get();
+        BUFFERS.remove(); // A second writer opened by this thread gets a buffer of its own
+        startRecord();
+    }
+
+    private void startRecord() {
+        recordStart = position + MAX_HEADER;
+        cursor = recordStart;
+    }
+
+    /**
+     * Makes room for the given number of bytes of the current record, writing out the
+     * complete records before it or growing the buffer if the record does not fit.
+     */
+    private void ensure(int length) throws IOException {
+        if (cursor + length + LINE_END.length <= buf.length) {
+            return;
+        }
+        writeOut();
+        int used = cursor - position;
+        if (used + length + LINE_END.length > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, used + length + LINE_END.length));
+        }
+        System.arraycopy(buf, position, buf, 0, used);
+        recordStart -= position;
+        cursor -= position;
+        position = 0;
+    }
+
+    private void separate() throws IOException {
+        if (cursor > recordStart) {
+            ensure(SEPARATOR.length);
+            for (byte b : SEPARATOR) {
+                buf[cursor++] = b;
+            }
+        }
+    }
+
+    /**
+     * Adds a text field.
+     *
+     * @param value the text, written as {@code null} if it is null
+     * @return this writer
+     * @throws IOException if the buffer has to be written and the channel fails
+     */
+    public RecordWriter field(String value) throws IOException {
+        separate();
+        if (value == null) {
+            value = "null";
+        }
+        int length = value.length();
+        ensure(length);
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x80) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                ensure(bytes.length);
+                System.arraycopy(bytes, 0, buf, cursor, bytes.length);
+                cursor += bytes.length;
+                return this;
+            }
+            buf[cursor + i] = (byte) c;
+        }
+        cursor += length;
+        return this;
+    }
+
+    /**
+     * Adds an integer field.
+     *
+     * @param value the value
+     * @return this writer
+     * @throws IOException if the buffer has to be written and the channel fails
+     */
+    public RecordWriter field(int value) throws IOException {
+        return field((long) value);
+    }
+
+    /**
+     * Adds a long integer field.
+     *
+     * @param value the value
+     * @return this writer
+     * @throws IOException if the buffer has to be written and the channel fails
+     */
+    public RecordWriter field(long value) throws IOException {
+        separate();
+        if (value == Long.MIN_VALUE) {
+            return appendAscii(Long.toString(value));
+        }
+        ensure(20);
+        if (value < 0) {
+            buf[cursor++] = '-';
+            value = -value;
+        }
+        putDigits(value, digitCount(value));
+        return this;
+    }
+
+    /**
+     * Adds a decimal field, written as {@link Double#toString} writes it.
+     *
+     * @param value the value
+     * @return this writer
+     * @throws IOException if the buffer has to be written and the channel fails
+     */
+    public RecordWriter field(double value) throws IOException {
+        separate();
+        long whole = (long) value;
+        if (whole == value && value >= 1 && value < 1e7) {
+            ensure(10);
+            putDigits(whole, digitCount(whole));
+            buf[cursor++] = '.';
+            buf[cursor++] = '0';
+            return this;
+        }
+        return appendAscii(Double.toString(value));
+    }
+
+    /**
+     * Adds an ISO date field.
+     *
+     * @param date the date, written as {@code null} if it is null
+     * @return this writer
+     * @throws IOException if the buffer has to be written and the channel fails
+     */
+    public RecordWriter field(LocalDate date) throws IOException {
+        if (date == null || date.getYear() < 0 || date.getYear() > 9999) {
+            return field(String.valueOf(date));
+        }
+        separate();
+        ensure(10);
+        putDigits(date.getYear(), 4);
+        buf[cursor++] = '-';
+        putDigits(date.getMonthValue(), 2);
+        buf[cursor++] = '-';
+        putDigits(date.getDayOfMonth(), 2);
+        return this;
+    }
+
+    private RecordWriter appendAscii(String text) throws IOException {
+        ensure(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            buf[cursor++] = (byte) text.charAt(i);
+        }
+        return this;
+    }
+
+    private void putDigits(long value, int digits) {
+        for (int i = cursor + digits - 1; i >= cursor; i--) {
+            buf[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        cursor += digits;
+    }
+
+    private static int digitCount(long value) {
+        int digits = 1;
+        while (value >= 10) {
+            value /= 10;
+            digits++;
+        }
+        return digits;
+    }
+
+    /**
+     * Ends the current record: puts its {@link RecordFrame} header in front of it and ends
+     * the line.
+     *
+     * @throws IOException if the buffer has to be written and the channel fails
+     */
+    public void endRecord() throws IOException {
+        int length = cursor - recordStart;
+        int crc = Crc32c.compute(buf, recordStart, length);
+        int lengthDigits = digitCount(length);
+        int headerStart = recordStart - (lengthDigits + 11);
+        int i = headerStart;
+        buf[i++] = '#';
+        for (int j = i + lengthDigits - 1, value = length; j >= i; j--, value /= 10) {
+            buf[j] = (byte) ('0' + value % 10);
+        }
+        i += lengthDigits;
+        buf[i++] = '#';
+        for (int shift = 28; shift >= 0; shift -= 4) {
+            buf[i++] = HEX[(crc >>> shift) & 0xf];
+        }
+        buf[i++] = '#';
+        // Close the gap left before the header, which was sized for the longest possible length
+        System.arraycopy(buf, headerStart, buf, position, cursor - headerStart);
+        cursor -= headerStart - position;
+        for (byte b : LINE_END) {
+            buf[cursor++] = b;
+        }
+        position = cursor;
+        if (position + MAX_HEADER + 256 > buf.length) {
+            writeOut();
+            position = 0;
+        }
+        startRecord();
+    }
+
+    /**
+     * Writes the complete records in the buffer to the channel.
+     */
+    private void writeOut() throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(buf, 0, position);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        written += position;
+    }
+
+    /**
+     * Writes every complete record to the channel. A record that has not been ended is kept.
+     *
+     * @throws IOException if the channel fails
+     */
+    public void flush() throws IOException {
+        writeOut();
+        int used = cursor - position;
+        System.arraycopy(buf, position, buf, 0, used);
+        recordStart -= position;
+        cursor -= position;
+        position = 0;
+    }
+
+    /**
+     * Writes every complete record to the channel and gives the buffer back for reuse. The
+     * channel itself is left open.
+     *
+     * @throws IOException if the channel fails
+     */
+    @Override
+    public void close() throws IOException {
+        flush();
+        if (buf.length == BUFFER_SIZE) {
+            BUFFERS.set(buf);
+        }
+    }
+
+    /**
+     * Returns the number of bytes written to the channel so far.
+     *
+     * @return the number of bytes written
+     */
+    public long getBytesWritten() {
+        return written;
+    }
+}
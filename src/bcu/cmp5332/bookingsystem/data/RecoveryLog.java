@@ -0,0 +1,364 @@
+package bcu.cmp5332.bookingsystem.data;
+
+import bcu.cmp5332.bookingsystem.main.FlightBookingSystemException;
+import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the history of the flight booking system so that it can be restored as it was at any
+ * instant: periodic checkpoints of the whole system, and a log of every mutation since, stamped
+ * with the time it was made.
+ * <p>
+ * The log is fed by the {@link MutationJournal}, as a {@link MutationJournal.MutationListener},
+ * and unlike the journal it is not truncated when the data is stored. Each line holds the time
+ * in epoch milliseconds and the journal record. Every
+ * {@code bookingsystem.pitr.checkpointMinutes} minutes (60 by default) a checkpoint is taken:
+ * the log moves on to a new segment and the records that rebuild the system
+ * ({@link MutationJournal#describeAll}) are written to a checkpoint file, both named after the
+ * time of the checkpoint. Both are taken while holding the system's monitor, so the checkpoint
+ * holds exactly the mutations logged to the earlier segments. Checkpoints and segments older
+ * than {@code bookingsystem.pitr.retainHours} hours (a week by default) are deleted, apart from
+ * the newest checkpoint before that and the segments after it, so any instant in that period
+ * can still be restored.
+ * </p>
+ * <p>
+ * {@link #restore} loads the newest checkpoint taken at or before the instant and replays only
+ * the segments written since, up to the instant, so the time it takes depends on the size of
+ * the system and the length of that tail rather than on the whole history.
+ * </p>
+ * <p>
+ * The log is kept if the {@code bookingsystem.pitr.enabled} system property is {@code true}.
+ * </p>
+ *
+ * <pre>
+ * pitr/checkpoint-&lt;millis&gt;.txt : record*          the system at that time
+ * pitr/log-&lt;millis&gt;.txt        : (millis::record)*  the mutations made since that time
+ * </pre>
+ *
+ * @author Sugam Adhikari
+ * @author Prasansha Tamang
+ */
+public class RecoveryLog implements MutationJournal.MutationListener, Closeable {
+
+    /** The default directory holding the checkpoints and the log. */
+    public static final String RESOURCE = "./resources/data/pitr";
+
+    /** The default time between checkpoints, in minutes. */
+    public static final long DEFAULT_CHECKPOINT_MINUTES = 60;
+
+    /** The default time checkpoints and the log are kept for, in hours. */
+    public static final long DEFAULT_RETAIN_HOURS = 24 * 7;
+
+    private static final String CHECKPOINT_PREFIX = "checkpoint-";
+    private static final String LOG_PREFIX = "log-";
+    private static final String SUFFIX = ".txt";
+
+    private final Path dir;
+    private final long checkpointMillis;
+    private final long retainMillis;
+    private FileChannel channel;
+    private GroupCommitter committer;
+    private ScheduledExecutorService scheduler;
+    private MutationJournal journal;
+    private long replayed;
+    private long restoredFrom;
+
+    /**
+     * Creates a recovery log in the default directory, with the checkpoint interval and
+     * retention configured through system properties.
+     */
+    public RecoveryLog() {
+        this(RESOURCE, TimeUnit.MINUTES.toMillis(Long.getLong("bookingsystem.pitr.checkpointMinutes",
+                DEFAULT_CHECKPOINT_MINUTES)), TimeUnit.HOURS.toMillis(Long.getLong("bookingsystem.pitr.retainHours",
+                DEFAULT_RETAIN_HOURS)));
+    }
+
+    /**
+     * Creates a recovery log in the given directory.
+     *
+     * @param resource         the directory holding the checkpoints and the log
+     * @param checkpointMillis the time between checkpoints, in milliseconds
+     * @param retainMillis     the time checkpoints and the log are kept for, in milliseconds
+     */
+    public RecoveryLog(String resource, long checkpointMillis, long retainMillis) {
+        if (checkpointMillis < 1 || retainMillis < 1) {
+            throw new IllegalArgumentException("Checkpoint interval and retention should be higher than 0");
+        }
+        this.dir = Paths.get(resource);
+        this.checkpointMillis = checkpointMillis;
+        this.retainMillis = retainMillis;
+    }
+
+    /**
+     * Starts logging the mutations recorded by the journal and taking checkpoints of the system.
+     * The first checkpoint is taken straight away if the newest one is older than the interval.
+     *
+     * @param fbs     the system to take checkpoints of
+     * @param journal the journal whose mutations are logged
+     * @throws IOException if the log cannot be opened
+     */
+    public void start(FlightBookingSystem fbs, MutationJournal journal) throws IOException {
+        Files.createDirectories(dir);
+        TreeMap<Long, Path> checkpoints = list(CHECKPOINT_PREFIX);
+        TreeMap<Long, Path> segments = list(LOG_PREFIX);
+        synchronized (this) {
+            // Carry on with the last segment, or start one that a checkpoint will follow
+            long start = segments.isEmpty() ? System.currentTimeMillis() : segments.lastKey();
+            open(start);
+        }
+        this.journal = journal;
+        journal.addListener(this);
+
+        long age = checkpoints.isEmpty() ? Long.MAX_VALUE : System.currentTimeMillis() - checkpoints.lastKey();
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "pitr-checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(() -> {
+            try {
+                checkpoint(fbs);
+            } catch (IOException | FlightBookingSystemException | RuntimeException ex) {
+                System.err.println("Error taking a checkpoint: " + ex.getMessage());
+            }
+        }, Math.max(0, checkpointMillis - age), checkpointMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Adds a record to the current segment of the log, stamped with the current time. The
+     * record is written in the background.
+     *
+     * @param record the record
+     */
+    @Override
+    public synchronized void mutationLogged(String record) {
+        if (committer != null) {
+            committer.submit((System.currentTimeMillis() + DataManager.SEPARATOR + record + "\n")
+                    .getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Takes a checkpoint of the system, as described for this class, and deletes the
+     * checkpoints and segments that are no longer needed.
+     *
+     * @param fbs the system
+     * @return the time of the checkpoint, in epoch milliseconds
+     * @throws IOException if the checkpoint cannot be written
+     * @throws FlightBookingSystemException if a departure partition cannot be loaded
+     */
+    public long checkpoint(FlightBookingSystem fbs) throws IOException, FlightBookingSystemException {
+        long time;
+        List<String> records;
+        synchronized (fbs) {
+            synchronized (this) {
+                time = System.currentTimeMillis();
+                closeSegment();
+                open(time);
+            }
+            records = MutationJournal.describeAll(fbs);
+        }
+        write(time, records);
+        prune(time);
+        return time;
+    }
+
+    /**
+     * Writes a checkpoint of the given system, taken at the given time, without moving on to a
+     * new segment; used once a system has been restored, when nothing is logging to this
+     * directory. An empty segment starting at the same time is created, which the log carries on
+     * with when it is next started.
+     *
+     * @param fbs  the system
+     * @param time the time of the checkpoint, in epoch milliseconds
+     * @throws IOException if the checkpoint cannot be written
+     */
+    public void writeCheckpoint(FlightBookingSystem fbs, long time) throws IOException {
+        Files.createDirectories(dir);
+        write(time, MutationJournal.describe(fbs));
+        Path segment = dir.resolve(LOG_PREFIX + time + SUFFIX);
+        if (!Files.exists(segment)) {
+            Files.createFile(segment);
+        }
+    }
+
+    private void write(long time, List<String> records) throws IOException {
+        DurableFile.replaceText(dir.resolve(CHECKPOINT_PREFIX + time + SUFFIX).toString(), out -> {
+            for (String record : records) {
+                out.println(record);
+            }
+        });
+    }
+
+    /**
+     * Deletes the checkpoints and segments older than the retention period, keeping the newest
+     * checkpoint before it and everything after that checkpoint.
+     */
+    private void prune(long now) throws IOException {
+        TreeMap<Long, Path> checkpoints = list(CHECKPOINT_PREFIX);
+        Long keep = checkpoints.floorKey(now - retainMillis);
+        if (keep == null) {
+            return;
+        }
+        for (Path checkpoint : checkpoints.headMap(keep).values()) {
+            Files.deleteIfExists(checkpoint);
+        }
+        for (Path segment : list(LOG_PREFIX).headMap(keep).values()) {
+            Files.deleteIfExists(segment);
+        }
+    }
+
+    /**
+     * Rebuilds the system as it was at the given instant, from the newest checkpoint at or
+     * before it and the log written since.
+     *
+     * @param at the instant to restore
+     * @return the restored system
+     * @throws IOException if the checkpoint or the log cannot be read
+     * @throws FlightBookingSystemException if there is no checkpoint at or before the instant
+     */
+    public FlightBookingSystem restore(Instant at) throws IOException, FlightBookingSystemException {
+        long limit = at.toEpochMilli();
+        Map.Entry<Long, Path> checkpoint = list(CHECKPOINT_PREFIX).floorEntry(limit);
+        if (checkpoint == null) {
+            throw new FlightBookingSystemException("There is no checkpoint at or before " + at + ".");
+        }
+        synchronized (this) {
+            if (committer != null) {
+                // Make sure everything logged so far can be read
+                closeSegment();
+                open(list(LOG_PREFIX).lastKey());
+            }
+        }
+        FlightBookingSystem fbs = new FlightBookingSystem();
+        try (BufferedReader reader = Files.newBufferedReader(checkpoint.getValue(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                apply(fbs, line);
+            }
+        }
+        replayed = 0;
+        // A segment older than the checkpoint can only hold records it already includes
+        for (Path segment : list(LOG_PREFIX).subMap(checkpoint.getKey(), true, limit, true).values()) {
+            try (BufferedReader reader = Files.newBufferedReader(segment, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    int separator = line.indexOf(DataManager.SEPARATOR);
+                    try {
+                        if (separator > 0 && Long.parseLong(line.substring(0, separator)) <= limit) {
+                            apply(fbs, line.substring(separator + DataManager.SEPARATOR.length()));
+                            replayed++;
+                        }
+                    } catch (NumberFormatException ex) {
+                        // A partially written last line after a crash
+                    }
+                }
+            }
+        }
+        restoredFrom = checkpoint.getKey();
+        return fbs;
+    }
+
+    /**
+     * Returns the number of log records replayed by the last {@link #restore}.
+     *
+     * @return the number of records
+     */
+    public long getReplayed() {
+        return replayed;
+    }
+
+    /**
+     * Returns the time of the checkpoint the last {@link #restore} started from.
+     *
+     * @return the time in epoch milliseconds
+     */
+    public long getRestoredFrom() {
+        return restoredFrom;
+    }
+
+    private static void apply(FlightBookingSystem fbs, String record) {
+        if (record.isEmpty()) {
+            return;
+        }
+        try {
+            MutationJournal.apply(fbs, record);
+        } catch (FlightBookingSystemException | RuntimeException ex) {
+            System.err.println("Skipping logged record '" + record + "': " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Returns the files with the given prefix, by the time in their names.
+     */
+    private TreeMap<Long, Path> list(String prefix) throws IOException {
+        TreeMap<Long, Path> files = new TreeMap<>();
+        if (!Files.isDirectory(dir)) {
+            return files;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, prefix + "*" + SUFFIX)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                try {
+                    files.put(Long.parseLong(name.substring(prefix.length(), name.length() - SUFFIX.length())), file);
+                } catch (NumberFormatException ex) {
+                    // Not one of ours
+                }
+            }
+        }
+        return files;
+    }
+
+    private void open(long start) throws IOException {
+        channel = FileChannel.open(dir.resolve(LOG_PREFIX + start + SUFFIX), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        committer = new GroupCommitter(channel);
+    }
+
+    private void closeSegment() throws IOException {
+        if (committer != null) {
+            committer.shutdown();
+            committer = null;
+        }
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    /**
+     * Stops taking checkpoints and logging, writing any records still queued.
+     *
+     * @throws IOException if the log cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        if (journal != null) {
+            journal.removeListener(this);
+        }
+        synchronized (this) {
+            closeSegment();
+        }
+    }
+}
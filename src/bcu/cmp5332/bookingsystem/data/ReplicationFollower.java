@@ -0,0 +1,183 @@
+package bcu.cmp5332.bookingsystem.data;
+
+import bcu.cmp5332.bookingsystem.main.FlightBookingSystemException;
+import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+
+/**
+ * Keeps a copy of a primary's flight booking system up to date by applying the mutations
+ * streamed by its {@link ReplicationPrimary}.
+ * <p>
+ * {@link #connect} builds the system from the records the primary sends first, and a
+ * background thread then applies each mutation as it arrives, holding the system's monitor so
+ * that read-only commands see a consistent system, and acknowledges it to the primary. The
+ * follower measures its lag as the number of records the primary has logged that it has not
+ * yet applied, and the time the last record took from being logged to being applied. Nothing
+ * is written to disk; if the primary is lost, the follower keeps the state it reached, and
+ * {@link FlightBookingSystemData#promote} stores it and lets it take over.
+ * </p>
+ *
+ * @author Sugam Adhikari
+ * @author Prasansha Tamang
+ */
+public class ReplicationFollower implements Closeable {
+
+    private final int port;
+    private Socket socket;
+    private DataInputStream in;
+    private DataOutputStream out;
+    private FlightBookingSystem fbs;
+    private volatile long applied;
+    private volatile long latest;
+    private volatile long lagMillis;
+    private volatile boolean connected;
+
+    /**
+     * Creates a follower of the primary listening on the given port of the loopback address.
+     *
+     * @param port the port of the primary
+     */
+    public ReplicationFollower(int port) {
+        this.port = port;
+    }
+
+    /**
+     * Connects to the primary, builds the system from the records it sends first and starts
+     * applying the mutations that follow.
+     *
+     * @return the replicated system
+     * @throws IOException if the primary cannot be reached
+     * @throws FlightBookingSystemException if the primary sends something other than the system
+     */
+    public FlightBookingSystem connect() throws IOException, FlightBookingSystemException {
+        socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        socket.setTcpNoDelay(true);
+        in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+        out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        if (in.readByte() != ReplicationPrimary.SNAPSHOT) {
+            socket.close();
+            throw new FlightBookingSystemException("Unexpected reply from the primary on port " + port);
+        }
+        applied = in.readLong();
+        latest = applied;
+        fbs = new FlightBookingSystem();
+        for (int count = in.readInt(); count > 0; count--) {
+            apply(in.readUTF());
+        }
+        connected = true;
+        Thread thread = new Thread(this::run, "replication-follower");
+        thread.setDaemon(true);
+        thread.start();
+        return fbs;
+    }
+
+    /**
+     * Returns whether the follower is still receiving mutations from the primary.
+     *
+     * @return true if connected
+     */
+    public boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * Returns the sequence number of the last mutation applied.
+     *
+     * @return the sequence number
+     */
+    public long getApplied() {
+        return applied;
+    }
+
+    /**
+     * Returns the number of mutations the primary is known to have logged that have not yet
+     * been applied.
+     *
+     * @return the number of mutations
+     */
+    public long getLagRecords() {
+        return Math.max(0, latest - applied);
+    }
+
+    /**
+     * Returns the time the last mutation took from being logged on the primary to being
+     * applied here.
+     *
+     * @return the time in milliseconds
+     */
+    public long getLagMillis() {
+        return lagMillis;
+    }
+
+    /**
+     * Describes the follower and its lag, for the {@code replication} command.
+     *
+     * @return the description
+     */
+    public String describe() {
+        return String.format("%s primary on port %d, applied %d, %d behind, lag %d ms",
+                connected ? "Following" : "Disconnected from", port, applied, getLagRecords(), lagMillis);
+    }
+
+    /**
+     * Disconnects from the primary. The system keeps the state it had reached.
+     */
+    @Override
+    public void close() {
+        connected = false;
+        try {
+            socket.close();
+        } catch (IOException ex) {
+            // Already closed
+        }
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                byte type = in.readByte();
+                long seq = in.readLong();
+                long time = in.readLong();
+                latest = Math.max(latest, seq);
+                if (type == ReplicationPrimary.RECORD) {
+                    String record = in.readUTF();
+                    synchronized (fbs) {
+                        apply(record);
+                    }
+                    applied = seq;
+                    lagMillis = System.currentTimeMillis() - time;
+                }
+                if (in.available() == 0) {
+                    out.writeByte(ReplicationPrimary.ACK);
+                    out.writeLong(applied);
+                    out.flush();
+                }
+            }
+        } catch (IOException ex) {
+            if (connected) {
+                String reason = ex instanceof EOFException ? "the primary has stopped" : ex.getMessage();
+                System.err.println("Lost the connection to the primary: " + reason
+                        + ". Enter 'promote' to take over.");
+            }
+        } finally {
+            close();
+        }
+    }
+
+    private void apply(String record) {
+        try {
+            MutationJournal.apply(fbs, record);
+        } catch (FlightBookingSystemException | RuntimeException ex) {
+            System.err.println("Skipping replicated record '" + record + "': " + ex.getMessage());
+        }
+    }
+}
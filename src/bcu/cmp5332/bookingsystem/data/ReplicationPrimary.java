@@ -0,0 +1,349 @@
+package bcu.cmp5332.bookingsystem.data;
+
+import bcu.cmp5332.bookingsystem.main.FlightBookingSystemException;
+import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streams the mutations logged by the {@link MutationJournal} to {@link ReplicationFollower}s
+ * connected over a local TCP socket, so that a follower process keeps its own copy of the
+ * system up to date and can take over if the primary is lost.
+ * <p>
+ * The primary listens on the loopback address only. When a follower connects it is first sent
+ * records that rebuild the whole system ({@link MutationJournal#describeAll}), taken while holding
+ * the system's monitor, which every command also holds; every mutation
+ * logged from then on follows, numbered in order and stamped with the time it was logged.
+ * Records that are in both are skipped by the follower, since applying a record is idempotent.
+ * The follower acknowledges the records it has applied, and the primary measures each
+ * follower's lag as the number of records not yet acknowledged and the age of the oldest of
+ * them. A heartbeat is sent every second when there is nothing else to send, so that a
+ * follower knows how far behind it is. A follower that falls more than
+ * {@code bookingsystem.replication.backlog} records behind (100,000 by default) is
+ * disconnected, and has to connect again.
+ * </p>
+ * <p>
+ * A primary is started on load if the {@code bookingsystem.replication.port} system property
+ * gives the port to listen on.
+ * </p>
+ *
+ * <pre>
+ * to the follower : 'S' seq, count, record*  the records that rebuild the system, which
+ *                                            include every mutation up to seq
+ *                   'R' seq, time, record    a logged mutation
+ *                   'H' seq, time            a heartbeat with the latest sequence number
+ * to the primary  : 'A' seq                  the last record applied
+ * </pre>
+ *
+ * @author Sugam Adhikari
+ * @author Prasansha Tamang
+ */
+public class ReplicationPrimary implements MutationJournal.MutationListener, Closeable {
+
+    /** The default number of records a follower may fall behind before it is disconnected. */
+    public static final int DEFAULT_BACKLOG = 100_000;
+
+    static final byte SNAPSHOT = 'S';
+    static final byte RECORD = 'R';
+    static final byte HEARTBEAT = 'H';
+    static final byte ACK = 'A';
+    static final long HEARTBEAT_MILLIS = 1000;
+
+    private final FlightBookingSystem fbs;
+    private final MutationJournal journal;
+    private final ServerSocket server;
+    private final int backlog = Integer.getInteger("bookingsystem.replication.backlog", DEFAULT_BACKLOG);
+    private final List<Follower> followers = new CopyOnWriteArrayList<>();
+    private long sequence;
+    private volatile boolean closed;
+
+    /**
+     * Starts listening for followers on the given port of the loopback address and registers
+     * with the journal.
+     *
+     * @param fbs     the system being replicated
+     * @param journal the journal whose mutations are streamed
+     * @param port    the port to listen on, or 0 for any free port
+     * @throws IOException if the port cannot be opened
+     */
+    public ReplicationPrimary(FlightBookingSystem fbs, MutationJournal journal, int port) throws IOException {
+        this.fbs = fbs;
+        this.journal = journal;
+        this.server = new ServerSocket(port, 8, InetAddress.getLoopbackAddress());
+        journal.addListener(this);
+        Thread acceptor = new Thread(this::accept, "replication-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Returns the port followers connect to.
+     *
+     * @return the port
+     */
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * Returns the sequence number of the last mutation logged.
+     *
+     * @return the sequence number, or 0 if nothing has been logged
+     */
+    public synchronized long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Returns the number of followers connected.
+     *
+     * @return the number of followers
+     */
+    public int getFollowerCount() {
+        return followers.size();
+    }
+
+    /**
+     * Returns the largest number of records any follower has not yet acknowledged.
+     *
+     * @return the number of records, or 0 if there are no followers
+     */
+    public long getLagRecords() {
+        long lag = 0;
+        for (Follower follower : followers) {
+            lag = Math.max(lag, follower.getLagRecords());
+        }
+        return lag;
+    }
+
+    /**
+     * Returns the largest time any follower has had a record without acknowledging it.
+     *
+     * @return the time in milliseconds, or 0 if every follower is up to date
+     */
+    public long getLagMillis() {
+        long lag = 0;
+        for (Follower follower : followers) {
+            lag = Math.max(lag, follower.getLagMillis());
+        }
+        return lag;
+    }
+
+    /**
+     * Describes the primary and the lag of each follower, for the {@code replication} command.
+     *
+     * @return the description
+     */
+    public String describe() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Primary on port ").append(getPort()).append(", sequence ").append(getSequence())
+                .append(", ").append(followers.size()).append(" follower(s)");
+        for (Follower follower : followers) {
+            sb.append(String.format("%n  %s: acknowledged %d, %d behind, lag %d ms", follower.name,
+                    follower.acknowledged, follower.getLagRecords(), follower.getLagMillis()));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Numbers the record and queues it for every follower.
+     *
+     * @param record the record
+     */
+    @Override
+    public synchronized void mutationLogged(String record) {
+        Entry entry = new Entry(++sequence, System.currentTimeMillis(), record);
+        for (Follower follower : followers) {
+            if (!follower.queue.offer(entry)) {
+                System.err.println("Disconnecting follower " + follower.name + ": more than "
+                        + backlog + " records behind");
+                follower.close();
+            }
+        }
+    }
+
+    /**
+     * Stops listening, disconnects every follower and unregisters from the journal.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        journal.removeListener(this);
+        try {
+            server.close();
+        } catch (IOException ex) {
+            // Already closed
+        }
+        for (Follower follower : followers) {
+            follower.close();
+        }
+    }
+
+    private void accept() {
+        while (!closed) {
+            try {
+                Socket socket = server.accept();
+                socket.setTcpNoDelay(true);
+                Follower follower = new Follower(socket);
+                Thread sender = new Thread(() -> follower.send(), "replication-sender");
+                sender.setDaemon(true);
+                sender.start();
+            } catch (IOException ex) {
+                if (!closed) {
+                    System.err.println("Error accepting a follower: " + ex.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * A logged mutation.
+     */
+    private static final class Entry {
+        final long seq;
+        final long time;
+        final String record;
+
+        Entry(long seq, long time, String record) {
+            this.seq = seq;
+            this.time = time;
+            this.record = record;
+        }
+    }
+
+    /**
+     * A connected follower, with the records still to be sent to it and those sent but not yet
+     * acknowledged.
+     */
+    private final class Follower {
+        final Socket socket;
+        final String name;
+        final BlockingQueue<Entry> queue = new LinkedBlockingQueue<>(backlog);
+        final ArrayDeque<Entry> unacknowledged = new ArrayDeque<>();
+        volatile long acknowledged;
+
+        Follower(Socket socket) {
+            this.socket = socket;
+            this.name = socket.getRemoteSocketAddress().toString();
+        }
+
+        synchronized long getLagRecords() {
+            return unacknowledged.size() + queue.size();
+        }
+
+        synchronized long getLagMillis() {
+            Entry oldest = unacknowledged.isEmpty() ? queue.peek() : unacknowledged.peekFirst();
+            return oldest == null ? 0 : System.currentTimeMillis() - oldest.time;
+        }
+
+        /**
+         * Sends the records that rebuild the system, then every record queued since.
+         */
+        void send() {
+            try {
+                DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+                List<String> records;
+                long start;
+                synchronized (ReplicationPrimary.this) {
+                    followers.add(this); // From here on records are queued for the follower
+                    start = sequence;
+                }
+                synchronized (fbs) {
+                    records = MutationJournal.describeAll(fbs);
+                }
+                out.writeByte(SNAPSHOT);
+                out.writeLong(start);
+                out.writeInt(records.size());
+                for (String record : records) {
+                    out.writeUTF(record);
+                }
+                out.flush();
+                records = null;
+
+                Thread reader = new Thread(this::readAcks, "replication-acks");
+                reader.setDaemon(true);
+                reader.start();
+                System.err.println("Follower " + name + " connected");
+
+                List<Entry> batch = new ArrayList<>();
+                while (!socket.isClosed()) {
+                    Entry first = queue.poll(HEARTBEAT_MILLIS, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        out.writeByte(HEARTBEAT);
+                        out.writeLong(getSequence());
+                        out.writeLong(System.currentTimeMillis());
+                        out.flush();
+                        continue;
+                    }
+                    batch.add(first);
+                    queue.drainTo(batch);
+                    synchronized (this) {
+                        unacknowledged.addAll(batch);
+                    }
+                    for (Entry entry : batch) {
+                        out.writeByte(RECORD);
+                        out.writeLong(entry.seq);
+                        out.writeLong(entry.time);
+                        out.writeUTF(entry.record);
+                    }
+                    out.flush();
+                    batch.clear();
+                }
+            } catch (IOException | FlightBookingSystemException ex) {
+                if (!socket.isClosed()) {
+                    System.err.println("Lost follower " + name + ": " + ex.getMessage());
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } finally {
+                close();
+            }
+        }
+
+        void readAcks() {
+            try {
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                while (in.readByte() == ACK) {
+                    long seq = in.readLong();
+                    synchronized (this) {
+                        while (!unacknowledged.isEmpty() && unacknowledged.peekFirst().seq <= seq) {
+                            unacknowledged.pollFirst();
+                        }
+                    }
+                    acknowledged = seq;
+                }
+            } catch (IOException ex) {
+                // The follower has gone; the sender notices when it next writes
+            } finally {
+                close();
+            }
+        }
+
+        void close() {
+            if (followers.remove(this)) {
+                System.err.println("Follower " + name + " disconnected");
+            }
+            try {
+                socket.close();
+            } catch (IOException ex) {
+                // Already closed
+            }
+        }
+    }
+}
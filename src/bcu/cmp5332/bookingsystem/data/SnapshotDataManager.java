@@ -0,0 +1,438 @@
+package bcu.cmp5332.bookingsystem.data;
+
+import bcu.cmp5332.bookingsystem.main.FlightBookingSystemException;
+import bcu.cmp5332.bookingsystem.model.Booking;
+import bcu.cmp5332.bookingsystem.model.Customer;
+import bcu.cmp5332.bookingsystem.model.Flight;
+import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Loads and stores the whole flight booking system as a single versioned binary snapshot.
+ * <p>
+ * The snapshot holds fixed-width records for flights, customers and bookings followed by a
+ * string table. Text fields are stored once in the string table and referenced by offset,
+ * and dates are stored as epoch days, so loading reads numbers straight out of a memory-mapped
+ * file and only creates a String for each distinct text value. Since it mirrors the text
+ * files, everything loaded from it is marked as persisted.
+ * </p>
+ * <p>
+ * The text files remain the import/export format, so the header records the length and CRC-32C
+ * of each text file as it was when the snapshot was written. The snapshot is only used on
+ * start-up if every text file still begins with exactly those bytes, whatever its modification
+ * time says. A text file that has only had records appended since, as an incremental store does,
+ * still matches: the snapshot is loaded and just the appended records are parsed on top of it.
+ * </p>
+ *
+ * <pre>
+ * header   : magic, version, #flights, #customers, #bookings, maxBookingId, stringTableOffset
+ * sources  : (length, crc) of the flight, customer and booking files                  (36 bytes)
+ * flight   : id, flightNumber, origin, destination, departureDay, seats, price, flags  (36 bytes)
+ * customer : id, name, phone, email, flags                                             (20 bytes)
+ * booking  : id, customerId, flightId, bookingDay, price, flags                         (28 bytes)
+ * strings  : (length, UTF-8 bytes)*
+ * </pre>
+ *
+ * @author Sugam Adhikari
+ * @author Prasansha Tamang
+ */
+public class SnapshotDataManager implements DataManager {
+
+    /** The default path to the snapshot file. */
+    public static final String RESOURCE = "./resources/data/snapshot.bin";
+
+    private static final int MAGIC = 0x46425353; // "FBSS"
+    private static final int VERSION = 2;
+    private static final int SOURCES_OFFSET = 32;
+    private static final int SOURCE_COUNT = 3;
+    private static final int HEADER_SIZE = SOURCES_OFFSET + SOURCE_COUNT * 12;
+    private static final int FLIGHT_SIZE = 36;
+    private static final int CUSTOMER_SIZE = 20;
+    private static final int BOOKING_SIZE = 28;
+    private static final int FLAG_DELETED = 1;
+    private static final int FLAG_CANCELLED = 1;
+
+    private final String resource;
+    private final String[] sources;
+
+    /**
+     * Creates a data manager for the default snapshot file of the default text files.
+     */
+    public SnapshotDataManager() {
+        this(RESOURCE, FlightDataManager.RESOURCE, CustomerDataManager.RESOURCE, BookingDataManager.RESOURCE);
+    }
+
+    /**
+     * Creates a data manager for the given snapshot file of the given text files.
+     *
+     * @param resource          the path to the snapshot file
+     * @param flightsResource   the path of the flight data file the snapshot mirrors
+     * @param customersResource the path of the customer data file the snapshot mirrors
+     * @param bookingsResource  the path of the booking data file the snapshot mirrors
+     */
+    public SnapshotDataManager(String resource, String flightsResource, String customersResource,
+            String bookingsResource) {
+        this.resource = resource;
+        this.sources = new String[] {flightsResource, customersResource, bookingsResource};
+    }
+
+    /**
+     * Checks whether the snapshot exists and every text file still begins with the bytes it had
+     * when the snapshot was written, so that loading the snapshot and the records appended to
+     * the text files since gives the same result as loading the text files.
+     *
+     * @return true if the snapshot can be used in place of the text files
+     */
+    public boolean isUpToDate() {
+        if (!new File(resource).isFile()) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(Paths.get(resource), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // Read the whole header
+            }
+            header.flip();
+            if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC || header.getInt() != VERSION) {
+                return false;
+            }
+            header.position(SOURCES_OFFSET);
+            for (String source : sources) {
+                long length = header.getLong();
+                int crc = header.getInt();
+                if (new File(source).length() < length || checksum(source, length) != crc) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Loads flights, customers and bookings from the memory-mapped snapshot file, followed by
+     * the records appended to each text file since the snapshot was written. Callers check
+     * {@link #isUpToDate()} first.
+     *
+     * @param fbs The FlightBookingSystem instance to update with loaded data.
+     * @throws IOException If an error occurs during file reading.
+     * @throws FlightBookingSystemException If the file is not a snapshot or has an unsupported version,
+     *         or an appended record cannot be parsed or rewrites a record of the snapshot.
+     */
+    @Override
+    public void loadData(FlightBookingSystem fbs) throws IOException, FlightBookingSystemException {
+        long[] covered = new long[SOURCE_COUNT];
+        int maxBookingId;
+        try (FileChannel channel = FileChannel.open(Paths.get(resource), StandardOpenOption.READ)) {
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (header.getInt() != MAGIC) {
+                throw new FlightBookingSystemException(resource + " is not a snapshot file.");
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new FlightBookingSystemException("Unsupported snapshot version " + version + ".");
+            }
+            int flightCount = header.getInt();
+            int customerCount = header.getInt();
+            int bookingCount = header.getInt();
+            maxBookingId = header.getInt();
+            long stringsOffset = header.getLong();
+            for (int i = 0; i < SOURCE_COUNT; i++) {
+                covered[i] = header.getLong();
+                header.getInt();
+            }
+
+            long flightsOffset = HEADER_SIZE;
+            long customersOffset = flightsOffset + (long) flightCount * FLIGHT_SIZE;
+            long bookingsOffset = customersOffset + (long) customerCount * CUSTOMER_SIZE;
+
+            StringTable strings = new StringTable(channel.map(FileChannel.MapMode.READ_ONLY,
+                    stringsOffset, channel.size() - stringsOffset));
+
+            MappedByteBuffer flights = channel.map(FileChannel.MapMode.READ_ONLY, flightsOffset,
+                    (long) flightCount * FLIGHT_SIZE);
+            for (int i = 0; i < flightCount; i++) {
+                int id = flights.getInt();
+                String flightNumber = strings.get(flights.getInt(), true);
+                String origin = strings.get(flights.getInt(), true);
+                String destination = strings.get(flights.getInt(), true);
+                LocalDate departureDate = LocalDate.ofEpochDay(flights.getInt());
+                int numberOfSeats = flights.getInt();
+                double price = flights.getDouble();
+                boolean deleted = (flights.getInt() & FLAG_DELETED) != 0;
+                Flight flight = new Flight(id, flightNumber, origin, destination, departureDate,
+                        numberOfSeats, price, deleted);
+                flight.markPersisted();
+                fbs.addFlight(flight);
+            }
+
+            MappedByteBuffer customers = channel.map(FileChannel.MapMode.READ_ONLY, customersOffset,
+                    (long) customerCount * CUSTOMER_SIZE);
+            for (int i = 0; i < customerCount; i++) {
+                int id = customers.getInt();
+                String name = strings.get(customers.getInt(), false);
+                String phone = strings.get(customers.getInt(), false);
+                String email = strings.get(customers.getInt(), false);
+                boolean deleted = (customers.getInt() & FLAG_DELETED) != 0;
+                Customer customer = new Customer(id, name, phone, email, deleted);
+                customer.markPersisted();
+                fbs.addCustomer(customer);
+            }
+
+            MappedByteBuffer bookings = channel.map(FileChannel.MapMode.READ_ONLY, bookingsOffset,
+                    (long) bookingCount * BOOKING_SIZE);
+            for (int i = 0; i < bookingCount; i++) {
+                int id = bookings.getInt();
+                Customer customer = fbs.getCustomerByID(bookings.getInt());
+                Flight flight = fbs.getFlightByID(bookings.getInt());
+                LocalDate bookingDate = LocalDate.ofEpochDay(bookings.getInt());
+                double price = bookings.getDouble();
+                boolean cancelled = (bookings.getInt() & FLAG_CANCELLED) != 0;
+                Booking booking = new Booking(id, customer, flight, bookingDate, price);
+                if (cancelled) {
+                    booking.cancelBooking();
+                }
+                booking.markPersisted();
+                customer.addBooking(booking);
+                flight.addPassenger(customer);
+            }
+            fbs.setMaxBookingId(maxBookingId);
+        }
+        loadAppended(fbs, covered, maxBookingId);
+    }
+
+    /**
+     * Parses the records appended to the text files after the lengths the snapshot covers.
+     * Incremental stores only append new flights, customers and bookings, so a record for an
+     * ID that is already in the snapshot means the files were changed some other way.
+     */
+    private void loadAppended(FlightBookingSystem fbs, long[] covered, int maxBookingId)
+            throws IOException, FlightBookingSystemException {
+        try (RecordReader reader = appended(0, covered)) {
+            if (reader != null) {
+                fbs.addFlights(FlightDataManager.parseFlights(reader));
+            }
+        }
+        try (RecordReader reader = appended(1, covered)) {
+            if (reader != null) {
+                fbs.addCustomers(CustomerDataManager.parseCustomers(reader));
+            }
+        }
+        try (RecordReader reader = appended(2, covered)) {
+            if (reader == null) {
+                return;
+            }
+            List<BookingRecord> records = BookingDataManager.parseRecords(reader);
+            for (BookingRecord record : records) {
+                if (record.id <= maxBookingId) {
+                    throw new FlightBookingSystemException("Booking " + record.id
+                            + " was written again after the snapshot.");
+                }
+            }
+            new BookingDataManager(sources[2]).linkBookings(fbs, Collections.singletonList(records));
+        }
+    }
+
+    /**
+     * Opens a reader over the records appended to a text file after the length the snapshot
+     * covers, or returns null if nothing has been appended.
+     */
+    private RecordReader appended(int source, long[] covered) throws IOException {
+        long length = new File(sources[source]).length();
+        if (length <= covered[source]) {
+            return null;
+        }
+        return new RecordReader(Paths.get(sources[source]), covered[source], length);
+    }
+
+    /**
+     * Writes flights, customers and bookings to a new snapshot file, replacing the old one
+     * through {@link DurableFile} only once the new file is complete and on disk. Like the text
+     * files, the snapshot only holds current flights: flights in a departure-month partition and
+     * the bookings on them are left out. The text files are expected to hold the same data, and
+     * their length and checksum are recorded as they are now.
+     *
+     * @param fbs The FlightBookingSystem instance whose data needs to be stored.
+     * @throws IOException If an error occurs during file writing.
+     */
+    @Override
+    public void storeData(FlightBookingSystem fbs) throws IOException {
+        StringTableWriter strings = new StringTableWriter();
+        List<Flight> flights = new ArrayList<>();
+        for (Flight flight : fbs.getFlights()) {
+            if (!fbs.isArchived(flight.getId())) {
+                flights.add(flight);
+            }
+        }
+        List<Booking> bookings = new ArrayList<>();
+        for (Customer customer : fbs.getAllCustomers()) {
+            for (Booking booking : customer.getBookings()) {
+                if (!fbs.isArchived(booking.getFlight().getId())) {
+                    bookings.add(booking);
+                }
+            }
+        }
+        int flightCount = flights.size();
+        int customerCount = fbs.getAllCustomers().size();
+        int bookingCount = bookings.size();
+        long stringsOffset = HEADER_SIZE + (long) flightCount * FLIGHT_SIZE
+                + (long) customerCount * CUSTOMER_SIZE + (long) bookingCount * BOOKING_SIZE;
+        long[] lengths = new long[SOURCE_COUNT];
+        int[] crcs = new int[SOURCE_COUNT];
+        for (int i = 0; i < SOURCE_COUNT; i++) {
+            lengths[i] = new File(sources[i]).length();
+            crcs[i] = checksum(sources[i], lengths[i]);
+        }
+
+        DurableFile.replace(resource, stream -> {
+            DataOutputStream out = new DataOutputStream(stream);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(flightCount);
+            out.writeInt(customerCount);
+            out.writeInt(bookingCount);
+            out.writeInt(fbs.getMaxBookingId());
+            out.writeLong(stringsOffset);
+            for (int i = 0; i < SOURCE_COUNT; i++) {
+                out.writeLong(lengths[i]);
+                out.writeInt(crcs[i]);
+            }
+
+            for (Flight flight : flights) {
+                out.writeInt(flight.getId());
+                out.writeInt(strings.add(flight.getFlightNumber()));
+                out.writeInt(strings.add(flight.getOrigin()));
+                out.writeInt(strings.add(flight.getDestination()));
+                out.writeInt((int) flight.getDepartureDate().toEpochDay());
+                out.writeInt(flight.getNumberOfSeats());
+                out.writeDouble(flight.getPrice());
+                out.writeInt(flight.isDeleted() ? FLAG_DELETED : 0);
+            }
+            for (Customer customer : fbs.getAllCustomers()) {
+                out.writeInt(customer.getId());
+                out.writeInt(strings.add(customer.getName()));
+                out.writeInt(strings.add(customer.getPhone()));
+                out.writeInt(strings.add(customer.getEmail()));
+                out.writeInt(customer.isDeleted() ? FLAG_DELETED : 0);
+            }
+            for (Booking booking : bookings) {
+                out.writeInt(booking.getId());
+                out.writeInt(booking.getCustomer().getId());
+                out.writeInt(booking.getFlight().getId());
+                out.writeInt((int) booking.getBookingDate().toEpochDay());
+                out.writeDouble(booking.getPrice());
+                out.writeInt(booking.isCancelled() ? FLAG_CANCELLED : 0);
+            }
+            strings.writeTo(out);
+            out.flush();
+        });
+    }
+
+    /**
+     * Computes the CRC-32C of the first bytes of a file; a file that does not exist counts as empty.
+     */
+    private static int checksum(String file, long length) throws IOException {
+        Crc32c crc = new Crc32c();
+        if (length == 0) {
+            return (int) crc.getValue();
+        }
+        try (FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            long position = 0;
+            while (position < length) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), length - position));
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    throw new EOFException(file + " is shorter than " + length + " bytes");
+                }
+                crc.update(buffer.array(), 0, read);
+                position += read;
+            }
+        } catch (NoSuchFileException ex) {
+            throw new EOFException(file + " does not exist");
+        }
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Builds the string table while records are written, storing each distinct value once.
+     */
+    private static final class StringTableWriter {
+        private final Map<String, Integer> offsets = new LinkedHashMap<>();
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+
+        private int add(String value) throws IOException {
+            Integer offset = offsets.get(value);
+            if (offset == null) {
+                offset = out.size();
+                byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(encoded.length);
+                out.write(encoded);
+                offsets.put(value, offset);
+            }
+            return offset;
+        }
+
+        private void writeTo(DataOutputStream target) throws IOException {
+            bytes.writeTo(target);
+        }
+    }
+
+    /**
+     * Decodes strings out of the mapped string table. Values that repeat across many records,
+     * such as airport codes, are decoded once and shared.
+     */
+    private static final class StringTable {
+        private final MappedByteBuffer buffer;
+        private final Map<Integer, String> shared = new HashMap<>();
+        private byte[] scratch = new byte[64];
+
+        private StringTable(MappedByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        private String get(int offset, boolean share) {
+            if (share) {
+                String value = shared.get(offset);
+                if (value == null) {
+                    value = decode(offset);
+                    shared.put(offset, value);
+                }
+                return value;
+            }
+            return decode(offset);
+        }
+
+        private String decode(int offset) {
+            int length = buffer.getInt(offset);
+            if (scratch.length < length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            buffer.position(offset + 4);
+            buffer.get(scratch, 0, length);
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+}
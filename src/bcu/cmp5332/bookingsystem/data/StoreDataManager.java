@@ -0,0 +1,326 @@
+package bcu.cmp5332.bookingsystem.data;
+
+import bcu.cmp5332.bookingsystem.main.FlightBookingSystemException;
+import bcu.cmp5332.bookingsystem.model.Booking;
+import bcu.cmp5332.bookingsystem.model.Customer;
+import bcu.cmp5332.bookingsystem.model.Flight;
+import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Loads and stores the flight booking system through a {@link RecordStore}, one record per
+ * flight, customer and booking.
+ * <p>
+ * Storing only writes the records that have changed since they were last loaded or stored,
+ * whether they are new or modified, and then commits the store; unlike the text files, a
+ * modified record never means rewriting the rest. When flights, customers or bookings have been
+ * removed from the system, the IDs in the store are compared with those in memory and the
+ * missing ones are deleted. Records are encoded in binary, with text fields as UTF-8 and dates
+ * as epoch days:
+ * </p>
+ *
+ * <pre>
+ * flight   : flightNumber, origin, destination, departureDay, seats, price, deleted
+ * customer : name, phone, email, deleted
+ * booking  : customerId, flightId, bookingDay, price, cancelled
+ * </pre>
+ *
+ * @author Sugam Adhikari
+ * @author Prasansha Tamang
+ */
+public class StoreDataManager implements DataManager {
+
+    /** The length written in place of a missing text field. */
+    private static final int NULL_LENGTH = 0xFFFF;
+
+    private final RecordStore store;
+
+    /**
+     * Creates a data manager over the given store.
+     *
+     * @param store the store holding the records
+     */
+    public StoreDataManager(RecordStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Returns whether the store holds no records yet.
+     *
+     * @return true if every table is empty
+     */
+    public boolean isEmpty() {
+        for (RecordStore.Table table : RecordStore.Table.values()) {
+            if (store.size(table) > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Loads every flight, customer and booking in the store, in ID order.
+     *
+     * @param fbs The FlightBookingSystem instance to update with loaded data.
+     * @throws IOException If the store cannot be read.
+     * @throws FlightBookingSystemException If a booking refers to an unknown customer or flight.
+     */
+    @Override
+    public void loadData(FlightBookingSystem fbs) throws IOException, FlightBookingSystemException {
+        List<Flight> flights = new ArrayList<>();
+        store.scan(RecordStore.Table.FLIGHTS, 0, Integer.MAX_VALUE, (id, record) -> {
+            flights.add(decodeFlight(id, ByteBuffer.wrap(record)));
+            return true;
+        });
+        fbs.addFlights(flights);
+
+        List<Customer> customers = new ArrayList<>();
+        store.scan(RecordStore.Table.CUSTOMERS, 0, Integer.MAX_VALUE, (id, record) -> {
+            customers.add(decodeCustomer(id, ByteBuffer.wrap(record)));
+            return true;
+        });
+        fbs.addCustomers(customers);
+
+        List<BookingRecord> bookings = new ArrayList<>();
+        store.scan(RecordStore.Table.BOOKINGS, 0, Integer.MAX_VALUE, (id, record) -> {
+            ByteBuffer buffer = ByteBuffer.wrap(record);
+            bookings.add(new BookingRecord(id, buffer.getInt(), buffer.getInt(),
+                    LocalDate.ofEpochDay(buffer.getInt()), buffer.getDouble(), buffer.get() != 0));
+            return true;
+        });
+        new BookingDataManager().linkBookings(fbs, Collections.singletonList(bookings));
+    }
+
+    /**
+     * Stores the records that have changed, as described for this class.
+     *
+     * @param fbs The FlightBookingSystem instance whose data needs to be stored.
+     * @throws IOException If the store cannot be written.
+     */
+    @Override
+    public void storeData(FlightBookingSystem fbs) throws IOException {
+        List<Flight> flights = new ArrayList<>();
+        for (Flight flight : fbs.getFlights()) {
+            if (flight.isDirty()) {
+                store.put(RecordStore.Table.FLIGHTS, flight.getId(), encode(flight));
+                flights.add(flight);
+            }
+        }
+        List<Customer> customers = new ArrayList<>();
+        List<Booking> bookings = new ArrayList<>();
+        boolean bookingsRemoved = fbs.hasRemovedCustomers();
+        for (Customer customer : fbs.getAllCustomers()) {
+            if (customer.isDirty()) {
+                store.put(RecordStore.Table.CUSTOMERS, customer.getId(), encode(customer));
+                customers.add(customer);
+            }
+            bookingsRemoved |= customer.hasRemovedBookings();
+            if (!customer.isBookingsLoaded()) {
+                continue; // Bookings that have not been read cannot have changed
+            }
+            for (Booking booking : customer.getBookings()) {
+                if (booking.isDirty()) {
+                    store.put(RecordStore.Table.BOOKINGS, booking.getId(), encode(booking));
+                    bookings.add(booking);
+                }
+            }
+        }
+
+        if (fbs.hasRemovedFlights()) {
+            Set<Integer> current = new HashSet<>();
+            for (Flight flight : fbs.getFlights()) {
+                current.add(flight.getId());
+            }
+            deleteMissing(RecordStore.Table.FLIGHTS, current);
+        }
+        if (fbs.hasRemovedCustomers()) {
+            Set<Integer> current = new HashSet<>();
+            for (Customer customer : fbs.getAllCustomers()) {
+                current.add(customer.getId());
+            }
+            deleteMissing(RecordStore.Table.CUSTOMERS, current);
+        }
+        if (bookingsRemoved) {
+            Set<Integer> current = new HashSet<>();
+            for (Customer customer : fbs.getAllCustomers()) {
+                for (Booking booking : customer.getBookings()) {
+                    current.add(booking.getId());
+                }
+                customer.clearRemovedBookings();
+            }
+            deleteMissing(RecordStore.Table.BOOKINGS, current);
+        }
+        store.commit();
+
+        for (Flight flight : flights) {
+            flight.markPersisted();
+        }
+        for (Customer customer : customers) {
+            customer.markPersisted();
+        }
+        for (Booking booking : bookings) {
+            booking.markPersisted();
+        }
+    }
+
+    /**
+     * Writes every flight, customer and booking in the system to the store, whether or not it
+     * has changed, for example to fill a new store from the text files.
+     *
+     * @param fbs The FlightBookingSystem instance whose data needs to be stored.
+     * @throws IOException If the store cannot be written.
+     */
+    public void importData(FlightBookingSystem fbs) throws IOException {
+        for (Flight flight : fbs.getFlights()) {
+            store.put(RecordStore.Table.FLIGHTS, flight.getId(), encode(flight));
+        }
+        for (Customer customer : fbs.getAllCustomers()) {
+            store.put(RecordStore.Table.CUSTOMERS, customer.getId(), encode(customer));
+            for (Booking booking : customer.getBookings()) {
+                store.put(RecordStore.Table.BOOKINGS, booking.getId(), encode(booking));
+            }
+        }
+        store.commit();
+    }
+
+    /**
+     * Makes the store hold exactly the given system: every flight, customer and booking in it is
+     * written, whether or not it has changed, and every record the system does not have is
+     * deleted, for example after the system has been restored from its history.
+     *
+     * @param fbs The FlightBookingSystem instance whose data needs to be stored.
+     * @throws IOException If the store cannot be written.
+     */
+    public void replaceData(FlightBookingSystem fbs) throws IOException {
+        Set<Integer> flights = new HashSet<>();
+        for (Flight flight : fbs.getFlights()) {
+            store.put(RecordStore.Table.FLIGHTS, flight.getId(), encode(flight));
+            flights.add(flight.getId());
+        }
+        Set<Integer> customers = new HashSet<>();
+        Set<Integer> bookings = new HashSet<>();
+        for (Customer customer : fbs.getAllCustomers()) {
+            store.put(RecordStore.Table.CUSTOMERS, customer.getId(), encode(customer));
+            customers.add(customer.getId());
+            for (Booking booking : customer.getBookings()) {
+                store.put(RecordStore.Table.BOOKINGS, booking.getId(), encode(booking));
+                bookings.add(booking.getId());
+            }
+            customer.clearRemovedBookings();
+        }
+        deleteMissing(RecordStore.Table.FLIGHTS, flights);
+        deleteMissing(RecordStore.Table.CUSTOMERS, customers);
+        deleteMissing(RecordStore.Table.BOOKINGS, bookings);
+        store.commit();
+
+        for (Flight flight : fbs.getFlights()) {
+            flight.markPersisted();
+        }
+        for (Customer customer : fbs.getAllCustomers()) {
+            customer.markPersisted();
+            for (Booking booking : customer.getBookings()) {
+                booking.markPersisted();
+            }
+        }
+    }
+
+    private void deleteMissing(RecordStore.Table table, Set<Integer> current) throws IOException {
+        List<Integer> missing = new ArrayList<>();
+        store.scan(table, 0, Integer.MAX_VALUE, (id, record) -> {
+            if (!current.contains(id)) {
+                missing.add(id);
+            }
+            return true;
+        });
+        for (int id : missing) {
+            store.delete(table, id);
+        }
+    }
+
+    private static byte[] encode(Flight flight) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeString(out, flight.getFlightNumber());
+        writeString(out, flight.getOrigin());
+        writeString(out, flight.getDestination());
+        out.writeInt((int) flight.getDepartureDate().toEpochDay());
+        out.writeInt(flight.getNumberOfSeats());
+        out.writeDouble(flight.getPrice());
+        out.writeBoolean(flight.isDeleted());
+        return bytes.toByteArray();
+    }
+
+    private static byte[] encode(Customer customer) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeString(out, customer.getName());
+        writeString(out, customer.getPhone());
+        writeString(out, customer.getEmail());
+        out.writeBoolean(customer.isDeleted());
+        return bytes.toByteArray();
+    }
+
+    private static byte[] encode(Booking booking) {
+        ByteBuffer buffer = ByteBuffer.allocate(21);
+        buffer.putInt(booking.getCustomer().getId());
+        buffer.putInt(booking.getFlight().getId());
+        buffer.putInt((int) booking.getBookingDate().toEpochDay());
+        buffer.putDouble(booking.getPrice());
+        buffer.put((byte) (booking.isCancelled() ? 1 : 0));
+        return buffer.array();
+    }
+
+    private static Flight decodeFlight(int id, ByteBuffer buffer) {
+        String flightNumber = readString(buffer);
+        String origin = readString(buffer);
+        String destination = readString(buffer);
+        LocalDate departureDate = LocalDate.ofEpochDay(buffer.getInt());
+        int numberOfSeats = buffer.getInt();
+        double price = buffer.getDouble();
+        boolean deleted = buffer.get() != 0;
+        Flight flight = new Flight(id, flightNumber, origin, destination, departureDate, numberOfSeats, price, deleted);
+        flight.markPersisted();
+        return flight;
+    }
+
+    private static Customer decodeCustomer(int id, ByteBuffer buffer) {
+        String name = readString(buffer);
+        String phone = readString(buffer);
+        String email = readString(buffer);
+        boolean deleted = buffer.get() != 0;
+        Customer customer = new Customer(id, name, phone, email, deleted);
+        customer.markPersisted();
+        return customer;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeShort(NULL_LENGTH);
+            return;
+        }
+        byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(encoded.length);
+        out.write(encoded);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getShort() & 0xFFFF;
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        String value = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+}
@@ -1,43 +1,132 @@
 package bcu.cmp5332.bookingsystem.data;
 
 import java.io.*;
-import java.util.HashMap;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * The UserDatabase class manages user authentication and persistence of user credentials.
- * 
+ * <p>
+ * The application shares one instance, {@link #getInstance()}, which reads {@code users.txt}
+ * once into a concurrent map. {@link #authenticate} only looks the user up in that map, so it
+ * never blocks and takes the same time however many users there are. A new user is appended
+ * to the file through {@link DurableFile} rather than the whole file being rewritten. Changes
+ * made to the file by anything else are picked up by {@link #reloadIfChanged}, which the login
+ * window calls when it opens; the new map is swapped in whole, so a login never sees a
+ * half-loaded file.
+ * </p>
+ *
  * @author Sugam Adhikari
  * @author Prasansha Tamang
- * 
+ *
  */
 public class UserDatabase {
     private static final String FILE_PATH = "./resources/data/users.txt";
-    private Map<String, String> users;
+
+    private final Path file;
+    private volatile Map<String, String> users = new ConcurrentHashMap<>();
+    private long loadedSize = -1;
+    private long loadedModified = -1;
+
+    /**
+     * Holds the shared instance, which is created when it is first used.
+     */
+    private static final class Shared {
+        static final UserDatabase INSTANCE = new UserDatabase();
+    }
+
+    /**
+     * Returns the user database shared by the whole application.
+     *
+     * @return the shared user database
+     */
+    public static UserDatabase getInstance() {
+        return Shared.INSTANCE;
+    }
 
     /**
-     * Constructs a UserDatabase object and loads users from a file.
+     * Constructs a UserDatabase object and loads users from the default file. The application
+     * should use the shared {@link #getInstance() instance} instead.
      */
     public UserDatabase() {
-        users = new HashMap<>();
+        this(FILE_PATH);
+    }
+
+    /**
+     * Constructs a UserDatabase object and loads users from the given file.
+     *
+     * @param resource the path of the user file
+     */
+    public UserDatabase(String resource) {
+        this.file = Paths.get(resource);
         loadUsers();
     }
 
     /**
-     * Loads user credentials from a file into the users map.
+     * Loads user credentials from the file into a new map and swaps it in. When the file lists
+     * a username more than once, the last entry wins.
      */
-    private void loadUsers() {
-        try (BufferedReader reader = new BufferedReader(new FileReader(FILE_PATH))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(",");
-                if (parts.length == 2) {
-                    users.put(parts[0], parts[1]);
+    private synchronized void loadUsers() {
+        Map<String, String> loaded = new ConcurrentHashMap<>();
+        try {
+            DurableFile.recover(file.toString());
+            long[] stamp = stamp();
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] parts = line.split(",");
+                    if (parts.length == 2) {
+                        loaded.put(parts[0], parts[1]);
+                    }
                 }
             }
+            loadedSize = stamp[0];
+            loadedModified = stamp[1];
+        } catch (NoSuchFileException e) {
+            loadedSize = -1;
+            loadedModified = -1;
         } catch (IOException e) {
             System.err.println("Error loading user database: " + e.getMessage());
         }
+        users = loaded;
+    }
+
+    /**
+     * Reloads the users if the file has been changed by something other than this database
+     * since it was last read or appended to.
+     *
+     * @return true if the users were reloaded
+     */
+    public synchronized boolean reloadIfChanged() {
+        long[] stamp;
+        try {
+            stamp = stamp();
+        } catch (IOException e) {
+            stamp = new long[] {-1, -1};
+        }
+        if (stamp[0] == loadedSize && stamp[1] == loadedModified) {
+            return false;
+        }
+        loadUsers();
+        return true;
+    }
+
+    /**
+     * Returns the size and modification time of the file.
+     */
+    private long[] stamp() throws IOException {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            return new long[] {attributes.size(), attributes.lastModifiedTime().toMillis()};
+        } catch (NoSuchFileException e) {
+            return new long[] {-1, -1};
+        }
     }
 
     /**
@@ -48,37 +137,51 @@ public class UserDatabase {
      * @return true if authentication succeeds, false otherwise
      */
     public boolean authenticate(String username, String password) {
-        return users.containsKey(username) && users.get(username).equals(password);
+        String stored = users.get(username);
+        return stored != null && stored.equals(password);
     }
 
     /**
-     * Adds a new user to the database.
+     * Adds a new user to the database and appends it to the file.
      *
      * @param username the username of the new user
      * @param password the password of the new user
      * @return true if the user was successfully added, false if the username already exists
+     *         or the user could not be written
      */
-    public boolean addUser(String username, String password) {
-        if (users.containsKey(username)) {
+    public synchronized boolean addUser(String username, String password) {
+        if (users.putIfAbsent(username, password) != null) {
             return false; // Username already exists
         }
-
-        users.put(username, password);
-        saveUsers();
+        try {
+            boolean newLine = needsNewLine();
+            DurableFile.appendText(file.toString(), out -> {
+                if (newLine) {
+                    out.println();
+                }
+                out.println(username + "," + password);
+            });
+            long[] stamp = stamp();
+            loadedSize = stamp[0];
+            loadedModified = stamp[1];
+        } catch (IOException e) {
+            users.remove(username);
+            System.err.println("Error saving user database: " + e.getMessage());
+            return false;
+        }
         return true;
     }
 
     /**
-     * Saves the current state of the users map to the file.
+     * Checks whether the file ends part-way through a line, as it may after being edited by hand.
      */
-    private void saveUsers() {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(FILE_PATH))) {
-            for (Map.Entry<String, String> entry : users.entrySet()) {
-                writer.write(entry.getKey() + "," + entry.getValue());
-                writer.newLine();
-            }
-        } catch (IOException e) {
-            System.err.println("Error saving user database: " + e.getMessage());
+    private boolean needsNewLine() throws IOException {
+        if (!Files.exists(file) || Files.size(file) == 0) {
+            return false;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "r")) {
+            raf.seek(raf.length() - 1);
+            return raf.read() != '\n';
         }
     }
 }
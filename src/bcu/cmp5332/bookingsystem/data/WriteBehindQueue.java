@@ -0,0 +1,339 @@
+package bcu.cmp5332.bookingsystem.data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Appends records to the base data files on a single background thread, so that a command
+ * adding a flight or customer does not wait for the file to be opened, written and closed.
+ * <p>
+ * {@link #append} puts the record on a bounded queue and returns a future straight away; a
+ * full queue makes the caller wait for the writer to catch up. The writer thread takes every
+ * record that is waiting, groups them by file, and writes each group with one gathering write
+ * and one {@link FileChannel#force(boolean)} while holding the shared file lock. The files are
+ * kept open between batches and are only reopened after {@link DurableFile} has replaced one of
+ * them, for example when the {@link JournalCompactor} installs new base files.
+ * </p>
+ * <p>
+ * If a write fails, whatever part of it reached the file is truncated away, the futures of the
+ * records fail, and the records are kept to be written again before the next batch, so nothing
+ * that was queued is lost while the program runs. {@link #flush} waits for everything queued
+ * so far and reports records that still cannot be written. The size of the queue can be set
+ * with the {@code bookingsystem.writebehind.capacity} system property.
+ * </p>
+ *
+ * @author Sugam Adhikari
+ * @author Prasansha Tamang
+ */
+public class WriteBehindQueue {
+
+    /** The default number of records that can wait to be written. */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /** The default maximum number of records written in one batch. */
+    public static final int DEFAULT_MAX_BATCH = 256;
+
+    private static final byte[] NEW_LINE = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+
+    private final Lock fileLock;
+    private final int maxBatch;
+    private final BlockingQueue<PendingAppend> queue;
+    private Thread thread;
+
+    // Only used on the writer thread
+    private final Map<String, FileChannel> files = new HashMap<>();
+    private final List<PendingAppend> retry = new ArrayList<>();
+    private long replacements = DurableFile.getReplacementCount();
+
+    /**
+     * Creates a write-behind queue with the capacity configured through system properties.
+     *
+     * @param fileLock the lock held by anything that writes to the base files
+     */
+    public WriteBehindQueue(Lock fileLock) {
+        this(fileLock, Integer.getInteger("bookingsystem.writebehind.capacity", DEFAULT_CAPACITY),
+                DEFAULT_MAX_BATCH);
+    }
+
+    /**
+     * Creates a write-behind queue.
+     *
+     * @param fileLock the lock held by anything that writes to the base files
+     * @param capacity the number of records that can wait to be written
+     * @param maxBatch the maximum number of records written in one batch
+     */
+    public WriteBehindQueue(Lock fileLock, int capacity, int maxBatch) {
+        if (capacity < 1 || maxBatch < 1) {
+            throw new IllegalArgumentException("Capacity and batch size should be higher than 0");
+        }
+        this.fileLock = fileLock;
+        this.maxBatch = maxBatch;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * Queues a line to be appended to a data file. The writer thread is started if necessary.
+     *
+     * @param resource the path of the file to append to; it is created if it does not exist
+     * @param record   the line to append, without a line separator
+     * @return a future completed once the line has been written and forced to disk
+     */
+    public CompletableFuture<Void> append(String resource, String record) {
+        byte[] bytes = record.getBytes(StandardCharsets.UTF_8);
+        byte[] line = new byte[bytes.length + NEW_LINE.length];
+        System.arraycopy(bytes, 0, line, 0, bytes.length);
+        System.arraycopy(NEW_LINE, 0, line, bytes.length, NEW_LINE.length);
+        return append(resource, line);
+    }
+
+    /**
+     * Queues an encoded line, such as one from {@link FlightDataManager#encode}, to be appended
+     * to a data file. The writer thread is started if necessary.
+     *
+     * @param resource the path of the file to append to; it is created if it does not exist
+     * @param line     the bytes to append, ending with a line separator
+     * @return a future completed once the line has been written and forced to disk
+     */
+    public CompletableFuture<Void> append(String resource, byte[] line) {
+        PendingAppend append = new PendingAppend(resource, line);
+        enqueue(append);
+        return append.future;
+    }
+
+    /**
+     * Waits until every line queued before the call has been written and forced to disk.
+     *
+     * @throws IOException if some of the queued lines could not be written
+     */
+    public void flush() throws IOException {
+        synchronized (this) {
+            if (thread == null) {
+                return; // Nothing has been queued since the last shutdown
+            }
+        }
+        PendingAppend marker = new PendingAppend(null, null);
+        enqueue(marker);
+        await(marker.future);
+    }
+
+    /**
+     * Writes any queued lines, closes the files and stops the writer thread. The thread is
+     * started again by the next append.
+     */
+    public void shutdown() {
+        synchronized (this) {
+            if (thread == null) {
+                return;
+            }
+            PendingAppend marker = new PendingAppend(null, null);
+            marker.shutdown = true;
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    queue.put(marker);
+                    break;
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                }
+            }
+            try {
+                thread.join();
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
+            thread = null;
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Waits for a queued write to finish.
+     *
+     * @param future the future returned when the write was queued
+     * @throws IOException if the write failed
+     */
+    public static void await(CompletableFuture<Void> future) throws IOException {
+        try {
+            future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a queued write", ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        }
+    }
+
+    private synchronized void enqueue(PendingAppend append) {
+        if (thread == null) {
+            thread = new Thread(this::run, "write-behind");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        try {
+            queue.put(append);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            append.future.completeExceptionally(new IOException("Interrupted while queueing a write", ex));
+        }
+    }
+
+    private void run() {
+        List<PendingAppend> batch = new ArrayList<>(maxBatch);
+        boolean running = true;
+        while (running) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException ex) {
+                break;
+            }
+            queue.drainTo(batch, maxBatch - 1);
+            running = write(batch);
+            batch.clear();
+        }
+        closeFiles();
+        if (!retry.isEmpty()) {
+            System.err.println(retry.size() + " queued record(s) could not be written to the data files");
+        }
+    }
+
+    /**
+     * Writes one batch, then completes the markers in it.
+     *
+     * @return false if the batch asked the thread to stop
+     */
+    private boolean write(List<PendingAppend> batch) {
+        // Lines that failed before go first, so that each file keeps the order of its appends
+        Map<String, List<PendingAppend>> byFile = new LinkedHashMap<>();
+        List<PendingAppend> pending = new ArrayList<>(retry);
+        retry.clear();
+        for (PendingAppend append : batch) {
+            if (append.resource != null) {
+                pending.add(append);
+            }
+        }
+        for (PendingAppend append : pending) {
+            byFile.computeIfAbsent(append.resource, key -> new ArrayList<>()).add(append);
+        }
+
+        IOException failure = null;
+        List<PendingAppend> written = new ArrayList<>(pending.size());
+        if (!byFile.isEmpty()) {
+            fileLock.lock();
+            try {
+                long current = DurableFile.getReplacementCount();
+                if (current != replacements) {
+                    closeFiles(); // A file may have been replaced since it was opened
+                    replacements = current;
+                }
+                for (Map.Entry<String, List<PendingAppend>> file : byFile.entrySet()) {
+                    try {
+                        writeFile(file.getKey(), file.getValue());
+                        written.addAll(file.getValue());
+                    } catch (IOException ex) {
+                        failure = ex;
+                        retry.addAll(file.getValue());
+                    }
+                }
+            } finally {
+                fileLock.unlock();
+            }
+        }
+        for (PendingAppend append : written) {
+            append.future.complete(null);
+        }
+        for (PendingAppend append : retry) {
+            append.future.completeExceptionally(failure);
+        }
+
+        boolean running = true;
+        for (PendingAppend append : batch) {
+            if (append.resource == null) {
+                if (retry.isEmpty()) {
+                    append.future.complete(null);
+                } else {
+                    append.future.completeExceptionally(failure);
+                }
+                running &= !append.shutdown;
+            }
+        }
+        return running;
+    }
+
+    private void writeFile(String resource, List<PendingAppend> appends) throws IOException {
+        FileChannel channel = files.get(resource);
+        if (channel == null) {
+            channel = FileChannel.open(Paths.get(resource), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            files.put(resource, channel);
+        }
+        ByteBuffer[] buffers = new ByteBuffer[appends.size()];
+        long remaining = 0;
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = ByteBuffer.wrap(appends.get(i).record);
+            remaining += buffers[i].remaining();
+        }
+        long length = channel.size();
+        try {
+            while (remaining > 0) {
+                remaining -= channel.write(buffers);
+            }
+            channel.force(false);
+        } catch (IOException ex) {
+            files.remove(resource);
+            try {
+                channel.truncate(length);
+            } catch (IOException suppressed) {
+                ex.addSuppressed(suppressed);
+            }
+            try {
+                channel.close();
+            } catch (IOException suppressed) {
+                ex.addSuppressed(suppressed);
+            }
+            throw ex;
+        }
+    }
+
+    private void closeFiles() {
+        for (FileChannel channel : files.values()) {
+            try {
+                channel.close();
+            } catch (IOException ex) {
+                System.err.println("Error closing a data file: " + ex.getMessage());
+            }
+        }
+        files.clear();
+    }
+
+    /**
+     * A line waiting to be written, or a marker when it has no resource.
+     */
+    private static final class PendingAppend {
+        private final String resource;
+        private final byte[] record;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+        private boolean shutdown;
+
+        private PendingAppend(String resource, byte[] record) {
+            this.resource = resource;
+            this.record = record;
+        }
+    }
+}
@@ -88,7 +88,7 @@ public class AddBookingWindow extends JFrame {
             LocalDate bookingDate = LocalDate.now(); // Use the current date as booking date
 
             Command addBooking = new AddBooking(customerId, flightId, bookingDate);
-            addBooking.execute(fbs);
+            addBooking.executeLocked(fbs);
             JOptionPane.showMessageDialog(this, "Booking added successfully.");
             dispose(); // Close the window after successful booking
         } catch (NumberFormatException ex) {
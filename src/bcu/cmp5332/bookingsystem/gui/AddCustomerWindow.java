@@ -180,7 +180,7 @@ public class AddCustomerWindow extends JFrame implements ActionListener {
     
             // Assuming AddCustomer is a command pattern to add a customer
             Command addCustomer = new AddCustomer(name, phone, email);
-            addCustomer.execute(fbs); // Execute the command to add the customer
+            addCustomer.executeLocked(fbs); // Execute the command to add the customer
     
             // Assuming customerWindow is a reference to the main window's customer list
             customerWindow.refreshCustomersTable(); // Refresh the main window's customer list
@@ -130,7 +130,7 @@ public class AddFlightWindow extends JFrame implements ActionListener {
             double price = Double.parseDouble(priceStr);
 
             Command flight = new AddFlight(flightNumber, origin, destination, departureDate, numberOfSeats, price);
-            flight.execute(flightWindow.getFlightBookingSystem());
+            flight.executeLocked(flightWindow.getFlightBookingSystem());
             flightWindow.refreshFlightsTable();
             JOptionPane.showMessageDialog(this, "Flight added successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
             dispose();
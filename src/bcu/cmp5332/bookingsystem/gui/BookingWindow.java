@@ -158,10 +158,22 @@ public class BookingWindow extends JPanel {
             return;
         }
 
-        Collection<Customer> customers = fbs.getAllCustomers();
-        List<Booking> bookingsList = customers.stream()
-                .flatMap(customer -> customer.getBookings().stream())
-                .collect(Collectors.toList());
+        List<Booking> bookingsList;
+        String loadError = null;
+        synchronized (fbs) {
+            try {
+                fbs.loadAllPartitions();
+            } catch (FlightBookingSystemException ex) {
+                loadError = ex.getMessage();
+            }
+            Collection<Customer> customers = fbs.getAllCustomers();
+            bookingsList = customers.stream()
+                    .flatMap(customer -> customer.getBookings().stream())
+                    .collect(Collectors.toList());
+        }
+        if (loadError != null) {
+            JOptionPane.showMessageDialog(this, "Unable to load past flights: " + loadError, "Error", JOptionPane.ERROR_MESSAGE);
+        }
 
         if ("Active Bookings".equals(filterOption)) {
             bookingsList = bookingsList.stream()
@@ -106,7 +106,7 @@ public class CancelBookingWindow extends JFrame {
 
             // Execute the CancelBooking command
             CancelBooking cancelBooking = new CancelBooking(bookingId, flightId);
-            cancelBooking.execute(fbs);
+            cancelBooking.executeLocked(fbs);
 
             JOptionPane.showMessageDialog(this, "Booking successfully canceled.", "Success", JOptionPane.INFORMATION_MESSAGE);
 
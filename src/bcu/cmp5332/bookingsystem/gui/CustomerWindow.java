@@ -6,6 +6,7 @@ import javax.swing.table.DefaultTableModel;
 import javax.swing.table.JTableHeader;
 import javax.swing.table.TableColumnModel;
 import java.awt.*;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -166,7 +167,19 @@ public class CustomerWindow extends JPanel {
             return;
         }
 
-        Collection<Customer> customersList = fbs.getAllCustomers();
+        Collection<Customer> customersList;
+        String loadError = null;
+        synchronized (fbs) {
+            try {
+                fbs.loadAllPartitions();
+            } catch (FlightBookingSystemException ex) {
+                loadError = ex.getMessage();
+            }
+            customersList = new ArrayList<>(fbs.getAllCustomers());
+        }
+        if (loadError != null) {
+            JOptionPane.showMessageDialog(this, "Unable to load past flights: " + loadError, "Error", JOptionPane.ERROR_MESSAGE);
+        }
         List<Customer> filteredCustomers;
 
         switch (filterOption) {
@@ -291,7 +304,7 @@ public class CustomerWindow extends JPanel {
             if (selectedRow >= 0) {
                 int customerId = (int) table.getValueAt(selectedRow, 0);
                 try {
-                    new DeleteCustomer(customerId).execute(fbs);
+                    new DeleteCustomer(customerId).executeLocked(fbs);
                     JOptionPane.showMessageDialog(this, "Customer deleted successfully.", "Success", JOptionPane.INFORMATION_MESSAGE);
                     displayCustomers();
                 } catch (FlightBookingSystemException e) {
@@ -184,9 +184,23 @@ public class FlightWindow extends JPanel implements ActionListener {
             return;
         }
 
-        List<Flight> flightsList = fbs.getFlights();
-        LocalDate today = LocalDate.now();
         boolean showActiveFlights = "Active Flights".equals(filterOption);
+        List<Flight> flightsList;
+        String loadError = null;
+        synchronized (fbs) {
+            if (!showActiveFlights) {
+                try {
+                    fbs.loadAllPartitions();
+                } catch (FlightBookingSystemException ex) {
+                    loadError = ex.getMessage();
+                }
+            }
+            flightsList = fbs.getFlights();
+        }
+        if (loadError != null) {
+            JOptionPane.showMessageDialog(this, "Unable to load past flights: " + loadError, "Error", JOptionPane.ERROR_MESSAGE);
+        }
+        LocalDate today = LocalDate.now();
 
         List<Flight> filteredFlights = flightsList.stream()
                 .filter(flight -> {
@@ -342,7 +356,7 @@ public class FlightWindow extends JPanel implements ActionListener {
             if (selectedRow >= 0) {
                 int flightId = (int) table.getValueAt(selectedRow, 0);
                 try {
-                    new DeleteFlight(flightId).execute(fbs);
+                    new DeleteFlight(flightId).executeLocked(fbs);
                     JOptionPane.showMessageDialog(this, "Flight deleted successfully.", "Success", JOptionPane.INFORMATION_MESSAGE);
                     refreshFlightsTable(); // Refresh the table after deletion
                 } catch (FlightBookingSystemException ex) {
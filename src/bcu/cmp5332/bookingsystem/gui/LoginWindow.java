@@ -34,7 +34,8 @@ public class LoginWindow extends JFrame {
      */
     public LoginWindow(FlightBookingSystem flightBookingSystem) {
         this.flightBookingSystem = flightBookingSystem;
-        this.userDatabase = new UserDatabase();
+        this.userDatabase = UserDatabase.getInstance();
+        userDatabase.reloadIfChanged(); // Pick up users added to the file by hand
 
         initializeUI();
     }
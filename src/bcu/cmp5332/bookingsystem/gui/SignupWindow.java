@@ -29,7 +29,7 @@ public class SignupWindow extends JFrame {
      */
     public SignupWindow(FlightBookingSystem flightBookingSystem) {
         this.flightBookingSystem = flightBookingSystem;
-        this.userDatabase = new UserDatabase();
+        this.userDatabase = UserDatabase.getInstance();
 
         // Set title and layout
         setTitle("Flight Booking Management System - Signup");
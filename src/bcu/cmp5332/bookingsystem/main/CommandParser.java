@@ -64,6 +64,10 @@ public class CommandParser {
 
             } else if (cmd.equals("loadgui")) {
                 return new LoadGUI();
+            } else if (cmd.equals("bulkimport") && parts.length == 2) {
+                return new BulkImport(parts[1].trim());
+            } else if (cmd.equals("export") && parts.length == 2) {
+                return parseExport(parts[1].trim().split("\\s+"));
             } else if (parts.length == 1) {
                 if (line.equals("listflights")) {
                     return new ListFlights();
@@ -79,7 +83,7 @@ public class CommandParser {
                     int flightId = Integer.parseInt(reader.readLine());
 
                     Flight flight = fbs.getFlightByID(flightId);
-                    if (flight != null && flight.getPassengers().size() < flight.getNumberOfSeats()) {
+                    if (flight != null && flight.getPassengerCount() < flight.getNumberOfSeats()) {
                         return new AddBooking(customerId, flightId, LocalDate);
                     } else {
                         System.out.println("The flight is full. Booking cannot be made.");
@@ -95,6 +99,10 @@ public class CommandParser {
                     return new CancelBooking(customerId, flightId);
                 } else if (line.equals("help")) {
                     return new Help();
+                } else if (line.equals("replication")) {
+                    return new ReplicationStatus();
+                } else if (line.equals("promote")) {
+                    return new Promote();
                 }
             } else if (parts.length == 2) {
                 int id = Integer.parseInt(parts[1]);
@@ -140,6 +148,51 @@ public class CommandParser {
         throw new FlightBookingSystemException("Incorrect departure date provided. Cannot create flight.");
     }
     
+    /**
+     * Parses the arguments of the export command: the record type and file, followed by
+     * optional {@code --from}, {@code --to}, {@code --route ORIGIN-DESTINATION} and
+     * {@code --active} options.
+     * 
+     * @param args the arguments following the command name
+     * @return the export command
+     * @throws FlightBookingSystemException if an option is unknown or has an invalid value
+     */
+    private static Command parseExport(String[] args) throws FlightBookingSystemException {
+        if (args.length < 2) {
+            throw new FlightBookingSystemException("Usage: export [bookings|manifests|customers] [file] [options]");
+        }
+        LocalDate from = null;
+        LocalDate to = null;
+        String origin = null;
+        String destination = null;
+        boolean activeOnly = false;
+        try {
+            for (int i = 2; i < args.length; i++) {
+                if (args[i].equals("--active")) {
+                    activeOnly = true;
+                } else if (i + 1 == args.length) {
+                    throw new FlightBookingSystemException("Missing value for " + args[i]);
+                } else if (args[i].equals("--from")) {
+                    from = java.time.LocalDate.parse(args[++i]);
+                } else if (args[i].equals("--to")) {
+                    to = java.time.LocalDate.parse(args[++i]);
+                } else if (args[i].equals("--route")) {
+                    String[] airports = args[++i].split("-", 2);
+                    if (airports.length != 2 || airports[0].isEmpty() || airports[1].isEmpty()) {
+                        throw new FlightBookingSystemException("Route must be in ORIGIN-DESTINATION format.");
+                    }
+                    origin = airports[0];
+                    destination = airports[1];
+                } else {
+                    throw new FlightBookingSystemException("Unknown export option: " + args[i]);
+                }
+            }
+        } catch (DateTimeParseException dtpe) {
+            throw new FlightBookingSystemException("Date must be in YYYY-MM-DD format.");
+        }
+        return new Export(args[0], args[1], from, to, origin, destination, activeOnly);
+    }
+
     /**
      * Parses a date from user input with a default number of 3 attempts.
      * 
@@ -1,11 +1,19 @@
 package bcu.cmp5332.bookingsystem.main;
 
 import bcu.cmp5332.bookingsystem.data.FlightBookingSystemData;
+import bcu.cmp5332.bookingsystem.data.RecordLookup;
+import bcu.cmp5332.bookingsystem.data.RecoveryLog;
 import bcu.cmp5332.bookingsystem.commands.Command;
+import bcu.cmp5332.bookingsystem.commands.Promote;
+import bcu.cmp5332.bookingsystem.model.Booking;
 import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
 
 import java.io.*;
 import java.net.URISyntaxException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
 
 /**
  * Main class for the Flight Booking System application.
@@ -18,11 +26,31 @@ import java.net.URISyntaxException;
  * and more. Entering 'help' will display a list of available commands. The program runs in a loop
  * until the user enters 'exit'.
  * </p>
+ * <p>
+ * Started with the arguments {@code lookup flight|customer|booking <id>}, the application instead
+ * prints a single record in read-only mode, using the index files next to the data files rather
+ * than loading all the data, and exits.
+ * </p>
+ * <p>
+ * Started with the arguments {@code follow <port>}, the application is a replication follower
+ * of the primary listening on that port (see {@code bookingsystem.replication.port}): it only
+ * runs read-only commands until it is promoted with the {@code promote} command. Commands run
+ * while holding the system's monitor, so that they do not overlap the replication threads.
+ * </p>
+ * <p>
+ * Started with the arguments {@code restore --at <timestamp>}, the application replaces the data
+ * files with the system as it was at that local date and time, rebuilt from the
+ * {@link RecoveryLog} kept while {@code bookingsystem.pitr.enabled} is set, and exits.
+ * </p>
  * 
  * Example usage:
  * <pre>
  * {@code
  * java -cp FlightBookingSystem.jar bcu.cmp5332.bookingsystem.main.Main
+ * java -cp FlightBookingSystem.jar bcu.cmp5332.bookingsystem.main.Main lookup booking 42
+ * java -Dbookingsystem.replication.port=7070 -cp FlightBookingSystem.jar bcu.cmp5332.bookingsystem.main.Main
+ * java -cp FlightBookingSystem.jar bcu.cmp5332.bookingsystem.main.Main follow 7070
+ * java -cp FlightBookingSystem.jar bcu.cmp5332.bookingsystem.main.Main restore --at 2026-10-17T12:30:00
  * }
  * </pre>
  * 
@@ -35,15 +63,34 @@ public class Main {
     /**
      * Main method that serves as the entry point for the Flight Booking System application.
      *
-     * @param args Command-line arguments (not used).
+     * @param args Command-line arguments; either none, {@code lookup} followed by a record type and ID,
+     *             {@code follow} followed by the port of the primary, or {@code restore --at}
+     *             followed by a date and time.
      * @throws IOException                  If an I/O error occurs.
      * @throws FlightBookingSystemException If there is an issue with the flight booking system operations.
      * @throws URISyntaxException           If there is a URI syntax issue when loading data.
      */
     public static void main(String[] args) throws IOException, FlightBookingSystemException, URISyntaxException {
+
+        // Look up a single record without loading the system
+        if (args.length > 0 && args[0].equals("lookup")) {
+            lookup(args);
+            return;
+        }
+
+        // Restore the data files to an earlier point in time
+        if (args.length > 0 && args[0].equals("restore")) {
+            restore(args);
+            return;
+        }
         
-        // Load the flight booking system data
-        FlightBookingSystem fbs = FlightBookingSystemData.load(); 
+        // Load the flight booking system data, or copy it from the primary
+        FlightBookingSystem fbs;
+        if (args.length == 2 && args[0].equals("follow")) {
+            fbs = FlightBookingSystemData.follow(Integer.parseInt(args[1]));
+        } else {
+            fbs = FlightBookingSystemData.load();
+        }
 
         // Create a BufferedReader for reading user input
         BufferedReader br = new BufferedReader(new InputStreamReader(System.in)); 
@@ -65,17 +112,91 @@ public class Main {
             try {
                 // Parse and execute the user command
                 Command command = CommandParser.parse(line, fbs);
-                command.execute(fbs);
+                if (FlightBookingSystemData.isFollower() && !command.isReadOnly() && !(command instanceof Promote)) {
+                    throw new FlightBookingSystemException("This is a read-only follower; enter 'promote' to take over.");
+                }
+                command.executeLocked(fbs);
             } catch (FlightBookingSystemException ex) {
                 // Display error message if an exception occurs
                 System.out.println(ex.getMessage());
             }
         }
 
-        // Store the flight booking system data before exiting
-        FlightBookingSystemData.store(fbs);
+        // Store the flight booking system data before exiting, unless it is a follower's copy
+        if (!FlightBookingSystemData.isFollower()) {
+            FlightBookingSystemData.store(fbs);
+        }
         
         // Exit the application
         System.exit(0);
     }
+
+    /**
+     * Replaces the data files with the system as it was at the given date and time, read from
+     * the {@link RecoveryLog}.
+     *
+     * @param args the command-line arguments: {@code restore}, {@code --at} and the date and time.
+     * @throws IOException If the log cannot be read or the data cannot be written.
+     */
+    private static void restore(String[] args) throws IOException {
+        if (args.length != 3 || !args[1].equals("--at")) {
+            System.out.println("Usage: restore --at <yyyy-MM-ddTHH:mm:ss>");
+            return;
+        }
+        try {
+            Instant at = LocalDateTime.parse(args[2]).atZone(ZoneId.systemDefault()).toInstant();
+            RecoveryLog log = new RecoveryLog();
+            long start = System.nanoTime();
+            FlightBookingSystemData.restore(log, at);
+            System.out.println("Restored to " + args[2] + " from the checkpoint of "
+                    + Instant.ofEpochMilli(log.getRestoredFrom()).atZone(ZoneId.systemDefault()).toLocalDateTime()
+                    + " and " + log.getReplayed() + " log record(s) in "
+                    + (System.nanoTime() - start) / 1_000_000 + " ms");
+        } catch (DateTimeParseException ex) {
+            System.out.println("Invalid date and time: " + args[2]);
+        } catch (FlightBookingSystemException ex) {
+            System.out.println(ex.getMessage());
+        }
+    }
+
+    /**
+     * Prints a single flight, customer or booking, read through a {@link RecordLookup}.
+     *
+     * @param args the command-line arguments: {@code lookup}, the record type and the ID.
+     * @throws IOException If a data file cannot be read.
+     */
+    private static void lookup(String[] args) throws IOException {
+        String usage = "Usage: lookup flight|customer|booking <id>";
+        if (args.length != 3) {
+            System.out.println(usage);
+            return;
+        }
+        RecordLookup lookup = new RecordLookup();
+        try {
+            int id = Integer.parseInt(args[2]);
+            switch (args[1]) {
+                case "flight":
+                    System.out.println(lookup.findFlight(id).getDetailsLong());
+                    break;
+                case "customer":
+                    System.out.println(lookup.findCustomer(id).getDetailsShort());
+                    break;
+                case "booking":
+                    Booking booking = lookup.findBooking(id);
+                    System.out.println("Booking ID: " + booking.getId());
+                    System.out.println("Customer: " + booking.getCustomer().getDetailsShort());
+                    System.out.println("Flight: " + booking.getFlight().getDetailsShort());
+                    System.out.println("Booking Date: " + booking.getBookingDate());
+                    System.out.println("Price: " + booking.getPrice());
+                    System.out.println("Status: " + (booking.isCancelled() ? "Cancelled" : "Active"));
+                    break;
+                default:
+                    System.out.println(usage);
+            }
+        } catch (NumberFormatException ex) {
+            System.out.println("Invalid ID: " + args[2]);
+        } catch (FlightBookingSystemException ex) {
+            System.out.println(ex.getMessage());
+        }
+    }
 }
@@ -20,6 +20,8 @@ public class Booking {
     private double price;
     private LocalDate bookingDate;
     private boolean cancelled;
+    private boolean dirty = true;
+    private boolean persisted;
     private double cancellationFee;
     private double rebookFee;
 
@@ -67,6 +69,7 @@ public class Booking {
      */
     public void setCustomer(Customer customer) {
         this.customer = customer;
+        dirty = true;
     }
 
     /**
@@ -85,6 +88,7 @@ public class Booking {
      */
     public void setFlight(Flight flight) {
         this.flight = flight;
+        dirty = true;
     }
 
     /**
@@ -104,6 +108,7 @@ public class Booking {
      */
     public void setBookingDate(LocalDate bookingDate) {
         this.bookingDate = Objects.requireNonNull(bookingDate, "Booking date cannot be null");
+        dirty = true;
     }
 
     /**
@@ -133,9 +138,49 @@ public class Booking {
             this.cancelled = true;
             flight.removePassenger(customer);
             this.cancellationFee = price * 0.1;
+            dirty = true;
         }
     }
 
+    /**
+     * Returns whether the booking has changed since it was last loaded from or stored to the
+     * data files. New bookings are dirty until they have been stored.
+     * 
+     * @return true if the booking has unsaved changes, false otherwise
+     */
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * Returns whether the booking has a record in the booking data file.
+     * 
+     * @return true if the booking has been loaded from or stored to the data file, false otherwise
+     */
+    public boolean isPersisted() {
+        return persisted;
+    }
+
+    /**
+     * Marks the booking as matching its record in the data file. This is called by the data
+     * managers once the booking has been loaded or written.
+     */
+    public void markPersisted() {
+        dirty = false;
+        persisted = true;
+    }
+
+    /**
+     * Marks the booking as having a record in the data file that it has changed since, so that
+     * the record is rewritten by the next store rather than appended a second time. This is
+     * called when a record written by someone else, such as the journal compactor, is older
+     * than the booking.
+     */
+    public void markRecordOutdated() {
+        dirty = true;
+        persisted = true;
+    }
+
     /**
      * Returns the cancellation fee for the booking.
      * 
@@ -0,0 +1,152 @@
+package bcu.cmp5332.bookingsystem.model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The CodeTable class is an intern table that gives each distinct airport code and flight
+ * number a small int code.
+ * <p>
+ * A schedule has only a few hundred distinct airports and route numbers, repeated across every
+ * flight. Each {@link Flight} keeps the codes of its flight number, origin and destination
+ * rather than its own Strings, so every value is held once by the shared
+ * {@link #getInstance() table} however many flights use it. When a data file is loaded, a
+ * field is looked up by its UTF-8 bytes through {@link #code(byte[], int, int)}, so a String
+ * is only created the first time a value is seen. Codes are never reused or removed, so a
+ * code stays valid for the life of the application.
+ * </p>
+ *
+ * @author Sugam Adhikari
+ * @author Prasansha Tamang
+ */
+public final class CodeTable {
+
+    /** The code of a missing ({@code null}) value. */
+    public static final int NONE = -1;
+
+    private static final CodeTable SHARED = new CodeTable();
+
+    private final Map<String, Integer> codes = new ConcurrentHashMap<>();
+    private volatile String[] values = new String[256];
+    private byte[][] encoded = new byte[256][];
+    private int[] slots = new int[512]; // Code + 1 of each value, by the hash of its bytes; 0 if free
+    private int size;
+
+    /**
+     * Returns the table shared by the whole application.
+     *
+     * @return the shared code table
+     */
+    public static CodeTable getInstance() {
+        return SHARED;
+    }
+
+    /**
+     * Returns the code of a value, adding the value if it is new.
+     *
+     * @param value the value
+     * @return its code, or {@link #NONE} if the value is {@code null}
+     */
+    public int code(String value) {
+        if (value == null) {
+            return NONE;
+        }
+        Integer code = codes.get(value);
+        return code != null ? code : add(value, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns the code of the value whose UTF-8 bytes are given, adding the value if it is new.
+     *
+     * @param buf    the bytes holding the value
+     * @param offset the offset of the first byte of the value
+     * @param length the number of bytes of the value
+     * @return its code
+     */
+    public synchronized int code(byte[] buf, int offset, int length) {
+        int mask = slots.length - 1;
+        for (int slot = hash(buf, offset, length) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            byte[] candidate = encoded[slots[slot] - 1];
+            if (candidate.length == length && equals(candidate, buf, offset)) {
+                return slots[slot] - 1;
+            }
+        }
+        return add(new String(buf, offset, length, StandardCharsets.UTF_8),
+                Arrays.copyOfRange(buf, offset, offset + length));
+    }
+
+    /**
+     * Returns the value of a code.
+     *
+     * @param code a code given by this table, or {@link #NONE}
+     * @return the value, or {@code null} for {@link #NONE}
+     */
+    public String value(int code) {
+        return code == NONE ? null : values[code];
+    }
+
+    /**
+     * Returns the number of distinct values in the table.
+     *
+     * @return the number of values
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    private synchronized int add(String value, byte[] bytes) {
+        Integer existing = codes.get(value);
+        if (existing != null) {
+            return existing; // Added by another thread, or the bytes were not valid UTF-8
+        }
+        int code = size;
+        String[] current = values;
+        if (code == current.length) {
+            current = Arrays.copyOf(current, code * 2);
+            encoded = Arrays.copyOf(encoded, code * 2);
+        }
+        current[code] = value;
+        encoded[code] = bytes;
+        size++;
+        if (size * 2 > slots.length) {
+            slots = new int[slots.length * 2];
+            for (int i = 0; i < size; i++) {
+                insert(i);
+            }
+        } else {
+            insert(code);
+        }
+        values = current; // Publishes the new value to threads reading without the lock
+        codes.put(value, code);
+        return code;
+    }
+
+    private void insert(int code) {
+        byte[] bytes = encoded[code];
+        int mask = slots.length - 1;
+        int slot = hash(bytes, 0, bytes.length) & mask;
+        while (slots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = code + 1;
+    }
+
+    private static int hash(byte[] buf, int offset, int length) {
+        int hash = 0;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + buf[i];
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean equals(byte[] candidate, byte[] buf, int offset) {
+        for (int i = 0; i < candidate.length; i++) {
+            if (candidate[i] != buf[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
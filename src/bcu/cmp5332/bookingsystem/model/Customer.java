@@ -9,18 +9,41 @@ import java.util.List;
  * <p>
  * Each customer has an ID, name, phone number, email, and a list of bookings.
  * </p>
+ * <p>
+ * The bookings of a customer may be left in the data file when the system is loaded, and only
+ * read by a {@link BookingLoader} the first time they are needed. Until then the customer
+ * behaves exactly as if they were loaded; only {@link #isBookingsLoaded()} tells the difference.
+ * </p>
  * 
  * @author Sugam Adhikari
  * @author Prasansha Tamang
  */
 public class Customer {
+
+    /**
+     * Loads the stored bookings of a customer whose bookings were not read at start-up.
+     */
+    public interface BookingLoader {
+        /**
+         * Adds the customer's stored bookings to it with {@link Customer#addBooking}.
+         *
+         * @param customer the customer whose bookings are needed
+         * @throws FlightBookingSystemException if the bookings cannot be read
+         */
+        void loadBookings(Customer customer) throws FlightBookingSystemException;
+    }
     private int id;
     private String name;
     private String phone;
     private String email;
     private boolean deleted; 
+    private boolean dirty = true;
+    private boolean persisted;
+    private boolean bookingsRemoved;
 
     private final List<Booking> bookings = new ArrayList<>();
+    private BookingLoader bookingLoader;
+    private boolean cancelledSummary;
 
     /**
      * Constructs a new Customer with the specified details.
@@ -68,6 +91,7 @@ public class Customer {
      */
     public void setId(int id) {
         this.id = id;
+        dirty = true;
     }
 
     /**
@@ -86,6 +110,7 @@ public class Customer {
      */
     public void setName(String name) {
         this.name = name;
+        dirty = true;
     }
 
     /**
@@ -104,6 +129,7 @@ public class Customer {
      */
     public void setPhone(String phone) {
         this.phone = phone;
+        dirty = true;
     }
 
     /**
@@ -122,6 +148,7 @@ public class Customer {
      */
     public void setEmail(String email) {
         this.email = email;
+        dirty = true;
     }
 
     /**
@@ -130,9 +157,53 @@ public class Customer {
      * @return the list of bookings
      */
     public List<Booking> getBookings() {
+        loadBookings();
         return bookings;
     }
 
+    /**
+     * Leaves the customer's stored bookings to be read by the given loader the first time
+     * they are needed.
+     * 
+     * @param loader the loader that reads the bookings
+     * @param hasCancelledBookings whether any of the stored bookings is cancelled, so that
+     *        {@link #isCancelled()} can be answered without loading them
+     */
+    public void setBookingLoader(BookingLoader loader, boolean hasCancelledBookings) {
+        this.bookingLoader = loader;
+        this.cancelledSummary = hasCancelledBookings;
+    }
+
+    /**
+     * Returns whether the customer's stored bookings have been read.
+     * 
+     * @return false if the bookings are still waiting to be read by a {@link BookingLoader}
+     */
+    public boolean isBookingsLoaded() {
+        return bookingLoader == null;
+    }
+
+    /**
+     * Reads the customer's stored bookings if that has not happened yet.
+     * 
+     * @throws IllegalStateException if the bookings cannot be read
+     */
+    private void loadBookings() {
+        BookingLoader loader = bookingLoader;
+        if (loader == null) {
+            return;
+        }
+        bookingLoader = null; // The loader adds the bookings through addBooking
+        try {
+            loader.loadBookings(this);
+        } catch (FlightBookingSystemException ex) {
+            bookings.clear();
+            bookingLoader = loader;
+            throw new IllegalStateException("Unable to load the bookings of customer " + id + ": "
+                    + ex.getMessage(), ex);
+        }
+    }
+
     /**
      * Adds a booking to the customer's list of bookings.
      * 
@@ -143,6 +214,7 @@ public class Customer {
         if (booking == null) {
             throw new FlightBookingSystemException("Cannot add a null booking.");
         }
+        loadBookings();
         bookings.add(booking);
     }
 
@@ -162,6 +234,7 @@ public class Customer {
      * @return the booking associated with the flight ID, or null if not found
      */
     public Booking getBookingByFlightId(int flightId) {
+        loadBookings();
         for (Booking booking : bookings) {
             if (booking.getFlight().getId() == flightId) {
                 return booking;
@@ -176,6 +249,7 @@ public class Customer {
      * @return the number of bookings
      */
     public int getNumberOfBookings() {
+        loadBookings();
         return bookings.size();
     }
 
@@ -185,6 +259,19 @@ public class Customer {
      * @param booking the booking to remove
      */
     public void removeBooking(Booking booking) {
+        loadBookings();
+        if (bookings.remove(booking) && booking.isPersisted()) {
+            bookingsRemoved = true;
+        }
+    }
+
+    /**
+     * Drops a booking that is kept in a departure partition from the customer's list, without
+     * counting it as removed from the booking data file.
+     * 
+     * @param booking the booking to drop
+     */
+    void unloadBooking(Booking booking) {
         bookings.remove(booking);
     }
 
@@ -204,6 +291,53 @@ public class Customer {
      */
     public void setDeleted(boolean deleted) {
         this.deleted = deleted;
+        dirty = true;
+    }
+
+    /**
+     * Returns whether the customer has changed since it was last loaded from or stored to the
+     * data files. New customers are dirty until they have been stored.
+     * 
+     * @return true if the customer has unsaved changes, false otherwise
+     */
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * Returns whether the customer has a record in the customer data file.
+     * 
+     * @return true if the customer has been loaded from or stored to the data file, false otherwise
+     */
+    public boolean isPersisted() {
+        return persisted;
+    }
+
+    /**
+     * Marks the customer as matching its record in the data file. This is called by the data
+     * managers once the customer has been loaded or written.
+     */
+    public void markPersisted() {
+        dirty = false;
+        persisted = true;
+    }
+
+    /**
+     * Returns whether any of the customer's stored bookings have been removed from the customer
+     * since the booking data file was last written, which means the file has to be rewritten
+     * rather than appended to.
+     * 
+     * @return true if stored bookings have been removed, false otherwise
+     */
+    public boolean hasRemovedBookings() {
+        return bookingsRemoved;
+    }
+
+    /**
+     * Clears the record of removed bookings once the booking data file has been rewritten.
+     */
+    public void clearRemovedBookings() {
+        bookingsRemoved = false;
     }
 
     /**
@@ -212,6 +346,9 @@ public class Customer {
      * @return true if any booking is cancelled, false otherwise
      */
     public boolean isCancelled() {
+        if (bookingLoader != null) {
+            return cancelledSummary;
+        }
         for (Booking booking : bookings) {
             if (booking.isCancelled()) {
                 return true;
@@ -226,6 +363,7 @@ public class Customer {
      * @return the list of active bookings
      */
     public List<Booking> getActiveBookings() {
+        loadBookings();
         List<Booking> activeBookings = new ArrayList<>();
         for (Booking booking : bookings) {
             if (!booking.isCancelled()) {
@@ -240,6 +378,9 @@ public class Customer {
      */
     public void updateNumberOfBookings() {
         List<Booking> activeBookings = getActiveBookings();
+        if (activeBookings.size() < bookings.size()) {
+            bookingsRemoved = true;
+        }
         bookings.clear();
         bookings.addAll(activeBookings);
     }
@@ -5,6 +5,7 @@ import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -15,22 +16,37 @@ import java.util.Set;
  * Each flight has a unique ID, flight number, origin, destination, departure date,
  * number of seats, price, list of passengers, list of bookings, and deletion status.
  * </p>
+ * <p>
+ * The flight number, origin and destination are kept as codes in the shared {@link CodeTable},
+ * so each distinct value is held once however many flights use it.
+ * </p>
+ * <p>
+ * Passengers whose bookings have not been loaded yet (see {@link Customer.BookingLoader}) are
+ * only known by customer ID, from a summary set with {@link #setPendingPassengers}. They are
+ * counted in the seat counts, and become ordinary passengers once their bookings are loaded.
+ * </p>
  * 
  * @author Sugam Adhikari
  * @author Prasansha Tamang
  */
 public class Flight {
     
+    private static final CodeTable CODES = CodeTable.getInstance();
+
     private int id;
-    private String flightNumber;
-    private String origin;
-    private String destination;
+    private int flightNumber; // Code in the CodeTable
+    private int origin; // Code in the CodeTable
+    private int destination; // Code in the CodeTable
     private LocalDate departureDate;
     private int numberOfSeats;
     private double price;
     private final Set<Customer> passengers; // Set of passengers booked on this flight
+    private int[] pendingPassengers = new int[0]; // Sorted IDs of passengers whose bookings are not loaded
+    private int pendingBookedSeats; // Pending passengers that take up a seat
     private List<Booking> bookings = new ArrayList<>(); // List of bookings associated with this flight
     private boolean deleted; // Deletion status of the flight
+    private boolean dirty = true; // Changed since the last load or store
+    private boolean persisted; // Has a record in the flight data file
 
     /**
      * Constructs a new Flight object with the specified details.
@@ -46,9 +62,9 @@ public class Flight {
      */
     public Flight(int id, String flightNumber, String origin, String destination, LocalDate departureDate, int numberOfSeats, double price, boolean deleted) {
         this.id = id;
-        this.flightNumber = flightNumber;
-        this.origin = origin;
-        this.destination = destination;
+        this.flightNumber = CODES.code(flightNumber);
+        this.origin = CODES.code(origin);
+        this.destination = CODES.code(destination);
         this.departureDate = departureDate;
         this.numberOfSeats = numberOfSeats;
         this.price = price;
@@ -89,6 +105,7 @@ public class Flight {
      */
     public void setId(int id) {
         this.id = id;
+        dirty = true;
     }
 
     /**
@@ -97,7 +114,7 @@ public class Flight {
      * @return the flight number
      */
     public String getFlightNumber() {
-        return flightNumber;
+        return CODES.value(flightNumber);
     }
 
     /**
@@ -106,7 +123,8 @@ public class Flight {
      * @param flightNumber the flight number to set
      */
     public void setFlightNumber(String flightNumber) {
-        this.flightNumber = flightNumber;
+        this.flightNumber = CODES.code(flightNumber);
+        dirty = true;
     }
 
     /**
@@ -115,7 +133,7 @@ public class Flight {
      * @return the flight origin
      */
     public String getOrigin() {
-        return origin;
+        return CODES.value(origin);
     }
 
     /**
@@ -124,7 +142,8 @@ public class Flight {
      * @param origin the flight origin to set
      */
     public void setOrigin(String origin) {
-        this.origin = origin;
+        this.origin = CODES.code(origin);
+        dirty = true;
     }
 
     /**
@@ -133,7 +152,7 @@ public class Flight {
      * @return the flight destination
      */
     public String getDestination() {
-        return destination;
+        return CODES.value(destination);
     }
 
     /**
@@ -142,7 +161,8 @@ public class Flight {
      * @param destination the flight destination to set
      */
     public void setDestination(String destination) {
-        this.destination = destination;
+        this.destination = CODES.code(destination);
+        dirty = true;
     }
 
     /**
@@ -161,6 +181,7 @@ public class Flight {
      */
     public void setDepartureDate(LocalDate departureDate) {
         this.departureDate = departureDate;
+        dirty = true;
     }
 
     /**
@@ -176,9 +197,16 @@ public class Flight {
      * Sets the number of seats available on the flight.
      * 
      * @param numberOfSeats the number of seats to set
+     * @throws IllegalArgumentException if fewer seats than are already booked are given
      */
     public void setNumberOfSeats(int numberOfSeats) {
+        int bookedSeats = getBookedSeats();
+        if (numberOfSeats < bookedSeats) {
+            throw new IllegalArgumentException("Flight " + id + " has " + bookedSeats
+                    + " booked seat(s), more than " + numberOfSeats + " seat(s).");
+        }
         this.numberOfSeats = numberOfSeats;
+        dirty = true;
     }
 
     /**
@@ -197,6 +225,7 @@ public class Flight {
      */
     public void setPrice(double price) {
         this.price = price;
+        dirty = true;
     }
 
     /**
@@ -208,6 +237,57 @@ public class Flight {
         return new ArrayList<>(passengers);
     }
 
+    /**
+     * Returns the number of passengers booked on the flight, including those whose bookings
+     * have not been loaded yet.
+     * 
+     * @return the number of passengers
+     */
+    public int getPassengerCount() {
+        return passengers.size() + pendingPassengers.length;
+    }
+
+    /**
+     * Returns the IDs of the passengers whose bookings have not been loaded yet.
+     * 
+     * @return the customer IDs, in ascending order
+     */
+    public int[] getPendingPassengerIds() {
+        return pendingPassengers.clone();
+    }
+
+    /**
+     * Records the passengers known from the booking data whose bookings have not been loaded.
+     * 
+     * @param customerIds the IDs of those passengers, in ascending order
+     * @param bookedSeats how many of them take up a seat
+     */
+    public void setPendingPassengers(int[] customerIds, int bookedSeats) {
+        this.pendingPassengers = customerIds;
+        this.pendingBookedSeats = bookedSeats;
+    }
+
+    /**
+     * Removes a passenger from the pending summary once their bookings are being loaded; the
+     * loader then adds them with {@link #addPassenger}. Nothing happens if they are not pending.
+     * 
+     * @param customerId the ID of the passenger
+     * @param bookedSeat whether the passenger was counted as taking up a seat
+     */
+    public void removePendingPassenger(int customerId, boolean bookedSeat) {
+        int index = Arrays.binarySearch(pendingPassengers, customerId);
+        if (index < 0) {
+            return;
+        }
+        int[] remaining = new int[pendingPassengers.length - 1];
+        System.arraycopy(pendingPassengers, 0, remaining, 0, index);
+        System.arraycopy(pendingPassengers, index + 1, remaining, index, remaining.length - index);
+        pendingPassengers = remaining;
+        if (bookedSeat) {
+            pendingBookedSeats--;
+        }
+    }
+
     /**
      * Returns a short description of the flight details.
      * 
@@ -215,8 +295,8 @@ public class Flight {
      */
     public String getDetailsShort() {
         DateTimeFormatter dtf = DateTimeFormatter.ofPattern("dd/MM/YYYY");
-        return "Flight #" + id + " - " + flightNumber + " - " + origin + " to " 
-                + destination + " on " + departureDate.format(dtf) + " - Seats: " + numberOfSeats + " - Price: $" + price;
+        return "Flight #" + id + " - " + getFlightNumber() + " - " + getOrigin() + " to " 
+                + getDestination() + " on " + departureDate.format(dtf) + " - Seats: " + numberOfSeats + " - Price: $" + price;
     }
 
     /**
@@ -228,13 +308,13 @@ public class Flight {
         DateTimeFormatter dtf = DateTimeFormatter.ofPattern("dd/MM/YYYY");
         return "Flight Details:\n"
                 + "Flight #: " + id + "\n"
-                + "Flight Number: " + flightNumber + "\n"
-                + "Origin: " + origin + "\n" 
-                + "Destination: " + destination + "\n"
+                + "Flight Number: " + getFlightNumber() + "\n"
+                + "Origin: " + getOrigin() + "\n" 
+                + "Destination: " + getDestination() + "\n"
                 + "Departure Date: " + departureDate.format(dtf) + "\n"
                 + "Number of Seats: " + numberOfSeats + "\n"
                 + "Price: " + price + "\n"
-                + "Passengers: " + passengers.size();
+                + "Passengers: " + getPassengerCount();
     }
 
     /**
@@ -275,6 +355,35 @@ public class Flight {
      */
     public void setDeleted(boolean deleted) {
         this.deleted = deleted;
+        dirty = true;
+    }
+
+    /**
+     * Returns whether the flight has changed since it was last loaded from or stored to the
+     * data files. New flights are dirty until they have been stored.
+     * 
+     * @return true if the flight has unsaved changes, false otherwise
+     */
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * Returns whether the flight has a record in the flight data file.
+     * 
+     * @return true if the flight has been loaded from or stored to the data file, false otherwise
+     */
+    public boolean isPersisted() {
+        return persisted;
+    }
+
+    /**
+     * Marks the flight as matching its record in the data file. This is called by the data
+     * managers once the flight has been loaded or written.
+     */
+    public void markPersisted() {
+        dirty = false;
+        persisted = true;
     }
 
     /**
@@ -345,12 +454,7 @@ public class Flight {
      */
     public int calculatePrice(LocalDate currentDate) throws FlightBookingSystemException {
         // Check if the flight is fully booked
-        int bookedSeats = 0;
-        for (Customer passenger : passengers) {
-            if (!passenger.isCancelled()) {
-                bookedSeats++;
-            }
-        }
+        int bookedSeats = getBookedSeats();
         if (bookedSeats >= numberOfSeats) {
             return (int) price; // Return the original price
         }
@@ -392,12 +496,22 @@ public class Flight {
      * @return true if the flight is fully booked, false otherwise
      */
     public boolean isFullyBooked() {
-        int bookedSeats = 0;
+        return getBookedSeats() >= numberOfSeats;
+    }
+
+    /**
+     * Returns the number of seats taken by passengers whose bookings are not cancelled,
+     * including those whose bookings have not been loaded yet.
+     * 
+     * @return the number of booked seats
+     */
+    public int getBookedSeats() {
+        int bookedSeats = pendingBookedSeats;
         for (Customer passenger : passengers) {
             if (!passenger.isCancelled()) {
                 bookedSeats++;
             }
         }
-        return bookedSeats >= numberOfSeats;
+        return bookedSeats;
     }
 }
@@ -2,6 +2,7 @@ package bcu.cmp5332.bookingsystem.model;
 
 import bcu.cmp5332.bookingsystem.main.FlightBookingSystemException;
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.*;
 
 /**
@@ -10,11 +11,32 @@ import java.util.*;
  * It provides methods to add and retrieve flights, customers, and bookings, as well as operations
  * to delete flights and customers, update bookings, and retrieve bookings by various criteria.
  * </p>
+ * <p>
+ * Flights that departed before the current month may be kept in partitions, one per departure
+ * month, that are only loaded when they are needed. Such flights are registered with
+ * {@link #archiveFlight}; looking one up by ID loads its partition through the
+ * {@link PartitionLoader}, and {@link #loadAllPartitions()} loads every partition for views
+ * that need the full history.
+ * </p>
  * 
  * @author Sugam Adhikari
  * @author Prasansha Tamang
  */
 public class FlightBookingSystem {
+
+    /**
+     * Loads the flights of one departure month, and the bookings on them, into the system.
+     */
+    public interface PartitionLoader {
+        /**
+         * Adds the flights and bookings of a partition to the given system.
+         *
+         * @param fbs   the system to load into
+         * @param month the departure month of the partition
+         * @throws FlightBookingSystemException if the partition cannot be loaded
+         */
+        void loadPartition(FlightBookingSystem fbs, YearMonth month) throws FlightBookingSystemException;
+    }
     
     private final LocalDate systemDate = LocalDate.parse("2020-11-11");
 
@@ -22,6 +44,12 @@ public class FlightBookingSystem {
     private final Map<Integer, Flight> flights = new TreeMap<>();
     private final Map<Integer, Booking> bookings = new TreeMap<>();
     private int maxBookingId;
+    private boolean flightsRemoved;
+    private boolean customersRemoved;
+    private final Map<Integer, YearMonth> archivedFlights = new HashMap<>();
+    private final Set<YearMonth> loadedPartitions = new HashSet<>();
+    private PartitionLoader partitionLoader;
+    private int maxArchivedFlightId;
 
     /**
      * Generates and returns a new unique booking ID.
@@ -97,6 +125,10 @@ public class FlightBookingSystem {
      * @throws FlightBookingSystemException if no flight with the specified ID exists
      */
     public Flight getFlightByID(int id) throws FlightBookingSystemException {
+        YearMonth partition = archivedFlights.get(id);
+        if (partition != null && !flights.containsKey(id)) {
+            loadPartition(partition);
+        }
         if (!flights.containsKey(id)) {
             throw new FlightBookingSystemException("There is no flight with that ID.");
         }
@@ -118,16 +150,18 @@ public class FlightBookingSystem {
     }
 
     /**
-     * Adds a new flight to the system.
+     * Adds a new flight to the system. The partition of its departure month is loaded first if
+     * it holds archived flights, so that they are checked too.
      * 
      * @param flight the flight to add
      * @throws FlightBookingSystemException if a flight with the same ID, or with the same flight number
-     *         and departure date already exists in the system
+     *         and departure date already exists in the system, or the partition cannot be loaded
      */
     public void addFlight(Flight flight) throws FlightBookingSystemException {
         if (flights.containsKey(flight.getId())) {
             throw new IllegalArgumentException("Duplicate flight ID.");
         }
+        loadPartitions(Collections.singleton(YearMonth.from(flight.getDepartureDate())));
         for (Flight existing : flights.values()) {
             if (existing.getFlightNumber().equals(flight.getFlightNumber())
                     && existing.getDepartureDate().isEqual(flight.getDepartureDate())) {
@@ -138,6 +172,41 @@ public class FlightBookingSystem {
         flights.put(flight.getId(), flight);
     }
 
+    /**
+     * Adds many flights at once, for bulk loads. The whole batch is checked against the flights
+     * in the system, including archived flights of the same departure months, and against itself
+     * with one pass, rather than scanning every flight for each new one. Nothing is added if any
+     * flight fails the check.
+     * 
+     * @param added the flights to add
+     * @throws FlightBookingSystemException if two flights share a flight number and departure
+     *         date, or a partition cannot be loaded
+     */
+    public void addFlights(Collection<Flight> added) throws FlightBookingSystemException {
+        Set<YearMonth> months = new HashSet<>();
+        for (Flight flight : added) {
+            months.add(YearMonth.from(flight.getDepartureDate()));
+        }
+        loadPartitions(months);
+        Set<String> keys = new HashSet<>(flights.size() + added.size());
+        for (Flight existing : flights.values()) {
+            keys.add(existing.getFlightNumber() + "@" + existing.getDepartureDate());
+        }
+        Set<Integer> ids = new HashSet<>(added.size());
+        for (Flight flight : added) {
+            if (flights.containsKey(flight.getId()) || !ids.add(flight.getId())) {
+                throw new IllegalArgumentException("Duplicate flight ID.");
+            }
+            if (!keys.add(flight.getFlightNumber() + "@" + flight.getDepartureDate())) {
+                throw new FlightBookingSystemException("There is a flight with the same "
+                        + "number and departure date in the system");
+            }
+        }
+        for (Flight flight : added) {
+            flights.put(flight.getId(), flight);
+        }
+    }
+
     /**
      * Adds a new customer to the system.
      * 
@@ -151,6 +220,23 @@ public class FlightBookingSystem {
         customers.put(customer.getId(), customer);
     }
 
+    /**
+     * Adds many customers at once, for bulk loads. Nothing is added if any ID is already taken.
+     * 
+     * @param added the customers to add
+     */
+    public void addCustomers(Collection<Customer> added) {
+        Set<Integer> ids = new HashSet<>(added.size());
+        for (Customer customer : added) {
+            if (customers.containsKey(customer.getId()) || !ids.add(customer.getId())) {
+                throw new IllegalArgumentException("Duplicate customer ID.");
+            }
+        }
+        for (Customer customer : added) {
+            customers.put(customer.getId(), customer);
+        }
+    }
+
     /**
      * Retrieves a booking by its ID.
      * 
@@ -226,6 +312,7 @@ public class FlightBookingSystem {
             bookings.remove(booking.getId());
         }
         flights.remove(flightId);
+        flightsRemoved = true;
     }
 
     /**
@@ -249,6 +336,238 @@ public class FlightBookingSystem {
             bookings.remove(booking.getId());
         }
         customers.remove(customerId);
+        customersRemoved = true;
+    }
+
+    /**
+     * Returns whether any flight has been removed from the system since the data files were
+     * last written. A removed flight can only be dropped from the flight data file by
+     * rewriting it.
+     * 
+     * @return true if flights have been removed, false otherwise
+     */
+    public boolean hasRemovedFlights() {
+        return flightsRemoved;
+    }
+
+    /**
+     * Returns whether any customer has been removed from the system since the data files were
+     * last written. Removing a customer also removes their bookings from the booking data file.
+     * 
+     * @return true if customers have been removed, false otherwise
+     */
+    public boolean hasRemovedCustomers() {
+        return customersRemoved;
+    }
+
+    /**
+     * Clears the record of removed flights and customers once every data file has been written.
+     */
+    public void clearRemovals() {
+        flightsRemoved = false;
+        customersRemoved = false;
+    }
+
+    /**
+     * Sets the loader used to bring partitions of past flights into memory on demand.
+     * 
+     * @param partitionLoader the partition loader
+     */
+    public void setPartitionLoader(PartitionLoader partitionLoader) {
+        this.partitionLoader = partitionLoader;
+    }
+
+    /**
+     * Registers a flight as stored in the partition for the given departure month. The flight
+     * does not have to be loaded; it is loaded together with its partition when it is needed.
+     * 
+     * @param flightId the ID of the flight
+     * @param month the departure month of its partition
+     */
+    public void archiveFlight(int flightId, YearMonth month) {
+        archivedFlights.put(flightId, month);
+        maxArchivedFlightId = Math.max(maxArchivedFlightId, flightId);
+    }
+
+    /**
+     * Returns the partition a flight is stored in.
+     * 
+     * @param flightId the ID of the flight
+     * @return the departure month of the flight's partition, or null if it is a current flight
+     */
+    public YearMonth getPartition(int flightId) {
+        return archivedFlights.get(flightId);
+    }
+
+    /**
+     * Returns whether a flight is stored in a partition rather than with the current flights.
+     * 
+     * @param flightId the ID of the flight
+     * @return true if the flight belongs to a partition
+     */
+    public boolean isArchived(int flightId) {
+        return archivedFlights.containsKey(flightId);
+    }
+
+    /**
+     * Returns whether the partition for the given month is in memory.
+     * 
+     * @param month the departure month
+     * @return true if the partition has been loaded
+     */
+    public boolean isPartitionLoaded(YearMonth month) {
+        return loadedPartitions.contains(month);
+    }
+
+    /**
+     * Loads the partition for the given month, unless it is already in memory.
+     * 
+     * @param month the departure month
+     * @throws FlightBookingSystemException if the partition cannot be loaded
+     */
+    public void loadPartition(YearMonth month) throws FlightBookingSystemException {
+        if (partitionLoader != null && loadedPartitions.add(month)) {
+            try {
+                partitionLoader.loadPartition(this, month);
+            } catch (FlightBookingSystemException | RuntimeException ex) {
+                loadedPartitions.remove(month);
+                throw ex;
+            }
+        }
+    }
+
+    /**
+     * Loads the partitions of the given months that hold archived flights, so that the flights
+     * departing in those months are all in memory.
+     * 
+     * @param months the departure months
+     * @throws FlightBookingSystemException if a partition cannot be loaded
+     */
+    public void loadPartitions(Collection<YearMonth> months) throws FlightBookingSystemException {
+        Set<YearMonth> archived = new HashSet<>(archivedFlights.values());
+        for (YearMonth month : new TreeSet<>(months)) {
+            if (archived.contains(month)) {
+                loadPartition(month);
+            }
+        }
+    }
+
+    /**
+     * Loads every partition that is not yet in memory, so that the system holds the full history.
+     * 
+     * @throws FlightBookingSystemException if a partition cannot be loaded
+     */
+    public void loadAllPartitions() throws FlightBookingSystemException {
+        for (YearMonth month : new TreeSet<>(archivedFlights.values())) {
+            loadPartition(month);
+        }
+    }
+
+    /**
+     * Returns the departure months of the partitions that hold archived flights but are not in
+     * memory, in order.
+     * 
+     * @return the months of the partitions that are not loaded
+     */
+    public SortedSet<YearMonth> getUnloadedPartitions() {
+        SortedSet<YearMonth> months = new TreeSet<>(archivedFlights.values());
+        months.removeAll(loadedPartitions);
+        return months;
+    }
+
+    /**
+     * Drops the flights of a partition that was loaded only to be read, such as for a
+     * checkpoint, from memory again, with the bookings on them. Unlike {@link #unloadFlights},
+     * nothing counts as removed from the current data files, since the partition was never part
+     * of them, so this must only be used while nothing in the partition has changed since it was
+     * loaded.
+     * 
+     * @param month the departure month of the partition
+     * @param loaded the flights that were added when the partition was loaded
+     */
+    public void unloadPartition(YearMonth month, Collection<Flight> loaded) {
+        Set<Flight> dropped = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Flight flight : loaded) {
+            if (month.equals(archivedFlights.get(flight.getId())) && flights.get(flight.getId()) == flight) {
+                flights.remove(flight.getId());
+                dropped.add(flight);
+            }
+        }
+        loadedPartitions.remove(month);
+        if (dropped.isEmpty()) {
+            return;
+        }
+        for (Customer customer : customers.values()) {
+            if (!customer.isBookingsLoaded()) {
+                continue; // Linking a partition's bookings loads the customer's own first
+            }
+            for (Booking booking : new ArrayList<>(customer.getBookings())) {
+                if (dropped.contains(booking.getFlight())) {
+                    customer.unloadBooking(booking);
+                    bookings.remove(booking.getId());
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops archived flights and the bookings on them from memory. The flights stay registered
+     * with their partitions, which are loaded again if a flight is needed. Since the flights and
+     * their bookings no longer belong with the current flights, they count as removed from the
+     * current data files.
+     * 
+     * @param unloaded the flights to unload, which must already be registered with {@link #archiveFlight}
+     */
+    public void unloadFlights(Collection<Flight> unloaded) {
+        Set<Flight> dropped = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Flight flight : unloaded) {
+            YearMonth month = archivedFlights.get(flight.getId());
+            if (month != null && flights.get(flight.getId()) == flight) {
+                flights.remove(flight.getId());
+                loadedPartitions.remove(month);
+                dropped.add(flight);
+            }
+        }
+        if (dropped.isEmpty()) {
+            return;
+        }
+        for (Customer customer : customers.values()) {
+            for (Booking booking : new ArrayList<>(customer.getBookings())) {
+                if (dropped.contains(booking.getFlight())) {
+                    customer.removeBooking(booking);
+                    bookings.remove(booking.getId());
+                }
+            }
+        }
+        flightsRemoved = true;
+    }
+
+    /**
+     * Loads the bookings of every passenger of a flight whose bookings have not been loaded yet,
+     * so that {@link Flight#getPassengers()} returns all of them.
+     * 
+     * @param flight the flight
+     */
+    public void loadPassengers(Flight flight) {
+        for (int customerId : flight.getPendingPassengerIds()) {
+            Customer customer = customers.get(customerId);
+            if (customer != null) {
+                customer.getBookings();
+            }
+        }
+    }
+
+    /**
+     * Returns the highest flight ID in use, including flights in partitions that are not loaded.
+     * 
+     * @return the highest flight ID, or 0 if there are no flights
+     */
+    public int getMaxFlightId() {
+        int maxId = maxArchivedFlightId;
+        for (int id : flights.keySet()) {
+            maxId = Math.max(maxId, id);
+        }
+        return maxId;
     }
 
     /**
@@ -0,0 +1,132 @@
+package bcu.cmp5332.bookingsystem.test;
+
+import bcu.cmp5332.bookingsystem.data.BTreeStore;
+import bcu.cmp5332.bookingsystem.data.RecordStore;
+import bcu.cmp5332.bookingsystem.data.StoreDataManager;
+import bcu.cmp5332.bookingsystem.model.Booking;
+import bcu.cmp5332.bookingsystem.model.Customer;
+import bcu.cmp5332.bookingsystem.model.Flight;
+import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the B+tree record store.
+ * Tests include reading records back across many pages after reopening the file, and storing
+ * and loading a flight booking system through it.
+ *
+ * @author Sugam Adhikari
+ * @author Prasansha Tamang
+ *
+ */
+public class BTreeStoreTest {
+
+    private Path file;
+
+    /**
+     * Chooses a store file that does not exist yet before each test case.
+     *
+     * @throws Exception if the file cannot be created.
+     */
+    @Before
+    public void setUp() throws Exception {
+        file = Files.createTempFile("store", ".btree");
+        Files.delete(file);
+    }
+
+    /**
+     * Deletes the store file after each test case.
+     *
+     * @throws Exception if the file cannot be deleted.
+     */
+    @After
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(file);
+    }
+
+    private static byte[] record(int id) {
+        return ("record " + id).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Tests that records split over many pages can be read, scanned by range and removed after
+     * the store has been closed and reopened with a small cache.
+     *
+     * @throws Exception if the store cannot be used.
+     */
+    @Test
+    public void testRecordsAcrossPages() throws Exception {
+        try (BTreeStore store = new BTreeStore(file.toString(), 8)) {
+            for (int id = 20000; id > 0; id--) {
+                store.put(RecordStore.Table.BOOKINGS, id, record(id));
+            }
+            store.put(RecordStore.Table.CUSTOMERS, 1, record(-1));
+        }
+        try (BTreeStore store = new BTreeStore(file.toString(), 8)) {
+            assertEquals(20000, store.size(RecordStore.Table.BOOKINGS));
+            assertArrayEquals(record(12345), store.get(RecordStore.Table.BOOKINGS, 12345));
+            assertArrayEquals(record(-1), store.get(RecordStore.Table.CUSTOMERS, 1));
+            assertNull(store.get(RecordStore.Table.FLIGHTS, 1));
+
+            assertTrue(store.delete(RecordStore.Table.BOOKINGS, 101));
+            assertFalse(store.delete(RecordStore.Table.BOOKINGS, 101));
+            List<Integer> ids = new ArrayList<>();
+            store.scan(RecordStore.Table.BOOKINGS, 99, 20001, (id, record) -> {
+                assertArrayEquals(record(id), record);
+                ids.add(id);
+                return ids.size() < 4;
+            });
+            assertEquals("[99, 100, 102, 103]", ids.toString());
+        }
+    }
+
+    /**
+     * Tests that a stored system loads back with its bookings, and that only changed and removed
+     * records are written by a later store.
+     *
+     * @throws Exception if the system cannot be stored or loaded.
+     */
+    @Test
+    public void testStoreAndLoad() throws Exception {
+        FlightBookingSystem fbs = new FlightBookingSystem();
+        Flight flight = new Flight(1, "BA123", "LHR", "JFK", LocalDate.of(2030, 7, 1), 200, 500.0);
+        Customer john = new Customer(1, "John Doe", "1234567890", "john.doe@example.com");
+        Customer jane = new Customer(2, "Jane Smith", "0987654321", "jane.smith@example.com");
+        fbs.addFlight(flight);
+        fbs.addCustomer(john);
+        fbs.addCustomer(jane);
+        Booking booking = new Booking(1, john, flight, LocalDate.of(2030, 1, 1), 500.0);
+        john.addBooking(booking);
+        flight.addPassenger(john);
+
+        try (BTreeStore store = new BTreeStore(file.toString())) {
+            StoreDataManager data = new StoreDataManager(store);
+            data.storeData(fbs);
+            assertFalse(booking.isDirty());
+            booking.cancelBooking();
+            fbs.deleteCustomer(2);
+            data.storeData(fbs);
+            assertEquals(1, store.size(RecordStore.Table.CUSTOMERS));
+        }
+
+        FlightBookingSystem loaded = new FlightBookingSystem();
+        try (BTreeStore store = new BTreeStore(file.toString())) {
+            new StoreDataManager(store).loadData(loaded);
+        }
+        assertEquals("BA123", loaded.getFlightByID(1).getFlightNumber());
+        assertEquals(1, loaded.getAllCustomers().size());
+        Booking loadedBooking = loaded.getCustomerByID(1).getBookings().get(0);
+        assertTrue(loadedBooking.isCancelled());
+        assertEquals(1, loaded.getMaxBookingId());
+    }
+}
@@ -0,0 +1,98 @@
+package bcu.cmp5332.bookingsystem.test;
+
+import bcu.cmp5332.bookingsystem.data.BlockArchive;
+import bcu.cmp5332.bookingsystem.data.RecordReader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the compressed block archive.
+ * Tests include finding single records across several blocks and reading the whole archive back.
+ *
+ * @author Sugam Adhikari
+ * @author Prasansha Tamang
+ *
+ */
+public class BlockArchiveTest {
+
+    private Path source;
+    private Path archive;
+
+    /**
+     * Writes a booking file large enough to need several blocks before each test case.
+     *
+     * @throws IOException if the file cannot be written.
+     */
+    @Before
+    public void setUp() throws IOException {
+        source = Files.createTempFile("bookings", ".txt");
+        archive = Files.createTempFile("bookings", BlockArchive.SUFFIX);
+        List<String> lines = new ArrayList<>();
+        for (int id = 5000; id >= 1; id--) {
+            lines.add(id + "::" + (id % 40 + 1) + "::" + (id % 7 + 1) + "::2024-06-26::300.0");
+        }
+        lines.add("17::3::4::2024-06-27::450.0::cancelled");
+        Files.write(source, lines, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Removes the temporary files after each test case.
+     *
+     * @throws IOException if a file cannot be removed.
+     */
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(source);
+        Files.deleteIfExists(archive);
+    }
+
+    /**
+     * Tests that records are found by ID through the block index, with the last record for an ID winning.
+     *
+     * @throws Exception if the archive cannot be written or read.
+     */
+    @Test
+    public void testFind() throws Exception {
+        assertEquals(5000, BlockArchive.write(source, archive.toString()));
+        BlockArchive blocks = new BlockArchive(archive.toString());
+        assertTrue(blocks.getBlockCount() > 1);
+        assertTrue(Files.size(archive) < Files.size(source));
+        for (int id : new int[] {1, 2500, 5000}) {
+            try (RecordReader reader = blocks.find(id)) {
+                assertNotNull(reader);
+                assertEquals(id, reader.nextInt());
+            }
+        }
+        try (RecordReader reader = blocks.find(17)) {
+            assertEquals("17::3::4::2024-06-27::450.0::cancelled", reader.getLine());
+        }
+        assertNull(blocks.find(5001));
+    }
+
+    /**
+     * Tests that reading the whole archive returns every record in ID order.
+     *
+     * @throws Exception if the archive cannot be written or read.
+     */
+    @Test
+    public void testReadAll() throws Exception {
+        BlockArchive.write(source, archive.toString());
+        int expected = 1;
+        try (RecordReader reader = new BlockArchive(archive.toString()).readAll()) {
+            while (reader.nextRecord()) {
+                assertEquals(expected++, reader.nextInt());
+            }
+        }
+        assertEquals(5001, expected);
+    }
+}
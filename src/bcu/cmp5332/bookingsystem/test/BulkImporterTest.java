@@ -0,0 +1,165 @@
+package bcu.cmp5332.bookingsystem.test;
+
+import bcu.cmp5332.bookingsystem.data.BulkImporter;
+import bcu.cmp5332.bookingsystem.data.MutationJournal;
+import bcu.cmp5332.bookingsystem.main.FlightBookingSystemException;
+import bcu.cmp5332.bookingsystem.model.Customer;
+import bcu.cmp5332.bookingsystem.model.Flight;
+import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for importing flights, customers and bookings from CSV files.
+ * Tests include a valid import that refers to existing data, the imported records being passed
+ * to the journal's listeners, and an import rejected as a whole.
+ *
+ * @author Sugam Adhikari
+ * @author Prasansha Tamang
+ *
+ */
+public class BulkImporterTest {
+
+    private Path dir;
+    private FlightBookingSystem fbs;
+
+    /**
+     * Creates an import directory and a system with one flight and one customer before each test case.
+     *
+     * @throws Exception if the directory cannot be created.
+     */
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("import");
+        fbs = new FlightBookingSystem();
+        fbs.addFlight(new Flight(1, "BA123", "LHR", "JFK", LocalDate.of(2030, 7, 1), 2, 500.0));
+        fbs.addCustomer(new Customer(1, "John Doe", "1234567890", "john.doe@example.com"));
+    }
+
+    /**
+     * Removes the import directory after each test case.
+     *
+     * @throws IOException if a file cannot be removed.
+     */
+    @After
+    public void tearDown() throws IOException {
+        File[] files = dir.toFile().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        Files.delete(dir);
+    }
+
+    private void write(String name, String content) throws IOException {
+        Files.write(dir.resolve(name), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private BulkImporter importer() {
+        BulkImporter importer = new BulkImporter(dir, 2);
+        importer.setOutput(null);
+        return importer;
+    }
+
+    /**
+     * Tests that new rows get the next free IDs and that bookings can refer to both new and
+     * existing flights and customers.
+     *
+     * @throws Exception if the import fails.
+     */
+    @Test
+    public void testImport() throws Exception {
+        write(BulkImporter.FLIGHTS_FILE, "number,origin,destination,departure,seats,price\n"
+                + "AA456,JFK,LAX,2030-08-01,150,300\n");
+        write(BulkImporter.CUSTOMERS_FILE, "name,phone,email\r\n"
+                + "\"Smith, Jane\",0987654321,jane.smith@example.com\r\n");
+        write(BulkImporter.BOOKINGS_FILE, "email,number,departure,booked,price\n"
+                + "jane.smith@example.com,BA123,2030-07-01,2030-01-01,500\n"
+                + "john.doe@example.com,AA456,2030-08-01,2030-01-02,300\n");
+        BulkImporter importer = importer();
+        importer.importInto(fbs);
+
+        assertEquals(1, importer.getFlightCount());
+        assertEquals(1, importer.getCustomerCount());
+        assertEquals(2, importer.getBookingCount());
+        assertEquals("AA456", fbs.getFlightByID(2).getFlightNumber());
+        Customer jane = fbs.getCustomerByID(2);
+        assertEquals("Smith, Jane", jane.getName());
+        assertNotNull(jane.getBookingByFlightId(1));
+        assertNotNull(fbs.getCustomerByID(1).getBookingByFlightId(2));
+        assertEquals(2, fbs.getMaxBookingId());
+    }
+
+    /**
+     * Tests that the imported flights, customers and bookings are passed to the journal's
+     * listeners in that order, and that nothing is written to the journal itself.
+     *
+     * @throws Exception if the import fails.
+     */
+    @Test
+    public void testImportIsPublished() throws Exception {
+        write(BulkImporter.FLIGHTS_FILE, "number,origin,destination,departure,seats,price\n"
+                + "AA456,JFK,LAX,2030-08-01,150,300\n");
+        write(BulkImporter.CUSTOMERS_FILE, "name,phone,email\n"
+                + "Jane Smith,0987654321,jane.smith@example.com\n");
+        write(BulkImporter.BOOKINGS_FILE, "email,number,departure,booked,price\n"
+                + "jane.smith@example.com,AA456,2030-08-01,2030-01-01,300\n");
+        Path journalFile = dir.resolve("journal.txt");
+        MutationJournal journal = new MutationJournal(journalFile.toString());
+        List<String> records = new ArrayList<>();
+        journal.addListener(records::add);
+        BulkImporter importer = importer();
+        importer.setJournal(journal);
+        importer.importInto(fbs);
+
+        assertEquals(3, records.size());
+        assertEquals("FLIGHT_ADDED::2::AA456::JFK::LAX::2030-08-01::150::300.0", records.get(0));
+        assertEquals("CUSTOMER_ADDED::2::Jane Smith::0987654321::jane.smith@example.com", records.get(1));
+        assertEquals("BOOKING_CREATED::1::2::2::2030-01-01::300.0", records.get(2));
+        assertFalse(Files.exists(journalFile));
+    }
+
+    /**
+     * Tests that an import with invalid rows is reported with their lines and adds nothing.
+     *
+     * @throws Exception if the files cannot be written.
+     */
+    @Test
+    public void testRejectInvalidRows() throws Exception {
+        write(BulkImporter.FLIGHTS_FILE, "number,origin,destination,departure,seats,price\n"
+                + "BA123,LHR,JFK,2030-07-01,200,500\n"
+                + "AA456,JFK,LAX,01/08/2030,150,300\n");
+        write(BulkImporter.BOOKINGS_FILE, "email,number,departure,booked,price\n"
+                + "nobody@example.com,BA123,2030-07-01,2030-01-01,500\n");
+        try {
+            importer().importInto(fbs);
+            fail("Expected the import to be rejected");
+        } catch (FlightBookingSystemException ex) {
+            assertTrue(ex.getMessage().contains("flights.csv line 3: date"));
+        }
+        write(BulkImporter.FLIGHTS_FILE, "number,origin,destination,departure,seats,price\n"
+                + "BA123,LHR,JFK,2030-07-01,200,500\n");
+        try {
+            importer().importInto(fbs);
+            fail("Expected the import to be rejected");
+        } catch (FlightBookingSystemException ex) {
+            assertTrue(ex.getMessage().contains("flights.csv line 2: there is already a flight"));
+            assertTrue(ex.getMessage().contains("bookings.csv line 2: there is no customer"));
+        }
+        assertEquals(1, fbs.getFlights().size());
+        assertEquals(1, fbs.getAllCustomers().size());
+    }
+}
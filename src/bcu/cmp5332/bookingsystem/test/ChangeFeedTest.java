@@ -0,0 +1,211 @@
+package bcu.cmp5332.bookingsystem.test;
+
+import bcu.cmp5332.bookingsystem.data.ChangeFeed;
+import bcu.cmp5332.bookingsystem.data.ChangeFeedConsumer;
+import bcu.cmp5332.bookingsystem.data.MutationJournal;
+import bcu.cmp5332.bookingsystem.data.MutationJournal.MutationType;
+import bcu.cmp5332.bookingsystem.model.Booking;
+import bcu.cmp5332.bookingsystem.model.Customer;
+import bcu.cmp5332.bookingsystem.model.Flight;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the change feed.
+ * Tests include numbering changes across segments and restarts, consumers carrying on
+ * from the position they committed, and journal records lost from the feed being published again,
+ * even once the segments that held the earlier ones have been deleted.
+ *
+ * @author Sugam Adhikari
+ * @author Prasansha Tamang
+ *
+ */
+public class ChangeFeedTest {
+
+    private File journalFile;
+    private MutationJournal journal;
+    private Path dir;
+
+    /**
+     * Creates an empty journal and feed directory before each test case.
+     *
+     * @throws Exception if the temporary files cannot be created.
+     */
+    @Before
+    public void setUp() throws Exception {
+        journalFile = File.createTempFile("journal", ".txt");
+        journal = new MutationJournal(journalFile.getPath());
+        dir = Files.createTempDirectory("changes");
+    }
+
+    /**
+     * Closes and removes the temporary journal and feed after each test case.
+     *
+     * @throws Exception if the files cannot be removed.
+     */
+    @After
+    public void tearDown() throws Exception {
+        journal.close();
+        journalFile.delete();
+        for (File file : dir.toFile().listFiles()) {
+            file.delete();
+        }
+        Files.delete(dir);
+    }
+
+    /**
+     * Tests that changes are numbered in order across segments and restarts, that a change cut
+     * short by a crash is dropped, and that a consumer resumes after its last commit.
+     *
+     * @throws Exception if the feed cannot be written or read.
+     */
+    @Test
+    public void testConsumersResume() throws Exception {
+        Flight flight = new Flight(1, "BA123", "LHR", "JFK", LocalDate.of(2030, 7, 1), 200, 500.0);
+        Customer john = new Customer(1, "John Doe", "1234567890", "john.doe@example.com");
+        Booking booking = new Booking(1, john, flight, LocalDate.of(2030, 1, 1), 500.0);
+        String resource = dir.toString();
+
+        try (ChangeFeed feed = new ChangeFeed(resource, 200, TimeUnit.DAYS.toMillis(1))) {
+            feed.start(journal);
+            journal.publishFlightAdded(flight);
+            journal.publishCustomerAdded(john);
+            journal.bookingCreated(booking);
+            journal.bookingCancelled(booking);
+            assertEquals(5, feed.getNextSequence());
+        }
+        assertTrue(dir.toFile().list((d, name) -> name.startsWith("changes-")).length > 1);
+
+        ChangeFeedConsumer consumer = new ChangeFeedConsumer(resource, "revenue");
+        List<ChangeFeed.Change> changes = consumer.poll(3);
+        assertEquals(3, changes.size());
+        assertEquals(MutationType.FLIGHT_ADDED, changes.get(0).getType());
+        assertEquals(MutationType.BOOKING_CREATED, changes.get(2).getType());
+        assertTrue(changes.get(2).getRecord().startsWith("BOOKING_CREATED::1::1::1::"));
+        consumer.commit();
+        assertEquals(1, consumer.poll(10).size());
+        assertTrue(consumer.poll(10).isEmpty());
+
+        // A crash part-way through writing a change leaves part of a line behind
+        long last = 0;
+        for (String file : dir.toFile().list((d, name) -> name.startsWith("changes-"))) {
+            last = Math.max(last, Long.parseLong(file.substring(8, file.length() - 4)));
+        }
+        Files.write(dir.resolve("changes-" + last + ".txt"), "#40#0000".getBytes(StandardCharsets.US_ASCII), StandardOpenOption.APPEND);
+
+        try (ChangeFeed feed = new ChangeFeed(resource, 200, TimeUnit.DAYS.toMillis(1))) {
+            feed.start(journal);
+            assertEquals(5, feed.getNextSequence());
+            journal.flightDeleted(flight);
+            journal.customerDeleted(john);
+        }
+
+        ChangeFeedConsumer resumed = new ChangeFeedConsumer(resource, "revenue");
+        assertEquals(4, resumed.getPosition());
+        List<Long> sequences = new ArrayList<>();
+        for (ChangeFeed.Change change : resumed.poll(10, 1, TimeUnit.SECONDS)) {
+            sequences.add(change.getSequence());
+        }
+        assertEquals(Arrays.asList(4L, 5L, 6L), sequences);
+
+        resumed.seek(1);
+        assertEquals(6, resumed.poll(10).size());
+        assertEquals(1, new ChangeFeedConsumer(resource, "notifications").poll(1).get(0).getSequence());
+    }
+
+    /**
+     * Tests that journal records that never reached the feed, as when they were still queued
+     * at a crash, are published when the feed starts again, and only once.
+     *
+     * @throws Exception if the feed or the journal cannot be written or read.
+     */
+    @Test
+    public void testLostJournalRecordsArePublished() throws Exception {
+        Flight flight = new Flight(1, "BA123", "LHR", "JFK", LocalDate.of(2030, 7, 1), 200, 500.0);
+        Customer john = new Customer(1, "John Doe", "1234567890", "john.doe@example.com");
+        Booking booking = new Booking(1, john, flight, LocalDate.of(2030, 1, 1), 500.0);
+        String resource = dir.toString();
+
+        try (ChangeFeed feed = new ChangeFeed(resource, ChangeFeed.DEFAULT_SEGMENT_BYTES, TimeUnit.DAYS.toMillis(1))) {
+            feed.start(journal);
+            journal.publishFlightAdded(flight);
+            journal.publishCustomerAdded(john);
+            journal.bookingCreated(booking);
+        }
+        // Durable in the journal, but lost from the feed
+        journal.bookingCancelled(booking);
+        journal.flightDeleted(flight);
+
+        try (ChangeFeed feed = new ChangeFeed(resource, ChangeFeed.DEFAULT_SEGMENT_BYTES, TimeUnit.DAYS.toMillis(1))) {
+            feed.start(journal);
+            assertEquals(6, feed.getNextSequence());
+        }
+        try (ChangeFeed feed = new ChangeFeed(resource, ChangeFeed.DEFAULT_SEGMENT_BYTES, TimeUnit.DAYS.toMillis(1))) {
+            feed.start(journal);
+            assertEquals(6, feed.getNextSequence());
+        }
+
+        // The same text as a change already in the feed, after the journal has been truncated
+        journal.truncate();
+        journal.bookingCancelled(booking);
+        try (ChangeFeed feed = new ChangeFeed(resource, ChangeFeed.DEFAULT_SEGMENT_BYTES, TimeUnit.DAYS.toMillis(1))) {
+            feed.start(journal);
+            assertEquals(7, feed.getNextSequence());
+        }
+
+        List<ChangeFeed.Change> changes = new ChangeFeedConsumer(resource, "audit").poll(10);
+        assertEquals(6, changes.size());
+        assertEquals("BOOKING_CANCELLED::1::1", changes.get(3).getRecord());
+        assertEquals("FLIGHT_DELETED::1", changes.get(4).getRecord());
+        assertEquals("BOOKING_CANCELLED::1::1", changes.get(5).getRecord());
+    }
+
+    /**
+     * Tests that a journal record lost from the feed is published again, and nothing else,
+     * when the segment holding the journal records before it has been deleted.
+     *
+     * @throws Exception if the feed or the journal cannot be written or read.
+     */
+    @Test
+    public void testLostJournalRecordsArePublishedAfterPruning() throws Exception {
+        Flight flight = new Flight(1, "BA123", "LHR", "JFK", LocalDate.of(2030, 7, 1), 200, 500.0);
+        Customer john = new Customer(1, "John Doe", "1234567890", "john.doe@example.com");
+        Booking booking = new Booking(1, john, flight, LocalDate.of(2030, 1, 1), 500.0);
+        String resource = dir.toString();
+
+        long next;
+        try (ChangeFeed feed = new ChangeFeed(resource, 200, TimeUnit.DAYS.toMillis(1))) {
+            feed.start(journal);
+            journal.bookingCreated(booking);
+            for (int i = 0; i < 8; i++) {
+                journal.publishCustomerAdded(john);
+            }
+            next = feed.getNextSequence();
+        }
+        assertTrue(dir.toFile().list((d, name) -> name.startsWith("changes-")).length > 2);
+        Files.delete(dir.resolve("changes-1.txt")); // As the retention would
+        journal.bookingCancelled(booking);
+
+        try (ChangeFeed feed = new ChangeFeed(resource, 200, TimeUnit.DAYS.toMillis(1))) {
+            feed.start(journal);
+            assertEquals(next + 1, feed.getNextSequence());
+        }
+        List<ChangeFeed.Change> changes = new ChangeFeedConsumer(resource, "audit").poll(10);
+        assertEquals("BOOKING_CANCELLED::1::1", changes.get(changes.size() - 1).getRecord());
+        assertEquals(next, changes.get(changes.size() - 1).getSequence());
+    }
+}
@@ -0,0 +1,76 @@
+package bcu.cmp5332.bookingsystem.test;
+
+import bcu.cmp5332.bookingsystem.data.FlightDataManager;
+import bcu.cmp5332.bookingsystem.model.CodeTable;
+import bcu.cmp5332.bookingsystem.model.Flight;
+import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the code table behind flight numbers and airport codes.
+ * Tests include looking values up by their text and by their bytes, and sharing one copy of
+ * each value between the flights loaded from a file.
+ *
+ * @author Sugam Adhikari
+ * @author Prasansha Tamang
+ *
+ */
+public class CodeTableTest {
+
+    /**
+     * Tests that a value gets the same code whether it is looked up by its text or its bytes.
+     */
+    @Test
+    public void testCodes() {
+        CodeTable table = new CodeTable();
+        int lhr = table.code("LHR");
+        byte[] line = "1::LHR::Z\u00fcrich".getBytes(StandardCharsets.UTF_8);
+        assertEquals(lhr, table.code(line, 3, 3));
+        int zurich = table.code(line, 8, line.length - 8);
+        assertTrue(lhr != zurich);
+        assertEquals(zurich, table.code("Z\u00fcrich"));
+        assertEquals("Z\u00fcrich", table.value(zurich));
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i + 2, table.code("X" + i));
+        }
+        assertEquals(lhr, table.code(line, 3, 3));
+        assertEquals(1002, table.size());
+        assertEquals(CodeTable.NONE, table.code(null));
+        assertNull(table.value(CodeTable.NONE));
+    }
+
+    /**
+     * Tests that flights loaded from a file share one copy of each airport code and flight
+     * number, and that a changed field is stored and read back.
+     *
+     * @throws Exception if the file cannot be written or read.
+     */
+    @Test
+    public void testFlightsShareValues() throws Exception {
+        File file = File.createTempFile("flights", ".txt");
+        try {
+            FlightDataManager manager = new FlightDataManager(file.getPath());
+            FlightBookingSystem fbs = new FlightBookingSystem();
+            fbs.addFlight(new Flight(1, "BA123", "LHR", "JFK", LocalDate.of(2030, 7, 1), 200, 500.0));
+            fbs.addFlight(new Flight(2, "BA123", "LHR", "JFK", LocalDate.of(2030, 7, 2), 200, 500.0));
+            fbs.addFlight(new Flight(3, "BA124", "JFK", "LHR", LocalDate.of(2030, 7, 2), 200, 500.0));
+            fbs.getFlightByID(3).setDestination("CDG");
+            manager.storeData(fbs);
+
+            List<Flight> flights = manager.parseData();
+            assertSame(flights.get(0).getFlightNumber(), flights.get(1).getFlightNumber());
+            assertSame(flights.get(0).getOrigin(), flights.get(1).getOrigin());
+            assertSame(flights.get(0).getDestination(), flights.get(2).getOrigin());
+            assertEquals("CDG", flights.get(2).getDestination());
+        } finally {
+            file.delete();
+        }
+    }
+}
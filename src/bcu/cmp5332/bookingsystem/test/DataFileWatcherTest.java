@@ -0,0 +1,207 @@
+package bcu.cmp5332.bookingsystem.test;
+
+import bcu.cmp5332.bookingsystem.data.CustomerDataManager;
+import bcu.cmp5332.bookingsystem.data.DataFileWatcher;
+import bcu.cmp5332.bookingsystem.data.FlightDataManager;
+import bcu.cmp5332.bookingsystem.data.MutationJournal;
+import bcu.cmp5332.bookingsystem.data.RecordFrame;
+import bcu.cmp5332.bookingsystem.model.Booking;
+import bcu.cmp5332.bookingsystem.model.Customer;
+import bcu.cmp5332.bookingsystem.model.Flight;
+import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for reloading changed data files.
+ * Tests include applying a rewritten flight file and an appended customer file, passing the
+ * changes to the journal's listeners, and leaving alone records that have changed in memory or
+ * would have fewer seats than are booked.
+ *
+ * @author Sugam Adhikari
+ * @author Prasansha Tamang
+ *
+ */
+public class DataFileWatcherTest {
+
+    private Path dir;
+    private Path flightFile;
+    private Path customerFile;
+    private FlightBookingSystem fbs;
+    private DataFileWatcher watcher;
+
+    /**
+     * Stores two flights and a customer in a temporary directory and starts watching it
+     * before each test case.
+     *
+     * @throws Exception if the files cannot be written.
+     */
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("watch");
+        flightFile = dir.resolve("flights.txt");
+        customerFile = dir.resolve("customers.txt");
+        fbs = new FlightBookingSystem();
+        fbs.addFlight(new Flight(1, "BA121", "LHR", "JFK", LocalDate.of(2030, 7, 1), 200, 500.0));
+        fbs.addFlight(new Flight(2, "BA122", "LHR", "JFK", LocalDate.of(2030, 7, 2), 200, 500.0));
+        fbs.addCustomer(new Customer(1, "Ann Lee", "0123", "ann@example.com"));
+        new FlightDataManager(flightFile.toString()).storeData(fbs);
+        new CustomerDataManager(customerFile.toString()).storeData(fbs);
+        watcher = new DataFileWatcher(fbs, flightFile.toString(), customerFile.toString());
+        watcher.start();
+    }
+
+    /**
+     * Stops the watcher and deletes the temporary directory after each test case.
+     *
+     * @throws Exception if a file cannot be deleted.
+     */
+    @After
+    public void tearDown() throws Exception {
+        watcher.close();
+        for (File file : dir.toFile().listFiles()) {
+            file.delete();
+        }
+        Files.delete(dir);
+    }
+
+    /**
+     * Tests that only the changed and new flights of a rewritten file are applied, that a
+     * flight changed in memory keeps its own change, and that an appended customer is added.
+     *
+     * @throws Exception if the files cannot be written or read.
+     */
+    @Test
+    public void testChangedRecordsAreApplied() throws Exception {
+        watcher.close(); // The changes are applied by hand here, not by the watching thread
+        Flight first = fbs.getFlightByID(1);
+        List<String> lines = Files.readAllLines(flightFile, StandardCharsets.UTF_8);
+        lines.set(1, RecordFrame.frame("2::BA122::LHR::JFK::2030-07-02::200::450.0::::"));
+        lines.add(RecordFrame.frame("3::BA123::LHR::CDG::2030-07-03::180::300.0::::"));
+        Files.write(flightFile, lines, StandardCharsets.UTF_8);
+
+        assertEquals(2, watcher.refresh(flightFile));
+        assertSame(first, fbs.getFlightByID(1));
+        assertEquals(450.0, fbs.getFlightByID(2).getPrice(), 0.001);
+        assertFalse(fbs.getFlightByID(2).isDirty());
+        assertEquals("CDG", fbs.getFlightByID(3).getDestination());
+        assertEquals(0, watcher.refresh(flightFile));
+
+        fbs.getFlightByID(2).setPrice(400.0);
+        lines.set(1, RecordFrame.frame("2::BA122::LHR::JFK::2030-07-02::200::420.0::::"));
+        Files.write(flightFile, lines, StandardCharsets.UTF_8);
+        assertEquals(0, watcher.refresh(flightFile));
+        assertEquals(400.0, fbs.getFlightByID(2).getPrice(), 0.001);
+
+        String added = RecordFrame.frame("2::Bo Li::0456::bo@example.com::") + System.lineSeparator();
+        Files.write(customerFile, added.getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        assertEquals(1, watcher.refresh(customerFile));
+        assertEquals("Bo Li", fbs.getCustomerByID(2).getName());
+    }
+
+    /**
+     * Tests that the added and updated flights and customers are passed to the journal's
+     * listeners, and that the published records bring another copy of the system up to date.
+     *
+     * @throws Exception if the files cannot be written or read.
+     */
+    @Test
+    public void testChangesArePublished() throws Exception {
+        watcher.close();
+        MutationJournal journal = new MutationJournal(dir.resolve("journal.txt").toString());
+        List<String> records = new ArrayList<>();
+        journal.addListener(records::add);
+        watcher.setJournal(journal);
+        List<String> lines = Files.readAllLines(flightFile, StandardCharsets.UTF_8);
+        lines.set(1, RecordFrame.frame("2::BA122::LHR::JFK::2030-07-02::200::450.0::deleted::"));
+        lines.add(RecordFrame.frame("3::BA123::LHR::CDG::2030-07-03::180::300.0::::"));
+        Files.write(flightFile, lines, StandardCharsets.UTF_8);
+        assertEquals(2, watcher.refresh(flightFile));
+        String added = RecordFrame.frame("1::Ann Lee::0999::ann@example.com::") + System.lineSeparator();
+        Files.write(customerFile, added.getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        assertEquals(1, watcher.refresh(customerFile));
+
+        assertEquals(3, records.size());
+        assertEquals("FLIGHT_UPDATED::2::BA122::LHR::JFK::2030-07-02::200::450.0::true", records.get(0));
+        assertEquals("FLIGHT_ADDED::3::BA123::LHR::CDG::2030-07-03::180::300.0", records.get(1));
+        assertEquals("CUSTOMER_UPDATED::1::Ann Lee::0999::ann@example.com::false", records.get(2));
+
+        FlightBookingSystem copy = new FlightBookingSystem();
+        copy.addFlight(new Flight(2, "BA122", "LHR", "JFK", LocalDate.of(2030, 7, 2), 200, 500.0));
+        copy.addCustomer(new Customer(1, "Ann Lee", "0123", "ann@example.com"));
+        for (String record : records) {
+            assertTrue(MutationJournal.apply(copy, record));
+        }
+        assertTrue(copy.getFlightByID(2).isDeleted());
+        assertEquals(450.0, copy.getFlightByID(2).getPrice(), 0.001);
+        assertEquals("CDG", copy.getFlightByID(3).getDestination());
+        assertEquals("0999", copy.getCustomerByID(1).getPhone());
+        assertFalse(MutationJournal.apply(copy, records.get(0)));
+    }
+
+    /**
+     * Tests that a flight is not given fewer seats than are already booked on it.
+     *
+     * @throws Exception if the file cannot be written or read.
+     */
+    @Test
+    public void testFewerSeatsThanBookedAreRejected() throws Exception {
+        watcher.close();
+        Flight flight = fbs.getFlightByID(1);
+        for (int id = 2; id <= 3; id++) {
+            Customer customer = new Customer(id, "Passenger " + id, "0123", "p" + id + "@example.com");
+            fbs.addCustomer(customer);
+            customer.addBooking(new Booking(id, customer, flight, LocalDate.of(2030, 6, 1), 500.0));
+            flight.addPassenger(customer);
+        }
+        flight.markPersisted();
+        List<String> lines = Files.readAllLines(flightFile, StandardCharsets.UTF_8);
+        lines.set(0, RecordFrame.frame("1::BA121::LHR::JFK::2030-07-01::1::500.0::::"));
+        Files.write(flightFile, lines, StandardCharsets.UTF_8);
+
+        assertEquals(0, watcher.refresh(flightFile));
+        assertEquals(200, flight.getNumberOfSeats());
+        try {
+            flight.setNumberOfSeats(1);
+            fail("Expected the seats to be rejected");
+        } catch (IllegalArgumentException ex) {
+            assertEquals(200, flight.getNumberOfSeats());
+        }
+        flight.setNumberOfSeats(2);
+        assertTrue(flight.isFullyBooked());
+    }
+
+    /**
+     * Tests that a change to a watched file is applied without being asked for.
+     *
+     * @throws Exception if the file cannot be written.
+     */
+    @Test
+    public void testChangesAreNoticed() throws Exception {
+        String added = RecordFrame.frame("2::Bo Li::0456::bo@example.com::") + System.lineSeparator();
+        Files.write(customerFile, added.getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        long deadline = System.currentTimeMillis() + 15_000;
+        while (customerCount() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals(2, customerCount());
+    }
+
+    private int customerCount() {
+        synchronized (fbs) {
+            return fbs.getAllCustomers().size();
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package bcu.cmp5332.bookingsystem.test;
+
+import bcu.cmp5332.bookingsystem.data.BlockArchive;
+import bcu.cmp5332.bookingsystem.data.DeparturePartitions;
+import bcu.cmp5332.bookingsystem.data.MutationJournal;
+import bcu.cmp5332.bookingsystem.main.FlightBookingSystemException;
+import bcu.cmp5332.bookingsystem.model.Booking;
+import bcu.cmp5332.bookingsystem.model.Customer;
+import bcu.cmp5332.bookingsystem.model.Flight;
+import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for storing past flights in partitions by departure month.
+ * Tests include rolling flights into partitions, loading them lazily, storing changes to them
+ * describing them without keeping them in memory, and checking new flights against them.
+ *
+ * @author Sugam Adhikari
+ * @author Prasansha Tamang
+ *
+ */
+public class DeparturePartitionsTest {
+
+    private Path dir;
+    private DeparturePartitions partitions;
+
+    /**
+     * Creates an empty partition directory before each test case.
+     *
+     * @throws IOException if the directory cannot be created.
+     */
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("partitions");
+        partitions = new DeparturePartitions(dir.toString());
+    }
+
+    /**
+     * Removes the partition directory after each test case.
+     *
+     * @throws IOException if a file cannot be removed.
+     */
+    @After
+    public void tearDown() throws IOException {
+        File[] files = dir.toFile().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        Files.delete(dir);
+    }
+
+    private FlightBookingSystem createSystem() throws Exception {
+        FlightBookingSystem fbs = new FlightBookingSystem();
+        fbs.addFlight(new Flight(1, "BA123", "LHR", "JFK", LocalDate.of(2024, 7, 1), 200, 500.0));
+        fbs.addFlight(new Flight(2, "AA456", "JFK", "LAX", LocalDate.of(2025, 3, 1), 150, 300.0));
+        Customer customer = new Customer(1, "John Doe", "1234567890", "john.doe@example.com");
+        fbs.addCustomer(customer);
+        for (int id = 1; id <= 2; id++) {
+            Booking booking = new Booking(id, customer, fbs.getFlightByID(id), LocalDate.of(2024, 6, 26), 300.0);
+            customer.addBooking(booking);
+            fbs.addBooking(booking);
+        }
+        partitions.register(fbs);
+        return fbs;
+    }
+
+    /**
+     * Tests that a departed flight is moved out of memory and loaded again with its booking
+     * when it is looked up.
+     *
+     * @throws Exception if the partitions cannot be written or read.
+     */
+    @Test
+    public void testRollAndLoadLazily() throws Exception {
+        FlightBookingSystem fbs = createSystem();
+        assertEquals(1, partitions.roll(fbs, YearMonth.of(2025, 1)));
+        assertEquals(1, fbs.getFlights().size());
+        assertTrue(fbs.isArchived(1));
+        assertEquals(1, fbs.getCustomerByID(1).getBookings().size());
+        assertEquals(2, fbs.getMaxFlightId());
+
+        FlightBookingSystem reloaded = new FlightBookingSystem();
+        reloaded.addCustomer(new Customer(1, "John Doe", "1234567890", "john.doe@example.com"));
+        partitions.register(reloaded);
+        assertEquals(1, reloaded.getMaxBookingId());
+        assertFalse(reloaded.isPartitionLoaded(YearMonth.of(2024, 7)));
+        assertEquals("BA123", reloaded.getFlightByID(1).getFlightNumber());
+        assertTrue(reloaded.isPartitionLoaded(YearMonth.of(2024, 7)));
+        assertEquals(1, reloaded.getCustomerByID(1).getBookings().size());
+    }
+
+    /**
+     * Tests that a single new flight is checked against the archived flights of its departure
+     * month, whose partition is loaded for the check.
+     *
+     * @throws Exception if the partitions cannot be written or read.
+     */
+    @Test
+    public void testAddFlightChecksArchivedFlights() throws Exception {
+        FlightBookingSystem fbs = createSystem();
+        partitions.roll(fbs, YearMonth.of(2025, 1));
+        assertFalse(fbs.isPartitionLoaded(YearMonth.of(2024, 7)));
+        try {
+            fbs.addFlight(new Flight(3, "BA123", "LHR", "JFK", LocalDate.of(2024, 7, 1), 200, 500.0));
+            fail("Expected a duplicate flight number and departure date to be rejected");
+        } catch (FlightBookingSystemException ex) {
+            assertTrue(fbs.isPartitionLoaded(YearMonth.of(2024, 7)));
+        }
+        assertFalse(fbs.getFlights().stream().anyMatch(flight -> flight.getId() == 3));
+        fbs.addFlight(new Flight(3, "BA123", "LHR", "JFK", LocalDate.of(2024, 7, 2), 200, 500.0));
+        assertEquals(3, fbs.getFlights().size());
+    }
+
+    /**
+     * Tests that describing the whole system includes the partitions that are not loaded, and
+     * drops them from memory again without counting anything as removed.
+     *
+     * @throws Exception if the partitions cannot be written or read.
+     */
+    @Test
+    public void testDescribeAllLeavesPartitionsUnloaded() throws Exception {
+        partitions.roll(createSystem(), YearMonth.of(2025, 1));
+        FlightBookingSystem reloaded = new FlightBookingSystem();
+        reloaded.addCustomer(new Customer(1, "John Doe", "1234567890", "john.doe@example.com"));
+        partitions.register(reloaded);
+
+        List<String> records = MutationJournal.describeAll(reloaded);
+        assertEquals(3, records.size());
+        assertTrue(records.get(1).contains("::BA123::"));
+        assertFalse(reloaded.isPartitionLoaded(YearMonth.of(2024, 7)));
+        assertTrue(reloaded.getFlights().isEmpty());
+        assertFalse(reloaded.hasRemovedFlights());
+        Customer customer = reloaded.getCustomerByID(1);
+        assertTrue(customer.getBookings().isEmpty());
+        assertFalse(customer.hasRemovedBookings());
+
+        FlightBookingSystem rebuilt = new FlightBookingSystem();
+        for (String record : records) {
+            MutationJournal.apply(rebuilt, record);
+        }
+        assertEquals(1, rebuilt.getCustomerByID(1).getBookings().size());
+        assertEquals("BA123", reloaded.getFlightByID(1).getFlightNumber());
+        assertEquals(1, customer.getBookings().size());
+    }
+
+    /**
+     * Tests that a change to a booking on a partitioned flight is written back to its partition.
+     *
+     * @throws Exception if the partitions cannot be written or read.
+     */
+    @Test
+    public void testStoreChanges() throws Exception {
+        FlightBookingSystem fbs = createSystem();
+        partitions.roll(fbs, YearMonth.of(2025, 1));
+        fbs.getFlightByID(1);
+        fbs.getCustomerByID(1).getBookingByFlightId(1).cancelBooking();
+        partitions.storeChanges(fbs);
+
+        FlightBookingSystem reloaded = new FlightBookingSystem();
+        reloaded.addCustomer(new Customer(1, "John Doe", "1234567890", "john.doe@example.com"));
+        partitions.register(reloaded);
+        reloaded.loadAllPartitions();
+        assertTrue(reloaded.getCustomerByID(1).getBookingByFlightId(1).isCancelled());
+    }
+
+    /**
+     * Tests that an archived partition is still loaded lazily, and goes back to text files when
+     * a change to it is stored.
+     *
+     * @throws Exception if the partitions cannot be written or read.
+     */
+    @Test
+    public void testArchive() throws Exception {
+        FlightBookingSystem fbs = createSystem();
+        partitions.roll(fbs, YearMonth.of(2025, 1));
+        assertEquals(1, partitions.archive(YearMonth.of(2025, 1)));
+        String flights = partitions.getFlightResource(YearMonth.of(2024, 7));
+        assertFalse(Files.exists(dir.resolve(new File(flights).getName())));
+        assertTrue(Files.exists(dir.resolve("flights-2024-07" + BlockArchive.SUFFIX)));
+
+        FlightBookingSystem reloaded = new FlightBookingSystem();
+        reloaded.addCustomer(new Customer(1, "John Doe", "1234567890", "john.doe@example.com"));
+        partitions.register(reloaded);
+        assertEquals("BA123", reloaded.getFlightByID(1).getFlightNumber());
+        reloaded.getCustomerByID(1).getBookingByFlightId(1).cancelBooking();
+        partitions.storeChanges(reloaded);
+        assertTrue(Files.exists(dir.resolve(new File(flights).getName())));
+        assertFalse(Files.exists(dir.resolve("flights-2024-07" + BlockArchive.SUFFIX)));
+    }
+}
@@ -0,0 +1,111 @@
+package bcu.cmp5332.bookingsystem.test;
+
+import bcu.cmp5332.bookingsystem.data.DurableFile;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the crash-safe file writer used by the data managers.
+ * Tests include atomic replacement, appending, and recovery from each kind of interrupted write.
+ *
+ * @author Sugam Adhikari
+ * @author Prasansha Tamang
+ *
+ */
+public class DurableFileTest {
+
+    private File file;
+
+    /**
+     * Creates a temporary data file before each test case.
+     *
+     * @throws IOException if the temporary file cannot be created.
+     */
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("durable", ".txt");
+        write(file.getPath(), "1::old\n");
+    }
+
+    /**
+     * Removes the temporary data file and its side files after each test case.
+     */
+    @After
+    public void tearDown() {
+        for (String suffix : new String[] {"", ".tmp", ".new", ".append"}) {
+            new File(file.getPath() + suffix).delete();
+        }
+    }
+
+    private static void write(String path, String content) throws IOException {
+        Files.write(Paths.get(path), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String read() throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Tests that replacing and appending write the expected contents and leave no side files.
+     *
+     * @throws IOException if the file cannot be written.
+     */
+    @Test
+    public void testReplaceAndAppend() throws IOException {
+        DurableFile.replaceText(file.getPath(), out -> out.print("1::new\n"));
+        DurableFile.appendText(file.getPath(), out -> out.print("2::added\n"));
+        assertEquals("1::new\n2::added\n", read());
+        assertFalse(DurableFile.recover(file.getPath()));
+    }
+
+    /**
+     * Tests that a complete new file left behind by a crash before the final rename is swapped in.
+     *
+     * @throws IOException if the file cannot be repaired.
+     */
+    @Test
+    public void testRecoverFinishesSwap() throws IOException {
+        write(file.getPath() + ".new", "1::new\n");
+        assertTrue(DurableFile.recover(file.getPath()));
+        assertEquals("1::new\n", read());
+        assertFalse(new File(file.getPath() + ".new").exists());
+    }
+
+    /**
+     * Tests that a partially written temporary file is discarded and the old contents kept.
+     *
+     * @throws IOException if the file cannot be repaired.
+     */
+    @Test
+    public void testRecoverDiscardsUnfinishedWrite() throws IOException {
+        write(file.getPath() + ".tmp", "1::ne");
+        assertTrue(DurableFile.recover(file.getPath()));
+        assertEquals("1::old\n", read());
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+    }
+
+    /**
+     * Tests that an append cut short by a crash is rolled back to the recorded length.
+     *
+     * @throws IOException if the file cannot be repaired.
+     */
+    @Test
+    public void testRecoverRollsBackTornAppend() throws IOException {
+        long length = file.length();
+        Files.write(Paths.get(file.getPath() + ".append"), ByteBuffer.allocate(8).putLong(length).array());
+        Files.write(file.toPath(), "2::tor".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        assertTrue(DurableFile.recover(file.getPath()));
+        assertEquals("1::old\n", read());
+    }
+}
@@ -0,0 +1,265 @@
+package bcu.cmp5332.bookingsystem.test;
+
+import bcu.cmp5332.bookingsystem.data.GroupCommitter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for committing appended records in groups.
+ * Tests include batching records into one force, the bound on waiting records and writing the
+ * queued records on shutdown.
+ *
+ * @author Sugam Adhikari
+ * @author Prasansha Tamang
+ *
+ */
+public class GroupCommitterTest {
+
+    private Path file;
+    private CountingChannel channel;
+
+    /**
+     * Opens a channel on an empty temporary file before each test case.
+     *
+     * @throws IOException if the file cannot be created.
+     */
+    @Before
+    public void setUp() throws IOException {
+        file = Files.createTempFile("groupcommit", ".txt");
+        channel = new CountingChannel(FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND));
+    }
+
+    /**
+     * Closes the channel and removes the temporary file after each test case.
+     *
+     * @throws IOException if the file cannot be removed.
+     */
+    @After
+    public void tearDown() throws IOException {
+        System.clearProperty("bookingsystem.groupcommit.capacity");
+        channel.gate.countDown();
+        channel.close();
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * Tests that records submitted together are written in batches of at most the maximum
+     * size, with one force per batch reported to the listener.
+     *
+     * @throws Exception if the records cannot be committed.
+     */
+    @Test
+    public void testRecordsShareOneForcePerBatch() throws Exception {
+        GroupCommitter committer = new GroupCommitter(channel, 200, 4);
+        List<Integer> batches = Collections.synchronizedList(new ArrayList<>());
+        committer.setBatchListener((size, latency) -> batches.add(size));
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 1; i <= 10; i++) {
+            futures.add(committer.submit(("record " + i + "\n").getBytes(StandardCharsets.UTF_8)));
+        }
+        for (CompletableFuture<Void> future : futures) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+        committer.shutdown();
+
+        int total = 0;
+        for (int size : batches) {
+            assertTrue(size <= 4);
+            total += size;
+        }
+        assertEquals(10, total);
+        assertTrue(batches.size() < 10);
+        assertEquals(batches.size(), channel.forces.get());
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(10, lines.size());
+        assertEquals("record 1", lines.get(0));
+        assertEquals("record 10", lines.get(9));
+    }
+
+    /**
+     * Tests that once the configured number of records is waiting, a writer waits for the
+     * commit thread to catch up.
+     *
+     * @throws Exception if the records cannot be committed.
+     */
+    @Test
+    public void testCapacityBoundsWaitingRecords() throws Exception {
+        System.setProperty("bookingsystem.groupcommit.capacity", "2");
+        channel.gate = new CountDownLatch(1);
+        GroupCommitter committer = new GroupCommitter(channel, 0, 1);
+        committer.submit("first\n".getBytes(StandardCharsets.UTF_8));
+        assertTrue(channel.writing.await(5, TimeUnit.SECONDS)); // Held in the write
+        committer.submit("second\n".getBytes(StandardCharsets.UTF_8));
+        committer.submit("third\n".getBytes(StandardCharsets.UTF_8));
+
+        CountDownLatch queued = new CountDownLatch(1);
+        Thread writer = new Thread(() -> {
+            committer.submit("fourth\n".getBytes(StandardCharsets.UTF_8));
+            queued.countDown();
+        });
+        writer.start();
+        assertFalse(queued.await(200, TimeUnit.MILLISECONDS));
+
+        channel.gate.countDown();
+        assertTrue(queued.await(5, TimeUnit.SECONDS));
+        committer.shutdown();
+        assertEquals(4, Files.readAllLines(file).size());
+    }
+
+    /**
+     * Tests that shutting down writes the records still waiting for their batch to close.
+     *
+     * @throws Exception if the records cannot be committed.
+     */
+    @Test
+    public void testShutdownDrainsQueue() throws Exception {
+        GroupCommitter committer = new GroupCommitter(channel, TimeUnit.MINUTES.toMillis(1), 256);
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            futures.add(committer.submit(("record " + i + "\n").getBytes(StandardCharsets.UTF_8)));
+        }
+        committer.shutdown();
+        for (CompletableFuture<Void> future : futures) {
+            assertTrue(future.isDone());
+            assertFalse(future.isCompletedExceptionally());
+        }
+        assertEquals(5, Files.readAllLines(file).size());
+        assertEquals(1, channel.forces.get());
+        assertTrue(committer.getStatistics().startsWith("1 batch(es), 5 record(s)"));
+    }
+
+    /**
+     * A file channel that counts forces and can hold writes until it is released.
+     */
+    private static final class CountingChannel extends FileChannel {
+        private final FileChannel delegate;
+        private final AtomicInteger forces = new AtomicInteger();
+        private final CountDownLatch writing = new CountDownLatch(1);
+        private volatile CountDownLatch gate = new CountDownLatch(0);
+
+        private CountingChannel(FileChannel delegate) {
+            this.delegate = delegate;
+        }
+
+        private void hold() throws IOException {
+            writing.countDown();
+            try {
+                gate.await();
+            } catch (InterruptedException ex) {
+                throw new IOException(ex);
+            }
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return delegate.read(dst);
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+            return delegate.read(dsts, offset, length);
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            hold();
+            return delegate.write(src);
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            hold();
+            return delegate.write(srcs, offset, length);
+        }
+
+        @Override
+        public long position() throws IOException {
+            return delegate.position();
+        }
+
+        @Override
+        public FileChannel position(long newPosition) throws IOException {
+            delegate.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return delegate.size();
+        }
+
+        @Override
+        public FileChannel truncate(long size) throws IOException {
+            delegate.truncate(size);
+            return this;
+        }
+
+        @Override
+        public void force(boolean metaData) throws IOException {
+            forces.incrementAndGet();
+            delegate.force(metaData);
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            return delegate.transferTo(position, count, target);
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+            return delegate.transferFrom(src, position, count);
+        }
+
+        @Override
+        public int read(ByteBuffer dst, long position) throws IOException {
+            return delegate.read(dst, position);
+        }
+
+        @Override
+        public int write(ByteBuffer src, long position) throws IOException {
+            return delegate.write(src, position);
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+            return delegate.map(mode, position, size);
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared) throws IOException {
+            return delegate.lock(position, size, shared);
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+            return delegate.tryLock(position, size, shared);
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException {
+            delegate.close();
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package bcu.cmp5332.bookingsystem.test;
+
+import bcu.cmp5332.bookingsystem.data.BookingDataManager;
+import bcu.cmp5332.bookingsystem.data.CustomerDataManager;
+import bcu.cmp5332.bookingsystem.data.FlightDataManager;
+import bcu.cmp5332.bookingsystem.data.LazyBookings;
+import bcu.cmp5332.bookingsystem.model.Booking;
+import bcu.cmp5332.bookingsystem.model.Customer;
+import bcu.cmp5332.bookingsystem.model.Flight;
+import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for storing only what has changed in the text data files.
+ * Tests include leaving files alone when nothing is dirty, appending new records and
+ * rewriting a file when a stored record changes.
+ * <p>
+ * The files are written without record frames, and every record the data managers write is
+ * framed, so a rewritten file is told apart from an appended one by its first line.
+ * </p>
+ *
+ * @author Sugam Adhikari
+ * @author Prasansha Tamang
+ *
+ */
+public class IncrementalStoreTest {
+
+    private static final String FLIGHTS = "1::BA123::LHR::JFK::2030-07-01::100::500.0::\n"
+            + "2::AA456::JFK::LAX::2030-08-01::150::300.0::\n";
+    private static final String CUSTOMERS = "1::John Doe::1234567890::john.doe@example.com::\n"
+            + "2::Jane Smith::0987654321::jane.smith@example.com::\n";
+    private static final String BOOKINGS = "1::1::1::2030-06-26::500.0\n"
+            + "2::2::2::2030-06-27::300.0\n";
+
+    private Path dir;
+    private Path flights;
+    private Path customers;
+    private Path bookings;
+    private FlightDataManager flightData;
+    private CustomerDataManager customerData;
+    private BookingDataManager bookingData;
+    private FlightBookingSystem fbs;
+
+    /**
+     * Writes and loads two flights, two customers and two bookings before each test case.
+     *
+     * @throws Exception if the files cannot be written or read.
+     */
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("incremental");
+        flights = write("flights.txt", FLIGHTS);
+        customers = write("customers.txt", CUSTOMERS);
+        bookings = write("bookings.txt", BOOKINGS);
+        flightData = new FlightDataManager(flights.toString());
+        customerData = new CustomerDataManager(customers.toString());
+        bookingData = new BookingDataManager(bookings.toString());
+        fbs = new FlightBookingSystem();
+        flightData.loadData(fbs);
+        customerData.loadData(fbs);
+        bookingData.loadData(fbs);
+    }
+
+    /**
+     * Removes the temporary directory after each test case.
+     *
+     * @throws IOException if a file cannot be removed.
+     */
+    @After
+    public void tearDown() throws IOException {
+        File[] files = dir.toFile().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        Files.delete(dir);
+    }
+
+    private Path write(String name, String content) throws IOException {
+        return Files.write(dir.resolve(name), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String read(Path file) throws IOException {
+        return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+    }
+
+    private void storeAll() throws Exception {
+        flightData.storeData(fbs);
+        customerData.storeData(fbs);
+        bookingData.storeData(fbs);
+        fbs.clearRemovals();
+    }
+
+    /**
+     * Tests that storing a system with nothing dirty leaves every file as it was.
+     *
+     * @throws Exception if the files cannot be written or read.
+     */
+    @Test
+    public void testNothingChangedLeavesFilesAlone() throws Exception {
+        storeAll();
+        assertEquals(FLIGHTS, read(flights));
+        assertEquals(CUSTOMERS, read(customers));
+        assertEquals(BOOKINGS, read(bookings));
+    }
+
+    /**
+     * Tests that new flights, customers and bookings are appended after the existing records,
+     * and are no longer dirty once stored.
+     *
+     * @throws Exception if the files cannot be written or read.
+     */
+    @Test
+    public void testNewRecordsAreAppended() throws Exception {
+        Flight flight = new Flight(3, "EK789", "DXB", "LHR", LocalDate.of(2030, 9, 1), 200, 700.0);
+        fbs.addFlight(flight);
+        Customer sam = new Customer(3, "Sam Roe", "1122334455", "sam.roe@example.com");
+        fbs.addCustomer(sam);
+        Booking booking = new Booking(fbs.generateBookingId(), sam, flight, LocalDate.of(2030, 6, 28), 700.0);
+        sam.addBooking(booking);
+        flight.addPassenger(sam);
+        assertTrue(flight.isDirty());
+        assertFalse(booking.isPersisted());
+
+        storeAll();
+        assertAppended(flights, FLIGHTS, "3::EK789::DXB::LHR::2030-09-01::200::700.0");
+        assertAppended(customers, CUSTOMERS, "3::Sam Roe::1122334455::sam.roe@example.com");
+        assertAppended(bookings, BOOKINGS, "3::3::3::2030-06-28::700.0");
+        assertFalse(flight.isDirty());
+        assertTrue(flight.isPersisted());
+        assertFalse(sam.isDirty());
+        assertFalse(booking.isDirty());
+        assertTrue(booking.isPersisted());
+
+        String appended = read(bookings);
+        storeAll();
+        assertEquals(appended, read(bookings));
+    }
+
+    private static void assertAppended(Path file, String before, String record) throws IOException {
+        String content = read(file);
+        assertTrue(content.startsWith(before));
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(3, lines.size());
+        assertTrue(lines.get(2).startsWith("#"));
+        assertTrue(lines.get(2).contains(record));
+    }
+
+    /**
+     * Tests that a change to a stored record rewrites only the file that holds it.
+     *
+     * @throws Exception if the files cannot be written or read.
+     */
+    @Test
+    public void testChangedRecordRewritesItsFile() throws Exception {
+        fbs.getFlightByID(2).setDeleted(true);
+        fbs.getCustomerByID(1).getBookings().get(0).cancelBooking();
+        storeAll();
+
+        assertEquals(CUSTOMERS, read(customers));
+        List<String> flightLines = Files.readAllLines(flights);
+        assertEquals(2, flightLines.size());
+        assertTrue(flightLines.get(0).startsWith("#"));
+        assertTrue(flightLines.get(1).endsWith("::deleted"));
+        List<String> bookingLines = Files.readAllLines(bookings);
+        assertEquals(2, bookingLines.size());
+        assertTrue(bookingLines.get(0).endsWith("::cancelled"));
+        assertFalse(fbs.getFlightByID(2).isDirty());
+        assertFalse(fbs.getCustomerByID(1).getBookings().get(0).isDirty());
+    }
+
+    /**
+     * Tests that removing a booking or a customer rewrites the files that held them.
+     *
+     * @throws Exception if the files cannot be written or read.
+     */
+    @Test
+    public void testRemovalRewritesFile() throws Exception {
+        Customer jane = fbs.getCustomerByID(2);
+        jane.removeBooking(jane.getBookings().get(0));
+        assertTrue(jane.hasRemovedBookings());
+        storeAll();
+
+        List<String> bookingLines = Files.readAllLines(bookings);
+        assertEquals(1, bookingLines.size());
+        assertTrue(bookingLines.get(0).startsWith("#"));
+        assertFalse(jane.hasRemovedBookings());
+        assertEquals(FLIGHTS, read(flights));
+    }
+
+    /**
+     * Tests that bookings that have not been read from the file are not stored, since they
+     * cannot have changed.
+     *
+     * @throws Exception if the files cannot be written or read.
+     */
+    @Test
+    public void testUnloadedBookingsAreSkipped() throws Exception {
+        FlightBookingSystem lazy = new FlightBookingSystem();
+        flightData.loadData(lazy);
+        customerData.loadData(lazy);
+        LazyBookings.attach(lazy, bookings.toString());
+        lazy.getCustomerByID(2).setPhone("0000000000");
+
+        flightData.storeData(lazy);
+        customerData.storeData(lazy);
+        bookingData.storeData(lazy);
+        assertFalse(lazy.getCustomerByID(1).isBookingsLoaded());
+        assertEquals(BOOKINGS, read(bookings));
+        assertTrue(read(customers).contains("0000000000"));
+    }
+}
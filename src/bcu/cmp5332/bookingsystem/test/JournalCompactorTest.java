@@ -0,0 +1,195 @@
+package bcu.cmp5332.bookingsystem.test;
+
+import bcu.cmp5332.bookingsystem.data.BookingDataManager;
+import bcu.cmp5332.bookingsystem.data.CustomerDataManager;
+import bcu.cmp5332.bookingsystem.data.FlightDataManager;
+import bcu.cmp5332.bookingsystem.data.JournalCompactor;
+import bcu.cmp5332.bookingsystem.data.MutationJournal;
+import bcu.cmp5332.bookingsystem.model.Booking;
+import bcu.cmp5332.bookingsystem.model.Customer;
+import bcu.cmp5332.bookingsystem.model.Flight;
+import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for folding the journal into the base files in the background.
+ * Tests include the folded base files, the live records they now hold no longer being stored
+ * again, and retrying when a base file changes during a compaction.
+ *
+ * @author Sugam Adhikari
+ * @author Prasansha Tamang
+ *
+ */
+public class JournalCompactorTest {
+
+    private Path dir;
+    private Path flights;
+    private Path customers;
+    private Path bookings;
+    private MutationJournal journal;
+    private FlightDataManager flightData;
+    private CustomerDataManager customerData;
+    private BookingDataManager bookingData;
+    private FlightBookingSystem fbs;
+
+    /**
+     * Writes and loads two flights, two customers and two bookings before each test case.
+     *
+     * @throws Exception if the files cannot be written or read.
+     */
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("compactor");
+        flights = write("flights.txt", "1::BA123::LHR::JFK::2030-07-01::100::500.0::\n"
+                + "2::AA456::JFK::LAX::2030-08-01::150::300.0::\n");
+        customers = write("customers.txt", "1::John Doe::1234567890::john.doe@example.com::\n"
+                + "2::Jane Smith::0987654321::jane.smith@example.com::\n");
+        bookings = write("bookings.txt", "1::1::1::2030-06-26::500.0\n"
+                + "2::2::2::2030-06-27::300.0\n");
+        journal = new MutationJournal(dir.resolve("journal.txt").toString());
+        flightData = new FlightDataManager(flights.toString());
+        customerData = new CustomerDataManager(customers.toString());
+        bookingData = new BookingDataManager(bookings.toString());
+        fbs = new FlightBookingSystem();
+        flightData.loadData(fbs);
+        customerData.loadData(fbs);
+        bookingData.loadData(fbs);
+    }
+
+    /**
+     * Closes the journal and removes the temporary directory after each test case.
+     *
+     * @throws IOException if a file cannot be removed.
+     */
+    @After
+    public void tearDown() throws IOException {
+        journal.close();
+        File[] files = dir.toFile().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        Files.delete(dir);
+    }
+
+    private Path write(String name, String content) throws IOException {
+        return Files.write(dir.resolve(name), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private JournalCompactor compactor(ReentrantLock fileLock) {
+        JournalCompactor compactor = new JournalCompactor(journal, flights.toString(), customers.toString(),
+                bookings.toString(), dir.resolve("snapshot.bin").toString(), fileLock, 0, 0, 1000);
+        compactor.setSystem(fbs);
+        return compactor;
+    }
+
+    private Booking book(int customerId, int flightId) throws Exception {
+        Customer customer = fbs.getCustomerByID(customerId);
+        Flight flight = fbs.getFlightByID(flightId);
+        Booking booking = new Booking(fbs.generateBookingId(), customer, flight, LocalDate.of(2030, 6, 28), 250.0);
+        customer.addBooking(booking);
+        flight.addPassenger(customer);
+        journal.bookingCreated(booking);
+        return booking;
+    }
+
+    /**
+     * Tests that the journal is folded into the base files, and that storing the live system
+     * afterwards does not write the folded records a second time, while a change made after
+     * the fold is still stored.
+     *
+     * @throws Exception if the files cannot be written or read.
+     */
+    @Test
+    public void testFoldedRecordsAreNotStoredTwice() throws Exception {
+        Booking created = book(1, 2);
+        Booking first = fbs.getCustomerByID(1).getBookings().get(0);
+        first.cancelBooking();
+        journal.bookingCancelled(first);
+        Customer jane = fbs.getCustomerByID(2);
+        jane.setDeleted(true);
+        journal.customerDeleted(jane);
+        Booking changedAgain = book(2, 1);
+        changedAgain.cancelBooking(); // Its record is not in a sealed segment
+
+        assertTrue(compactor(new ReentrantLock()).compact());
+        assertTrue(journal.getSealedSegments().isEmpty());
+        List<String> bookingLines = Files.readAllLines(bookings);
+        assertEquals(4, bookingLines.size());
+        assertTrue(bookingLines.get(0).endsWith("::cancelled"));
+        assertTrue(Files.readAllLines(customers).get(1).endsWith("::deleted"));
+        assertFalse(created.isDirty());
+        assertTrue(created.isPersisted());
+        assertFalse(first.isDirty());
+        assertFalse(jane.isDirty());
+        assertTrue(changedAgain.isDirty());
+        assertTrue(changedAgain.isPersisted());
+
+        String customersBefore = new String(Files.readAllBytes(customers), StandardCharsets.UTF_8);
+        flightData.storeData(fbs);
+        customerData.storeData(fbs);
+        bookingData.storeData(fbs);
+        assertEquals(customersBefore, new String(Files.readAllBytes(customers), StandardCharsets.UTF_8));
+        bookingLines = Files.readAllLines(bookings);
+        assertEquals(4, bookingLines.size());
+        Set<String> ids = new HashSet<>();
+        for (String line : bookingLines) {
+            String record = line.substring(line.lastIndexOf('#') + 1);
+            assertTrue(ids.add(record.substring(0, record.indexOf("::"))));
+        }
+        assertTrue(bookingLines.get(3).endsWith("::cancelled"));
+    }
+
+    /**
+     * Tests that a compaction whose base files change before it is installed is retried, and
+     * that the retry keeps the change.
+     *
+     * @throws Exception if the files cannot be written or read.
+     */
+    @Test
+    public void testRetryWhenBaseFileChanges() throws Exception {
+        book(1, 2);
+        ReentrantLock fileLock = new ReentrantLock() {
+            private boolean changed;
+
+            @Override
+            public void lock() {
+                super.lock();
+                if (!changed) {
+                    changed = true;
+                    try {
+                        Files.write(customers, "3::Sam Roe::1122334455::sam.roe@example.com::\n"
+                                .getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                }
+            }
+        };
+        JournalCompactor compactor = compactor(fileLock);
+
+        assertTrue(compactor.compact());
+        assertTrue(compactor.getStatistics().startsWith("1 compaction(s), 1 retry(ies), 1 journal record(s) folded"));
+        assertEquals(3, Files.readAllLines(customers).size());
+        assertEquals(3, Files.readAllLines(bookings).size());
+        assertFalse(compactor.compact());
+    }
+}
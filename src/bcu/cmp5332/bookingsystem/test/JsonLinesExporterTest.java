@@ -0,0 +1,111 @@
+package bcu.cmp5332.bookingsystem.test;
+
+import bcu.cmp5332.bookingsystem.data.JsonLinesExporter;
+import bcu.cmp5332.bookingsystem.model.Booking;
+import bcu.cmp5332.bookingsystem.model.Customer;
+import bcu.cmp5332.bookingsystem.model.Flight;
+import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for exporting bookings and customers as JSON Lines.
+ * Tests include filtering bookings by date, route and state, and escaping customer details.
+ *
+ * @author Sugam Adhikari
+ * @author Prasansha Tamang
+ *
+ */
+public class JsonLinesExporterTest {
+
+    private Path file;
+    private FlightBookingSystem fbs;
+
+    /**
+     * Creates a system with two flights, two customers and three bookings before each test case.
+     *
+     * @throws Exception if the test data cannot be created.
+     */
+    @Before
+    public void setUp() throws Exception {
+        file = Files.createTempFile("export", ".jsonl");
+        fbs = new FlightBookingSystem();
+        Flight london = new Flight(1, "BA123", "LHR", "JFK", LocalDate.of(2030, 7, 1), 200, 500.0);
+        Flight paris = new Flight(2, "AF456", "CDG", "JFK", LocalDate.of(2030, 8, 1), 150, 300.0);
+        Customer john = new Customer(1, "John \"Jack\" Doe", "1234567890", "john.doe@example.com");
+        Customer jane = new Customer(2, "Jane Smith\u00e9", "0987654321", "jane.smith@example.com");
+        fbs.addFlight(london);
+        fbs.addFlight(paris);
+        fbs.addCustomer(john);
+        fbs.addCustomer(jane);
+        book(1, john, london);
+        book(2, john, paris);
+        book(3, jane, london).cancelBooking();
+    }
+
+    private Booking book(int id, Customer customer, Flight flight) throws Exception {
+        Booking booking = new Booking(id, customer, flight, LocalDate.of(2030, 1, id), flight.getPrice());
+        customer.addBooking(booking);
+        flight.addBooking(booking);
+        flight.addPassenger(customer);
+        return booking;
+    }
+
+    /**
+     * Deletes the export file after each test case.
+     *
+     * @throws Exception if the file cannot be deleted.
+     */
+    @After
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * Tests that only active bookings on flights matching the date range and route are written.
+     *
+     * @throws Exception if the export fails.
+     */
+    @Test
+    public void testExportBookings() throws Exception {
+        JsonLinesExporter exporter = new JsonLinesExporter();
+        assertEquals(3, exporter.exportBookings(fbs, file));
+
+        exporter.setDepartureRange(LocalDate.of(2030, 7, 1), LocalDate.of(2030, 7, 31));
+        exporter.setRoute("lhr", "jfk");
+        exporter.setActiveOnly(true);
+        assertEquals(1, exporter.exportBookings(fbs, file));
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertEquals(1, lines.size());
+        assertEquals("{\"id\":1,\"customerId\":1,\"customerName\":\"John \\\"Jack\\\" Doe\",\"flightId\":1,"
+                + "\"flightNumber\":\"BA123\",\"origin\":\"LHR\",\"destination\":\"JFK\","
+                + "\"departureDate\":\"2030-07-01\",\"bookingDate\":\"2030-01-01\",\"price\":500.0,"
+                + "\"cancelled\":false}", lines.get(0));
+        assertEquals(Files.size(file), exporter.getBytesWritten());
+    }
+
+    /**
+     * Tests that customers are written as UTF-8 and that deleted customers can be left out.
+     *
+     * @throws Exception if the export fails.
+     */
+    @Test
+    public void testExportCustomers() throws Exception {
+        fbs.getCustomerByID(1).setDeleted(true);
+        JsonLinesExporter exporter = new JsonLinesExporter();
+        exporter.setActiveOnly(true);
+        assertEquals(1, exporter.exportCustomers(fbs, file));
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertEquals("{\"id\":2,\"name\":\"Jane Smith\u00e9\",\"phone\":\"0987654321\","
+                + "\"email\":\"jane.smith@example.com\",\"deleted\":false}", lines.get(0));
+    }
+}
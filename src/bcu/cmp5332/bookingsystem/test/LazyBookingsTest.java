@@ -0,0 +1,120 @@
+package bcu.cmp5332.bookingsystem.test;
+
+import bcu.cmp5332.bookingsystem.data.CustomerDataManager;
+import bcu.cmp5332.bookingsystem.data.FlightDataManager;
+import bcu.cmp5332.bookingsystem.data.LazyBookings;
+import bcu.cmp5332.bookingsystem.model.Booking;
+import bcu.cmp5332.bookingsystem.model.Customer;
+import bcu.cmp5332.bookingsystem.model.Flight;
+import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for loading each customer's bookings only when they are first used.
+ * Tests include seat counts before any booking is loaded and records that replace earlier ones.
+ *
+ * @author Sugam Adhikari
+ * @author Prasansha Tamang
+ *
+ */
+public class LazyBookingsTest {
+
+    private Path dir;
+    private FlightBookingSystem fbs;
+    private LazyBookings lazyBookings;
+
+    /**
+     * Loads two flights and three customers, and attaches the bookings lazily, before each
+     * test case.
+     *
+     * @throws Exception if the files cannot be written or read.
+     */
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("lazy");
+        Path flights = write("flights.txt", "1::BA123::LHR::JFK::2024-07-01::1::500.0::\n"
+                + "2::AA456::JFK::LAX::2024-08-01::150::300.0::\n");
+        Path customers = write("customers.txt", "1::John Doe::1234567890::john.doe@example.com::\n"
+                + "2::Jane Smith::0987654321::jane.smith@example.com::\n"
+                + "3::Sam Roe::1122334455::sam.roe@example.com::\n");
+        Path bookings = write("bookings.txt", "1::1::1::2024-06-26::500.0\n"
+                + "2::2::1::2024-06-27::500.0\n"
+                + "3::1::2::2024-06-28::300.0\n"
+                + "2::2::1::2024-06-27::500.0::cancelled\n");
+        fbs = new FlightBookingSystem();
+        new FlightDataManager(flights.toString()).loadData(fbs);
+        new CustomerDataManager(customers.toString()).loadData(fbs);
+        lazyBookings = LazyBookings.attach(fbs, bookings.toString());
+    }
+
+    /**
+     * Removes the temporary directory after each test case.
+     *
+     * @throws IOException if a file cannot be removed.
+     */
+    @After
+    public void tearDown() throws IOException {
+        File[] files = dir.toFile().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        Files.delete(dir);
+    }
+
+    private Path write(String name, String content) throws IOException {
+        return Files.write(dir.resolve(name), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Tests that flights count their passengers and seats before any booking has been loaded.
+     *
+     * @throws Exception if the flights cannot be found.
+     */
+    @Test
+    public void testSeatsBeforeLoading() throws Exception {
+        Flight flight = fbs.getFlightByID(1);
+        assertEquals(2, flight.getPassengerCount());
+        assertTrue(flight.isFullyBooked());
+        assertEquals(1, fbs.getFlightByID(2).getPassengerCount());
+        assertEquals(3, fbs.getMaxBookingId());
+        assertEquals(2, lazyBookings.getPendingCustomers());
+    }
+
+    /**
+     * Tests that a customer's bookings are loaded on first use, with the last record of a
+     * booking replacing the earlier one.
+     *
+     * @throws Exception if the customers cannot be found.
+     */
+    @Test
+    public void testLoadOnFirstUse() throws Exception {
+        Customer john = fbs.getCustomerByID(1);
+        assertFalse(john.isBookingsLoaded());
+        List<Booking> bookings = john.getBookings();
+        assertTrue(john.isBookingsLoaded());
+        assertEquals(2, bookings.size());
+        assertEquals(1, bookings.get(0).getId());
+        assertEquals(3, bookings.get(1).getId());
+        assertEquals(1, lazyBookings.getPendingCustomers());
+
+        Customer jane = fbs.getCustomerByID(2);
+        assertTrue(jane.isCancelled());
+        assertEquals(1, jane.getNumberOfBookings());
+        assertTrue(jane.getBookingByFlightId(1).isCancelled());
+        assertEquals(0, lazyBookings.getPendingCustomers());
+        assertFalse(fbs.getCustomerByID(3).isCancelled());
+    }
+}
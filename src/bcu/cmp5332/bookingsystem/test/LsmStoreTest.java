@@ -0,0 +1,129 @@
+package bcu.cmp5332.bookingsystem.test;
+
+import bcu.cmp5332.bookingsystem.data.LsmStore;
+import bcu.cmp5332.bookingsystem.data.RecordStore;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the LSM record store.
+ * Tests include reading records back from many merged runs after reopening the store, and
+ * removed records staying hidden by the runs written after them.
+ *
+ * @author Sugam Adhikari
+ * @author Prasansha Tamang
+ *
+ */
+public class LsmStoreTest {
+
+    private Path dir;
+
+    /**
+     * Chooses a store directory that does not exist yet before each test case.
+     *
+     * @throws Exception if the directory cannot be created.
+     */
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("store");
+        Files.delete(dir);
+    }
+
+    /**
+     * Deletes the store directory after each test case.
+     *
+     * @throws Exception if the directory cannot be deleted.
+     */
+    @After
+    public void tearDown() throws Exception {
+        File[] files = dir.toFile().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        Files.deleteIfExists(dir);
+    }
+
+    private static byte[] record(int id, int version) {
+        return ("record " + id + " v" + version).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Tests that records written through many small memtables, some of them overwritten, can be
+     * read and scanned after the store has been closed and reopened, and that the runs have been
+     * merged rather than piling up.
+     *
+     * @throws Exception if the store cannot be used.
+     */
+    @Test
+    public void testRecordsAcrossRuns() throws Exception {
+        try (LsmStore store = new LsmStore(dir.toString(), 4096, 3)) {
+            for (int id = 1; id <= 20000; id++) {
+                store.put(RecordStore.Table.BOOKINGS, id, record(id, 1));
+                if (id % 100 == 0) {
+                    store.commit();
+                }
+            }
+            for (int id = 2; id <= 20000; id += 2) {
+                store.put(RecordStore.Table.BOOKINGS, id, record(id, 2));
+            }
+            store.put(RecordStore.Table.CUSTOMERS, 1, record(-1, 1));
+        }
+        try (LsmStore store = new LsmStore(dir.toString(), 4096, 3)) {
+            assertTrue(store.getRunCount() < 20); // Over a hundred memtables were written out
+            assertEquals(20000, store.size(RecordStore.Table.BOOKINGS));
+            assertArrayEquals(record(12345, 1), store.get(RecordStore.Table.BOOKINGS, 12345));
+            assertArrayEquals(record(12346, 2), store.get(RecordStore.Table.BOOKINGS, 12346));
+            assertArrayEquals(record(-1, 1), store.get(RecordStore.Table.CUSTOMERS, 1));
+            assertNull(store.get(RecordStore.Table.FLIGHTS, 1));
+
+            List<Integer> ids = new ArrayList<>();
+            store.scan(RecordStore.Table.BOOKINGS, 99, 20001, (id, record) -> {
+                assertArrayEquals(record(id, id % 2 == 0 ? 2 : 1), record);
+                ids.add(id);
+                return ids.size() < 3;
+            });
+            assertEquals("[99, 100, 101]", ids.toString());
+        }
+    }
+
+    /**
+     * Tests that a removed record stays removed once older runs holding it have been written,
+     * both before and after the store is reopened.
+     *
+     * @throws Exception if the store cannot be used.
+     */
+    @Test
+    public void testDeleteHidesOlderRuns() throws Exception {
+        try (LsmStore store = new LsmStore(dir.toString(), 4096, 3)) {
+            for (int id = 1; id <= 5000; id++) {
+                store.put(RecordStore.Table.FLIGHTS, id, record(id, 1));
+            }
+            store.commit();
+            assertTrue(store.delete(RecordStore.Table.FLIGHTS, 42));
+            assertFalse(store.delete(RecordStore.Table.FLIGHTS, 42));
+            for (int id = 5001; id <= 10000; id++) {
+                store.put(RecordStore.Table.FLIGHTS, id, record(id, 1));
+            }
+            assertNull(store.get(RecordStore.Table.FLIGHTS, 42));
+        }
+        try (LsmStore store = new LsmStore(dir.toString(), 4096, 3)) {
+            assertNull(store.get(RecordStore.Table.FLIGHTS, 42));
+            assertEquals(9999, store.size(RecordStore.Table.FLIGHTS));
+            List<Integer> ids = new ArrayList<>();
+            store.scan(RecordStore.Table.FLIGHTS, 41, 43, (id, record) -> ids.add(id));
+            assertEquals("[41, 43]", ids.toString());
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package bcu.cmp5332.bookingsystem.test;
+
+import bcu.cmp5332.bookingsystem.data.MutationJournal;
+import bcu.cmp5332.bookingsystem.main.FlightBookingSystemException;
+import bcu.cmp5332.bookingsystem.model.Booking;
+import bcu.cmp5332.bookingsystem.model.Customer;
+import bcu.cmp5332.bookingsystem.model.Flight;
+import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the write-ahead mutation journal.
+ * Tests include replaying journalled bookings, cancellations and deletions over base data, and
+ * positions that carry on across rotations, truncations and restarts.
+ *
+ * @author Sugam Adhikari
+ * @author Prasansha Tamang
+ *
+ */
+public class MutationJournalTest {
+
+    private File journalFile;
+    private MutationJournal journal;
+
+    /**
+     * Creates an empty journal in a temporary file before each test case.
+     *
+     * @throws IOException if the temporary file cannot be created.
+     */
+    @Before
+    public void setUp() throws IOException {
+        journalFile = File.createTempFile("journal", ".txt");
+        journal = new MutationJournal(journalFile.getPath());
+    }
+
+    /**
+     * Closes and removes the temporary journal after each test case.
+     *
+     * @throws IOException if the journal cannot be closed.
+     */
+    @After
+    public void tearDown() throws IOException {
+        journal.truncate();
+        journal.close();
+        journalFile.delete();
+    }
+
+    private FlightBookingSystem createBaseSystem() throws FlightBookingSystemException {
+        FlightBookingSystem fbs = new FlightBookingSystem();
+        fbs.addFlight(new Flight(1, "BA123", "LHR", "JFK", LocalDate.of(2024, 7, 1), 200, 500.0));
+        fbs.addCustomer(new Customer(1, "John Doe", "1234567890", "john.doe@example.com"));
+        return fbs;
+    }
+
+    /**
+     * Tests that journalled mutations are applied to a freshly loaded system.
+     *
+     * @throws Exception if an error occurs while writing or replaying the journal.
+     */
+    @Test
+    public void testReplayAppliesMutations() throws Exception {
+        FlightBookingSystem live = createBaseSystem();
+        Customer customer = live.getCustomerByID(1);
+        Flight flight = live.getFlightByID(1);
+        Booking booking = new Booking(7, customer, flight, LocalDate.of(2024, 6, 26), 500.0);
+        customer.addBooking(booking);
+
+        journal.bookingCreated(booking);
+        journal.bookingCancelled(booking);
+        journal.flightDeleted(flight);
+        journal.customerDeleted(customer);
+
+        FlightBookingSystem restored = createBaseSystem();
+        assertEquals(4, journal.replay(restored));
+
+        Customer restoredCustomer = restored.getCustomerByID(1);
+        assertEquals(1, restoredCustomer.getBookings().size());
+        assertTrue(restoredCustomer.getBookings().get(0).isCancelled());
+        assertTrue(restoredCustomer.isDeleted());
+        assertTrue(restored.getFlightByID(1).isDeleted());
+        assertEquals(7, restored.getMaxBookingId());
+    }
+
+    /**
+     * Tests that replaying the same journal twice does not duplicate bookings,
+     * and that truncating the journal discards its records.
+     *
+     * @throws Exception if an error occurs while writing or replaying the journal.
+     */
+    @Test
+    public void testReplayIsIdempotentAndTruncateClears() throws Exception {
+        FlightBookingSystem live = createBaseSystem();
+        Customer customer = live.getCustomerByID(1);
+        Booking booking = new Booking(1, customer, live.getFlightByID(1), LocalDate.of(2024, 6, 26), 500.0);
+        journal.bookingCreated(booking);
+
+        FlightBookingSystem restored = createBaseSystem();
+        assertEquals(1, journal.replay(restored));
+        assertEquals(0, journal.replay(restored));
+        assertEquals(1, restored.getCustomerByID(1).getBookings().size());
+
+        journal.truncate();
+        assertEquals(0, journal.replay(createBaseSystem()));
+    }
+
+    /**
+     * Tests that positions keep increasing across a rotation, a truncation and a restart, and
+     * that a listener added at a position is first given only the records after it.
+     *
+     * @throws Exception if an error occurs while writing or reading the journal.
+     */
+    @Test
+    public void testPositionsCarryOn() throws Exception {
+        FlightBookingSystem live = createBaseSystem();
+        Customer customer = live.getCustomerByID(1);
+        Booking booking = new Booking(1, customer, live.getFlightByID(1), LocalDate.of(2024, 6, 26), 500.0);
+        assertEquals(0, journal.getPosition());
+        journal.bookingCreated(booking);
+        long created = journal.getPosition();
+        assertTrue(created > 0);
+        journal.rotate();
+        journal.bookingCancelled(booking);
+        long cancelled = journal.getPosition();
+        assertTrue(cancelled > created);
+
+        journal.truncate();
+        assertTrue(journal.getPosition() > cancelled);
+        journal.bookingCancelled(booking); // The same text as before the truncation
+        long end = journal.getPosition();
+        journal.close();
+
+        MutationJournal reopened = new MutationJournal(journalFile.getPath());
+        assertEquals(end, reopened.getPosition());
+        List<String> records = new ArrayList<>();
+        List<Long> positions = new ArrayList<>();
+        reopened.addListener(new MutationJournal.MutationListener() {
+            @Override
+            public void mutationLogged(String record) {
+                records.add(record);
+            }
+
+            @Override
+            public void mutationLogged(String record, long position) {
+                records.add(record);
+                positions.add(position);
+            }
+        }, cancelled);
+        assertEquals(1, records.size());
+        assertEquals("BOOKING_CANCELLED::1::1", records.get(0));
+        assertEquals(Long.valueOf(end), positions.get(0));
+        reopened.flightDeleted(live.getFlightByID(1));
+        assertEquals(2, records.size());
+        assertTrue(positions.get(1) > end);
+        reopened.close();
+    }
+
+    /**
+     * Tests that rotating seals the journal into a segment that is still replayed, and that
+     * discarding the segment removes its records.
+     *
+     * @throws Exception if an error occurs while writing or replaying the journal.
+     */
+    @Test
+    public void testRotateSealsSegment() throws Exception {
+        assertNull(journal.rotate());
+
+        FlightBookingSystem live = createBaseSystem();
+        Customer customer = live.getCustomerByID(1);
+        Booking booking = new Booking(1, customer, live.getFlightByID(1), LocalDate.of(2024, 6, 26), 500.0);
+        journal.bookingCreated(booking);
+        Path segment = journal.rotate();
+        journal.bookingCancelled(booking);
+
+        List<Path> segments = journal.getSealedSegments();
+        assertEquals(1, segments.size());
+        assertEquals(segment, segments.get(0));
+        FlightBookingSystem restored = createBaseSystem();
+        assertEquals(2, journal.replay(restored));
+        assertTrue(restored.getCustomerByID(1).getBookings().get(0).isCancelled());
+
+        journal.discard(segments);
+        assertTrue(journal.getSealedSegments().isEmpty());
+        assertTrue(journal.size() > 0);
+        // Only the cancellation is left, and its booking is no longer known.
+        assertEquals(0, journal.replay(createBaseSystem()));
+    }
+}
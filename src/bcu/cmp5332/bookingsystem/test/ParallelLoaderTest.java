@@ -0,0 +1,163 @@
+package bcu.cmp5332.bookingsystem.test;
+
+import bcu.cmp5332.bookingsystem.data.BookingDataManager;
+import bcu.cmp5332.bookingsystem.data.CustomerDataManager;
+import bcu.cmp5332.bookingsystem.data.FlightDataManager;
+import bcu.cmp5332.bookingsystem.data.ParallelLoader;
+import bcu.cmp5332.bookingsystem.model.Booking;
+import bcu.cmp5332.bookingsystem.model.Customer;
+import bcu.cmp5332.bookingsystem.model.Flight;
+import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for loading the text data files in parallel.
+ * Tests include booking chunks that split the file part-way through and records for the same
+ * booking in different chunks.
+ *
+ * @author Sugam Adhikari
+ * @author Prasansha Tamang
+ *
+ */
+public class ParallelLoaderTest {
+
+    private static final int CUSTOMERS = 40;
+    private static final int BOOKINGS = 300;
+
+    private Path dir;
+    private FlightDataManager flightData;
+    private CustomerDataManager customerData;
+    private BookingDataManager bookingData;
+    private Path bookings;
+
+    /**
+     * Writes flights, customers and bookings before each test case. The first bookings are
+     * written again, cancelled, at the end of the file.
+     *
+     * @throws IOException if the files cannot be written.
+     */
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("parallel");
+        StringBuilder flights = new StringBuilder();
+        for (int id = 1; id <= 5; id++) {
+            flights.append(id).append("::BA10").append(id).append("::LHR::JFK::2030-07-0").append(id)
+                    .append("::500::250.0::\n");
+        }
+        StringBuilder customers = new StringBuilder();
+        for (int id = 1; id <= CUSTOMERS; id++) {
+            customers.append(id).append("::Customer ").append(id).append("::0123::c").append(id)
+                    .append("@example.com::\n");
+        }
+        StringBuilder records = new StringBuilder();
+        for (int id = 1; id <= BOOKINGS; id++) {
+            records.append(record(id)).append('\n');
+        }
+        for (int id = 1; id <= 30; id++) {
+            records.append(record(id)).append("::cancelled\n");
+        }
+        Path flightFile = write("flights.txt", flights.toString());
+        Path customerFile = write("customers.txt", customers.toString());
+        bookings = write("bookings.txt", records.toString());
+        flightData = new FlightDataManager(flightFile.toString());
+        customerData = new CustomerDataManager(customerFile.toString());
+        bookingData = new BookingDataManager(bookings.toString());
+    }
+
+    private static String record(int id) {
+        return id + "::" + (id % CUSTOMERS + 1) + "::" + (id % 5 + 1) + "::2030-06-01::" + (100 + id) + ".0";
+    }
+
+    /**
+     * Removes the temporary directory after each test case.
+     *
+     * @throws IOException if a file cannot be removed.
+     */
+    @After
+    public void tearDown() throws IOException {
+        File[] files = dir.toFile().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        Files.delete(dir);
+    }
+
+    private Path write(String name, String content) throws IOException {
+        return Files.write(dir.resolve(name), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Tests that the booking file is split at the start of lines part-way through the file.
+     *
+     * @throws IOException if the file cannot be read.
+     */
+    @Test
+    public void testChunksStartOnLines() throws IOException {
+        byte[] content = Files.readAllBytes(bookings);
+        long[] boundaries = bookingData.splitChunks(7);
+        assertEquals(8, boundaries.length);
+        assertEquals(0, boundaries[0]);
+        assertEquals(content.length, boundaries[7]);
+        for (int i = 1; i < 7; i++) {
+            assertTrue(boundaries[i] > boundaries[i - 1]);
+            assertEquals('\n', content[(int) boundaries[i] - 1]);
+        }
+    }
+
+    /**
+     * Tests that a load split across several chunks gives the same system as a serial load,
+     * with the last record of a booking winning even when it is in a later chunk.
+     *
+     * @throws Exception if the files cannot be read.
+     */
+    @Test
+    public void testParallelMatchesSerial() throws Exception {
+        FlightBookingSystem serial = new FlightBookingSystem();
+        flightData.loadData(serial);
+        customerData.loadData(serial);
+        bookingData.loadData(serial);
+
+        FlightBookingSystem parallel = new FlightBookingSystem();
+        new ParallelLoader(flightData, customerData, bookingData, bookings.toString(), 7).load(parallel);
+
+        assertEquals(describe(serial), describe(parallel));
+        assertEquals(BOOKINGS, parallel.getMaxBookingId());
+        int bookingCount = 0;
+        for (Customer customer : parallel.getAllCustomers()) {
+            bookingCount += customer.getBookings().size();
+        }
+        assertEquals(BOOKINGS, bookingCount);
+        Booking first = parallel.getCustomerByID(2).getBookings().get(0);
+        assertEquals(1, first.getId());
+        assertTrue(first.isCancelled());
+    }
+
+    private static List<String> describe(FlightBookingSystem fbs) {
+        List<String> lines = new ArrayList<>();
+        for (Flight flight : fbs.getFlights()) {
+            lines.add(flight.getId() + " " + flight.getFlightNumber() + " " + flight.getPassengerCount());
+        }
+        for (Customer customer : fbs.getAllCustomers()) {
+            for (Booking booking : customer.getBookings()) {
+                lines.add(customer.getId() + ":" + booking.getId() + ":" + booking.getFlight().getId()
+                        + ":" + booking.getPrice() + ":" + booking.isCancelled());
+            }
+        }
+        lines.add("max " + fbs.getMaxBookingId());
+        return lines;
+    }
+}
@@ -0,0 +1,218 @@
+package bcu.cmp5332.bookingsystem.test;
+
+import bcu.cmp5332.bookingsystem.data.BookingDataManager;
+import bcu.cmp5332.bookingsystem.data.BookingRecord;
+import bcu.cmp5332.bookingsystem.data.Crc32c;
+import bcu.cmp5332.bookingsystem.data.FlightDataManager;
+import bcu.cmp5332.bookingsystem.data.LazyBookings;
+import bcu.cmp5332.bookingsystem.data.Quarantine;
+import bcu.cmp5332.bookingsystem.data.RecordFrame;
+import bcu.cmp5332.bookingsystem.model.Booking;
+import bcu.cmp5332.bookingsystem.model.Customer;
+import bcu.cmp5332.bookingsystem.model.Flight;
+import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for checksummed record framing.
+ * Tests include the CRC-32C check value, and loading data files with damaged records or
+ * bookings for unknown customers and flights, eagerly or lazily, which are moved to a
+ * quarantine file instead of stopping the load.
+ *
+ * @author Sugam Adhikari
+ * @author Prasansha Tamang
+ *
+ */
+public class RecordFrameTest {
+
+    private Path dir;
+
+    /**
+     * Creates a temporary directory for the data files before each test case.
+     *
+     * @throws Exception if the directory cannot be created.
+     */
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("frames");
+    }
+
+    /**
+     * Deletes the temporary directory after each test case.
+     *
+     * @throws Exception if a file cannot be deleted.
+     */
+    @After
+    public void tearDown() throws Exception {
+        for (String name : dir.toFile().list()) {
+            Files.delete(dir.resolve(name));
+        }
+        Files.delete(dir);
+    }
+
+    /**
+     * Tests the checksum against the standard CRC-32C check value.
+     */
+    @Test
+    public void testCrc32c() {
+        byte[] bytes = "123456789".getBytes(StandardCharsets.US_ASCII);
+        assertEquals(0xE3069283, Crc32c.compute(bytes, 0, bytes.length));
+        Crc32c crc = new Crc32c();
+        crc.update(bytes, 0, 4);
+        for (int i = 4; i < bytes.length; i++) {
+            crc.update(bytes[i]);
+        }
+        assertEquals(0xE3069283L, crc.getValue());
+    }
+
+    /**
+     * Tests that flights with a damaged frame or an invalid field are quarantined, that the
+     * other flights, framed or not, still load, and that the damaged lines are moved out of
+     * the data file.
+     *
+     * @throws Exception if the files cannot be written or read.
+     */
+    @Test
+    public void testDamagedRecordsAreQuarantined() throws Exception {
+        String resource = dir.resolve("flights.txt").toString();
+        FlightDataManager flights = new FlightDataManager(resource);
+        flights.setQuarantine(new Quarantine(resource));
+        FlightBookingSystem fbs = new FlightBookingSystem();
+        for (int id = 1; id <= 4; id++) {
+            fbs.addFlight(new Flight(id, "BA12" + id, "LHR", "JFK", LocalDate.of(2030, 7, id), 200, 500.0));
+        }
+        flights.storeData(fbs);
+
+        List<String> lines = Files.readAllLines(Paths.get(resource), StandardCharsets.UTF_8);
+        assertTrue(lines.get(0).startsWith("#"));
+        lines.set(1, lines.get(1).replace("BA122", "BA922")); // Fails the checksum
+        lines.set(2, lines.get(2).substring(0, lines.get(2).length() - 3)); // Cut short
+        lines.add("5::BA125::LHR::JFK::2030-07-05::200::500.0::::"); // Written before framing
+        lines.add("6::BA126::LHR::JFK::not a date::200::500.0::::");
+        Files.write(Paths.get(resource), lines, StandardCharsets.UTF_8);
+
+        List<Integer> ids = new ArrayList<>();
+        for (Flight flight : flights.parseData()) {
+            ids.add(flight.getId());
+        }
+        assertEquals(Arrays.asList(1, 4, 5), ids);
+        assertEquals(3, flights.getQuarantine().commit());
+
+        List<String> quarantined = Files.readAllLines(Paths.get(resource + Quarantine.SUFFIX));
+        assertEquals(3, quarantined.size());
+        assertTrue(quarantined.get(0).endsWith(lines.get(1)));
+        assertEquals(3, Files.readAllLines(Paths.get(resource)).size());
+        assertEquals(3, flights.parseData().size());
+        assertEquals(0, flights.getQuarantine().size());
+    }
+
+    /**
+     * Tests that the chunks of a booking file checked in parallel report to one quarantine.
+     *
+     * @throws Exception if the file cannot be written or read.
+     */
+    @Test
+    public void testBookingChunksShareQuarantine() throws Exception {
+        String resource = dir.resolve("bookings.txt").toString();
+        List<String> lines = new ArrayList<>();
+        for (int id = 1; id <= 1000; id++) {
+            String line = RecordFrame.frame(id + "::1::1::2030-01-01::500.0");
+            lines.add(id % 100 == 0 ? line.replace("500.0", "600.0") : line);
+        }
+        Files.write(Paths.get(resource), lines, StandardCharsets.UTF_8);
+
+        BookingDataManager bookings = new BookingDataManager(resource);
+        bookings.setQuarantine(new Quarantine(resource));
+        long[] boundaries = bookings.splitChunks(4);
+        int parsed = 0;
+        for (int i = 0; i < 4; i++) {
+            List<BookingRecord> chunk = bookings.parseChunk(boundaries[i], boundaries[i + 1]);
+            parsed += chunk.size();
+        }
+        assertEquals(990, parsed);
+        assertEquals(10, bookings.getQuarantine().commit());
+        assertEquals(990, bookings.parseChunk(0, Files.size(Paths.get(resource))).size());
+    }
+
+    private String writeBookings() throws Exception {
+        String resource = dir.resolve("bookings.txt").toString();
+        List<String> lines = new ArrayList<>();
+        lines.add(RecordFrame.frame("1::1::1::2030-01-01::500.0"));
+        lines.add(RecordFrame.frame("2::1::1::2030-01-01::500.0").replace("500.0", "600.0"));
+        lines.add("3::1::1::not a date::500.0");
+        lines.add("4::9::1::2030-01-01::500.0"); // No such customer
+        lines.add(RecordFrame.frame("5::1::9::2030-01-01::500.0")); // No such flight
+        lines.add("6::1::1::2030-01-02::400.0");
+        Files.write(Paths.get(resource), lines, StandardCharsets.UTF_8);
+        return resource;
+    }
+
+    private static FlightBookingSystem createSystem() throws Exception {
+        FlightBookingSystem fbs = new FlightBookingSystem();
+        fbs.addFlight(new Flight(1, "BA121", "LHR", "JFK", LocalDate.of(2030, 7, 1), 200, 500.0));
+        fbs.addCustomer(new Customer(1, "John Doe", "1234567890", "john.doe@example.com"));
+        return fbs;
+    }
+
+    private void assertQuarantined(String resource, Quarantine quarantine, FlightBookingSystem fbs)
+            throws Exception {
+        List<Integer> ids = new ArrayList<>();
+        for (Booking booking : fbs.getCustomerByID(1).getBookings()) {
+            ids.add(booking.getId());
+        }
+        assertEquals(Arrays.asList(1, 6), ids);
+        assertEquals(4, quarantine.commit());
+
+        List<String> quarantined = Files.readAllLines(Paths.get(resource + Quarantine.SUFFIX));
+        assertEquals(4, quarantined.size());
+        assertTrue(quarantined.get(2).endsWith("::4::9::1::2030-01-01::500.0"));
+        assertTrue(quarantined.get(3).endsWith(RecordFrame.frame("5::1::9::2030-01-01::500.0")));
+        List<String> remaining = Files.readAllLines(Paths.get(resource));
+        assertEquals(2, remaining.size());
+        assertEquals("6::1::1::2030-01-02::400.0", remaining.get(1));
+    }
+
+    /**
+     * Tests that bookings for a customer or flight that does not exist are quarantined by an
+     * eager load, along with damaged lines, instead of stopping it.
+     *
+     * @throws Exception if the file cannot be written or read.
+     */
+    @Test
+    public void testUnknownCustomerOrFlightIsQuarantined() throws Exception {
+        String resource = writeBookings();
+        BookingDataManager bookings = new BookingDataManager(resource);
+        bookings.setQuarantine(new Quarantine(resource));
+        FlightBookingSystem fbs = createSystem();
+        bookings.loadData(fbs);
+        assertQuarantined(resource, bookings.getQuarantine(), fbs);
+    }
+
+    /**
+     * Tests that a lazy load quarantines the same lines as an eager load.
+     *
+     * @throws Exception if the file cannot be written or read.
+     */
+    @Test
+    public void testLazyLoadQuarantines() throws Exception {
+        String resource = writeBookings();
+        Quarantine quarantine = new Quarantine(resource);
+        FlightBookingSystem fbs = createSystem();
+        LazyBookings.attach(fbs, resource, quarantine);
+        assertEquals(1, fbs.getFlightByID(1).getPassengerCount());
+        assertQuarantined(resource, quarantine, fbs);
+    }
+}
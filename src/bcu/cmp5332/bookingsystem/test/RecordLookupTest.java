@@ -0,0 +1,126 @@
+package bcu.cmp5332.bookingsystem.test;
+
+import bcu.cmp5332.bookingsystem.data.MutationJournal;
+import bcu.cmp5332.bookingsystem.data.RecordIndex;
+import bcu.cmp5332.bookingsystem.data.RecordLookup;
+import bcu.cmp5332.bookingsystem.main.FlightBookingSystemException;
+import bcu.cmp5332.bookingsystem.model.Booking;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for looking up single records through the offset index.
+ * Tests include lookups after appends, after a full rewrite, and with a pending journal.
+ *
+ * @author Sugam Adhikari
+ * @author Prasansha Tamang
+ *
+ */
+public class RecordLookupTest {
+
+    private Path dir;
+    private Path flights;
+    private Path customers;
+    private Path bookings;
+    private Path journal;
+    private RecordLookup lookup;
+
+    /**
+     * Creates a small set of data files in a temporary directory before each test case.
+     *
+     * @throws IOException if the files cannot be created.
+     */
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("lookup");
+        flights = write("flights.txt", "1::BA123::LHR::JFK::2024-07-01::200::500.0::\n"
+                + "2::AA456::JFK::LAX::2024-08-01::150::300.0::\n");
+        customers = write("customers.txt", "1::John Doe::1234567890::john.doe@example.com::\n"
+                + "2::Jane Smith::0987654321::jane.smith@example.com::\n");
+        bookings = write("bookings.txt", "1::1::2::2024-06-26::300.0\n"
+                + "2::2::1::2024-06-27::500.0::cancelled\n");
+        journal = dir.resolve("journal.txt");
+        lookup = new RecordLookup(flights.toString(), customers.toString(), bookings.toString(), journal.toString());
+    }
+
+    /**
+     * Removes the temporary directory after each test case.
+     *
+     * @throws IOException if a file cannot be removed.
+     */
+    @After
+    public void tearDown() throws IOException {
+        File[] files = dir.toFile().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        Files.delete(dir);
+    }
+
+    private Path write(String name, String content) throws IOException {
+        return Files.write(dir.resolve(name), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Tests that a booking is read with its customer and flight, and that an unknown ID is reported.
+     *
+     * @throws Exception if the data files cannot be read.
+     */
+    @Test
+    public void testFindBooking() throws Exception {
+        Booking booking = lookup.findBooking(1);
+        assertEquals("John Doe", booking.getCustomer().getName());
+        assertEquals("AA456", booking.getFlight().getFlightNumber());
+        assertFalse(booking.isCancelled());
+        assertTrue(lookup.findBooking(2).isCancelled());
+        assertTrue(new File(bookings + RecordIndex.SUFFIX).exists());
+        try {
+            lookup.findBooking(3);
+            fail("Expected an unknown booking to be reported");
+        } catch (FlightBookingSystemException ex) {
+            assertEquals("There is no booking with that ID.", ex.getMessage());
+        }
+    }
+
+    /**
+     * Tests that appended records, a replaced file and journalled mutations are all seen.
+     *
+     * @throws Exception if the data files cannot be read or written.
+     */
+    @Test
+    public void testSeesChanges() throws Exception {
+        assertEquals("Jane Smith", lookup.findCustomer(2).getName());
+
+        Files.write(customers, "2::Jane Doe::0987654321::jane.doe@example.com::\n".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+        assertEquals("Jane Doe", lookup.findCustomer(2).getName());
+
+        Path replacement = write("customers.txt.tmp", "2::Jane Roe::0987654321::jane.roe@example.com::\n"
+                + "1::John Doe::1234567890::john.doe@example.com::\n");
+        Files.move(replacement, customers, StandardCopyOption.REPLACE_EXISTING);
+        assertEquals("Jane Roe", new RecordLookup(flights.toString(), customers.toString(),
+                bookings.toString(), journal.toString()).findCustomer(2).getName());
+        assertEquals("John Doe", lookup.findCustomer(1).getName());
+
+        MutationJournal mutations = new MutationJournal(journal.toString());
+        mutations.bookingCancelled(lookup.findBooking(1));
+        mutations.flightDeleted(lookup.findFlight(2));
+        mutations.close();
+        Booking booking = lookup.findBooking(1);
+        assertTrue(booking.isCancelled());
+        assertTrue(booking.getFlight().isDeleted());
+    }
+}
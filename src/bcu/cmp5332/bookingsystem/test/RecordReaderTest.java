@@ -0,0 +1,140 @@
+package bcu.cmp5332.bookingsystem.test;
+
+import bcu.cmp5332.bookingsystem.data.RecordReader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the "::" record tokenizer used by the data managers.
+ * Tests include typed fields, trailing empty fields, blank and CRLF lines, and long lines.
+ *
+ * @author Sugam Adhikari
+ * @author Prasansha Tamang
+ *
+ */
+public class RecordReaderTest {
+
+    private File file;
+
+    /**
+     * Creates a temporary data file before each test case.
+     *
+     * @throws IOException if the temporary file cannot be created.
+     */
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("records", ".txt");
+    }
+
+    /**
+     * Removes the temporary data file after each test case.
+     */
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    private RecordReader open(String content) throws IOException {
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return new RecordReader(file.toPath());
+    }
+
+    /**
+     * Tests reading typed fields from a flight record and a flag that is not set.
+     *
+     * @throws IOException if the file cannot be read.
+     */
+    @Test
+    public void testTypedFields() throws IOException {
+        try (RecordReader reader = open("1::BA123::LHR::JFK::2024-07-01::200::500.25::DELETED\n"
+                + "2::AA456::JFK::LAX::2024-08-01::150::300.0::\n")) {
+            assertTrue(reader.nextRecord());
+            assertEquals(8, reader.fieldCount());
+            assertEquals(1, reader.nextInt());
+            assertEquals("BA123", reader.nextString());
+            assertEquals("LHR", reader.nextString());
+            assertEquals("JFK", reader.nextString());
+            assertEquals(LocalDate.of(2024, 7, 1), reader.nextDate());
+            assertEquals(200, reader.nextInt());
+            assertEquals(500.25, reader.nextDouble(), 0.0);
+            assertTrue(reader.nextFieldEqualsIgnoreCase("deleted"));
+            assertFalse(reader.hasNextField());
+
+            assertTrue(reader.nextRecord());
+            assertEquals(2, reader.nextInt());
+            reader.skipField();
+            reader.skipField();
+            assertEquals("LAX", reader.nextString());
+            reader.skipField();
+            reader.skipField();
+            assertEquals(300.0, reader.nextDouble(), 0.0);
+            assertTrue(reader.hasNextField());
+            assertFalse(reader.nextFieldEqualsIgnoreCase("deleted"));
+            assertFalse(reader.nextRecord());
+        }
+    }
+
+    /**
+     * Tests that blank lines are skipped, CRLF endings are removed and a last line
+     * without a newline is still read.
+     *
+     * @throws IOException if the file cannot be read.
+     */
+    @Test
+    public void testLineEndings() throws IOException {
+        try (RecordReader reader = open("1::John Doe\r\n\n2::Jane Smith")) {
+            assertTrue(reader.nextRecord());
+            assertEquals(1, reader.nextInt());
+            assertEquals("John Doe", reader.nextString());
+            assertTrue(reader.nextRecord());
+            assertEquals(3, reader.getLineNumber());
+            assertEquals(2, reader.nextInt());
+            assertEquals("Jane Smith", reader.nextString());
+            assertEquals("", reader.nextString());
+            assertFalse(reader.nextRecord());
+        }
+    }
+
+    /**
+     * Tests that lines longer than the read buffer are handled and that numbers which need
+     * the slow path still parse like {@link Double#parseDouble}.
+     *
+     * @throws IOException if the file cannot be read.
+     */
+    @Test
+    public void testLongLinesAndSlowPathNumbers() throws IOException {
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < 100_000; i++) {
+            name.append((char) ('a' + i % 26));
+        }
+        try (RecordReader reader = open("7::" + name + "::1.5E3::-0.125\n")) {
+            assertTrue(reader.nextRecord());
+            assertEquals(7, reader.nextInt());
+            assertEquals(name.toString(), reader.nextString());
+            assertEquals(1500.0, reader.nextDouble(), 0.0);
+            assertEquals(-0.125, reader.nextDouble(), 0.0);
+        }
+    }
+
+    /**
+     * Tests that an invalid integer is reported as a NumberFormatException.
+     *
+     * @throws IOException if the file cannot be read.
+     */
+    @Test(expected = NumberFormatException.class)
+    public void testInvalidInteger() throws IOException {
+        try (RecordReader reader = open("12a::x\n")) {
+            reader.nextRecord();
+            reader.nextInt();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package bcu.cmp5332.bookingsystem.test;
+
+import bcu.cmp5332.bookingsystem.data.RecordFrame;
+import bcu.cmp5332.bookingsystem.data.RecordWriter;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the record writer.
+ * Tests include writing each kind of field exactly as its text would be written, and writing
+ * a record longer than the writer's buffer.
+ *
+ * @author Sugam Adhikari
+ * @author Prasansha Tamang
+ *
+ */
+public class RecordWriterTest {
+
+    /**
+     * Tests that records are written as the framed text of their fields, joined by separators.
+     *
+     * @throws Exception if the records cannot be written.
+     */
+    @Test
+    public void testFieldsMatchTheirText() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (RecordWriter out = new RecordWriter(Channels.newChannel(bytes))) {
+            out.field(7).field("BA123").field(LocalDate.of(2030, 7, 1)).field(500.0).field("").field("").endRecord();
+            out.field(-42L).field(123.45).field(0.0).field(1e7).field("Z\u00fcrich").field((String) null).endRecord();
+            out.field(Integer.MIN_VALUE).field(Long.MIN_VALUE).field(LocalDate.of(12345, 1, 1)).endRecord();
+        }
+        String separator = System.lineSeparator();
+        String expected = RecordFrame.frame("7::BA123::2030-07-01::500.0::::") + separator
+                + RecordFrame.frame("-42::123.45::0.0::1.0E7::Z\u00fcrich::null") + separator
+                + RecordFrame.frame(Integer.MIN_VALUE + "::" + Long.MIN_VALUE + "::+12345-01-01") + separator;
+        assertEquals(expected, new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Tests that a record longer than the buffer is written whole, between complete records.
+     *
+     * @throws Exception if the records cannot be written.
+     */
+    @Test
+    public void testLongRecord() throws Exception {
+        char[] name = new char[1_000_000];
+        Arrays.fill(name, 'a');
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (RecordWriter out = new RecordWriter(Channels.newChannel(bytes))) {
+            for (int i = 0; i < 10_000; i++) {
+                out.field(i).endRecord();
+            }
+            out.field(1).field(new String(name)).endRecord();
+            out.field(2).endRecord();
+            assertEquals(bytes.size(), out.getBytesWritten());
+        }
+        String[] lines = new String(bytes.toByteArray(), StandardCharsets.UTF_8).split(System.lineSeparator());
+        assertEquals(10_002, lines.length);
+        assertEquals(RecordFrame.frame("9999"), lines[9_999]);
+        assertEquals(RecordFrame.frame("1::" + new String(name)), lines[10_000]);
+        assertEquals(RecordFrame.frame("2"), lines[10_001]);
+    }
+}
@@ -0,0 +1,115 @@
+package bcu.cmp5332.bookingsystem.test;
+
+import bcu.cmp5332.bookingsystem.data.MutationJournal;
+import bcu.cmp5332.bookingsystem.data.RecoveryLog;
+import bcu.cmp5332.bookingsystem.main.FlightBookingSystemException;
+import bcu.cmp5332.bookingsystem.model.Booking;
+import bcu.cmp5332.bookingsystem.model.Customer;
+import bcu.cmp5332.bookingsystem.model.Flight;
+import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for point-in-time recovery.
+ * Tests include restoring the system as it was between two logged mutations, after the last
+ * one, and before the first checkpoint.
+ *
+ * @author Sugam Adhikari
+ * @author Prasansha Tamang
+ *
+ */
+public class RecoveryLogTest {
+
+    private File journalFile;
+    private MutationJournal journal;
+    private Path dir;
+
+    /**
+     * Creates an empty journal and recovery log directory before each test case.
+     *
+     * @throws Exception if the temporary files cannot be created.
+     */
+    @Before
+    public void setUp() throws Exception {
+        journalFile = File.createTempFile("journal", ".txt");
+        journal = new MutationJournal(journalFile.getPath());
+        dir = Files.createTempDirectory("pitr");
+    }
+
+    /**
+     * Closes and removes the temporary journal and log after each test case.
+     *
+     * @throws Exception if the files cannot be removed.
+     */
+    @After
+    public void tearDown() throws Exception {
+        journal.close();
+        journalFile.delete();
+        for (File file : dir.toFile().listFiles()) {
+            file.delete();
+        }
+        Files.delete(dir);
+    }
+
+    /**
+     * Tests that a restore replays the log from the checkpoint up to the chosen instant only,
+     * and that an instant before every checkpoint cannot be restored.
+     *
+     * @throws Exception if the log cannot be written or read.
+     */
+    @Test
+    public void testRestoreToInstant() throws Exception {
+        FlightBookingSystem fbs = new FlightBookingSystem();
+        Flight flight = new Flight(1, "BA123", "LHR", "JFK", LocalDate.of(2030, 7, 1), 200, 500.0);
+        Customer john = new Customer(1, "John Doe", "1234567890", "john.doe@example.com");
+        fbs.addFlight(flight);
+        fbs.addCustomer(john);
+        Instant before = Instant.now();
+        Thread.sleep(5);
+
+        try (RecoveryLog log = new RecoveryLog(dir.toString(), TimeUnit.HOURS.toMillis(1),
+                TimeUnit.DAYS.toMillis(1))) {
+            log.start(fbs, journal);
+            Thread.sleep(5);
+            log.checkpoint(fbs);
+
+            Booking booking = new Booking(1, john, flight, LocalDate.of(2030, 1, 1), 500.0);
+            john.addBooking(booking);
+            flight.addPassenger(john);
+            fbs.setMaxBookingId(1);
+            journal.bookingCreated(booking);
+            Thread.sleep(5);
+            Instant middle = Instant.now();
+            Thread.sleep(5);
+            booking.cancelBooking();
+            journal.bookingCancelled(booking);
+
+            FlightBookingSystem restored = log.restore(middle);
+            assertEquals(1, log.getReplayed());
+            assertFalse(restored.getCustomerByID(1).getBookings().get(0).isCancelled());
+
+            restored = log.restore(Instant.now());
+            assertEquals(2, log.getReplayed());
+            assertTrue(restored.getCustomerByID(1).getBookings().get(0).isCancelled());
+            assertEquals("BA123", restored.getFlightByID(1).getFlightNumber());
+
+            try {
+                log.restore(before);
+                fail("Expected no checkpoint before the log was started");
+            } catch (FlightBookingSystemException ex) {
+                assertTrue(ex.getMessage().startsWith("There is no checkpoint"));
+            }
+        }
+    }
+}
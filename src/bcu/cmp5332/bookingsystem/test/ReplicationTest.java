@@ -0,0 +1,104 @@
+package bcu.cmp5332.bookingsystem.test;
+
+import bcu.cmp5332.bookingsystem.data.MutationJournal;
+import bcu.cmp5332.bookingsystem.data.ReplicationFollower;
+import bcu.cmp5332.bookingsystem.data.ReplicationPrimary;
+import bcu.cmp5332.bookingsystem.model.Booking;
+import bcu.cmp5332.bookingsystem.model.Customer;
+import bcu.cmp5332.bookingsystem.model.Flight;
+import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.time.LocalDate;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for replicating the mutation journal to a follower.
+ * Tests include a follower copying the primary's system when it connects and then applying the
+ * mutations logged afterwards.
+ *
+ * @author Sugam Adhikari
+ * @author Prasansha Tamang
+ *
+ */
+public class ReplicationTest {
+
+    private File journalFile;
+    private MutationJournal journal;
+
+    /**
+     * Creates an empty journal in a temporary file before each test case.
+     *
+     * @throws Exception if the temporary file cannot be created.
+     */
+    @Before
+    public void setUp() throws Exception {
+        journalFile = File.createTempFile("journal", ".txt");
+        journal = new MutationJournal(journalFile.getPath());
+    }
+
+    /**
+     * Closes and removes the temporary journal after each test case.
+     *
+     * @throws Exception if the journal cannot be closed.
+     */
+    @After
+    public void tearDown() throws Exception {
+        journal.close();
+        journalFile.delete();
+    }
+
+    /**
+     * Tests that a follower starts with the primary's flights, customers and bookings, applies
+     * new and cancelled bookings, new customers and deletions, and catches up with the primary.
+     *
+     * @throws Exception if the follower cannot connect.
+     */
+    @Test
+    public void testFollowerAppliesMutations() throws Exception {
+        FlightBookingSystem fbs = new FlightBookingSystem();
+        Flight flight = new Flight(1, "BA123", "LHR", "JFK", LocalDate.of(2030, 7, 1), 200, 500.0);
+        Customer john = new Customer(1, "John Doe", "1234567890", "john.doe@example.com");
+        fbs.addFlight(flight);
+        fbs.addCustomer(john);
+        Booking first = new Booking(1, john, flight, LocalDate.of(2030, 1, 1), 500.0);
+        john.addBooking(first);
+        first.cancelBooking();
+        fbs.setMaxBookingId(1);
+
+        try (ReplicationPrimary primary = new ReplicationPrimary(fbs, journal, 0);
+                ReplicationFollower follower = new ReplicationFollower(primary.getPort())) {
+            FlightBookingSystem copy = follower.connect();
+            assertEquals("BA123", copy.getFlightByID(1).getFlightNumber());
+            assertTrue(copy.getCustomerByID(1).getBookings().get(0).isCancelled());
+
+            Customer jane = new Customer(2, "Jane Smith", "0987654321", "jane.smith@example.com");
+            fbs.addCustomer(jane);
+            journal.publishCustomerAdded(jane);
+            Booking second = new Booking(fbs.generateBookingId(), jane, flight, LocalDate.of(2030, 1, 2), 450.0);
+            jane.addBooking(second);
+            journal.bookingCreated(second);
+            journal.flightDeleted(flight);
+
+            long deadline = System.currentTimeMillis() + 10_000;
+            while ((follower.getApplied() < 3 || primary.getLagRecords() > 0)
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(3, primary.getSequence());
+            assertEquals(0, primary.getLagRecords());
+            assertEquals(0, follower.getLagRecords());
+            synchronized (copy) {
+                Booking replicated = copy.getCustomerByID(2).getBookings().get(0);
+                assertEquals(2, replicated.getId());
+                assertEquals(450.0, replicated.getPrice(), 0.001);
+                assertTrue(copy.getFlightByID(1).isDeleted());
+                assertEquals(2, copy.getMaxBookingId());
+            }
+        }
+    }
+}
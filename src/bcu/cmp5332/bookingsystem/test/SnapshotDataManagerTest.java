@@ -0,0 +1,184 @@
+package bcu.cmp5332.bookingsystem.test;
+
+import bcu.cmp5332.bookingsystem.data.BookingDataManager;
+import bcu.cmp5332.bookingsystem.data.CustomerDataManager;
+import bcu.cmp5332.bookingsystem.data.FlightDataManager;
+import bcu.cmp5332.bookingsystem.data.SnapshotDataManager;
+import bcu.cmp5332.bookingsystem.main.FlightBookingSystemException;
+import bcu.cmp5332.bookingsystem.model.Booking;
+import bcu.cmp5332.bookingsystem.model.Customer;
+import bcu.cmp5332.bookingsystem.model.Flight;
+import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the binary snapshot.
+ * Tests include loading what was stored, loading records appended to the text files since,
+ * and ignoring a snapshot whose text files were changed in other ways.
+ *
+ * @author Sugam Adhikari
+ * @author Prasansha Tamang
+ *
+ */
+public class SnapshotDataManagerTest {
+
+    private Path dir;
+    private Path customers;
+    private Path bookings;
+    private FlightDataManager flightData;
+    private CustomerDataManager customerData;
+    private BookingDataManager bookingData;
+    private SnapshotDataManager snapshot;
+
+    /**
+     * Writes the text files and a snapshot of them before each test case.
+     *
+     * @throws Exception if the files cannot be written or read.
+     */
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("snapshot");
+        Path flights = write("flights.txt", "1::BA123::LHR::JFK::2030-07-01::100::500.0::\n"
+                + "2::AA456::JFK::LAX::2030-08-01::150::300.0::deleted\n");
+        customers = write("customers.txt", "1::John Doe::1234567890::john.doe@example.com::\n"
+                + "2::Jane Smith::0987654321::jane.smith@example.com::\n");
+        bookings = write("bookings.txt", "1::1::1::2030-06-26::500.0\n"
+                + "2::2::1::2030-06-27::500.0::cancelled\n");
+        flightData = new FlightDataManager(flights.toString());
+        customerData = new CustomerDataManager(customers.toString());
+        bookingData = new BookingDataManager(bookings.toString());
+        snapshot = new SnapshotDataManager(dir.resolve("snapshot.bin").toString(), flights.toString(),
+                customers.toString(), bookings.toString());
+        snapshot.storeData(loadText());
+    }
+
+    /**
+     * Removes the temporary directory after each test case.
+     *
+     * @throws IOException if a file cannot be removed.
+     */
+    @After
+    public void tearDown() throws IOException {
+        File[] files = dir.toFile().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        Files.delete(dir);
+    }
+
+    private Path write(String name, String content) throws IOException {
+        return Files.write(dir.resolve(name), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private FlightBookingSystem loadText() throws Exception {
+        FlightBookingSystem fbs = new FlightBookingSystem();
+        flightData.loadData(fbs);
+        customerData.loadData(fbs);
+        bookingData.loadData(fbs);
+        return fbs;
+    }
+
+    private FlightBookingSystem loadSnapshot() throws Exception {
+        FlightBookingSystem fbs = new FlightBookingSystem();
+        snapshot.loadData(fbs);
+        return fbs;
+    }
+
+    /**
+     * Tests that loading the snapshot gives the system it was written from, with nothing left
+     * to store.
+     *
+     * @throws Exception if the snapshot cannot be read.
+     */
+    @Test
+    public void testRoundTrip() throws Exception {
+        assertTrue(snapshot.isUpToDate());
+        FlightBookingSystem fbs = loadSnapshot();
+        assertEquals(2, fbs.getFlights().size());
+        assertEquals("BA123", fbs.getFlightByID(1).getFlightNumber());
+        assertEquals(LocalDate.of(2030, 7, 1), fbs.getFlightByID(1).getDepartureDate());
+        assertTrue(fbs.getFlightByID(2).isDeleted());
+        assertEquals("jane.smith@example.com", fbs.getCustomerByID(2).getEmail());
+        assertEquals(2, fbs.getMaxBookingId());
+        assertFalse(fbs.getCustomerByID(1).getBookings().get(0).isCancelled());
+        assertTrue(fbs.getCustomerByID(2).getBookings().get(0).isCancelled());
+        assertEquals(2, fbs.getFlightByID(1).getPassengerCount());
+        assertFalse(fbs.getFlightByID(1).isDirty());
+        assertFalse(fbs.getCustomerByID(1).getBookings().get(0).isDirty());
+    }
+
+    /**
+     * Tests that records appended by an incremental store are loaded on top of the snapshot.
+     *
+     * @throws Exception if the files cannot be written or read.
+     */
+    @Test
+    public void testAppendedRecordsAreLoaded() throws Exception {
+        FlightBookingSystem fbs = loadSnapshot();
+        Customer sam = new Customer(3, "Sam Roe", "1122334455", "sam.roe@example.com");
+        fbs.addCustomer(sam);
+        Flight flight = fbs.getFlightByID(1);
+        Booking booking = new Booking(fbs.generateBookingId(), sam, flight, LocalDate.of(2030, 6, 28), 450.0);
+        sam.addBooking(booking);
+        flight.addPassenger(sam);
+        customerData.storeData(fbs);
+        bookingData.storeData(fbs);
+
+        assertTrue(snapshot.isUpToDate());
+        FlightBookingSystem loaded = loadSnapshot();
+        assertEquals("Sam Roe", loaded.getCustomerByID(3).getName());
+        assertEquals(3, loaded.getMaxBookingId());
+        assertEquals(450.0, loaded.getCustomerByID(3).getBookings().get(0).getPrice(), 0.001);
+        assertEquals(3, loaded.getFlightByID(1).getPassengerCount());
+        assertFalse(loaded.getCustomerByID(3).isDirty());
+    }
+
+    /**
+     * Tests that the snapshot is not used once a text file has been changed other than by
+     * appending, even if the changed file looks older than the snapshot.
+     *
+     * @throws Exception if the files cannot be written or read.
+     */
+    @Test
+    public void testChangedFilesAreStale() throws Exception {
+        long snapshotTime = dir.resolve("snapshot.bin").toFile().lastModified();
+        String corrected = new String(Files.readAllBytes(customers), StandardCharsets.UTF_8).replace("Jane", "Joan");
+        write("customers.txt", corrected);
+        customers.toFile().setLastModified(snapshotTime - 60_000);
+        assertFalse(snapshot.isUpToDate());
+        assertEquals("Joan Smith", loadText().getCustomerByID(2).getName());
+
+        snapshot.storeData(loadText());
+        assertTrue(snapshot.isUpToDate());
+        write("bookings.txt", "1::1::1::2030-06-26::500.0\n");
+        assertFalse(snapshot.isUpToDate());
+    }
+
+    /**
+     * Tests that a booking written again after the snapshot stops the snapshot from loading,
+     * rather than being added twice.
+     *
+     * @throws Exception if the files cannot be written or read.
+     */
+    @Test(expected = FlightBookingSystemException.class)
+    public void testRewrittenRecordIsRejected() throws Exception {
+        Files.write(bookings, "1::1::1::2030-06-26::500.0::cancelled\n".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+        assertTrue(snapshot.isUpToDate());
+        loadSnapshot();
+    }
+}
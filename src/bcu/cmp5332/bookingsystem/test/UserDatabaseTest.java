@@ -0,0 +1,79 @@
+package bcu.cmp5332.bookingsystem.test;
+
+import bcu.cmp5332.bookingsystem.data.UserDatabase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the user database.
+ * Tests include appending new users to the file and picking up users added to it by hand.
+ *
+ * @author Sugam Adhikari
+ * @author Prasansha Tamang
+ *
+ */
+public class UserDatabaseTest {
+
+    private Path file;
+
+    /**
+     * Creates a user file with two users before each test case.
+     *
+     * @throws Exception if the file cannot be written.
+     */
+    @Before
+    public void setUp() throws Exception {
+        file = Files.createTempFile("users", ".txt");
+        Files.write(file, Arrays.asList("user1,pass1", "user2,pass2"), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Deletes the user file after each test case.
+     *
+     * @throws Exception if the file cannot be deleted.
+     */
+    @After
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * Tests that a new user is appended after the existing lines, that a username cannot be
+     * taken twice, and that a user added to the file by hand is picked up by a reload.
+     *
+     * @throws Exception if the file cannot be read or written.
+     */
+    @Test
+    public void testAppendAndReload() throws Exception {
+        UserDatabase users = new UserDatabase(file.toString());
+        assertTrue(users.authenticate("user1", "pass1"));
+        assertFalse(users.authenticate("user1", "pass2"));
+        assertFalse(users.authenticate("nobody", "pass1"));
+
+        assertTrue(users.addUser("admin", "secret"));
+        assertFalse(users.addUser("admin", "other"));
+        assertTrue(users.authenticate("admin", "secret"));
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertEquals(Arrays.asList("user1,pass1", "user2,pass2", "admin,secret"), lines);
+        assertFalse(users.reloadIfChanged());
+
+        Files.write(file, "editor,pass3".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 2000));
+        assertTrue(users.reloadIfChanged());
+        assertTrue(users.authenticate("editor", "pass3"));
+        assertTrue(users.addUser("viewer", "pass4"));
+        assertEquals("viewer,pass4", Files.readAllLines(file, StandardCharsets.UTF_8).get(4));
+        assertTrue(new UserDatabase(file.toString()).authenticate("editor", "pass3"));
+    }
+}
@@ -0,0 +1,138 @@
+package bcu.cmp5332.bookingsystem.test;
+
+import bcu.cmp5332.bookingsystem.data.CustomerDataManager;
+import bcu.cmp5332.bookingsystem.data.DurableFile;
+import bcu.cmp5332.bookingsystem.data.FlightDataManager;
+import bcu.cmp5332.bookingsystem.data.WriteBehindQueue;
+import bcu.cmp5332.bookingsystem.model.Customer;
+import bcu.cmp5332.bookingsystem.model.Flight;
+import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for appending records to the data files on a background thread.
+ * Tests include the order of appends to several files, appends after a file is replaced and
+ * queued records matching the records the data managers store.
+ *
+ * @author Sugam Adhikari
+ * @author Prasansha Tamang
+ *
+ */
+public class WriteBehindQueueTest {
+
+    private Path dir;
+    private WriteBehindQueue queue;
+
+    /**
+     * Creates a temporary directory and a small queue before each test case.
+     *
+     * @throws IOException if the directory cannot be created.
+     */
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("writebehind");
+        queue = new WriteBehindQueue(new ReentrantLock(), 4, 2);
+    }
+
+    /**
+     * Stops the queue and removes the temporary directory after each test case.
+     *
+     * @throws IOException if a file cannot be removed.
+     */
+    @After
+    public void tearDown() throws IOException {
+        queue.shutdown();
+        File[] files = dir.toFile().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        Files.delete(dir);
+    }
+
+    /**
+     * Tests that lines queued for two files reach each file in order.
+     *
+     * @throws Exception if the files cannot be written or read.
+     */
+    @Test
+    public void testAppendInOrder() throws Exception {
+        String flights = dir.resolve("flights.txt").toString();
+        String customers = dir.resolve("customers.txt").toString();
+        CompletableFuture<Void> last = null;
+        for (int i = 1; i <= 10; i++) {
+            queue.append(flights, "flight " + i);
+            last = queue.append(customers, "customer " + i);
+        }
+        WriteBehindQueue.await(last);
+        queue.flush();
+        assertEquals(10, Files.readAllLines(dir.resolve("flights.txt")).size());
+        assertEquals("flight 10", Files.readAllLines(dir.resolve("flights.txt")).get(9));
+        assertEquals("customer 1", Files.readAllLines(dir.resolve("customers.txt")).get(0));
+    }
+
+    /**
+     * Tests that a line queued after a file has been replaced is appended to the new file.
+     *
+     * @throws Exception if the file cannot be written or read.
+     */
+    @Test
+    public void testAppendAfterReplace() throws Exception {
+        String resource = dir.resolve("flights.txt").toString();
+        WriteBehindQueue.await(queue.append(resource, "old"));
+        DurableFile.replaceText(resource, out -> out.println("replaced"));
+        queue.append(resource, "new");
+        queue.flush();
+        assertEquals(Arrays.asList("replaced", "new"),
+                Files.readAllLines(dir.resolve("flights.txt"), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Tests that a flight and a customer queued as encoded records are written exactly as the
+     * data managers store them, and load back.
+     *
+     * @throws Exception if the files cannot be written or read.
+     */
+    @Test
+    public void testEncodedRecordsMatchStoredRecords() throws Exception {
+        Flight flight = new Flight(1, "BA123", "LHR", "JFK", LocalDate.of(2030, 7, 1), 100, 500.0);
+        Customer customer = new Customer(1, "J\u00fcrgen Roe", "1122334455", "jurgen@example.com");
+        String queuedFlights = dir.resolve("queued-flights.txt").toString();
+        String queuedCustomers = dir.resolve("queued-customers.txt").toString();
+        queue.append(queuedFlights, FlightDataManager.encode(flight));
+        queue.append(queuedCustomers, CustomerDataManager.encode(customer));
+        queue.flush();
+
+        FlightBookingSystem fbs = new FlightBookingSystem();
+        fbs.addFlight(flight);
+        fbs.addCustomer(customer);
+        new FlightDataManager(dir.resolve("flights.txt").toString()).storeData(fbs);
+        new CustomerDataManager(dir.resolve("customers.txt").toString()).storeData(fbs);
+        assertArrayEquals(Files.readAllBytes(dir.resolve("flights.txt")),
+                Files.readAllBytes(dir.resolve("queued-flights.txt")));
+        assertArrayEquals(Files.readAllBytes(dir.resolve("customers.txt")),
+                Files.readAllBytes(dir.resolve("queued-customers.txt")));
+
+        FlightBookingSystem loaded = new FlightBookingSystem();
+        new FlightDataManager(queuedFlights).loadData(loaded);
+        new CustomerDataManager(queuedCustomers).loadData(loaded);
+        assertEquals("BA123", loaded.getFlightByID(1).getFlightNumber());
+        assertEquals(500.0, loaded.getFlightByID(1).getPrice(), 0.001);
+        assertEquals("J\u00fcrgen Roe", loaded.getCustomerByID(1).getName());
+    }
+}